@@ -0,0 +1,161 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.ViewGroup;
+import java.util.Map;
+
+/*
+ * BindBenchmark.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * BindBenchmark measures how expensive it is to bind rows of the item list. It binds the adapter's rows into one
+ * ViewHolder with the adapter's bind and with the legacy bind (formatting and logging on every call) and reports the
+ * average and worst time and the bytes allocated per bind for both. FrameMonitor records frame times while the list
+ * is scrolled.
+ *
+ * Components:
+ * - FrameMonitor: Records frame intervals through Choreographer and counts frames slower than one vsync.
+ *
+ * Functions:
+ * - run(ItemAdapter adapter, ViewGroup parent, int binds): Runs both binds and returns the comparison as text.
+ * - bindLegacy(ItemAdapter.ViewHolder holder, Item item): The bind ItemAdapter used before its display text was prepared,
+ *   kept here as the baseline so the adapter does not ship it.
+ *
+ * Note:
+ * - Must run on the main thread, like any view binding.
+ * - Bytes are read from the JVM's counter for the calling thread, or on a device from ART's art.gc.bytes-allocated runtime
+ *   stat. The ART stat counts the whole process and grows a thread-local buffer at a time, so it is only meaningful over
+ *   many binds on an otherwise idle app. Where neither counter exists the bytes are reported as n/a.
+ * - The binds are timed here, around each call, so the adapter's production bind carries no timing code.
+ */
+public class BindBenchmark {
+
+    private static final String TAG = "BindBenchmark";
+    private static final int WARM_UP_BINDS = 200;
+
+    private BindBenchmark() {
+    }
+
+    /**
+     * Binds the adapter's rows with the current and the legacy bind and reports time and allocated bytes per bind.
+     * @param adapter The adapter, with at least one item.
+     * @param parent The RecyclerView or another parent used to inflate the row.
+     * @param binds The number of binds measured for each variant.
+     * @return The comparison as text.
+     */
+    public static String run(ItemAdapter adapter, ViewGroup parent, int binds) {
+        int count = adapter.getItemCount();
+        if (count == 0) {
+            return "No items to bind";
+        }
+        ItemAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        // Warm both paths up so class loading and view growth are not measured
+        for (int i = 0; i < WARM_UP_BINDS; i++) {
+            adapter.onBindViewHolder(holder, i % count);
+            bindLegacy(holder, adapter.getItem(i % count));
+        }
+
+        String result = "legacy: " + measure(adapter, holder, binds, true) + "; current: " +
+                measure(adapter, holder, binds, false);
+        Log.d(TAG, result);
+        return result;
+    }
+
+    // Times each of a number of binds and returns the average and worst time and the bytes allocated per bind
+    private static String measure(ItemAdapter adapter, ItemAdapter.ViewHolder holder, int binds, boolean legacy) {
+        int count = adapter.getItemCount();
+        boolean perThread = PerformanceSuite.currentThreadAllocatedBytes() >= 0;
+        long bytesBefore = allocatedBytes(perThread);
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (int i = 0; i < binds; i++) {
+            long start = System.nanoTime();
+            if (legacy) {
+                bindLegacy(holder, adapter.getItem(i % count));
+            } else {
+                adapter.onBindViewHolder(holder, i % count);
+            }
+            long elapsed = System.nanoTime() - start;
+            totalNanos += elapsed;
+            maxNanos = Math.max(maxNanos, elapsed);
+        }
+        long bytesAfter = allocatedBytes(perThread);
+        String bytes = bytesBefore >= 0 && bytesAfter >= bytesBefore
+                ? String.valueOf((bytesAfter - bytesBefore) / binds) : "n/a";
+        return totalNanos / binds + " ns/bind (max " + maxNanos + "), " + bytes + " B/bind";
+    }
+
+    // Binds a row the way ItemAdapter did before display text was prepared: formatting and logging on every call
+    private static void bindLegacy(ItemAdapter.ViewHolder holder, Item item) {
+        Context context = holder.itemView.getContext();
+        holder.nameTextView.setText(item.getName());
+        holder.partNumberTextView.setText(context.getString(R.string.part_number_placeholder, item.getPartNumber()));
+        holder.quantityTextView.setText(context.getString(R.string.quantity_placeholder, item.getQuantity()));
+        for (Map.Entry<String, String> entry : item.getDynamicValues().entrySet()) {
+            Log.d("ItemAdapter", "Dynamic Column: " + entry.getKey() + ", Value: " + entry.getValue());
+        }
+    }
+
+    // Bytes allocated so far by the calling thread, or by the process where only a process total exists
+    private static long allocatedBytes(boolean perThread) {
+        return perThread ? PerformanceSuite.currentThreadAllocatedBytes() : PerformanceSuite.totalAllocatedBytes();
+    }
+
+    /**
+     * Records frame intervals while started, for example during a fling of the item list.
+     */
+    public static class FrameMonitor implements Choreographer.FrameCallback {
+        private static final long FRAME_BUDGET_NANOS = 16666667L;
+
+        private boolean running;
+        private long lastFrameNanos;
+        private long frames;
+        private long jankyFrames;
+        private long totalNanos;
+        private long maxNanos;
+
+        // Starts recording, must be called on the main thread
+        public void start() {
+            running = true;
+            lastFrameNanos = 0;
+            frames = 0;
+            jankyFrames = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        // Stops recording and returns the frame count, average and worst frame time and the frames over budget
+        public String stop() {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+            return "frames=" + frames +
+                    " avgMs=" + (frames == 0 ? 0 : totalNanos / frames / 1000000.0) +
+                    " maxMs=" + maxNanos / 1000000.0 +
+                    " janky=" + jankyFrames;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) {
+                return;
+            }
+            if (lastFrameNanos != 0) {
+                long interval = frameTimeNanos - lastFrameNanos;
+                frames++;
+                totalNanos += interval;
+                maxNanos = Math.max(maxNanos, interval);
+                if (interval > FRAME_BUDGET_NANOS) {
+                    jankyFrames++;
+                }
+            }
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
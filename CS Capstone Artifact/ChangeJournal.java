@@ -0,0 +1,284 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/*
+ * ChangeJournal.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * ChangeJournal maintains a sequence-numbered log of every insert, update and delete on the items table.
+ * The log is written by SQLite triggers, so every write path (dialogs, CSV import, raw SQL) is captured.
+ * Consumers such as the delta CSV export keep a named checkpoint and read only the changes made after it.
+ *
+ * Components:
+ * - String TABLE_CHANGES: The journal table, one row per change with an increasing sequence number.
+ * - String TABLE_CHECKPOINTS: The table storing the last consumed sequence number per consumer.
+ * - String OP_INSERT, OP_UPDATE, OP_DELETE: Operation codes stored in the journal.
+ * - String ORIGIN_LOCAL, ORIGIN_REMOTE: Whether a change was made on this device or applied by the sync engine.
+ * - String TABLE_ORIGIN: Single-row table holding the origin the triggers stamp on new journal rows.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the journal tables and the triggers on the items table.
+ * - seedExistingItems(SQLiteDatabase db, long afterId, long upToId): Records a range of existing items as inserts
+ *   so the first delta is complete; runs as a chunked background migration.
+ * - getCurrentSequence(SQLiteDatabase db): Returns the highest sequence number in the journal.
+ * - getCheckpoint(SQLiteDatabase db, String name): Returns the saved checkpoint of a consumer.
+ * - saveCheckpoint(SQLiteDatabase db, String name, long seq): Stores the checkpoint of a consumer.
+ * - registerConsumer(SQLiteDatabase db, String name): Gives a consumer a checkpoint at 0 if it has none, so nothing it
+ *   has not read is pruned.
+ * - queryChangesSince(SQLiteDatabase db, long fromSeq, long toSeq): Returns the net change per item in a sequence range.
+ * - pruneConsumed(SQLiteDatabase db): Deletes journal rows that every consumer has already read.
+ * - addSyncColumns(SQLiteDatabase db): Adds the quantity delta and origin of each change and recreates the triggers.
+ * - setOrigin(SQLiteDatabase db, String origin): Sets the origin stamped on the changes that follow.
+ * - hasCheckpoint(SQLiteDatabase db, String name): Checks whether a consumer has registered.
+ * - queryLocalChangesSince(SQLiteDatabase db, long fromSeq, long toSeq): Returns the net local change per part number,
+ *   with the summed quantity delta, for the sync engine.
+ *
+ * Note:
+ * - Several changes to the same item inside one range collapse to a single row carrying the latest state.
+ * - Items inserted and deleted inside the same range are skipped, the consumer never saw them.
+ * - For the sync engine, a part is skipped only when its first local change in the range is an insert and it is gone at
+ *   the end; a part that existed before the range and ends deleted is sent as a delete however often it came and went.
+ * - Journal rows are only pruned up to the oldest checkpoint, so a consumer must register before it can rely on the log.
+ *   Consumers that read the log from its start, such as the delta CSV export, are registered by a schema migration,
+ *   before any other consumer can prune.
+ * - The quantity delta of a change is NEW.quantity - OLD.quantity, so concurrent changes on two devices add up.
+ * - Changes applied by the sync engine are stamped ORIGIN_REMOTE and are not pushed back, which prevents echoes.
+ */
+public class ChangeJournal {
+
+    private static final String TAG = "ChangeJournal";
+
+    public static final String TABLE_CHANGES = "item_changes";
+    public static final String TABLE_CHECKPOINTS = "journal_checkpoints";
+    public static final String COL_SEQ = "seq";
+    public static final String COL_ITEM_ID = "item_id";
+    public static final String COL_PART_NUMBER = "journal_part_number";
+    public static final String COL_OPERATION = "operation";
+    public static final String COL_CHECKPOINT_NAME = "name";
+    public static final String COL_CHECKPOINT_SEQ = "last_seq";
+
+    public static final String OP_INSERT = "I";
+    public static final String OP_UPDATE = "U";
+    public static final String OP_DELETE = "D";
+
+    public static final String COL_QUANTITY_DELTA = "quantity_delta";
+    public static final String COL_ORIGIN = "origin";
+    public static final String TABLE_ORIGIN = "journal_origin";
+    public static final String ORIGIN_LOCAL = "L";
+    public static final String ORIGIN_REMOTE = "R";
+
+    /**
+     * Creates the journal tables and the triggers that feed them.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CHANGES + " (" +
+                COL_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_ITEM_ID + " INTEGER NOT NULL, " +
+                COL_PART_NUMBER + " TEXT, " +
+                COL_OPERATION + " TEXT NOT NULL);");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CHECKPOINTS + " (" +
+                COL_CHECKPOINT_NAME + " TEXT PRIMARY KEY, " +
+                COL_CHECKPOINT_SEQ + " INTEGER NOT NULL);");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_journal_insert AFTER INSERT ON " + InventoryDBHelper.TABLE_NAME +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_OPERATION + ")" +
+                " VALUES (NEW._id, NEW." + InventoryDBHelper.COL_PART_NUMBER + ", '" + OP_INSERT + "'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_journal_update AFTER UPDATE ON " + InventoryDBHelper.TABLE_NAME +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_OPERATION + ")" +
+                " VALUES (NEW._id, NEW." + InventoryDBHelper.COL_PART_NUMBER + ", '" + OP_UPDATE + "'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_journal_delete AFTER DELETE ON " + InventoryDBHelper.TABLE_NAME +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_OPERATION + ")" +
+                " VALUES (OLD._id, OLD." + InventoryDBHelper.COL_PART_NUMBER + ", '" + OP_DELETE + "'); END;");
+        Log.d(TAG, "Change journal schema created");
+    }
+
+    /**
+     * Records a range of items already in the table as inserts, used when the journal is added to an existing database.
+     * @param db The database instance.
+     * @param afterId The exclusive lower bound of the item ids to record.
+     * @param upToId The inclusive upper bound of the item ids to record.
+     * @return The number of items recorded.
+     */
+    public static int seedExistingItems(SQLiteDatabase db, long afterId, long upToId) {
+        try (SQLiteStatement statement = db.compileStatement("INSERT INTO " + TABLE_CHANGES +
+                " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_OPERATION + ")" +
+                " SELECT _id, " + InventoryDBHelper.COL_PART_NUMBER + ", '" + OP_INSERT + "' FROM " + InventoryDBHelper.TABLE_NAME +
+                " WHERE _id > ? AND _id <= ? ORDER BY _id")) {
+            statement.bindLong(1, afterId);
+            statement.bindLong(2, upToId);
+            return statement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * Returns the highest sequence number written to the journal.
+     * @param db The database instance.
+     * @return The current sequence number, or 0 if the journal is empty.
+     */
+    public static long getCurrentSequence(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT IFNULL(MAX(" + COL_SEQ + "), 0) FROM " + TABLE_CHANGES, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Returns the saved checkpoint of a consumer.
+     * @param db The database instance.
+     * @param name The consumer name.
+     * @return The last consumed sequence number, or 0 if the consumer has no checkpoint yet.
+     */
+    public static long getCheckpoint(SQLiteDatabase db, String name) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_CHECKPOINT_SEQ + " FROM " + TABLE_CHECKPOINTS +
+                " WHERE " + COL_CHECKPOINT_NAME + "=?", new String[]{name})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Stores the checkpoint of a consumer, replacing any previous value.
+     * @param db The database instance.
+     * @param name The consumer name.
+     * @param seq The last consumed sequence number.
+     */
+    public static void saveCheckpoint(SQLiteDatabase db, String name, long seq) {
+        ContentValues values = new ContentValues();
+        values.put(COL_CHECKPOINT_NAME, name);
+        values.put(COL_CHECKPOINT_SEQ, seq);
+        db.insertWithOnConflict(TABLE_CHECKPOINTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Registers a consumer at sequence 0 unless it already has a checkpoint. Until it saves one, pruning keeps every row.
+     * @param db The database instance.
+     * @param name The consumer name.
+     */
+    public static void registerConsumer(SQLiteDatabase db, String name) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_CHECKPOINTS + " (" + COL_CHECKPOINT_NAME + ", " + COL_CHECKPOINT_SEQ +
+                ") VALUES (?, 0)", new Object[]{name});
+    }
+
+    /**
+     * Returns the net change per item for the sequence range (fromSeq, toSeq].
+     * The cursor holds the journal columns followed by the current item columns, which are null for deleted items.
+     * @param db The database instance.
+     * @param fromSeq The exclusive lower bound, usually the consumer checkpoint.
+     * @param toSeq The inclusive upper bound, usually the current sequence.
+     * @return A cursor ordered by the sequence number of each item's latest change.
+     */
+    public static Cursor queryChangesSince(SQLiteDatabase db, long fromSeq, long toSeq) {
+        String sql = "SELECT c." + COL_SEQ + ", c." + COL_ITEM_ID + ", c." + COL_PART_NUMBER + ", " +
+                "CASE WHEN i._id IS NULL THEN '" + OP_DELETE + "' " +
+                "WHEN r.inserted = 1 THEN '" + OP_INSERT + "' ELSE '" + OP_UPDATE + "' END AS " + COL_OPERATION + ", i.* " +
+                "FROM (SELECT " + COL_ITEM_ID + ", MAX(" + COL_SEQ + ") AS last_seq, " +
+                "MAX(" + COL_OPERATION + " = '" + OP_INSERT + "') AS inserted FROM " + TABLE_CHANGES +
+                " WHERE " + COL_SEQ + " > ? AND " + COL_SEQ + " <= ? GROUP BY " + COL_ITEM_ID + ") r " +
+                "JOIN " + TABLE_CHANGES + " c ON c." + COL_SEQ + " = r.last_seq " +
+                "LEFT JOIN " + InventoryDBHelper.TABLE_NAME + " i ON i._id = c." + COL_ITEM_ID + " " +
+                "WHERE NOT (r.inserted = 1 AND i._id IS NULL) " +
+                "ORDER BY c." + COL_SEQ;
+        return QueryExecutor.rawQuery(db, sql, new String[]{String.valueOf(fromSeq), String.valueOf(toSeq)});
+    }
+
+    /**
+     * Checks whether a consumer has saved a checkpoint.
+     * @param db The database instance.
+     * @param name The consumer name.
+     * @return True if the consumer has a checkpoint.
+     */
+    public static boolean hasCheckpoint(SQLiteDatabase db, String name) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT 1 FROM " + TABLE_CHECKPOINTS +
+                " WHERE " + COL_CHECKPOINT_NAME + "=?",
+                new String[]{name})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Adds the quantity delta and origin of each change to the journal and recreates the triggers to fill them.
+     * @param db The database instance.
+     */
+    public static void addSyncColumns(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ORIGIN + " (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                COL_ORIGIN + " TEXT NOT NULL);");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ORIGIN + " (id, " + COL_ORIGIN + ") VALUES (1, '" + ORIGIN_LOCAL + "')");
+        db.execSQL("ALTER TABLE " + TABLE_CHANGES + " ADD COLUMN " + COL_QUANTITY_DELTA + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_CHANGES + " ADD COLUMN " + COL_ORIGIN + " TEXT NOT NULL DEFAULT '" + ORIGIN_LOCAL + "'");
+
+        String items = InventoryDBHelper.TABLE_NAME;
+        String quantity = InventoryDBHelper.COL_QUANTITY;
+        String columns = " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_OPERATION + ", " +
+                COL_QUANTITY_DELTA + ", " + COL_ORIGIN + ")";
+        String origin = "IFNULL((SELECT " + COL_ORIGIN + " FROM " + TABLE_ORIGIN + " WHERE id = 1), '" + ORIGIN_LOCAL + "')";
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_journal_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_journal_update");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_journal_delete");
+        db.execSQL("CREATE TRIGGER trg_items_journal_insert AFTER INSERT ON " + items +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + columns + " VALUES (NEW._id, NEW." + InventoryDBHelper.COL_PART_NUMBER +
+                ", '" + OP_INSERT + "', IFNULL(NEW." + quantity + ", 0), " + origin + "); END;");
+        db.execSQL("CREATE TRIGGER trg_items_journal_update AFTER UPDATE ON " + items +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + columns + " VALUES (NEW._id, NEW." + InventoryDBHelper.COL_PART_NUMBER +
+                ", '" + OP_UPDATE + "', IFNULL(NEW." + quantity + ", 0) - IFNULL(OLD." + quantity + ", 0), " + origin + "); END;");
+        db.execSQL("CREATE TRIGGER trg_items_journal_delete AFTER DELETE ON " + items +
+                " BEGIN INSERT INTO " + TABLE_CHANGES + columns + " VALUES (OLD._id, OLD." + InventoryDBHelper.COL_PART_NUMBER +
+                ", '" + OP_DELETE + "', -IFNULL(OLD." + quantity + ", 0), " + origin + "); END;");
+        Log.d(TAG, "Journal records quantity deltas and origins");
+    }
+
+    /**
+     * Sets the origin stamped on the journal rows written after this call. Use inside the transaction applying the changes.
+     * @param db The database instance.
+     * @param origin ORIGIN_LOCAL or ORIGIN_REMOTE.
+     */
+    public static void setOrigin(SQLiteDatabase db, String origin) {
+        ContentValues values = new ContentValues();
+        values.put(COL_ORIGIN, origin);
+        db.update(TABLE_ORIGIN, values, "id = 1", null);
+    }
+
+    /**
+     * Returns the net local change per part number for the sequence range (fromSeq, toSeq], skipping changes applied by sync.
+     * Columns: part number, latest sequence number, summed quantity delta, operation, then the current item columns,
+     * which are null for deleted items.
+     * @param db The database instance.
+     * @param fromSeq The exclusive lower bound.
+     * @param toSeq The inclusive upper bound.
+     * @return A cursor ordered by the sequence number of each part's latest change.
+     */
+    public static Cursor queryLocalChangesSince(SQLiteDatabase db, long fromSeq, long toSeq) {
+        String items = InventoryDBHelper.TABLE_NAME;
+        String partNumber = InventoryDBHelper.COL_PART_NUMBER;
+        // A part is new to the consumer only if its first change in the range is an insert
+        String sql = "SELECT r.part AS " + COL_PART_NUMBER + ", r.last_seq AS " + COL_SEQ + ", r.delta AS " + COL_QUANTITY_DELTA + ", " +
+                "CASE WHEN i._id IS NULL THEN '" + OP_DELETE + "' " +
+                "WHEN f." + COL_OPERATION + " = '" + OP_INSERT + "' THEN '" + OP_INSERT + "' ELSE '" + OP_UPDATE + "' END AS " +
+                COL_OPERATION + ", i.* " +
+                "FROM (SELECT " + COL_PART_NUMBER + " AS part, MIN(" + COL_SEQ + ") AS first_seq, MAX(" + COL_SEQ + ") AS last_seq, " +
+                "SUM(" + COL_QUANTITY_DELTA + ") AS delta " +
+                "FROM " + TABLE_CHANGES + " WHERE " + COL_SEQ + " > ? AND " + COL_SEQ + " <= ? AND " +
+                COL_ORIGIN + " = '" + ORIGIN_LOCAL + "' AND " + COL_PART_NUMBER + " IS NOT NULL GROUP BY " + COL_PART_NUMBER + ") r " +
+                "JOIN " + TABLE_CHANGES + " f ON f." + COL_SEQ + " = r.first_seq " +
+                "LEFT JOIN " + items + " i ON i._id = (SELECT MAX(_id) FROM " + items + " WHERE " + partNumber + " = r.part) " +
+                "WHERE NOT (f." + COL_OPERATION + " = '" + OP_INSERT + "' AND i._id IS NULL) " +
+                "ORDER BY r.last_seq";
+        return QueryExecutor.rawQuery(db, sql, new String[]{String.valueOf(fromSeq), String.valueOf(toSeq)});
+    }
+
+    /**
+     * Deletes journal rows that every registered consumer has already read.
+     * @param db The database instance.
+     * @return The number of journal rows deleted.
+     */
+    public static int pruneConsumed(SQLiteDatabase db) {
+        return db.delete(TABLE_CHANGES, COL_SEQ + " <= (SELECT IFNULL(MIN(" + COL_CHECKPOINT_SEQ + "), 0) FROM " +
+                TABLE_CHECKPOINTS + ")", null);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * ColumnCatalog.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * ColumnCatalog records the declared type of every dynamic column of the items table.
+ * SQLite only keeps the type as free text in the table definition, so the catalog is the single place
+ * the add-column dialog, the item loader and the CSV importer look up how a column's values are converted.
+ *
+ * Components:
+ * - String TABLE_CATALOG: The table mapping column names to ColumnType names.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the catalog table.
+ * - backfillFromTable(SQLiteDatabase db): Catalogs the dynamic columns that existed before the catalog did.
+ * - register(SQLiteDatabase db, String columnName, ColumnType type): Records the type of a new column.
+ * - getColumnTypes(SQLiteDatabase db): Returns the type of every column, built-in columns included.
+ *
+ * Note:
+ * - Built-in columns are not stored in the catalog, their types are fixed by the table definition.
+ * - A column missing from the catalog is treated as TEXT.
+ */
+public class ColumnCatalog {
+
+    private static final String TAG = "ColumnCatalog";
+
+    public static final String TABLE_CATALOG = "column_catalog";
+    public static final String COL_COLUMN_NAME = "column_name";
+    public static final String COL_COLUMN_TYPE = "column_type";
+
+    /**
+     * Creates the catalog table.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATALOG + " (" +
+                COL_COLUMN_NAME + " TEXT PRIMARY KEY, " +
+                COL_COLUMN_TYPE + " TEXT NOT NULL);");
+    }
+
+    /**
+     * Catalogs the dynamic columns that existed before the catalog, using their declared SQLite type.
+     * @param db The database instance.
+     */
+    public static void backfillFromTable(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + InventoryDBHelper.TABLE_NAME + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            int typeIndex = cursor.getColumnIndex("type");
+            while (cursor.moveToNext()) {
+                String columnName = cursor.getString(nameIndex);
+                if (!InventoryDBHelper.isBuiltInColumn(columnName)) {
+                    register(db, columnName, fromDeclaredType(cursor.getString(typeIndex)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the type of a column, replacing any previous entry.
+     * @param db The database instance.
+     * @param columnName The column name.
+     * @param type The declared type.
+     */
+    public static void register(SQLiteDatabase db, String columnName, ColumnType type) {
+        ContentValues values = new ContentValues();
+        values.put(COL_COLUMN_NAME, columnName);
+        values.put(COL_COLUMN_TYPE, type.name());
+        db.insertWithOnConflict(TABLE_CATALOG, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Returns the type of every catalogued column, with the built-in columns first.
+     * @param db The database instance.
+     * @return A map from column name to type.
+     */
+    public static Map<String, ColumnType> getColumnTypes(SQLiteDatabase db) {
+        Map<String, ColumnType> columnTypes = new LinkedHashMap<>();
+        columnTypes.put(InventoryDBHelper.COL_NAME, ColumnType.TEXT);
+        columnTypes.put(InventoryDBHelper.COL_PART_NUMBER, ColumnType.TEXT);
+        columnTypes.put(InventoryDBHelper.COL_QUANTITY, ColumnType.INTEGER);
+
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_CATALOG, new String[]{COL_COLUMN_NAME, COL_COLUMN_TYPE},
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                try {
+                    columnTypes.put(cursor.getString(0), ColumnType.valueOf(cursor.getString(1)));
+                } catch (IllegalArgumentException e) {
+                    Log.e(TAG, "Unknown type for column " + cursor.getString(0) + ", using TEXT");
+                    columnTypes.put(cursor.getString(0), ColumnType.TEXT);
+                }
+            }
+        }
+        return columnTypes;
+    }
+
+    // Maps a declared SQLite type to the closest column type, untyped columns stay TEXT
+    private static ColumnType fromDeclaredType(String declaredType) {
+        String type = declaredType != null ? declaredType.toUpperCase(Locale.US) : "";
+        if (type.contains("INT")) {
+            return ColumnType.INTEGER;
+        }
+        if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) {
+            return ColumnType.REAL;
+        }
+        return ColumnType.TEXT;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/*
+ * ColumnType.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * ColumnType is the declared type of a dynamic column. It decides the SQLite type used in ALTER TABLE,
+ * how text typed by the user or read from a CSV file is converted before it is stored, and how stored values are displayed.
+ *
+ * Components:
+ * - INTEGER: Whole numbers, stored as SQLite INTEGER.
+ * - REAL: Decimal numbers, stored as SQLite REAL.
+ * - TEXT: Free text, stored as SQLite TEXT.
+ * - DATE: Calendar dates written as yyyy-MM-dd, stored as INTEGER milliseconds since the epoch (UTC) so they sort natively.
+ *
+ * Functions:
+ * - getSqlType(): Returns the SQLite type used when the column is created.
+ * - isNumeric(): Checks if values of this type compare as numbers.
+ * - fromString(String name): Parses a type name entered by the user, accepting common aliases.
+ * - coerce(String raw): Converts text to the stored value (Long, Double or String), or null if blank or invalid.
+ * - isValid(String raw): Checks if text can be stored in a column of this type.
+ * - putValue(ContentValues values, String columnName, String raw): Stores converted text in ContentValues.
+ * - format(Object value): Converts a stored value back to display text.
+ *
+ * Note:
+ * - Columns created before types existed are catalogued as TEXT, which is exactly how they were stored.
+ * - Invalid numbers and dates are stored as null rather than as text, so numeric comparisons stay correct.
+ */
+public enum ColumnType {
+    INTEGER("INTEGER"),
+    REAL("REAL"),
+    TEXT("TEXT"),
+    DATE("INTEGER");
+
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
+
+    // SimpleDateFormat is not thread safe, the importer and the UI thread each get their own
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            format.setLenient(false);
+            return format;
+        }
+    };
+
+    private final String sqlType;
+
+    ColumnType(String sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * Returns the SQLite type used when the column is created.
+     * @return The SQL type name.
+     */
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    /**
+     * Checks if values of this type compare as numbers.
+     * @return True for INTEGER, REAL and DATE.
+     */
+    public boolean isNumeric() {
+        return this != TEXT;
+    }
+
+    /**
+     * Parses a type name entered by the user.
+     * @param name The type name, for example "int", "decimal" or "date". Blank names mean TEXT.
+     * @return The matching type.
+     * @throws IllegalArgumentException If the name is not a known type.
+     */
+    public static ColumnType fromString(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return TEXT;
+        }
+        switch (name.trim().toUpperCase(Locale.US)) {
+            case "INTEGER":
+            case "INT":
+            case "NUMBER":
+                return INTEGER;
+            case "REAL":
+            case "DECIMAL":
+            case "DOUBLE":
+            case "FLOAT":
+                return REAL;
+            case "DATE":
+                return DATE;
+            case "TEXT":
+            case "STRING":
+                return TEXT;
+            default:
+                throw new IllegalArgumentException("Unknown column type: " + name);
+        }
+    }
+
+    /**
+     * Converts text to the value stored for this type.
+     * @param raw The text to convert.
+     * @return A Long, Double or String, or null if the text is blank or cannot be converted.
+     */
+    public Object coerce(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String value = raw.trim();
+        if (value.isEmpty()) {
+            return this == TEXT ? value : null;
+        }
+        try {
+            switch (this) {
+                case INTEGER:
+                    return Long.parseLong(value);
+                case REAL:
+                    return Double.parseDouble(value);
+                case DATE:
+                    return DATE_FORMAT.get().parse(value).getTime();
+                default:
+                    return value;
+            }
+        } catch (NumberFormatException | ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if text can be stored in a column of this type. Blank text is always valid.
+     * @param raw The text to check.
+     * @return True if the text converts cleanly.
+     */
+    public boolean isValid(String raw) {
+        return raw == null || raw.trim().isEmpty() || coerce(raw) != null;
+    }
+
+    /**
+     * Stores converted text in ContentValues under the given column.
+     * @param values The ContentValues to fill.
+     * @param columnName The column name.
+     * @param raw The text to convert.
+     */
+    public void putValue(ContentValues values, String columnName, String raw) {
+        Object value = coerce(raw);
+        if (value == null) {
+            values.putNull(columnName);
+        } else if (value instanceof Long) {
+            values.put(columnName, (Long) value);
+        } else if (value instanceof Double) {
+            values.put(columnName, (Double) value);
+        } else {
+            values.put(columnName, (String) value);
+        }
+    }
+
+    /**
+     * Converts a stored value back to display text.
+     * @param value The stored value.
+     * @return The display text, or null for null values.
+     */
+    public String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (this == DATE && value instanceof Number) {
+            return DATE_FORMAT.get().format(new Date(((Number) value).longValue()));
+        }
+        return String.valueOf(value);
+    }
+}
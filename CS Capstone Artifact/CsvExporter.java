@@ -15,8 +15,10 @@ import android.widget.Spinner;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
 
 /*
  * CsvExporter.java
@@ -25,32 +27,108 @@ import java.io.IOException;
  *
  * Description:
  * CsvExporter is a utility class for exporting data from a SQLite database to a CSV file.
+ * File names ending in ".gz" are written as gzip-compressed CSV while the rows are streamed out.
  *
  * Components:
  * - Constants:
  *   - TAG: Tag for logging purposes.
+ *   - DELTA_CHECKPOINT: Name of the change journal checkpoint used by the delta export.
  * - exportCsvFile(Context context): Initiates the process of exporting data to a CSV file.
+ * - exportCsvFile(Context context, int bufferSize): Same as above, with the stream buffer size to use.
+ * - getExportFile(Context context, String fileName): Resolves the file an export writes to.
+ * - writeItems(SQLiteDatabase db, Writer fileWriter): Writes the CSV header and every item to a writer.
  * - CsvExportTask: Asynchronous task to export data to a CSV file.
  *   - doInBackground(Void... voids): Performs the CSV export operation in the background.
  *   - onPostExecute(Boolean success): Displays a toast message based on the success of the CSV export.
+ * - CsvDeltaExportTask: Asynchronous task to export only the items changed since the last delta export.
+ *   - doInBackground(Void... voids): Writes the changed rows to a temporary file, renames it into place and
+ *     then advances the checkpoint in a single transaction.
+ *   - onPostExecute(Integer rows): Displays a toast message with the number of exported changes.
  * - showToast(Context context, String message): Helper method to display a toast message.
- * - showFileNameDialog(Context context): Displays a dialog to set the file name and destination for CSV export.
+ * - showFileNameDialog(Context context, int bufferSize): Displays a dialog to set the file name and destination for CSV export.
  *
  * Note:
  * - CsvExporter provides functionality to export data from a SQLite database to a CSV file.
  * - It uses AsyncTask to perform the export operation asynchronously.
+ * - Delta files carry a Change column (I, U or D); deleted items only carry their part number.
+ * - Delta fields are quoted like the importer's reject file, and date columns are written as dates, not epoch
+ *   milliseconds, so the importer can read a delta file back.
+ * - The checkpoint only moves after the delta file is complete, so a failed export is simply repeated next time.
  * - The class ensures proper handling of file I/O operations and database interactions during the export process.
  */
 public class CsvExporter {
 
     private static final String TAG = "CsvExporter";
+    public static final String DELTA_CHECKPOINT = "csv_delta_export";
 
     /**
      * Initiates the process of exporting data to a CSV file.
      * @param context The context of the calling activity or fragment.
      */
     public static void exportCsvFile(Context context) {
-        showFileNameDialog(context);
+        exportCsvFile(context, CsvStreams.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initiates the process of exporting data to a CSV file with a custom stream buffer size.
+     * @param context The context of the calling activity or fragment.
+     * @param bufferSize The buffer size in bytes for the file and compression streams.
+     */
+    public static void exportCsvFile(Context context, int bufferSize) {
+        showFileNameDialog(context, bufferSize);
+    }
+
+    /**
+     * Resolves the file an export writes to, "stock" becomes stock.csv and "stock.gz" becomes stock.csv.gz.
+     * @param context The context of the calling activity or fragment.
+     * @param fileName The file name entered by the user.
+     * @return The export file in the app's documents directory.
+     */
+    public static File getExportFile(Context context, String fileName) {
+        return new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), CsvStreams.resolveCsvFileName(fileName));
+    }
+
+    /**
+     * Writes the CSV header and every item in the table to a writer.
+     * @param db The database to read from.
+     * @param fileWriter The writer to append the CSV text to.
+     * @return The number of items written.
+     * @throws IOException If the writer fails.
+     */
+    public static int writeItems(SQLiteDatabase db, Writer fileWriter) throws IOException {
+        int rows = 0;
+
+        // Write the CSV header
+        fileWriter.append("Name,Part Number,Quantity\n");
+
+        // Query the database to retrieve all items
+        Cursor cursor = QueryExecutor.query(db, InventoryDBHelper.TABLE_NAME, null, null, null, null);
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                // Extract data from cursor if column indexes are valid
+                int nameIndex = cursor.getColumnIndex(InventoryDBHelper.COL_NAME);
+                int partNumberIndex = cursor.getColumnIndex(InventoryDBHelper.COL_PART_NUMBER);
+                int quantityIndex = cursor.getColumnIndex(InventoryDBHelper.COL_QUANTITY);
+
+                if (nameIndex != -1 && partNumberIndex != -1 && quantityIndex != -1) {
+                    String name = cursor.getString(nameIndex);
+                    String partNumber = cursor.getString(partNumberIndex);
+                    int quantity = cursor.getInt(quantityIndex);
+
+                    // Write item data to CSV
+                    fileWriter.append(name).append(",").append(partNumber).append(",").append(String.valueOf(quantity)).append("\n");
+                    rows++;
+                } else {
+                    Log.e(TAG, "One or more column indexes are invalid");
+                }
+            } while (cursor.moveToNext());
+        }
+
+        // Close cursor
+        if (cursor != null) {
+            cursor.close();
+        }
+        return rows;
     }
 
     /**
@@ -61,57 +139,34 @@ public class CsvExporter {
         private final Context context;
         private final String fileName;
         private final String destination;
+        private final int bufferSize;
 
-        public CsvExportTask(Context context, String fileName, String destination) {
+        public CsvExportTask(Context context, String fileName, String destination, int bufferSize) {
             this.context = context;
             this.fileName = fileName;
             this.destination = destination;
+            this.bufferSize = bufferSize;
         }
 
         @Override
         protected Boolean doInBackground(Void... voids) {
             SQLiteDatabase db = null;
-            FileWriter fileWriter = null;
+            Writer fileWriter = null;
             try {
                 // Open the database
                 InventoryDBHelper inventoryDBHelper = new InventoryDBHelper(context);
                 db = inventoryDBHelper.getReadableDatabase();
 
                 // Define the file path
-                File csvFile = new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), fileName + ".csv");
-
-                // Create a new FileWriter
-                fileWriter = new FileWriter(csvFile);
-
-                // Write the CSV header
-                fileWriter.append("Name,Part Number,Quantity\n");
-
-                // Query the database to retrieve all items
-                Cursor cursor = db.query(InventoryDBHelper.TABLE_NAME, null, null, null, null, null, null);
-                if (cursor != null && cursor.moveToFirst()) {
-                    do {
-                        // Extract data from cursor if column indexes are valid
-                        int nameIndex = cursor.getColumnIndex(InventoryDBHelper.COL_NAME);
-                        int partNumberIndex = cursor.getColumnIndex(InventoryDBHelper.COL_PART_NUMBER);
-                        int quantityIndex = cursor.getColumnIndex(InventoryDBHelper.COL_QUANTITY);
-
-                        if (nameIndex != -1 && partNumberIndex != -1 && quantityIndex != -1) {
-                            String name = cursor.getString(nameIndex);
-                            String partNumber = cursor.getString(partNumberIndex);
-                            int quantity = cursor.getInt(quantityIndex);
-
-                            // Write item data to CSV
-                            fileWriter.append(name).append(",").append(partNumber).append(",").append(String.valueOf(quantity)).append("\n");
-                        } else {
-                            Log.e(TAG, "One or more column indexes are invalid");
-                        }
-                    } while (cursor.moveToNext());
+                File csvFile = getExportFile(context, fileName);
 
-                    // Close cursor
-                    cursor.close();
-                }
+                // Create a new writer, compressing on the fly for .gz file names
+                fileWriter = CsvStreams.openWriter(csvFile, bufferSize);
+
+                // Write the header and every item
+                writeItems(db, fileWriter);
 
-                // Close the FileWriter
+                // Close the writer, which also finishes the gzip trailer
                 fileWriter.flush();
                 fileWriter.close();
 
@@ -125,13 +180,13 @@ public class CsvExporter {
                 if (db != null) {
                     db.close();
                 }
-                // Close the FileWriter if open
+                // Close the writer if open
                 try {
                     if (fileWriter != null) {
                         fileWriter.close();
                     }
                 } catch (IOException e) {
-                    Log.e(TAG, "Error closing FileWriter: " + e.getMessage());
+                    Log.e(TAG, "Error closing writer: " + e.getMessage());
                 }
             }
         }
@@ -146,6 +201,123 @@ public class CsvExporter {
         }
     }
 
+    /**
+     * Asynchronous task to export the items inserted, updated or deleted since the last delta export.
+     */
+    private static class CsvDeltaExportTask extends AsyncTask<Void, Void, Integer> {
+
+        private final Context context;
+        private final String fileName;
+        private final int bufferSize;
+
+        public CsvDeltaExportTask(Context context, String fileName, int bufferSize) {
+            this.context = context;
+            this.fileName = fileName;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... voids) {
+            InventoryDBHelper inventoryDBHelper = new InventoryDBHelper(context);
+            SQLiteDatabase db = null;
+            File csvFile = getExportFile(context, fileName);
+            // Keep the extension last so the temporary file is compressed the same way
+            File tempFile = new File(csvFile.getParentFile(), "tmp-" + csvFile.getName());
+            try {
+                // Read the column names before opening the database
+                List<String> dynamicColumnNames = inventoryDBHelper.getAllDynamicColumnNames();
+                db = inventoryDBHelper.getWritableDatabase();
+
+                // Fix the upper bound first so changes made during the export are picked up next time
+                long fromSeq = ChangeJournal.getCheckpoint(db, DELTA_CHECKPOINT);
+                long toSeq = ChangeJournal.getCurrentSequence(db);
+                int rows = 0;
+
+                // Dates are stored as epoch milliseconds, write them the way the importer reads them back
+                Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+                ColumnType[] types = new ColumnType[dynamicColumnNames.size()];
+                for (int i = 0; i < types.length; i++) {
+                    ColumnType type = columnTypes.get(dynamicColumnNames.get(i));
+                    types[i] = type != null ? type : ColumnType.TEXT;
+                }
+
+                try (Writer fileWriter = CsvStreams.openWriter(tempFile, bufferSize);
+                     Cursor cursor = ChangeJournal.queryChangesSince(db, fromSeq, toSeq)) {
+                    // Write the CSV header
+                    fileWriter.append("Change,Name,Part Number,Quantity");
+                    for (String columnName : dynamicColumnNames) {
+                        fileWriter.append(",").append(CsvTokenizer.quote(columnName));
+                    }
+                    fileWriter.append("\n");
+
+                    int operationIndex = cursor.getColumnIndex(ChangeJournal.COL_OPERATION);
+                    int journalPartIndex = cursor.getColumnIndex(ChangeJournal.COL_PART_NUMBER);
+                    int nameIndex = cursor.getColumnIndex(InventoryDBHelper.COL_NAME);
+                    int quantityIndex = cursor.getColumnIndex(InventoryDBHelper.COL_QUANTITY);
+                    while (cursor.moveToNext()) {
+                        String operation = cursor.getString(operationIndex);
+                        fileWriter.append(operation).append(",");
+                        if (ChangeJournal.OP_DELETE.equals(operation)) {
+                            // Deleted items no longer have a row, only the journal knows the part number
+                            fileWriter.append(",").append(CsvTokenizer.quote(cursor.getString(journalPartIndex))).append(",");
+                            for (int i = 0; i < dynamicColumnNames.size(); i++) {
+                                fileWriter.append(",");
+                            }
+                        } else {
+                            fileWriter.append(CsvTokenizer.quote(cursor.getString(nameIndex))).append(",")
+                                    .append(CsvTokenizer.quote(cursor.getString(journalPartIndex))).append(",")
+                                    .append(String.valueOf(cursor.getInt(quantityIndex)));
+                            for (int i = 0; i < types.length; i++) {
+                                Object value = InventoryDBHelper.readTypedValue(cursor,
+                                        cursor.getColumnIndex(dynamicColumnNames.get(i)));
+                                fileWriter.append(",").append(CsvTokenizer.quote(types[i].format(value)));
+                            }
+                        }
+                        fileWriter.append("\n");
+                        rows++;
+                    }
+                    fileWriter.flush();
+                }
+
+                if (!tempFile.renameTo(csvFile)) {
+                    throw new IOException("Could not move " + tempFile.getName() + " into place");
+                }
+
+                // The file is complete, so record the new checkpoint and drop journal rows nobody needs
+                db.beginTransaction();
+                try {
+                    ChangeJournal.saveCheckpoint(db, DELTA_CHECKPOINT, toSeq);
+                    ChangeJournal.pruneConsumed(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                Log.d(TAG, "Delta CSV exported " + rows + " changes, sequence " + fromSeq + " to " + toSeq);
+                return rows;
+            } catch (Exception e) {
+                Log.e(TAG, "Error exporting delta CSV file: " + e.getMessage());
+                if (tempFile.exists() && !tempFile.delete()) {
+                    Log.e(TAG, "Could not delete " + tempFile.getName());
+                }
+                return -1;
+            } finally {
+                if (db != null) {
+                    db.close();
+                }
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer rows) {
+            if (rows >= 0) {
+                showToast(context, rows + " changes exported.");
+            } else {
+                showToast(context, "Failed to export changes.");
+            }
+        }
+    }
+
     /**
      * Helper method to display a toast message.
      * @param context The context of the calling activity or fragment.
@@ -158,8 +330,9 @@ public class CsvExporter {
     /**
      * Displays a dialog to set the file name and destination for CSV export.
      * @param context The context of the calling activity or fragment.
+     * @param bufferSize The buffer size in bytes handed to the export tasks.
      */
-    private static void showFileNameDialog(Context context) {
+    private static void showFileNameDialog(Context context, int bufferSize) {
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
         View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_set_filename, null);
         EditText editFileName = dialogView.findViewById(R.id.editFileName);
@@ -179,7 +352,19 @@ public class CsvExporter {
                 String selectedDestination = destinationSpinner.getSelectedItem().toString();
                 if (!fileName.isEmpty()) {
                     // Start exporting with the provided file name and destination
-                    new CsvExportTask(context, fileName, selectedDestination).execute();
+                    new CsvExportTask(context, fileName, selectedDestination, bufferSize).execute();
+                } else {
+                    showToast(context, "Please enter a valid file name.");
+                }
+            }
+        });
+        builder.setNeutralButton("Export Changes", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                String fileName = editFileName.getText().toString().trim();
+                if (!fileName.isEmpty()) {
+                    // Only the items changed since the previous delta export are written
+                    new CsvDeltaExportTask(context, fileName, bufferSize).execute();
                 } else {
                     showToast(context, "Please enter a valid file name.");
                 }
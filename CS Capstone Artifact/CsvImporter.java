@@ -2,19 +2,40 @@ package com.example.project2;
 
 import android.app.Activity;
 import android.app.AlertDialog;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 /*
  * CsvImporter.java
@@ -23,18 +44,40 @@ import java.io.InputStreamReader;
  *
  * Description:
  * CsvImporter is a utility class for importing CSV files into a SQLite database.
+ * Gzip-compressed CSV files are detected from their first bytes and decompressed while they are parsed.
+ * Rows are committed in batches, and imports of a document URI checkpoint their position with every batch,
+ * so an import that was interrupted continues where it stopped when the same file is imported again.
+ * Uncompressed documents that have a file descriptor are memory-mapped and parsed in chunks on several threads.
  *
  * Components:
  * - Context context: The context of the application.
  * - InventoryDBHelper inventoryDBHelper: An instance of InventoryDBHelper for interacting with the SQLite database.
  * - InputStream selectedFileInputStream: Input stream of the selected CSV file.
+ * - int bufferSize: Buffer size in bytes for the input and decompression streams.
+ * - int BATCH_ROWS: The number of rows validated together, committed per transaction, and between checkpoints.
+ * - int VALIDATION_THREADS: The number of batches validated at the same time.
+ * - int MAX_IN_FLIGHT: The number of batches or chunks read ahead of the writer; bounds the memory an import holds.
  *
  * Functions:
  * - Constructor(Context context): Initializes the CsvImporter with the given context.
+ * - Constructor(Context context, int bufferSize): Initializes the CsvImporter with a custom stream buffer size.
+ * - Constructor(Context context, InventoryDBHelper inventoryDBHelper, int bufferSize): Imports into another database.
+ * - setThreadFactory(ThreadFactory threadFactory): Sets the factory of the validation and parsing threads, which
+ *   PerformanceSuite uses to count what they allocate.
  * - showToast(String message): Displays a toast message with the given message.
- * - importCsvFile(InputStream inputStream): Initiates the CSV file import process.
+ * - importCsvFile(InputStream inputStream): Initiates the CSV file import process, without a checkpoint.
+ * - importCsvFile(Uri uri): Initiates a resumable import of a document, continuing an unfinished earlier import of it.
+ * - importNow(Uri uri): Imports a document on the calling thread without a toast, for benchmarks.
+ * - isImporting(): Checks whether an import is running, so IdleMaintenance does not start while one writes.
  * - CsvImportTask: Asynchronous task to import CSV data into the database.
- * - doInBackground(InputStream... inputStreams): Imports CSV data into the database in the background.
+ * - doInBackground(Void... params): Imports CSV data into the database in the background, in batches.
+ *   Each batch is tokenized, checked and converted to the columns' declared types by CsvRowValidator on a pool of
+ *   threads, and the valid rows are written in file order.
+ * - importStreaming(), importMapped(FileChannel channel): The two ways of reading the file; both hand batches to
+ *   writeBatch in file order.
+ * - readIdentity(): Reads the size, last-modified time and prefix checksum a checkpoint is matched on.
+ * - writeBatch(...): The writing end of the import pipeline, CsvRecordReader.readBatch is the reading end.
+ * - writeReject(String line): Appends a rejected row with its reason to the import's reject file.
  * - onPostExecute(Boolean success): Displays a toast message based on the success of the CSV import.
  * - showCsvImportDialog(): Displays a dialog to select and import a CSV file.
  *
@@ -42,18 +85,53 @@ import java.io.InputStreamReader;
  * - CsvImporter provides functionality to import CSV files into the SQLite database.
  * - It handles the asynchronous CSV import process using AsyncTask.
  * - The class ensures proper handling of input/output streams and database interactions during the import process.
+ * - Rows with the wrong number of fields, a blank name, part number or quantity, or a value that does not fit its column's
+ *   type are written to import_rejects_<time>.csv next to the exports; the rest of the file keeps importing.
+ *   A file missing a required column is rejected as a whole.
+ * - A checkpoint is only used when the file's header, size, last-modified time and the CRC32 of its first 64 KB are
+ *   unchanged, so an edited file behind the same URI starts over; its byte offset counts decompressed bytes, so a
+ *   resumed gzip import re-inflates the skipped part but does not write it again.
+ * - Gzip files, plain input streams and providers that cannot hand out a file descriptor take the streaming path.
  */
 public class CsvImporter {
 
     private static final String TAG = "CsvImporter";
     public static final int REQUEST_CODE_SELECT_FILE = 1001;
+    public static final int BATCH_ROWS = 1000;
+    // One core stays free for the thread reading and writing
+    public static final int VALIDATION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    // Enough to keep every validation thread busy while the writer catches up
+    public static final int MAX_IN_FLIGHT = VALIDATION_THREADS * 2;
+    // Bytes at the start of a file covered by the checksum its checkpoints are matched on
+    private static final int IDENTITY_PREFIX_BYTES = 64 * 1024;
     private final Context context;
     private final InventoryDBHelper inventoryDBHelper;
+    private final int bufferSize;
+    private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+    private static final AtomicInteger ACTIVE_IMPORTS = new AtomicInteger();
     private InputStream selectedFileInputStream;
 
     public CsvImporter(Context context) {
+        this(context, CsvStreams.DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvImporter(Context context, int bufferSize) {
+        this(context, new InventoryDBHelper(context), bufferSize);
+    }
+
+    public CsvImporter(Context context, InventoryDBHelper inventoryDBHelper, int bufferSize) {
         this.context = context;
-        inventoryDBHelper = new InventoryDBHelper(context);
+        this.bufferSize = bufferSize;
+        this.inventoryDBHelper = inventoryDBHelper;
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    // Checks whether any import is reading or writing right now
+    public static boolean isImporting() {
+        return ACTIVE_IMPORTS.get() > 0;
     }
 
     private void showToast(String message) {
@@ -65,66 +143,378 @@ public class CsvImporter {
      * @param inputStream The input stream of the selected CSV file.
      */
     public void importCsvFile(InputStream inputStream) {
-        new CsvImportTask().execute(inputStream);
+        new CsvImportTask(inputStream, null).execute();
+    }
+
+    /**
+     * Initiates a resumable import of a document. If an earlier import of the same URI did not finish,
+     * the rows it committed are skipped.
+     * @param uri The document URI of the selected CSV file.
+     */
+    public void importCsvFile(Uri uri) {
+        new CsvImportTask(null, uri).execute();
+    }
+
+    /**
+     * Imports a document on the calling thread, the same way importCsvFile(Uri) does but without the toast.
+     * Must not be called on the main thread.
+     * @param uri The document URI of the CSV file.
+     * @return True if the file was imported; rejected rows do not count as a failure.
+     */
+    public boolean importNow(Uri uri) {
+        return new CsvImportTask(null, uri).doInBackground();
+    }
+
+    // Builds the INSERT statement for a file's columns, bound once per row by the writer
+    private static String buildInsertSql(String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (");
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(InventoryDBHelper.quoteIdentifier(columns[i]));
+            placeholders.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(") VALUES (").append(placeholders).append(")").toString();
+    }
+
+    // Binds a converted value with its storage type
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Long) {
+            statement.bindLong(index, (Long) value);
+        } else if (value instanceof Double) {
+            statement.bindDouble(index, (Double) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
     }
 
     /**
      * Asynchronous task to import CSV data into the database.
      */
-    private class CsvImportTask extends AsyncTask<InputStream, Void, Boolean> {
+    private class CsvImportTask extends AsyncTask<Void, Void, Boolean> {
+        private final InputStream inputStream;
+        private final Uri uri;
+        private final String jobKey;
+        private ImportJobs.FileIdentity identity;
+        private SQLiteDatabase db;
+        private String[] columns;
+        private CsvRowValidator validator;
+        private long importedRows;
+        private long rejectedRows;
+        private File rejectFile;
+        private Writer rejectWriter;
+
+        CsvImportTask(InputStream inputStream, Uri uri) {
+            this.inputStream = inputStream;
+            this.uri = uri;
+            this.jobKey = uri != null ? uri.toString() : null;
+        }
+
+        private InputStream open() throws IOException {
+            if (uri == null) {
+                return inputStream;
+            }
+            InputStream stream = context.getContentResolver().openInputStream(uri);
+            if (stream == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            return stream;
+        }
 
         @Override
-        protected Boolean doInBackground(InputStream... inputStreams) {
-            SQLiteDatabase db = null;
+        protected Boolean doInBackground(Void... params) {
+            ACTIVE_IMPORTS.incrementAndGet();
+            try {
+                if (jobKey != null) {
+                    identity = readIdentity();
+                }
+                // Uncompressed local files are memory-mapped and parsed in parallel chunks
+                ParcelFileDescriptor descriptor = openDescriptor();
+                if (descriptor != null) {
+                    try (ParcelFileDescriptor closing = descriptor;
+                         FileInputStream file = new FileInputStream(descriptor.getFileDescriptor())) {
+                        FileChannel channel = file.getChannel();
+                        if (MappedCsvParser.canMap(channel)) {
+                            return importMapped(channel);
+                        }
+                    }
+                }
+                return importStreaming();
+            } catch (Exception e) {
+                Log.e(TAG, "Error importing CSV file: " + e.getMessage());
+                return false;
+            } finally {
+                // Close the database after importing the CSV file
+                if (db != null) {
+                    db.close();
+                }
+                closeRejectWriter();
+                ACTIVE_IMPORTS.decrementAndGet();
+            }
+        }
+
+        // Opens the file behind the URI for mapping, or returns null if the provider only streams it
+        private ParcelFileDescriptor openDescriptor() {
+            if (uri == null) {
+                return null;
+            }
             try {
-                db = inventoryDBHelper.getWritableDatabase();
-                InputStream inputStream = inputStreams[0];
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+                return context.getContentResolver().openFileDescriptor(uri, "r");
+            } catch (FileNotFoundException | SecurityException | IllegalArgumentException e) {
+                Log.d(TAG, "No file descriptor for " + uri + ", streaming it: " + e.getMessage());
+                return null;
+            }
+        }
 
+        // Reads the file as a stream, plain and gzip-compressed files alike, without temporary files
+        private boolean importStreaming() throws Exception {
+            try (CsvRecordReader reader = new CsvRecordReader(CsvStreams.openStream(open(), bufferSize), bufferSize)) {
                 // Read the header to get column names
-                String header = reader.readLine();
-                String[] columns = header.split(",");
+                String header = reader.readRecord();
+                if (header == null || !prepare(header)) {
+                    return false;
+                }
+
+                // Skip the rows an interrupted import of the same file already committed
+                ImportJobs.Checkpoint checkpoint = getResumePoint(header);
+                if (checkpoint != null && checkpoint.byteOffset > reader.getOffset()) {
+                    reader.skipTo(checkpoint.byteOffset, checkpoint.rowNumber);
+                    Log.d(TAG, "Resuming import at row " + checkpoint.rowNumber + ", byte " + checkpoint.byteOffset);
+                }
+
+                // Batches are validated in parallel and written in file order, a few batches ahead of the writer
+                ArrayDeque<Future<CsvRowValidator.ValidatedBatch>> inFlight = new ArrayDeque<>();
+                ExecutorService validators = Executors.newFixedThreadPool(VALIDATION_THREADS, threadFactory);
+                try (SQLiteStatement insert = db.compileStatement(buildInsertSql(columns))) {
+                    boolean endOfFile = false;
+                    while (true) {
+                        while (!endOfFile && inFlight.size() < MAX_IN_FLIGHT) {
+                            final CsvRowValidator.RecordBatch batch = reader.readBatch(BATCH_ROWS);
+                            if (batch == null) {
+                                endOfFile = true;
+                                break;
+                            }
+                            inFlight.add(validators.submit(new Callable<CsvRowValidator.ValidatedBatch>() {
+                                @Override
+                                public CsvRowValidator.ValidatedBatch call() {
+                                    return validator.validate(batch);
+                                }
+                            }));
+                        }
+                        Future<CsvRowValidator.ValidatedBatch> next = inFlight.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        writeBatch(insert, next.get(), header, 0);
+                    }
+                } finally {
+                    validators.shutdownNow();
+                }
+                finish(reader.getRecordNumber());
+                return true;
+            }
+        }
+
+        // Parses a mapped file in chunks on every validation thread, writing the chunks in file order
+        private boolean importMapped(FileChannel channel) throws Exception {
+            final MappedCsvParser parser = new MappedCsvParser(channel);
+            String header = parser.readHeader();
+            if (!prepare(header)) {
+                return false;
+            }
+
+            // Rows counted before the next chunk, the header is row 1
+            final long[] rowBase = {1};
+            long start = parser.getHeaderEnd();
+            ImportJobs.Checkpoint checkpoint = getResumePoint(header);
+            if (checkpoint != null && checkpoint.byteOffset > start) {
+                start = checkpoint.byteOffset;
+                rowBase[0] = checkpoint.rowNumber;
+                Log.d(TAG, "Resuming import at row " + checkpoint.rowNumber + ", byte " + checkpoint.byteOffset);
+            }
 
-                // Check and add missing columns
-                for (String column : columns) {
-                    if (!inventoryDBHelper.columnExists(column.trim())) {
-                        inventoryDBHelper.addNewColumn(column.trim());
+            ExecutorService parsers = Executors.newFixedThreadPool(VALIDATION_THREADS, threadFactory);
+            try (SQLiteStatement insert = db.compileStatement(buildInsertSql(columns))) {
+                List<long[]> chunks = parser.split(start, MappedCsvParser.DEFAULT_CHUNK_BYTES, parsers);
+                parser.parseInOrder(chunks, parsers, validator, BATCH_ROWS, MAX_IN_FLIGHT, new MappedCsvParser.ChunkConsumer() {
+                    @Override
+                    public void accept(MappedCsvParser.ChunkResult result) throws IOException {
+                        for (CsvRowValidator.ValidatedBatch batch : result.getBatches()) {
+                            writeBatch(insert, batch, header, rowBase[0]);
+                        }
+                        rowBase[0] += result.getRecordCount();
                     }
+                });
+            } finally {
+                parsers.shutdownNow();
+            }
+            finish(rowBase[0]);
+            return true;
+        }
+
+        // Checks the header, adds missing columns and opens the database, returning false if the file is rejected
+        private boolean prepare(String header) throws IOException {
+            // Quoted header fields may contain commas, so the header goes through the same tokenizer as the rows
+            columns = CsvTokenizer.tokenize(header);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = columns[i].trim();
+            }
+            List<String> headerProblems = CsvRowValidator.checkHeader(columns);
+            if (!headerProblems.isEmpty()) {
+                for (String problem : headerProblems) {
+                    writeReject(new CsvRowValidator.Reject(0, problem, header).toCsvLine(0));
                 }
+                Log.e(TAG, "CSV file rejected: " + headerProblems);
+                return false;
+            }
 
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String[] values = line.split(",");
+            // Check and add missing columns
+            for (String column : columns) {
+                if (!inventoryDBHelper.columnExists(column)) {
+                    inventoryDBHelper.addNewColumn(column);
+                }
+            }
 
-                    ContentValues contentValues = new ContentValues();
-                    for (int i = 0; i < values.length; i++) {
-                        contentValues.put(columns[i].trim(), values[i].trim());
+            // Open the database once the schema is complete
+            db = inventoryDBHelper.getWritableDatabase();
+
+            // Look up each column's declared type so values are stored as numbers and dates, not text
+            Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+            ColumnType[] types = new ColumnType[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                ColumnType type = columnTypes.get(columns[i]);
+                types[i] = type != null ? type : ColumnType.TEXT;
+            }
+            validator = new CsvRowValidator(columns, types);
+            return true;
+        }
+
+        // Returns the checkpoint of an interrupted import of the same file, if its header and contents are unchanged
+        private ImportJobs.Checkpoint getResumePoint(String header) {
+            if (jobKey == null) {
+                return null;
+            }
+            ImportJobs.Checkpoint checkpoint = ImportJobs.getResumePoint(db, jobKey);
+            if (checkpoint == null) {
+                return null;
+            }
+            if (!header.equals(checkpoint.header) || !identity.matches(checkpoint.identity)) {
+                Log.d(TAG, "Ignoring the checkpoint of " + jobKey + ", the file changed since: " + identity);
+                return null;
+            }
+            return checkpoint;
+        }
+
+        // Reads the document's size and last-modified time from its provider and checksums its first bytes
+        private ImportJobs.FileIdentity readIdentity() throws IOException {
+            long size = -1;
+            long lastModified = -1;
+            try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                    if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                        size = cursor.getLong(sizeIndex);
+                    }
+                    if (modifiedIndex >= 0 && !cursor.isNull(modifiedIndex)) {
+                        lastModified = cursor.getLong(modifiedIndex);
                     }
+                }
+            } catch (RuntimeException e) {
+                // Some providers cannot be queried; the checksum still tells files apart
+                Log.d(TAG, "No metadata for " + uri + ": " + e.getMessage());
+            }
 
-                    long newRowId = db.insert(InventoryDBHelper.TABLE_NAME, null, contentValues);
-                    Log.d(TAG, "Inserted row with ID: " + newRowId);
+            CRC32 crc = new CRC32();
+            try (InputStream stream = open()) {
+                byte[] buffer = new byte[8192];
+                int remaining = IDENTITY_PREFIX_BYTES;
+                int read;
+                while (remaining > 0 && (read = stream.read(buffer, 0, Math.min(buffer.length, remaining))) > 0) {
+                    crc.update(buffer, 0, read);
+                    remaining -= read;
                 }
+            }
+            return new ImportJobs.FileIdentity(size, lastModified, crc.getValue());
+        }
 
-                inputStream.close();
-                Log.d(TAG, "CSV file import completed successfully.");
-                return true;
-            } catch (Exception e) {
-                Log.e(TAG, "Error importing CSV file: " + e.getMessage());
-                return false;
+        private void finish(long rowNumber) {
+            if (jobKey != null) {
+                ImportJobs.markDone(db, jobKey, rowNumber);
+            }
+            Log.d(TAG, "CSV file import completed successfully: " + importedRows + " rows imported, " +
+                    rejectedRows + " rejected.");
+        }
+
+        // Inserts the valid rows of a batch and saves the checkpoint after it, in one transaction
+        private void writeBatch(SQLiteStatement insert, CsvRowValidator.ValidatedBatch batch, String header, long rowBase)
+                throws IOException {
+            List<CsvRowValidator.Reject> failures = new ArrayList<>();
+            List<Object[]> rows = batch.getRows();
+            db.beginTransaction();
+            try {
+                for (int r = 0; r < rows.size(); r++) {
+                    Object[] row = rows.get(r);
+                    insert.clearBindings();
+                    for (int i = 0; i < row.length; i++) {
+                        bindValue(insert, i + 1, row[i]);
+                    }
+                    try {
+                        insert.executeInsert();
+                        importedRows++;
+                    } catch (SQLException e) {
+                        // A constraint failure only loses this row, the batch keeps going
+                        failures.add(batch.reject(r, "Could not insert: " + e.getMessage()));
+                    }
+                }
+                // The checkpoint commits with the rows it covers, so the two can never disagree
+                if (jobKey != null) {
+                    ImportJobs.saveCheckpoint(db, jobKey, header, identity, batch.getEndOffset(),
+                            rowBase + batch.getEndRowNumber());
+                }
+                db.setTransactionSuccessful();
             } finally {
-                // Close the database after importing the CSV file
-                if (db != null) {
-                    db.close();
+                db.endTransaction();
+            }
+            for (CsvRowValidator.Reject reject : batch.getRejects()) {
+                writeReject(reject.toCsvLine(rowBase));
+            }
+            for (CsvRowValidator.Reject failure : failures) {
+                writeReject(failure.toCsvLine(rowBase));
+            }
+            Log.d(TAG, "Committed rows up to " + (rowBase + batch.getEndRowNumber()) + ", " + rejectedRows + " rejected so far");
+        }
+
+        // Appends a line to this import's reject file, creating it with a header on the first reject
+        private void writeReject(String line) throws IOException {
+            if (rejectWriter == null) {
+                rejectFile = CsvExporter.getExportFile(context, "import_rejects_" + System.currentTimeMillis());
+                rejectWriter = CsvStreams.openWriter(rejectFile, bufferSize);
+                rejectWriter.write("row,reason,record\n");
+            }
+            rejectWriter.write(line);
+            rejectWriter.write('\n');
+            rejectedRows++;
+        }
+
+        private void closeRejectWriter() {
+            if (rejectWriter != null) {
+                try {
+                    rejectWriter.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing reject file: " + e.getMessage());
                 }
             }
         }
 
         @Override
         protected void onPostExecute(Boolean success) {
+            String rejects = rejectedRows > 0 ? " " + rejectedRows + " rows rejected, see " + rejectFile.getName() : "";
             if (success) {
-                showToast("CSV file imported successfully.");
+                showToast("CSV file imported successfully." + rejects);
             } else {
-                showToast("Failed to import CSV file.");
+                showToast("Failed to import CSV file." + rejects);
             }
         }
     }
@@ -148,7 +538,9 @@ public class CsvImporter {
             public void onClick(View v) {
                 Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
-                intent.setType("text/csv");
+                intent.setType("*/*");
+                intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/csv", "text/comma-separated-values",
+                        "application/gzip", "application/x-gzip"});
                 ((Activity) context).startActivityForResult(intent, REQUEST_CODE_SELECT_FILE);
             }
         });
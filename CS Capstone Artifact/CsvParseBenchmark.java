@@ -0,0 +1,156 @@
+package com.example.project2;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * CsvParseBenchmark.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * CsvParseBenchmark compares the two ways CsvImporter reads a file: the streaming path (CsvRecordReader with batches
+ * validated on a pool of threads) and the memory-mapped path (MappedCsvParser parsing chunks in parallel). Both parse and
+ * validate every record of the same file without writing to the database, so only the reading side is measured.
+ *
+ * Functions:
+ * - run(File file, int bufferSize): Times both paths on a file and returns the comparison as text.
+ *
+ * Note:
+ * - Each path runs twice and the faster run counts, so the first run warms the page cache for both.
+ * - Every column is validated as TEXT except quantity, which the validator always checks as a whole number.
+ * - Run it off the main thread; a large file takes seconds.
+ */
+public class CsvParseBenchmark {
+
+    private static final String TAG = "CsvParseBenchmark";
+    private static final int RUNS = 2;
+
+    private CsvParseBenchmark() {
+    }
+
+    /**
+     * Parses and validates a file with the streaming and the mapped path and reports the time of each.
+     * @param file An uncompressed CSV file with a header.
+     * @param bufferSize The stream buffer size used by the streaming path.
+     * @return The comparison as text.
+     * @throws Exception If the file cannot be read or a parse fails.
+     */
+    public static String run(File file, int bufferSize) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CsvImporter.VALIDATION_THREADS);
+        try {
+            long streamingNanos = Long.MAX_VALUE;
+            long mappedNanos = Long.MAX_VALUE;
+            long streamingRows = 0;
+            long mappedRows = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                streamingRows = parseStreaming(file, bufferSize, pool);
+                streamingNanos = Math.min(streamingNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                mappedRows = parseMapped(file, pool);
+                mappedNanos = Math.min(mappedNanos, System.nanoTime() - start);
+            }
+
+            String result = "streaming: " + describe(streamingNanos, streamingRows, file.length()) +
+                    "; mapped: " + describe(mappedNanos, mappedRows, file.length()) +
+                    "; speedup " + String.format("%.2fx", (double) streamingNanos / mappedNanos) +
+                    " on " + CsvImporter.VALIDATION_THREADS + " threads";
+            Log.d(TAG, result);
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Reads the file as CsvImporter's streaming path does and returns the number of data records
+    private static long parseStreaming(File file, int bufferSize, ExecutorService pool) throws Exception {
+        try (CsvRecordReader reader = new CsvRecordReader(new FileInputStream(file), bufferSize)) {
+            String header = reader.readRecord();
+            if (header == null) {
+                return 0;
+            }
+            final CsvRowValidator validator = createValidator(header);
+            ArrayDeque<Future<CsvRowValidator.ValidatedBatch>> inFlight = new ArrayDeque<>();
+            boolean endOfFile = false;
+            while (true) {
+                while (!endOfFile && inFlight.size() < CsvImporter.MAX_IN_FLIGHT) {
+                    long firstRowNumber = reader.getRecordNumber() + 1;
+                    List<String> records = new ArrayList<>(CsvImporter.BATCH_ROWS);
+                    String record;
+                    while (records.size() < CsvImporter.BATCH_ROWS && (record = reader.readRecord()) != null) {
+                        records.add(record);
+                    }
+                    if (records.isEmpty()) {
+                        endOfFile = true;
+                        break;
+                    }
+                    final CsvRowValidator.RecordBatch batch = new CsvRowValidator.RecordBatch(firstRowNumber, records,
+                            reader.getOffset(), reader.getRecordNumber());
+                    inFlight.add(pool.submit(new Callable<CsvRowValidator.ValidatedBatch>() {
+                        @Override
+                        public CsvRowValidator.ValidatedBatch call() {
+                            return validator.validate(batch);
+                        }
+                    }));
+                }
+                Future<CsvRowValidator.ValidatedBatch> next = inFlight.poll();
+                if (next == null) {
+                    break;
+                }
+                next.get();
+            }
+            return reader.getRecordNumber() - 1;
+        }
+    }
+
+    // Reads the file as CsvImporter's mapped path does and returns the number of data records
+    private static long parseMapped(File file, ExecutorService pool) throws Exception {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            if (!MappedCsvParser.canMap(channel)) {
+                throw new IOException(file.getName() + " cannot be mapped, it is empty or compressed");
+            }
+            final MappedCsvParser parser = new MappedCsvParser(channel);
+            CsvRowValidator validator = createValidator(parser.readHeader());
+            // The same window as the importer, so the benchmark holds no more chunks in memory than an import does
+            final long[] records = {0};
+            parser.parseInOrder(parser.split(parser.getHeaderEnd(), MappedCsvParser.DEFAULT_CHUNK_BYTES, pool), pool,
+                    validator, CsvImporter.BATCH_ROWS, CsvImporter.MAX_IN_FLIGHT, new MappedCsvParser.ChunkConsumer() {
+                        @Override
+                        public void accept(MappedCsvParser.ChunkResult result) {
+                            records[0] += result.getRecordCount();
+                        }
+                    });
+            return records[0];
+        }
+    }
+
+    private static CsvRowValidator createValidator(String header) {
+        String[] columns = CsvTokenizer.tokenize(header);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = columns[i].trim();
+        }
+        ColumnType[] types = new ColumnType[columns.length];
+        Arrays.fill(types, ColumnType.TEXT);
+        return new CsvRowValidator(columns, types);
+    }
+
+    private static String describe(long nanos, long rows, long bytes) {
+        double seconds = nanos / 1e9;
+        return String.format("%d ms, %d rows, %.1f MB/s", nanos / 1000000, rows, bytes / 1048576.0 / seconds);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.project2;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * CsvRecordReader.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * CsvRecordReader reads CSV records from a byte stream and keeps count of the bytes and records consumed, so an import can
+ * checkpoint exactly where it stopped and a restarted import can skip straight back to that point.
+ *
+ * Functions:
+ * - Constructor(InputStream in, int bufferSize): Creates a reader over the (already decompressed) CSV bytes.
+ * - readRecord(): Returns the next record without its line terminator, or null at the end of the stream.
+ * - readBatch(int maxRecords): Returns the next records as a batch for CsvRowValidator, or null at the end of the stream.
+ * - skipTo(long targetOffset, long recordNumber): Skips forward to a byte offset saved by an earlier import.
+ * - getOffset(): Returns the byte offset just after the last record read.
+ * - getRecordNumber(): Returns the number of records read or skipped, the header included.
+ *
+ * Note:
+ * - A line break inside a quoted field does not end the record, so offsets always fall on record boundaries.
+ * - Offsets count bytes of the CSV text; for gzip files that is the decompressed text, which is re-inflated when skipping.
+ */
+public class CsvRecordReader implements Closeable {
+
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+    private long recordNumber;
+    private byte[] record = new byte[256];
+    private int recordLength;
+
+    public CsvRecordReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads the next record.
+     * @return The record text without its line terminator, or null at the end of the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public String readRecord() throws IOException {
+        recordLength = 0;
+        boolean inQuotes = false;
+        boolean readAny = false;
+        while (true) {
+            if (position == limit && !fill()) {
+                if (!readAny) {
+                    return null;
+                }
+                break;
+            }
+            byte b = buffer[position++];
+            offset++;
+            readAny = true;
+            if (b == LINE_FEED && !inQuotes) {
+                break;
+            }
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            }
+            append(b);
+        }
+        int length = recordLength;
+        if (length > 0 && record[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        recordNumber++;
+        return new String(record, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads up to maxRecords records as one batch.
+     * @param maxRecords The largest number of records in the batch.
+     * @return The batch with its first row number and the position after it, or null at the end of the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public CsvRowValidator.RecordBatch readBatch(int maxRecords) throws IOException {
+        long firstRowNumber = recordNumber + 1;
+        List<String> records = new ArrayList<>(maxRecords);
+        String next;
+        while (records.size() < maxRecords && (next = readRecord()) != null) {
+            records.add(next);
+        }
+        if (records.isEmpty()) {
+            return null;
+        }
+        return new CsvRowValidator.RecordBatch(firstRowNumber, records, offset, recordNumber);
+    }
+
+    /**
+     * Skips forward to a byte offset saved by an earlier import of the same file.
+     * @param targetOffset The offset to continue at, at a record boundary.
+     * @param targetRecordNumber The record number at that offset.
+     * @throws IOException If the stream ends before the offset.
+     */
+    public void skipTo(long targetOffset, long targetRecordNumber) throws IOException {
+        long remaining = targetOffset - offset;
+        if (remaining < 0) {
+            throw new IOException("Cannot skip backwards from " + offset + " to " + targetOffset);
+        }
+        int buffered = (int) Math.min(limit - position, remaining);
+        position += buffered;
+        remaining -= buffered;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip() may return 0 before the end, read() tells the two apart
+                if (in.read() == -1) {
+                    throw new EOFException("File ended before the checkpoint at byte " + targetOffset);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        offset = targetOffset;
+        recordNumber = targetRecordNumber;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private void append(byte b) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[recordLength++] = b;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.project2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * CsvRowValidator.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * CsvRowValidator is the validation stage of the CSV import. It tokenizes a batch of records, checks each one against the
+ * header (field count, required columns and the declared type of every column) and converts the valid ones to the values
+ * that are stored, so the writer only binds them. Batches are independent, so several run in parallel during an import.
+ *
+ * Components:
+ * - RecordBatch: Consecutive records read from the file, with the position after the last one.
+ * - ValidatedBatch: The converted values of the valid records with their row numbers and original text, and a Reject
+ *   for every invalid one.
+ * - Reject: An invalid record with its row number and the reason.
+ *
+ * Functions:
+ * - checkHeader(String[] columns): Returns the problems that make a whole file unimportable, such as a missing part number column.
+ * - Constructor(String[] columns, ColumnType[] types): Creates a validator for a file's columns and their declared types.
+ * - validate(RecordBatch batch): Validates and converts a batch. Safe to call from several threads at once.
+ *
+ * Note:
+ * - item_name and part_number must not be blank and quantity must be a whole number of zero or more, otherwise the
+ *   item would be stored but never shown in the list.
+ * - Reject lines are CSV: the row number in the file, the reason and the original record. Row numbers may be relative
+ *   to a chunk of the file; the writer adds the chunk's first row when it writes the line.
+ * - Valid rows keep their row number and record, so a row the database refuses is rejected in the same format.
+ * - Blank records, such as a trailing empty line, are skipped without a reject.
+ */
+public class CsvRowValidator {
+
+    private static final String[] REQUIRED_COLUMNS = {
+            InventoryDBHelper.COL_NAME, InventoryDBHelper.COL_PART_NUMBER, InventoryDBHelper.COL_QUANTITY
+    };
+
+    private final String[] columns;
+    private final ColumnType[] types;
+    private final boolean[] required;
+    private final int quantityIndex;
+
+    /**
+     * Consecutive records of a file.
+     */
+    public static class RecordBatch {
+        final long firstRowNumber;
+        final List<String> records;
+        final long endOffset;
+        final long endRowNumber;
+
+        public RecordBatch(long firstRowNumber, List<String> records, long endOffset, long endRowNumber) {
+            this.firstRowNumber = firstRowNumber;
+            this.records = records;
+            this.endOffset = endOffset;
+            this.endRowNumber = endRowNumber;
+        }
+    }
+
+    /**
+     * The outcome of validating a batch, in the order of its records.
+     */
+    public static class ValidatedBatch {
+        final List<Object[]> rows = new ArrayList<>();
+        // Row number and original record of each valid row, by its index in rows
+        final long[] rowNumbers;
+        final List<String> records = new ArrayList<>();
+        final List<Reject> rejects = new ArrayList<>();
+        final long endOffset;
+        final long endRowNumber;
+
+        ValidatedBatch(int recordCount, long endOffset, long endRowNumber) {
+            this.rowNumbers = new long[recordCount];
+            this.endOffset = endOffset;
+            this.endRowNumber = endRowNumber;
+        }
+
+        public List<Object[]> getRows() {
+            return rows;
+        }
+
+        /**
+         * Returns a reject for a valid row that could not be stored.
+         * @param index The index of the row in getRows().
+         * @param reason Why the row was not stored.
+         * @return The reject, with the row's number and original record.
+         */
+        public Reject reject(int index, String reason) {
+            return new Reject(rowNumbers[index], reason, records.get(index));
+        }
+
+        public List<Reject> getRejects() {
+            return rejects;
+        }
+
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public long getEndRowNumber() {
+            return endRowNumber;
+        }
+    }
+
+    /**
+     * A record that failed validation.
+     */
+    public static class Reject {
+        final long rowNumber;
+        final String reason;
+        final String record;
+
+        public Reject(long rowNumber, String reason, String record) {
+            this.rowNumber = rowNumber;
+            this.reason = reason;
+            this.record = record;
+        }
+
+        /**
+         * Formats the reject as a line of the reject file.
+         * @param rowBase The number of rows before the batch's first row, 0 when the row numbers are already absolute.
+         * @return The row number, reason and record as CSV, without a line terminator.
+         */
+        public String toCsvLine(long rowBase) {
+            return (rowBase + rowNumber) + "," + CsvTokenizer.quote(reason) + "," + CsvTokenizer.quote(record);
+        }
+    }
+
+    public CsvRowValidator(String[] columns, ColumnType[] types) {
+        this.columns = columns;
+        this.types = types.clone();
+        this.required = new boolean[columns.length];
+        int quantity = -1;
+        for (int i = 0; i < columns.length; i++) {
+            for (String requiredColumn : REQUIRED_COLUMNS) {
+                required[i] |= requiredColumn.equals(columns[i]);
+            }
+            if (InventoryDBHelper.COL_QUANTITY.equals(columns[i])) {
+                quantity = i;
+                this.types[i] = ColumnType.INTEGER;
+            }
+        }
+        this.quantityIndex = quantity;
+    }
+
+    /**
+     * Checks a file's header for problems that make every row unimportable.
+     * @param columns The trimmed header fields.
+     * @return The problems found, empty if the file can be imported.
+     */
+    public static List<String> checkHeader(String[] columns) {
+        List<String> problems = new ArrayList<>();
+        for (String requiredColumn : REQUIRED_COLUMNS) {
+            boolean found = false;
+            for (String column : columns) {
+                found |= requiredColumn.equals(column);
+            }
+            if (!found) {
+                problems.add("Missing required column " + requiredColumn);
+            }
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].isEmpty()) {
+                problems.add("Column " + (i + 1) + " has no name");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Validates and converts a batch of records.
+     * @param batch The records.
+     * @return The stored values of the valid records and the reject lines of the others.
+     */
+    public ValidatedBatch validate(RecordBatch batch) {
+        ValidatedBatch result = new ValidatedBatch(batch.records.size(), batch.endOffset, batch.endRowNumber);
+        long rowNumber = batch.firstRowNumber;
+        for (String record : batch.records) {
+            if (!record.trim().isEmpty()) {
+                String reason = validateRecord(record, result.rows);
+                if (reason != null) {
+                    result.rejects.add(new Reject(rowNumber, reason, record));
+                } else {
+                    result.rowNumbers[result.records.size()] = rowNumber;
+                    result.records.add(record);
+                }
+            }
+            rowNumber++;
+        }
+        return result;
+    }
+
+    // Converts one record and adds it to the rows, returning the reason it was rejected instead, if any
+    private String validateRecord(String record, List<Object[]> rows) {
+        String[] fields = CsvTokenizer.tokenize(record);
+        if (fields.length != columns.length) {
+            return "Expected " + columns.length + " fields, found " + fields.length;
+        }
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String raw = fields[i];
+            if (required[i] && raw.trim().isEmpty()) {
+                return columns[i] + " is required";
+            }
+            if (!types[i].isValid(raw)) {
+                return columns[i] + " '" + raw + "' is not a valid " + types[i];
+            }
+            values[i] = types[i].coerce(raw);
+        }
+        if (quantityIndex >= 0 && (Long) values[quantityIndex] < 0) {
+            return InventoryDBHelper.COL_QUANTITY + " must not be negative";
+        }
+        rows.add(values);
+        return null;
+    }
+}
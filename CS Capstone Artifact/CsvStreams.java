@@ -0,0 +1,129 @@
+package com.example.project2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * CsvStreams.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * CsvStreams opens the character streams used by CsvExporter and CsvImporter.
+ * Files whose name ends in ".gz" are compressed while they are written, and gzip input is detected
+ * from its magic bytes and decompressed while it is read, so callers never handle temporary files.
+ *
+ * Components:
+ * - int DEFAULT_BUFFER_SIZE: Buffer size used when the caller does not choose one.
+ * - String CSV_EXTENSION, GZIP_EXTENSION: File name extensions for plain and compressed CSV files.
+ *
+ * Functions:
+ * - isGzipFileName(String fileName): Checks if a file name asks for gzip compression.
+ * - resolveCsvFileName(String fileName): Appends the CSV extension, keeping a requested ".gz" suffix last.
+ * - openWriter(File file, int bufferSize): Opens a buffered UTF-8 writer, compressing when the file name ends in ".gz".
+ * - openReader(InputStream inputStream, int bufferSize): Opens a buffered UTF-8 reader, decompressing gzip input.
+ * - openStream(InputStream inputStream, int bufferSize): Opens the CSV bytes, decompressing gzip input, for readers that
+ *   count bytes such as CsvRecordReader.
+ *
+ * Note:
+ * - The same buffer size is used for the byte stream, the gzip stream and the character stream.
+ * - Closing the returned writer finishes the gzip trailer, so callers must always close it.
+ */
+public class CsvStreams {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final String CSV_EXTENSION = ".csv";
+    public static final String GZIP_EXTENSION = ".gz";
+
+    // The first two bytes of every gzip stream
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * Checks if a file name asks for gzip compression.
+     * @param fileName The file name entered by the user.
+     * @return True if the name ends in ".gz", false otherwise.
+     */
+    public static boolean isGzipFileName(String fileName) {
+        return fileName.toLowerCase().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Appends the CSV extension to a file name, so "stock" becomes "stock.csv" and "stock.gz" becomes "stock.csv.gz".
+     * @param fileName The file name entered by the user.
+     * @return The file name to create.
+     */
+    public static String resolveCsvFileName(String fileName) {
+        if (isGzipFileName(fileName)) {
+            String baseName = fileName.substring(0, fileName.length() - GZIP_EXTENSION.length());
+            return resolveCsvFileName(baseName) + GZIP_EXTENSION;
+        }
+        return fileName.toLowerCase().endsWith(CSV_EXTENSION) ? fileName : fileName + CSV_EXTENSION;
+    }
+
+    /**
+     * Opens a buffered UTF-8 writer for a CSV file, compressing it when the file name ends in ".gz".
+     * @param file The file to write.
+     * @param bufferSize The buffer size in bytes.
+     * @return A writer that must be closed to complete the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static Writer openWriter(File file, int bufferSize) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            if (isGzipFileName(file.getName())) {
+                outputStream = new GZIPOutputStream(outputStream, bufferSize);
+            }
+            return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), bufferSize);
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a buffered UTF-8 reader for CSV input, decompressing it when it starts with the gzip magic bytes.
+     * @param inputStream The raw input stream, for example from the content resolver.
+     * @param bufferSize The buffer size in bytes.
+     * @return A reader over the CSV text.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static BufferedReader openReader(InputStream inputStream, int bufferSize) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(inputStream, bufferSize), StandardCharsets.UTF_8), bufferSize);
+    }
+
+    /**
+     * Opens the CSV bytes of an input stream, decompressing it when it starts with the gzip magic bytes.
+     * @param inputStream The raw input stream, for example from the content resolver.
+     * @param bufferSize The buffer size in bytes.
+     * @return A stream over the CSV text as UTF-8 bytes.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static InputStream openStream(InputStream inputStream, int bufferSize) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream, bufferSize);
+
+        // Peek at the first two bytes without consuming them
+        bufferedStream.mark(2);
+        int first = bufferedStream.read();
+        int second = bufferedStream.read();
+        bufferedStream.reset();
+
+        InputStream csvStream = bufferedStream;
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            csvStream = new GZIPInputStream(bufferedStream, bufferSize);
+        }
+        return csvStream;
+    }
+}
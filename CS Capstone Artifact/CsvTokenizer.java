@@ -0,0 +1,83 @@
+package com.example.project2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * CsvTokenizer.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * CsvTokenizer splits one CSV record into its fields. Fields may be quoted, and a quoted field may contain commas,
+ * line breaks and doubled quotes, which a plain split(",") would break apart.
+ *
+ * Functions:
+ * - tokenize(String record): Returns the fields of a record, with quotes removed.
+ * - quote(String value): Quotes a value for writing when it contains a comma, quote or line break.
+ *
+ * Note:
+ * - Unquoted fields are returned exactly as written, including surrounding spaces.
+ * - An unterminated quote runs to the end of the record, like most spreadsheet programs read it.
+ */
+public class CsvTokenizer {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private CsvTokenizer() {
+    }
+
+    /**
+     * Splits a record into its fields.
+     * @param record The record without its line terminator.
+     * @return The fields, quotes removed and doubled quotes unescaped.
+     */
+    public static String[] tokenize(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        int length = record.length();
+        for (int i = 0; i < length; i++) {
+            char c = record.charAt(i);
+            if (inQuotes) {
+                if (c == QUOTE) {
+                    if (i + 1 < length && record.charAt(i + 1) == QUOTE) {
+                        field.append(QUOTE);
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == QUOTE) {
+                inQuotes = true;
+            } else if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Quotes a value for a CSV file when it needs it.
+     * @param value The value, null is written as an empty field.
+     * @return The value as a CSV field.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r';
+        }
+        return needsQuotes ? QUOTE + value.replace("\"", "\"\"") + QUOTE : value;
+    }
+}
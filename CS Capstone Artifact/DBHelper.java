@@ -6,6 +6,8 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
 import at.favre.lib.crypto.bcrypt.BCrypt;
 
 /*
@@ -26,10 +28,13 @@ import at.favre.lib.crypto.bcrypt.BCrypt;
  *
  * Functions:
  * - Constructor(Context context): Initializes the DBHelper with the given context, database name, and version.
+ *   Slow queries are logged by QueryExecutor to the app's files directory.
  * - onCreate(SQLiteDatabase db): Called when the database is created for the first time. It creates the users table.
- * - onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion): Called when the database needs to be upgraded. It drops the existing table and creates a new one.
+ * - onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion): Called when the database needs to be upgraded. It runs the
+ *   registered migration steps so existing accounts are kept.
  * - checkUser(String username, String password): Checks if a user exists in the database and verifies their password.
  * - insertDataIntoDatabase(String newUser, String newPass): Inserts a new user into the database.
+ * - getAllUsernames(): Retrieves the username of every account.
  * - hashPassword(String password): Hashes a password using BCrypt.
  *
  * Note:
@@ -45,12 +50,16 @@ public class DBHelper extends SQLiteOpenHelper {
     private static final String COL_USERNAME = "username"; // Column name for username
     private static final String COL_PASSWORD = "password"; // Column name for password
 
+    // Migration steps for the users table, add new steps here when DB_VERSION is bumped
+    private static final SchemaMigrator MIGRATOR = new SchemaMigrator("DBHelper");
+
     /**
      * Constructor for DBHelper class.
      * @param context The context of the application.
      */
     public DBHelper(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
+        QueryExecutor.setLogDirectory(context.getFilesDir());
     }
 
     /**
@@ -74,9 +83,8 @@ public class DBHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop the existing table and create a new one
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(db);
+        // Apply the migration steps between the two versions, keeping all accounts
+        MIGRATOR.upgrade(db, oldVersion, newVersion);
     }
 
     /**
@@ -88,7 +96,7 @@ public class DBHelper extends SQLiteOpenHelper {
     public boolean checkUser(String username, String password) {
         SQLiteDatabase db = this.getReadableDatabase();
 
-        try (Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_NAME + " WHERE " +
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT * FROM " + TABLE_NAME + " WHERE " +
                 COL_USERNAME + "=?", new String[]{username})) {
             if (cursor.moveToFirst()) {
                 int passwordColumnIndex = cursor.getColumnIndex(COL_PASSWORD);
@@ -126,6 +134,27 @@ public class DBHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Method to retrieve the username of every account, used to tell whose inventory file an old file name belongs to.
+     * @return The usernames, exactly as they were registered.
+     */
+    public List<String> getAllUsernames() {
+        List<String> usernames = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_USERNAME + " FROM " + TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                usernames.add(cursor.getString(0));
+            }
+        } catch (Exception e) {
+            Log.e("DBHelper", "Error reading usernames: " + e.getMessage());
+        } finally {
+            db.close();
+        }
+
+        return usernames;
+    }
+
     /**
      * Method to hash a password using BCrypt.
      * @param password The password to hash.
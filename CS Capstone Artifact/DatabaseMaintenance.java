@@ -0,0 +1,281 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * DatabaseMaintenance.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * DatabaseMaintenance keeps the inventory database in shape while the app is idle. It checkpoints the WAL, gives the
+ * query planner fresh statistics with ANALYZE or PRAGMA optimize, and returns free pages to the file system with
+ * incremental vacuum, each within what is left of a time budget. Every run is logged with the database and WAL sizes
+ * and the timing of a few probe queries before and after.
+ *
+ * Components:
+ * - String TABLE_MAINTENANCE_LOG: The table recording each run.
+ * - long DEFAULT_BUDGET_MS: The time a run may take when none is given.
+ * - long MIN_INTERVAL_MS: The minimum time between two background runs.
+ *
+ * Functions:
+ * - runInBackground(Context context): Runs maintenance on a background thread when the interval has passed.
+ * - run(SQLiteDatabase db, long budgetMs): Runs every task that fits in the budget and returns what was done.
+ * - getReport(SQLiteDatabase db, int limit): Returns the most recent runs as text.
+ *
+ * Note:
+ * - IdleMaintenance starts runs once the app has been in the background for a while and no import is running.
+ * - The WAL checkpoint is PASSIVE, so it never waits for readers or blocks writers; frames still in use are left for
+ *   the next run.
+ * - ANALYZE runs once, when the database has no statistics yet, with analysis_limit to bound it on large tables;
+ *   after that PRAGMA optimize only re-analyzes tables whose statistics are out of date.
+ * - Incremental vacuum needs auto_vacuum=INCREMENTAL, which new databases get from InventoryDBHelper.onConfigure.
+ *   An existing database is converted with one full VACUUM, and only while it is smaller than CONVERT_MAX_BYTES so the
+ *   conversion stays short; larger databases keep their free pages for reuse. A VACUUM cannot be stopped halfway, so it
+ *   only starts when its estimated time, at VACUUM_BYTES_PER_MS, fits in what is left of the budget.
+ * - Vacuum works in steps of VACUUM_STEP_PAGES pages, each a short write, and stops when the budget runs out.
+ */
+public class DatabaseMaintenance {
+
+    private static final String TAG = "DatabaseMaintenance";
+
+    public static final String TABLE_MAINTENANCE_LOG = "maintenance_log";
+    public static final long DEFAULT_BUDGET_MS = 2000;
+    public static final long MIN_INTERVAL_MS = 6L * 60 * 60 * 1000;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    private static final long CONVERT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final int VACUUM_STEP_PAGES = 256;
+    // Conservative VACUUM speed on flash: the file is copied once and written back, about 8 MB/s
+    private static final long VACUUM_BYTES_PER_MS = 8 * 1024;
+    // Rows sampled per index by ANALYZE, enough for the planner on tables of any size
+    private static final int ANALYSIS_LIMIT = 1000;
+    private static final int PROBE_RUNS = 3;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    private DatabaseMaintenance() {
+    }
+
+    /**
+     * Runs maintenance on a background thread if MIN_INTERVAL_MS has passed since the last run.
+     * Calling it again while it runs has no effect. It opens its own helper and closes it when done, so the UI
+     * helper's connection and statement cache stay open.
+     * @param context The context used to open the database.
+     */
+    public static void runInBackground(Context context) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SQLiteDatabase db = helper.getWritableDatabase();
+                    createSchema(db);
+                    if (System.currentTimeMillis() - getLastRun(db) >= MIN_INTERVAL_MS) {
+                        Log.d(TAG, "Maintenance finished: " + DatabaseMaintenance.run(db, DEFAULT_BUDGET_MS));
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Maintenance failed: " + e.getMessage());
+                } finally {
+                    helper.close();
+                    RUNNING.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the maintenance tasks in order while the budget lasts, then logs the run.
+     * @param db The database instance, not inside a transaction.
+     * @param budgetMs The time the run may take.
+     * @return One line per task run or skipped.
+     */
+    public static List<String> run(SQLiteDatabase db, long budgetMs) {
+        createSchema(db);
+        long start = System.currentTimeMillis();
+        long deadline = start + budgetMs;
+        File file = new File(db.getPath());
+        File wal = new File(db.getPath() + "-wal");
+        long dbBytesBefore = file.length();
+        long walBytesBefore = wal.length();
+        long probeBefore = probeMicros(db);
+        List<String> tasks = new ArrayList<>();
+
+        tasks.add(checkpoint(db));
+        tasks.add(System.currentTimeMillis() < deadline ? analyze(db) : "analyze skipped, out of budget");
+        tasks.add(System.currentTimeMillis() < deadline ? vacuum(db, deadline) : "vacuum skipped, out of budget");
+        // The vacuum wrote to the WAL, checkpoint again so the file sizes reflect it
+        tasks.add(checkpoint(db));
+
+        long probeAfter = probeMicros(db);
+        long duration = System.currentTimeMillis() - start;
+        ContentValues values = new ContentValues();
+        values.put("started_at", start);
+        values.put("duration_ms", duration);
+        values.put("db_bytes_before", dbBytesBefore);
+        values.put("db_bytes_after", file.length());
+        values.put("wal_bytes_before", walBytesBefore);
+        values.put("wal_bytes_after", wal.length());
+        values.put("probe_before_us", probeBefore);
+        values.put("probe_after_us", probeAfter);
+        values.put("tasks", TextUtils.join("; ", tasks));
+        db.insert(TABLE_MAINTENANCE_LOG, null, values);
+        return tasks;
+    }
+
+    /**
+     * Returns the most recent maintenance runs as text.
+     * @param db The database instance.
+     * @param limit The number of runs to return.
+     * @return One line per run, newest first.
+     */
+    public static List<String> getReport(SQLiteDatabase db, int limit) {
+        createSchema(db);
+        List<String> report = new ArrayList<>();
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_MAINTENANCE_LOG, new String[]{"started_at", "duration_ms", "db_bytes_before",
+                "db_bytes_after", "wal_bytes_before", "wal_bytes_after", "probe_before_us", "probe_after_us", "tasks"},
+                null, null, "started_at DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                report.add(cursor.getLong(0) + " (" + cursor.getLong(1) + " ms): db " + cursor.getLong(2) / 1024 + " -> " +
+                        cursor.getLong(3) / 1024 + " KiB, wal " + cursor.getLong(4) / 1024 + " -> " + cursor.getLong(5) / 1024 +
+                        " KiB, probe " + cursor.getLong(6) + " us -> " + cursor.getLong(7) + " us; " + cursor.getString(8));
+            }
+        }
+        return report;
+    }
+
+    private static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MAINTENANCE_LOG + " (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "started_at INTEGER NOT NULL, " +
+                "duration_ms INTEGER NOT NULL, " +
+                "db_bytes_before INTEGER, " +
+                "db_bytes_after INTEGER, " +
+                "wal_bytes_before INTEGER, " +
+                "wal_bytes_after INTEGER, " +
+                "probe_before_us INTEGER, " +
+                "probe_after_us INTEGER, " +
+                "tasks TEXT);");
+    }
+
+    private static long getLastRun(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT IFNULL(MAX(started_at), 0) FROM " + TABLE_MAINTENANCE_LOG,
+                null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Copies committed WAL frames into the database file without waiting for readers
+    private static String checkpoint(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null)) {
+            if (!cursor.moveToFirst() || cursor.getInt(1) < 0) {
+                return "checkpoint skipped, not in WAL mode";
+            }
+            return "checkpoint " + cursor.getInt(2) + "/" + cursor.getInt(1) + " frames in " +
+                    (System.currentTimeMillis() - start) + " ms";
+        }
+    }
+
+    // Collects planner statistics the first time, then refreshes only the stale ones
+    private static String analyze(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        boolean hasStatistics;
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE name = 'sqlite_stat1'", null)) {
+            hasStatistics = cursor.moveToFirst();
+        }
+        if (hasStatistics) {
+            runPragma(db, "PRAGMA optimize");
+            return "optimize in " + (System.currentTimeMillis() - start) + " ms";
+        }
+        // Older SQLite versions ignore the limit and analyze every row
+        runPragma(db, "PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+        db.execSQL("ANALYZE");
+        return "analyze in " + (System.currentTimeMillis() - start) + " ms";
+    }
+
+    // Returns free pages to the file system in small steps until none are left or the deadline passes
+    private static String vacuum(SQLiteDatabase db, long deadline) {
+        long start = System.currentTimeMillis();
+        if (pragmaLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            long bytes = new File(db.getPath()).length();
+            if (bytes > CONVERT_MAX_BYTES) {
+                return "vacuum skipped, auto_vacuum is off and the database is " + bytes / 1024 + " KiB";
+            }
+            long estimatedMs = bytes / VACUUM_BYTES_PER_MS;
+            if (start + estimatedMs > deadline) {
+                return "vacuum conversion skipped, ~" + estimatedMs + " ms does not fit in the " + (deadline - start) +
+                        " ms left";
+            }
+            // Switching an existing file to incremental vacuum takes one full VACUUM, which also defragments it
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            return "converted to incremental vacuum with a full VACUUM in " + (System.currentTimeMillis() - start) + " ms";
+        }
+
+        long freed = 0;
+        long free = pragmaLong(db, "PRAGMA freelist_count");
+        while (free > 0 && System.currentTimeMillis() < deadline) {
+            runPragma(db, "PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+            long remaining = pragmaLong(db, "PRAGMA freelist_count");
+            freed += free - remaining;
+            if (remaining >= free) {
+                break;
+            }
+            free = remaining;
+        }
+        return "incremental vacuum freed " + freed + " pages, " + free + " left, in " +
+                (System.currentTimeMillis() - start) + " ms";
+    }
+
+    // Steps a pragma through all of its rows; some, like incremental_vacuum, only do their work while stepped
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.rawQuery(pragma, null)) {
+            cursor.getCount();
+        }
+    }
+
+    private static long pragmaLong(SQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.rawQuery(pragma, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Times a part number lookup, a full scan and a sorted page of the item list, best of PROBE_RUNS each
+    private static long probeMicros(SQLiteDatabase db) {
+        String[] probes = {
+                "SELECT COUNT(*) FROM " + InventoryDBHelper.TABLE_NAME + " WHERE " + InventoryDBHelper.COL_PART_NUMBER +
+                        " = (SELECT " + InventoryDBHelper.COL_PART_NUMBER + " FROM " + InventoryDBHelper.TABLE_NAME + " LIMIT 1)",
+                "SELECT COUNT(*), SUM(" + InventoryDBHelper.COL_QUANTITY + ") FROM " + InventoryDBHelper.TABLE_NAME,
+                "SELECT * FROM " + InventoryDBHelper.TABLE_NAME + " ORDER BY " + InventoryDBHelper.COL_NAME + " LIMIT 50"
+        };
+        long total = 0;
+        for (String probe : probes) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < PROBE_RUNS; i++) {
+                long start = System.nanoTime();
+                try (Cursor cursor = QueryExecutor.rawQuery(db, probe, null)) {
+                    cursor.getCount();
+                }
+                best = Math.min(best, (System.nanoTime() - start) / 1000);
+            }
+            total += best;
+        }
+        return total;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.project2;
 
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -7,7 +9,8 @@ import android.widget.EditText;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,52 +21,73 @@ import java.util.Map;
  *
  * Description:
  * DynamicFieldsAdapter is an adapter class for managing dynamic EditText fields in a RecyclerView.
- * It provides functionality to add new EditText fields with associated column names, retrieve EditText fields by column names,
- * and bind data to the views.
+ * It shows one field per dynamic column of the add-item form and keeps the typed values in its own model,
+ * so field views can be recycled while scrolling and reused the next time the form is opened.
  *
  * Components:
  * - List<String> columnNames: A list to hold column names.
- * - Map<String, EditText> editTextMap: A map to associate column names with EditText fields.
+ * - String[] values: The value typed for each column, by position.
+ * - RecyclerView.RecycledViewPool viewPool: Field views kept between openings of the form.
  *
  * Functions:
- * - Constructor: Initializes the DynamicFieldsAdapter with an empty list of column names and an empty map of EditText fields.
- * - addEditText(String columnName, EditText editText): Adds a new EditText field with its associated column name to the adapter.
- * - getEditText(String columnName): Retrieves the EditText field associated with the specified column name.
+ * - Constructor: Initializes the DynamicFieldsAdapter with no columns.
+ * - setColumns(List<String> columnNames): Shows the fields of a form schema with empty values, keeping the views when
+ *   the columns did not change.
+ * - getValues(): Returns the trimmed value typed for every column, by column name.
+ * - getViewPool(): Returns the pool the form's RecyclerView should use, so field views survive between dialogs.
  * - onCreateViewHolder(ViewGroup parent, int viewType): Creates ViewHolder instances for the RecyclerView items.
  * - getItemCount(): Returns the total number of items in the RecyclerView.
- * - ViewHolder(itemView): Constructor for the ViewHolder class to hold the EditText field.
- * - clear(): Clears all column names and associated EditText fields from the adapter.
- * - onBindViewHolder(ViewHolder holder, int position): Binds data to the views, setting the hint for the EditText field based on the column name.
+ * - ViewHolder(itemView): Constructor for the ViewHolder class to hold the EditText field and its TextWatcher.
+ * - clear(): Clears all column names and values from the adapter.
+ * - onBindViewHolder(ViewHolder holder, int position): Binds data to the views, setting the hint and the typed value.
  *
  * Note:
  * - This adapter is designed to work with RecyclerViews that contain dynamic EditText fields.
- * - It allows the addition of EditText fields with associated column names, facilitating dynamic data entry.
- * - The adapter is responsible for managing the addition, retrieval, and binding of EditText fields in the RecyclerView.
+ * - Values are read from the model, never from the views, since a view may have been recycled to another column.
+ * - Only the visible fields are inflated, so opening the form costs the same with 10 or 100+ columns.
  */
 public class DynamicFieldsAdapter extends RecyclerView.Adapter<DynamicFieldsAdapter.ViewHolder> {
     // List to hold column names
     private final List<String> columnNames;
-    // Map to associate column names with EditText fields
-    private final Map<String, EditText> editTextMap;
+    // Value typed for each column, by position
+    private String[] values;
+    // Field views kept between openings of the form
+    private final RecyclerView.RecycledViewPool viewPool;
 
     // Constructor
     public DynamicFieldsAdapter() {
         columnNames = new ArrayList<>();
-        editTextMap = new HashMap<>();
+        values = new String[0];
+        viewPool = new RecyclerView.RecycledViewPool();
     }
 
-    // Method to add a new EditText field with its associated column name
-    public void addEditText(String columnName, EditText editText) {
-        if (!columnNames.contains(columnName)) {
-            columnNames.add(columnName); // Add the column name to the list
-            editTextMap.put(columnName, editText); // Associate the column name with the EditText field
-            notifyItemInserted(columnNames.size() - 1); // Notify RecyclerView of the new item insertion
+    // Method to show the fields of a form schema with empty values
+    public void setColumns(List<String> newColumnNames) {
+        if (columnNames.equals(newColumnNames)) {
+            // Same form as last time, only the typed values are reset
+            Arrays.fill(values, "");
+            notifyItemRangeChanged(0, columnNames.size());
+            return;
         }
+        columnNames.clear();
+        columnNames.addAll(newColumnNames);
+        values = new String[columnNames.size()];
+        Arrays.fill(values, "");
+        notifyDataSetChanged();
+    }
+
+    // Method to get the trimmed value typed for every column
+    public Map<String, String> getValues() {
+        Map<String, String> typedValues = new LinkedHashMap<>();
+        for (int i = 0; i < columnNames.size(); i++) {
+            typedValues.put(columnNames.get(i), values[i].trim());
+        }
+        return typedValues;
     }
 
-    // Method to get the EditText field associated with a column name
-    public EditText getEditText(String columnName) {
-        return editTextMap.get(columnName);
+    // Method to get the view pool the form's RecyclerView should share
+    public RecyclerView.RecycledViewPool getViewPool() {
+        return viewPool;
     }
 
     // Create ViewHolder instances
@@ -71,7 +95,7 @@ public class DynamicFieldsAdapter extends RecyclerView.Adapter<DynamicFieldsAdap
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_dynamic_field, parent, false);
-        return new ViewHolder(view);
+        return new ViewHolder(view, this);
     }
 
     // Get the total number of items in the RecyclerView
@@ -83,17 +107,38 @@ public class DynamicFieldsAdapter extends RecyclerView.Adapter<DynamicFieldsAdap
     // ViewHolder class to hold the EditText field
     public static class ViewHolder extends RecyclerView.ViewHolder {
         public EditText editText;
+        private final DynamicFieldsAdapter adapter;
+        private boolean binding;
 
-        public ViewHolder(View itemView) {
+        public ViewHolder(View itemView, DynamicFieldsAdapter adapter) {
             super(itemView);
+            this.adapter = adapter;
             editText = itemView.findViewById(R.id.editTextDynamicField);
+            // One watcher per view, writing to whichever column the view is bound to
+            editText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    int position = getAdapterPosition();
+                    if (!binding && position != RecyclerView.NO_POSITION && position < adapter.values.length) {
+                        adapter.values[position] = s.toString();
+                    }
+                }
+            });
         }
     }
 
-    // Method to clear all column names and associated EditText fields
+    // Method to clear all column names and values
     public void clear() {
         columnNames.clear();
-        editTextMap.clear();
+        values = new String[0];
         notifyDataSetChanged(); // Notify RecyclerView of data change
     }
 
@@ -101,6 +146,9 @@ public class DynamicFieldsAdapter extends RecyclerView.Adapter<DynamicFieldsAdap
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         String columnName = columnNames.get(position);
+        holder.binding = true;
         holder.editText.setHint(columnName); // Set the hint for the EditText field based on the column name
+        holder.editText.setText(values[position]);
+        holder.binding = false;
     }
 }
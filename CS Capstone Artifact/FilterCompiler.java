@@ -0,0 +1,269 @@
+package com.example.project2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * FilterCompiler.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * FilterCompiler turns a filter map and a list of filter conditions into a parameterized WHERE clause on the items table,
+ * so filtering runs in SQLite and only matching rows are read. Column names are checked against the column catalog
+ * and quoted, and every value is a bound parameter, so user input never becomes part of the SQL text.
+ *
+ * Components:
+ * - Operator: EQUALS, PREFIX, IN and RANGE.
+ * - Condition: One condition on one column.
+ * - CompiledFilter: The WHERE clause, its bound arguments and its shape.
+ *
+ * Functions:
+ * - compile(Map<String, ColumnType> columnTypes, Map<String, String> equalityFilters, List<Condition> conditions):
+ *   Builds the WHERE clause for a filter map plus extra conditions.
+ * - getCachedShapeCount(): Returns the number of filter shapes whose SQL is cached.
+ *
+ * Note:
+ * - A shape is the list of columns, operators and value counts of a filter, without the values. Filters with the same
+ *   shape compile to the exact same SQL text, which is built once per shape and is also part of the result cache key.
+ *   InventoryDBHelper keeps its connection open, so SQLite's prepared-statement cache reuses one compiled statement
+ *   for all of them.
+ * - Conditions are ordered by column and operator before compiling, so the order of the map does not change the shape.
+ * - Text comparisons are case-insensitive, like the in-memory filter of ItemAdapter.
+ * - Equals and in values are converted through the column's ColumnType before they are bound, so a date filter such as
+ *   "2024-01-01" compares against the epoch milliseconds the column stores.
+ */
+public class FilterCompiler {
+
+    public static final int MAX_CACHED_SHAPES = 64;
+
+    public enum Operator {
+        EQUALS, PREFIX, IN, RANGE
+    }
+
+    // SQL text per filter shape, least recently used shapes are dropped first
+    private static final Map<String, String> SHAPE_CACHE = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_SHAPES;
+        }
+    };
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * One condition on one column of the items table.
+     */
+    public static class Condition {
+        private final String columnName;
+        private final Operator operator;
+        private final List<String> values;
+        private final RangePredicate range;
+
+        private Condition(String columnName, Operator operator, List<String> values, RangePredicate range) {
+            this.columnName = columnName;
+            this.operator = operator;
+            this.values = values;
+            this.range = range;
+        }
+
+        public static Condition equalTo(String columnName, String value) {
+            return new Condition(columnName, Operator.EQUALS, Collections.singletonList(value.trim()), null);
+        }
+
+        public static Condition startsWith(String columnName, String prefix) {
+            return new Condition(columnName, Operator.PREFIX, Collections.singletonList(prefix.trim()), null);
+        }
+
+        public static Condition in(String columnName, List<String> values) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("An IN filter needs at least one value: " + columnName);
+            }
+            List<String> trimmed = new ArrayList<>();
+            for (String value : values) {
+                trimmed.add(value.trim());
+            }
+            return new Condition(columnName, Operator.IN, trimmed, null);
+        }
+
+        public static Condition range(RangePredicate range) {
+            return new Condition(range.getColumnName(), Operator.RANGE, null, range);
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        // The part of the shape this condition contributes, for example price:RANGE:2
+        private String getShape() {
+            int arity = operator == Operator.RANGE ? range.getArguments().length : values.size();
+            String bounds = operator == Operator.RANGE ? range.toSql() : "";
+            return columnName + ":" + operator + ":" + arity + bounds;
+        }
+    }
+
+    /**
+     * A compiled WHERE clause with its bound arguments.
+     */
+    public static class CompiledFilter {
+        private final String selection;
+        private final String[] arguments;
+        private final String shape;
+        private final List<Condition> conditions;
+
+        CompiledFilter(String selection, String[] arguments, String shape, List<Condition> conditions) {
+            this.selection = selection;
+            this.arguments = arguments;
+            this.shape = shape;
+            this.conditions = conditions;
+        }
+
+        // The WHERE clause without the WHERE keyword, null when nothing is filtered
+        public String getSelection() {
+            return selection;
+        }
+
+        public String[] getArguments() {
+            return arguments;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public List<Condition> getConditions() {
+            return conditions;
+        }
+    }
+
+    /**
+     * Builds the parameterized WHERE clause for a filter map of equality filters plus extra conditions.
+     * @param columnTypes The declared type of every column, from ColumnCatalog.
+     * @param equalityFilters Column name to value, each compiled as an EQUALS condition.
+     * @param conditions Extra conditions, may be empty.
+     * @return The compiled filter.
+     * @throws IllegalArgumentException If a column does not exist or a range is used on a text column.
+     */
+    public static CompiledFilter compile(Map<String, ColumnType> columnTypes, Map<String, String> equalityFilters,
+                                         List<Condition> conditions) {
+        List<Condition> all = new ArrayList<>();
+        for (Map.Entry<String, String> entry : equalityFilters.entrySet()) {
+            all.add(Condition.equalTo(entry.getKey(), entry.getValue()));
+        }
+        all.addAll(conditions);
+        Collections.sort(all, new Comparator<Condition>() {
+            @Override
+            public int compare(Condition a, Condition b) {
+                int byColumn = a.columnName.compareTo(b.columnName);
+                return byColumn != 0 ? byColumn : a.operator.compareTo(b.operator);
+            }
+        });
+
+        StringBuilder shapeBuilder = new StringBuilder();
+        List<String> arguments = new ArrayList<>();
+        for (Condition condition : all) {
+            ColumnType type = columnTypes.get(condition.columnName);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown column: " + condition.columnName);
+            }
+            if (condition.operator == Operator.RANGE && !type.isNumeric()) {
+                throw new IllegalArgumentException("Range filters need a numeric column: " + condition.columnName);
+            }
+            shapeBuilder.append(condition.getShape()).append(type.isNumeric() ? ":n" : ":t").append(";");
+            addArguments(condition, type, arguments);
+        }
+
+        String shape = shapeBuilder.toString();
+        String selection = null;
+        if (!all.isEmpty()) {
+            synchronized (SHAPE_CACHE) {
+                selection = SHAPE_CACHE.get(shape);
+            }
+            if (selection == null) {
+                selection = buildSelection(columnTypes, all);
+                synchronized (SHAPE_CACHE) {
+                    SHAPE_CACHE.put(shape, selection);
+                }
+            }
+        }
+        return new CompiledFilter(selection, arguments.toArray(new String[0]), shape, all);
+    }
+
+    /**
+     * Returns the number of filter shapes whose SQL is cached.
+     * @return The cached shape count.
+     */
+    public static int getCachedShapeCount() {
+        synchronized (SHAPE_CACHE) {
+            return SHAPE_CACHE.size();
+        }
+    }
+
+    // Builds the SQL text of a shape, only called on a cache miss
+    private static String buildSelection(Map<String, ColumnType> columnTypes, List<Condition> conditions) {
+        List<String> parts = new ArrayList<>();
+        for (Condition condition : conditions) {
+            String column = InventoryDBHelper.quoteIdentifier(condition.columnName);
+            boolean numeric = columnTypes.get(condition.columnName).isNumeric();
+            switch (condition.operator) {
+                case EQUALS:
+                    // Numbers compare natively through the column affinity, text keeps the case-insensitive match
+                    parts.add(column + (numeric ? " = ?" : " = ? COLLATE NOCASE"));
+                    break;
+                case PREFIX:
+                    parts.add(column + " LIKE ? ESCAPE '\\'");
+                    break;
+                case IN:
+                    StringBuilder placeholders = new StringBuilder();
+                    for (int i = 0; i < condition.values.size(); i++) {
+                        placeholders.append(i > 0 ? ", ?" : "?");
+                    }
+                    parts.add(column + (numeric ? "" : " COLLATE NOCASE") + " IN (" + placeholders + ")");
+                    break;
+                case RANGE:
+                    parts.add(condition.range.toSql());
+                    break;
+            }
+        }
+        StringBuilder selection = new StringBuilder();
+        for (String part : parts) {
+            selection.append(selection.length() > 0 ? " AND " : "").append(part);
+        }
+        return selection.toString();
+    }
+
+    private static void addArguments(Condition condition, ColumnType type, List<String> arguments) {
+        switch (condition.operator) {
+            case PREFIX:
+                arguments.add(escapeLike(condition.values.get(0)) + "%");
+                break;
+            case RANGE:
+                Collections.addAll(arguments, condition.range.getArguments());
+                break;
+            default:
+                for (String value : condition.values) {
+                    arguments.add(toStoredArgument(type, value));
+                }
+        }
+    }
+
+    // Converts a value to the form its column stores; values that do not convert are bound as typed and match nothing
+    private static String toStoredArgument(ColumnType type, String value) {
+        Object stored = type.coerce(value);
+        return stored == null ? value : String.valueOf(stored);
+    }
+
+    // Escapes the LIKE wildcards so a prefix is matched literally
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.project2;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * IdleMaintenance.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * IdleMaintenance starts the background upkeep of the inventory database (IndexAdvisor, StockHistory compaction and
+ * DatabaseMaintenance) once the app is really idle: none of its activities has been in the foreground for IDLE_DELAY_MS
+ * and no CSV import is running. Coming back to the app within the delay cancels the run.
+ *
+ * Components:
+ * - long IDLE_DELAY_MS: How long the app must stay in the background before the tasks start.
+ *
+ * Functions:
+ * - install(Application application): Starts watching the app's activities, once per process.
+ *
+ * Note:
+ * - The pause of a single screen is not idle: it also fires when the CSV file picker opens, right before an import
+ *   writes. The activity lifecycle callbacks count the app's resumed activities instead, and the delay covers the time
+ *   the user spends in the picker.
+ * - A run that finds an import in progress waits another IDLE_DELAY_MS.
+ * - Each task keeps its own minimum interval, so idling often does not run them often.
+ */
+public class IdleMaintenance implements Application.ActivityLifecycleCallbacks {
+
+    private static final String TAG = "IdleMaintenance";
+
+    public static final long IDLE_DELAY_MS = 2L * 60 * 1000;
+
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean(false);
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int resumedActivities; // Only touched on the main thread
+
+    // Starts the tasks if the app is still in the background and nothing is importing
+    private final Runnable runTasks = new Runnable() {
+        @Override
+        public void run() {
+            if (resumedActivities > 0) {
+                return;
+            }
+            if (CsvImporter.isImporting()) {
+                handler.postDelayed(this, IDLE_DELAY_MS);
+                return;
+            }
+            Log.d(TAG, "App idle, starting background maintenance");
+            new IndexAdvisor().runInBackground(context);
+            StockHistory.compactInBackground(context);
+            DatabaseMaintenance.runInBackground(context);
+        }
+    };
+
+    private IdleMaintenance(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Starts watching the app's activities. Later calls have no effect.
+     * @param application The application, usually from Activity.getApplication() in onCreate.
+     */
+    public static void install(Application application) {
+        if (INSTALLED.compareAndSet(false, true)) {
+            application.registerActivityLifecycleCallbacks(new IdleMaintenance(application));
+        }
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        resumedActivities++;
+        handler.removeCallbacks(runTasks);
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        // Activities resumed before install are not counted, so never go below zero
+        resumedActivities = Math.max(0, resumedActivities - 1);
+        if (resumedActivities == 0) {
+            handler.removeCallbacks(runTasks);
+            handler.postDelayed(runTasks, IDLE_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/*
+ * ImportJobs.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * ImportJobs records how far each CSV import got. The importer saves the byte offset and row number reached in the same
+ * transaction as every batch of rows it commits, so after a crash or a failed row the import continues at the first row
+ * that was not committed instead of starting over.
+ *
+ * Components:
+ * - String TABLE_IMPORT_JOBS: The table holding one row per imported file.
+ * - String STATE_RUNNING, STATE_DONE: Whether an import can be resumed.
+ * - FileIdentity: The size, last-modified time and a checksum of the first bytes of an imported file.
+ * - Checkpoint: The header, file identity, byte offset and row number of an unfinished import.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the import jobs table.
+ * - addFileIdentityColumns(SQLiteDatabase db): Adds the file identity to the checkpoints.
+ * - getResumePoint(SQLiteDatabase db, String jobKey): Returns the checkpoint of an unfinished import, or null.
+ * - saveCheckpoint(SQLiteDatabase db, String jobKey, String header, FileIdentity identity, long byteOffset, long rowNumber):
+ *   Stores the position reached; call inside the transaction of the batch it covers.
+ * - markDone(SQLiteDatabase db, String jobKey, long rowNumber): Marks an import finished, so importing the file again starts over.
+ *
+ * Note:
+ * - Jobs are keyed by the document URI. The header and the file identity are kept to detect a different or edited file
+ *   behind the same URI; a file with the same header can still have other rows, so the header alone is not enough.
+ * - Checkpoints saved before the identity columns existed have no identity and never match, so those imports start over.
+ */
+public class ImportJobs {
+
+    public static final String TABLE_IMPORT_JOBS = "import_jobs";
+    public static final String COL_JOB_KEY = "job_key";
+    public static final String COL_HEADER = "header";
+    public static final String COL_BYTE_OFFSET = "byte_offset";
+    public static final String COL_ROW_NUMBER = "row_number";
+    public static final String COL_STATE = "state";
+    public static final String COL_UPDATED = "updated_at";
+    public static final String COL_FILE_SIZE = "file_size";
+    public static final String COL_LAST_MODIFIED = "last_modified";
+    public static final String COL_PREFIX_CRC = "prefix_crc";
+
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_DONE = "done";
+
+    private ImportJobs() {
+    }
+
+    /**
+     * What identifies the contents of an imported file: its size, its last-modified time and the CRC32 of its first bytes.
+     * A size or time the provider does not report is -1.
+     */
+    public static class FileIdentity {
+        public final long size;
+        public final long lastModified;
+        public final long prefixCrc;
+
+        public FileIdentity(long size, long lastModified, long prefixCrc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.prefixCrc = prefixCrc;
+        }
+
+        public boolean matches(FileIdentity other) {
+            return other != null && size == other.size && lastModified == other.lastModified && prefixCrc == other.prefixCrc;
+        }
+
+        @Override
+        public String toString() {
+            return "size " + size + ", modified " + lastModified + ", crc " + Long.toHexString(prefixCrc);
+        }
+    }
+
+    /**
+     * The position an unfinished import reached.
+     */
+    public static class Checkpoint {
+        public final String header;
+        public final FileIdentity identity;
+        public final long byteOffset;
+        public final long rowNumber;
+
+        Checkpoint(String header, FileIdentity identity, long byteOffset, long rowNumber) {
+            this.header = header;
+            this.identity = identity;
+            this.byteOffset = byteOffset;
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    /**
+     * Creates the import jobs table.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_IMPORT_JOBS + " (" +
+                COL_JOB_KEY + " TEXT PRIMARY KEY, " +
+                COL_HEADER + " TEXT, " +
+                COL_BYTE_OFFSET + " INTEGER NOT NULL, " +
+                COL_ROW_NUMBER + " INTEGER NOT NULL, " +
+                COL_STATE + " TEXT NOT NULL, " +
+                COL_UPDATED + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Adds the size, last-modified time and prefix checksum of the file to every checkpoint.
+     * @param db The database instance.
+     */
+    public static void addFileIdentityColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_IMPORT_JOBS + " ADD COLUMN " + COL_FILE_SIZE + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_IMPORT_JOBS + " ADD COLUMN " + COL_LAST_MODIFIED + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_IMPORT_JOBS + " ADD COLUMN " + COL_PREFIX_CRC + " INTEGER");
+    }
+
+    /**
+     * Returns the checkpoint of an unfinished import of a file.
+     * @param db The database instance.
+     * @param jobKey The document URI of the file.
+     * @return The checkpoint, or null if the file was never imported or its last import finished.
+     */
+    public static Checkpoint getResumePoint(SQLiteDatabase db, String jobKey) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_HEADER + ", " + COL_BYTE_OFFSET + ", " +
+                        COL_ROW_NUMBER + ", " + COL_FILE_SIZE + ", " + COL_LAST_MODIFIED + ", " + COL_PREFIX_CRC +
+                        " FROM " + TABLE_IMPORT_JOBS + " WHERE " + COL_JOB_KEY + " = ? AND " + COL_STATE + " = ?",
+                new String[]{jobKey, STATE_RUNNING})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            // Checkpoints from before the identity columns have none
+            FileIdentity identity = cursor.isNull(5) ? null :
+                    new FileIdentity(cursor.getLong(3), cursor.getLong(4), cursor.getLong(5));
+            return new Checkpoint(cursor.getString(0), identity, cursor.getLong(1), cursor.getLong(2));
+        }
+    }
+
+    /**
+     * Stores the position an import reached. Call inside the transaction that commits the rows before it.
+     * @param db The database instance.
+     * @param jobKey The document URI of the file.
+     * @param header The header record of the file.
+     * @param identity The size, last-modified time and prefix checksum of the file.
+     * @param byteOffset The offset just after the last committed row.
+     * @param rowNumber The number of records read up to that offset, the header included.
+     */
+    public static void saveCheckpoint(SQLiteDatabase db, String jobKey, String header, FileIdentity identity,
+                                      long byteOffset, long rowNumber) {
+        ContentValues values = new ContentValues();
+        values.put(COL_JOB_KEY, jobKey);
+        values.put(COL_HEADER, header);
+        values.put(COL_FILE_SIZE, identity.size);
+        values.put(COL_LAST_MODIFIED, identity.lastModified);
+        values.put(COL_PREFIX_CRC, identity.prefixCrc);
+        values.put(COL_BYTE_OFFSET, byteOffset);
+        values.put(COL_ROW_NUMBER, rowNumber);
+        values.put(COL_STATE, STATE_RUNNING);
+        values.put(COL_UPDATED, System.currentTimeMillis());
+        db.insertWithOnConflict(TABLE_IMPORT_JOBS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Marks an import finished.
+     * @param db The database instance.
+     * @param jobKey The document URI of the file.
+     * @param rowNumber The number of records read, the header included.
+     */
+    public static void markDone(SQLiteDatabase db, String jobKey, long rowNumber) {
+        ContentValues values = new ContentValues();
+        values.put(COL_STATE, STATE_DONE);
+        values.put(COL_ROW_NUMBER, rowNumber);
+        values.put(COL_UPDATED, System.currentTimeMillis());
+        db.update(TABLE_IMPORT_JOBS, values, COL_JOB_KEY + " = ?", new String[]{jobKey});
+    }
+}
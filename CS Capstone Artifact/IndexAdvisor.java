@@ -0,0 +1,320 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * IndexAdvisor.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * IndexAdvisor creates and drops secondary indexes on the items table based on the recorded QueryWorkload.
+ * Columns that are filtered, sorted or searched often get an index as long as the estimated size of all
+ * advisor indexes stays within a storage budget; advisor indexes whose column has not been used for a while are dropped.
+ * Every decision is logged together with the latency of a probe query measured before and after the change.
+ *
+ * Components:
+ * - String INDEX_PREFIX: Name prefix of the indexes the advisor owns; other indexes are never touched.
+ * - String TABLE_ADVISOR_LOG: The table recording each decision and its measured latency impact.
+ * - long DEFAULT_STORAGE_BUDGET_BYTES: The storage budget used when none is given.
+ *
+ * Functions:
+ * - Constructor(long storageBudgetBytes): Creates an advisor with a storage budget for its indexes.
+ * - runInBackground(Context context): Runs the advisor on a background thread with its own connection.
+ * - advise(InventoryDBHelper helper): Flushes the helper's workload, then creates and drops indexes. Returns the decisions made.
+ * - getReport(SQLiteDatabase db, int limit): Returns the most recent decisions as text.
+ *
+ * Note:
+ * - A column needs MIN_USES recorded uses before it is indexed, so one-off filters do not create indexes.
+ * - Index sizes are estimated from the row count and the average value length of the column.
+ * - FilterCompiler compares text case-insensitively, so text columns are indexed with COLLATE NOCASE; only such an index
+ *   serves its = ? COLLATE NOCASE, COLLATE NOCASE IN and LIKE prefix filters. Advisor indexes built with another collation
+ *   are rebuilt. The probe query is the filter FilterCompiler builds for the column's most common use.
+ */
+public class IndexAdvisor {
+
+    private static final String TAG = "IndexAdvisor";
+
+    public static final String INDEX_PREFIX = "idx_auto_";
+    public static final String TABLE_ADVISOR_LOG = "index_advisor_log";
+    public static final long DEFAULT_STORAGE_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    private static final long MIN_USES = 20;
+    private static final long UNUSED_DROP_AFTER_MS = 14L * 24 * 60 * 60 * 1000;
+    // Per-entry overhead of an index row: rowid, record header and b-tree cell
+    private static final int INDEX_ENTRY_OVERHEAD_BYTES = 12;
+    private static final int PROBE_RUNS = 3;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    private final long storageBudgetBytes;
+
+    public IndexAdvisor() {
+        this(DEFAULT_STORAGE_BUDGET_BYTES);
+    }
+
+    public IndexAdvisor(long storageBudgetBytes) {
+        this.storageBudgetBytes = storageBudgetBytes;
+    }
+
+    // A candidate column with its workload score and estimated index size
+    private static class Candidate {
+        final String columnName;
+        final long score;
+        final long estimatedBytes;
+
+        Candidate(String columnName, long score, long estimatedBytes) {
+            this.columnName = columnName;
+            this.score = score;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    /**
+     * Runs the advisor on a background thread. Calling it again while it runs has no effect.
+     * The advisor opens its own helper and closes it when done, so the UI helper's connection stays open.
+     * @param context The context used to open the database.
+     */
+    public void runInBackground(Context context) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<String> decisions = advise(helper);
+                    Log.d(TAG, "Index advisor finished: " + decisions);
+                } catch (Exception e) {
+                    Log.e(TAG, "Index advisor failed: " + e.getMessage());
+                } finally {
+                    helper.close();
+                    RUNNING.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Flushes the recorded workload, then creates and drops advisor indexes within the storage budget.
+     * @param helper The helper of the database to advise.
+     * @return One line per index created or dropped.
+     */
+    public List<String> advise(InventoryDBHelper helper) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        createSchema(db);
+        helper.getQueryWorkload().flush(db);
+
+        Map<String, QueryWorkload.ColumnUsage> usage = QueryWorkload.getUsage(db);
+        Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+        Map<String, String> advisorIndexed = new HashMap<>();
+        Set<String> otherIndexed = new HashSet<>();
+        loadIndexedColumns(db, advisorIndexed, otherIndexed);
+
+        // Rank the columns that are used often enough and have no index of their own
+        long now = System.currentTimeMillis();
+        long rowCount = countRows(db);
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, QueryWorkload.ColumnUsage> entry : usage.entrySet()) {
+            String columnName = entry.getKey();
+            QueryWorkload.ColumnUsage columnUsage = entry.getValue();
+            boolean recentlyUsed = now - columnUsage.lastUsed < UNUSED_DROP_AFTER_MS;
+            if (!columnTypes.containsKey(columnName) || otherIndexed.contains(columnName)
+                    || columnUsage.getTotal() < MIN_USES || !recentlyUsed) {
+                continue;
+            }
+            candidates.add(new Candidate(columnName, columnUsage.getTotal(), estimateIndexBytes(db, columnName, rowCount)));
+        }
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Long.compare(b.score, a.score);
+            }
+        });
+
+        // Fill the budget with the most used columns
+        Set<String> wanted = new HashSet<>();
+        long budgetLeft = storageBudgetBytes;
+        for (Candidate candidate : candidates) {
+            if (candidate.estimatedBytes <= budgetLeft) {
+                wanted.add(candidate.columnName);
+                budgetLeft -= candidate.estimatedBytes;
+            }
+        }
+
+        List<String> decisions = new ArrayList<>();
+        Set<String> kept = new HashSet<>();
+        for (Map.Entry<String, String> entry : advisorIndexed.entrySet()) {
+            String columnName = entry.getKey();
+            ColumnType type = columnTypes.get(columnName);
+            // An index with another collation than the filters compare with cannot serve them
+            if (wanted.contains(columnName) && getCollation(type).equalsIgnoreCase(entry.getValue())) {
+                kept.add(columnName);
+            } else {
+                decisions.add(applyDecision(db, columnName, type, usage.get(columnName), false,
+                        estimateIndexBytes(db, columnName, rowCount)));
+            }
+        }
+        for (Candidate candidate : candidates) {
+            if (wanted.contains(candidate.columnName) && !kept.contains(candidate.columnName)) {
+                decisions.add(applyDecision(db, candidate.columnName, columnTypes.get(candidate.columnName),
+                        usage.get(candidate.columnName), true, candidate.estimatedBytes));
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * Returns the most recent advisor decisions as text.
+     * @param db The database instance.
+     * @param limit The maximum number of decisions.
+     * @return One line per decision, newest first.
+     */
+    public static List<String> getReport(SQLiteDatabase db, int limit) {
+        createSchema(db);
+        List<String> report = new ArrayList<>();
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_ADVISOR_LOG, new String[]{"action", "column_name", "estimated_bytes",
+                "probe_before_us", "probe_after_us"}, null, null, "decided_at DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                report.add(cursor.getString(0) + " " + cursor.getString(1) + " (~" + cursor.getLong(2) / 1024 + " KiB): probe " +
+                        cursor.getLong(3) + " us -> " + cursor.getLong(4) + " us");
+            }
+        }
+        return report;
+    }
+
+    // Creates or drops one advisor index, timing a probe query around the change and logging the result
+    private String applyDecision(SQLiteDatabase db, String columnName, ColumnType type, QueryWorkload.ColumnUsage usage,
+                                 boolean create, long estimatedBytes) {
+        String indexName = InventoryDBHelper.quoteIdentifier(INDEX_PREFIX + InventoryDBHelper.TABLE_NAME + "_" + columnName);
+        long before = probeMicros(db, columnName, type, usage);
+        if (create) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + indexName + " ON " + InventoryDBHelper.TABLE_NAME +
+                    " (" + InventoryDBHelper.quoteIdentifier(columnName) + " COLLATE " + getCollation(type) + ")");
+        } else {
+            db.execSQL("DROP INDEX IF EXISTS " + indexName);
+        }
+        long after = probeMicros(db, columnName, type, usage);
+
+        ContentValues values = new ContentValues();
+        values.put("decided_at", System.currentTimeMillis());
+        values.put("action", create ? "create" : "drop");
+        values.put("column_name", columnName);
+        values.put("estimated_bytes", estimatedBytes);
+        values.put("probe_before_us", before);
+        values.put("probe_after_us", after);
+        db.insert(TABLE_ADVISOR_LOG, null, values);
+
+        String decision = (create ? "Created" : "Dropped") + " index on " + columnName + ", probe " + before + " us -> " + after + " us";
+        Log.d(TAG, decision);
+        return decision;
+    }
+
+    // The collation the filters compare a column with, and so the one its index needs
+    private static String getCollation(ColumnType type) {
+        return type == null || type.isNumeric() ? "BINARY" : "NOCASE";
+    }
+
+    // Times the filter FilterCompiler builds for the column's most common use on a sample value, best of a few runs
+    private static long probeMicros(SQLiteDatabase db, String columnName, ColumnType type, QueryWorkload.ColumnUsage usage) {
+        if (type == null) {
+            return 0;
+        }
+        String column = InventoryDBHelper.quoteIdentifier(columnName);
+        String sample = null;
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + column + " FROM " + InventoryDBHelper.TABLE_NAME +
+                " WHERE " + column + " IS NOT NULL LIMIT 1", null)) {
+            if (cursor.moveToFirst()) {
+                // Display text, as a user would type it, so DATE samples go through the same conversion as a filter
+                sample = type.format(InventoryDBHelper.readTypedValue(cursor, 0));
+            }
+        }
+        if (sample == null || sample.trim().isEmpty()) {
+            return 0;
+        }
+        boolean search = !type.isNumeric() && usage != null && usage.searches > usage.filters;
+        FilterCompiler.Condition condition = search ? FilterCompiler.Condition.startsWith(columnName, sample)
+                : FilterCompiler.Condition.equalTo(columnName, sample);
+        FilterCompiler.CompiledFilter filter = FilterCompiler.compile(Collections.singletonMap(columnName, type),
+                Collections.<String, String>emptyMap(), Collections.singletonList(condition));
+        String sql = "SELECT COUNT(*) FROM " + InventoryDBHelper.TABLE_NAME + " WHERE " + filter.getSelection();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            try (Cursor cursor = QueryExecutor.rawQuery(db, sql, filter.getArguments())) {
+                cursor.moveToFirst();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1000);
+        }
+        return best;
+    }
+
+    private static long countRows(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT COUNT(*) FROM " + InventoryDBHelper.TABLE_NAME, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static long estimateIndexBytes(SQLiteDatabase db, String columnName, long rowCount) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT IFNULL(AVG(LENGTH(" +
+                InventoryDBHelper.quoteIdentifier(columnName) + ")), 0) FROM " +
+                InventoryDBHelper.TABLE_NAME, null)) {
+            double averageLength = cursor.moveToFirst() ? cursor.getDouble(0) : 0;
+            return (long) (rowCount * (averageLength + INDEX_ENTRY_OVERHEAD_BYTES));
+        }
+    }
+
+    // Splits the indexed columns of the items table into advisor-owned indexes, with their collation, and other indexes
+    private static void loadIndexedColumns(SQLiteDatabase db, Map<String, String> advisorIndexed, Set<String> otherIndexed) {
+        List<String> indexNames = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA index_list(" + InventoryDBHelper.TABLE_NAME + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                indexNames.add(cursor.getString(nameIndex));
+            }
+        }
+        for (String indexName : indexNames) {
+            try (Cursor cursor = db.rawQuery("PRAGMA index_xinfo(" + InventoryDBHelper.quoteIdentifier(indexName) + ")", null)) {
+                int nameIndex = cursor.getColumnIndex("name");
+                int collationIndex = cursor.getColumnIndex("coll");
+                // Only the leading column of an index helps a single-column filter
+                if (cursor.moveToFirst() && cursor.getString(nameIndex) != null) {
+                    if (indexName.startsWith(INDEX_PREFIX)) {
+                        advisorIndexed.put(cursor.getString(nameIndex), cursor.getString(collationIndex));
+                    } else {
+                        otherIndexed.add(cursor.getString(nameIndex));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void createSchema(SQLiteDatabase db) {
+        QueryWorkload.createSchema(db);
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ADVISOR_LOG + " (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "decided_at INTEGER NOT NULL, " +
+                "action TEXT NOT NULL, " +
+                "column_name TEXT NOT NULL, " +
+                "estimated_bytes INTEGER, " +
+                "probe_before_us INTEGER, " +
+                "probe_after_us INTEGER);");
+    }
+}
@@ -0,0 +1,517 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * InventoryBackup.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryBackup copies the whole live database, every table and every dynamic column, to a backup file while the app
+ * keeps reading and writing. The database runs in WAL mode, so the copy reads one snapshot on its own connection while
+ * the UI, imports and sync keep writing on theirs. Backups can be gzip-compressed, and a restore is verified
+ * before and after it replaces the live data.
+ *
+ * Components:
+ * - String METHOD_VACUUM_INTO, METHOD_INCREMENTAL: How a backup was taken.
+ * - BackupResult: The backup file, the method, its size, the row count of every table and the time taken.
+ *
+ * Functions:
+ * - backup(Context context, File file): Backs up the active database; a file name ending in ".gz" is compressed.
+ * - restore(Context context, File file): Replaces the active database's data with a verified backup.
+ * - verify(File file): Runs an integrity check on an uncompressed backup and returns the row count of every table.
+ *
+ * Note:
+ * - On Android 11 and later SQLite supports VACUUM INTO, which writes a compact, consistent copy in one statement.
+ *   Older versions copy every table inside one read transaction, so all tables come from the same snapshot; the large
+ *   tables are read in chunks of COPY_CHUNK_ROWS rows to bound memory. Android only offers a deferred read transaction
+ *   from Android 15 (see InventoryDBHelper.beginReadTransaction), so on the releases that take this path the copy holds
+ *   the write lock and writers wait for it.
+ * - Earlier versions left a "backup" journal checkpoint while copying; one left behind by a crash is removed by the next
+ *   backup so it cannot keep the journal from being pruned.
+ * - ATTACH is not used: Android turns WAL off for connections with attached databases.
+ * - A restore first brings an older backup up to the current schema, then replaces every table's rows in one
+ *   transaction, with the triggers dropped so the restore is not journaled as changes. The transaction only commits
+ *   if every table ends up with the backup's row count, so a failed restore leaves the inventory untouched.
+ * - The restored data version is set above the live one it replaces, so every QueryResultCache drops the lists it read
+ *   before the restore instead of serving them until the older, copied counter catches up.
+ * - Backups and restores do blocking I/O and must be called from a background thread. Reload the item list after a restore.
+ */
+public class InventoryBackup {
+
+    private static final String TAG = "InventoryBackup";
+
+    public static final String METHOD_VACUUM_INTO = "vacuum_into";
+    public static final String METHOD_INCREMENTAL = "incremental";
+
+    private static final String JOURNAL_CHECKPOINT = "backup";
+    private static final int COPY_CHUNK_ROWS = 2000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Tables that can grow large; they are copied in chunks, the rest in one pass at the end
+    private static final List<String> LARGE_TABLES = Arrays.asList(
+            InventoryDBHelper.TABLE_NAME, ChangeJournal.TABLE_CHANGES, StockHistory.TABLE_MOVEMENTS);
+
+    private InventoryBackup() {
+    }
+
+    /**
+     * The outcome of a backup.
+     */
+    public static class BackupResult {
+        public final File file;
+        public final String method;
+        public final long bytes;
+        public final Map<String, Long> rowCounts;
+        public final long durationMs;
+
+        BackupResult(File file, String method, long bytes, Map<String, Long> rowCounts, long durationMs) {
+            this.file = file;
+            this.method = method;
+            this.bytes = bytes;
+            this.rowCounts = rowCounts;
+            this.durationMs = durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + " (" + method + ", " + bytes + " bytes, " + durationMs + " ms): " + rowCounts;
+        }
+    }
+
+    // A table, index, trigger or view of a schema
+    private static class SchemaObject {
+        final String type;
+        final String name;
+        final String sql;
+
+        SchemaObject(String type, String name, String sql) {
+            this.type = type;
+            this.name = name;
+            this.sql = sql;
+        }
+
+        boolean isTable() {
+            return "table".equals(type);
+        }
+
+        boolean hasRowid() {
+            return !sql.toUpperCase(Locale.US).replaceAll("\\s+", " ").contains("WITHOUT ROWID");
+        }
+    }
+
+    /**
+     * Backs up the active database to a file without blocking writers. The backup is verified before it is kept.
+     * @param context The context of the application.
+     * @param file The backup file; compressed with gzip when the name ends in ".gz".
+     * @return The backup and the row count of every table in it.
+     * @throws IOException If the copy fails or does not verify.
+     */
+    public static BackupResult backup(Context context, File file) throws IOException {
+        long start = System.currentTimeMillis();
+        boolean compress = CsvStreams.isGzipFileName(file.getName());
+        File copy = compress ? new File(file.getPath() + ".tmp") : file;
+        SQLiteDatabase.deleteDatabase(copy);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace " + file);
+        }
+
+        // A helper of its own, so the copy reads on a connection the app does not write with
+        InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+        String method;
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            method = METHOD_INCREMENTAL;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                try {
+                    db.execSQL("VACUUM INTO ?", new Object[]{copy.getPath()});
+                    method = METHOD_VACUUM_INTO;
+                } catch (SQLiteException e) {
+                    Log.e(TAG, "VACUUM INTO failed, copying incrementally: " + e.getMessage());
+                    SQLiteDatabase.deleteDatabase(copy);
+                }
+            }
+            if (METHOD_INCREMENTAL.equals(method)) {
+                copyIncrementally(db, copy);
+            }
+        } catch (SQLiteException e) {
+            SQLiteDatabase.deleteDatabase(copy);
+            throw new IOException("Backup failed: " + e.getMessage(), e);
+        } finally {
+            helper.close();
+        }
+
+        Map<String, Long> rowCounts;
+        try {
+            rowCounts = verify(copy);
+            if (compress) {
+                compress(copy, file);
+            }
+        } catch (IOException e) {
+            // A backup that does not verify is never left behind to be restored later
+            SQLiteDatabase.deleteDatabase(copy);
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "Could not delete unverified backup " + file);
+            }
+            throw e;
+        } finally {
+            if (compress) {
+                SQLiteDatabase.deleteDatabase(copy);
+            }
+        }
+        BackupResult result = new BackupResult(file, method, file.length(), rowCounts, System.currentTimeMillis() - start);
+        Log.d(TAG, "Backup written: " + result);
+        return result;
+    }
+
+    /**
+     * Runs an integrity check on an uncompressed backup.
+     * @param file The backup database file.
+     * @return The row count of every table.
+     * @throws IOException If the file is not a sound inventory database.
+     */
+    public static Map<String, Long> verify(File file) throws IOException {
+        SQLiteDatabase db;
+        try {
+            db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        } catch (SQLiteException e) {
+            throw new IOException("Cannot open backup " + file.getName() + ": " + e.getMessage(), e);
+        }
+        try {
+            try (Cursor cursor = db.rawQuery("PRAGMA integrity_check", null)) {
+                String status = cursor.moveToFirst() ? cursor.getString(0) : null;
+                if (!"ok".equals(status)) {
+                    throw new IOException("Backup " + file.getName() + " failed the integrity check: " + status);
+                }
+            }
+            Map<String, Long> rowCounts = new LinkedHashMap<>();
+            for (SchemaObject table : readSchema(db)) {
+                if (table.isTable()) {
+                    rowCounts.put(table.name, countRows(db, table.name));
+                }
+            }
+            if (!rowCounts.containsKey(InventoryDBHelper.TABLE_NAME)) {
+                throw new IOException(file.getName() + " is not an inventory backup");
+            }
+            return rowCounts;
+        } catch (SQLiteException e) {
+            throw new IOException("Cannot read backup " + file.getName() + ": " + e.getMessage(), e);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Replaces the data of the active database with a backup. The backup is checked, brought up to the current schema
+     * and copied in one transaction that only commits when the row counts match.
+     * @param context The context of the application.
+     * @param file The backup file, plain or gzip-compressed.
+     * @return The row count of every restored table.
+     * @throws IOException If the backup is unreadable or does not verify, in which case nothing is changed.
+     */
+    public static Map<String, Long> restore(Context context, File file) throws IOException {
+        File staged = context.getDatabasePath("restore_" + System.currentTimeMillis() + ".db");
+        try {
+            try (InputStream in = CsvStreams.openStream(new FileInputStream(file), BUFFER_SIZE);
+                 OutputStream out = new FileOutputStream(staged)) {
+                copyStream(in, out);
+            }
+            verify(staged);
+
+            SQLiteDatabase source = SQLiteDatabase.openDatabase(staged.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+            try {
+                InventoryDBHelper.upgradeDetached(source);
+                Map<String, Long> rowCounts = replaceData(source, helper.getWritableDatabase());
+                Log.d(TAG, "Restored " + file.getName() + ": " + rowCounts);
+                return rowCounts;
+            } catch (SQLiteException e) {
+                throw new IOException("Restore failed: " + e.getMessage(), e);
+            } finally {
+                source.close();
+                helper.close();
+            }
+        } finally {
+            SQLiteDatabase.deleteDatabase(staged);
+        }
+    }
+
+    // Copies the live database table by table, all inside one read transaction so the copy is a single snapshot
+    private static void copyIncrementally(SQLiteDatabase source, File file) {
+        // A checkpoint left by an interrupted backup would pin the journal forever
+        source.delete(ChangeJournal.TABLE_CHECKPOINTS, ChangeJournal.COL_CHECKPOINT_NAME + " = ?",
+                new String[]{JOURNAL_CHECKPOINT});
+        SQLiteDatabase target = SQLiteDatabase.openOrCreateDatabase(file, null);
+        InventoryDBHelper.beginReadTransaction(source);
+        try {
+            List<SchemaObject> schema = readSchema(source);
+            for (SchemaObject object : schema) {
+                if (object.isTable()) {
+                    target.execSQL(object.sql);
+                }
+            }
+
+            // Large tables: chunks in row id order, each committed to the target on its own
+            for (String table : LARGE_TABLES) {
+                if (hasTable(schema, table)) {
+                    long lastRowid = 0;
+                    while (lastRowid >= 0) {
+                        target.beginTransaction();
+                        try {
+                            lastRowid = copyChunk(source, target, table, lastRowid);
+                            target.setTransactionSuccessful();
+                        } finally {
+                            target.endTransaction();
+                        }
+                    }
+                }
+            }
+
+            // Small tables in one pass each, then the indexes and triggers on the finished tables
+            target.beginTransaction();
+            try {
+                for (SchemaObject object : schema) {
+                    if (object.isTable() && !LARGE_TABLES.contains(object.name)) {
+                        target.delete(quote(object.name), null, null);
+                        copyRows(source, target, object.name, null, null);
+                    }
+                }
+                target.delete("sqlite_sequence", null, null);
+                copyRows(source, target, "sqlite_sequence", null, null);
+                for (SchemaObject object : schema) {
+                    if (!object.isTable()) {
+                        target.execSQL(object.sql);
+                    }
+                }
+                target.setVersion(source.getVersion());
+                target.setTransactionSuccessful();
+            } finally {
+                target.endTransaction();
+            }
+            source.setTransactionSuccessful();
+        } finally {
+            source.endTransaction();
+            target.close();
+        }
+    }
+
+    // Copies up to COPY_CHUNK_ROWS rows after a row id, returning the last row id copied or -1 when there were none
+    private static long copyChunk(SQLiteDatabase source, SQLiteDatabase target, String table, long afterRowid) {
+        long lastRowid = -1;
+        try (Cursor cursor = QueryExecutor.rawQuery(source, "SELECT rowid, * FROM " + quote(table) +
+                " WHERE rowid > ? ORDER BY rowid LIMIT " +
+                COPY_CHUNK_ROWS, new String[]{String.valueOf(afterRowid)});
+             SQLiteStatement insert = target.compileStatement(buildInsertSql(table, cursor, 1))) {
+            while (cursor.moveToNext()) {
+                bindRow(insert, cursor, 1);
+                insert.executeInsert();
+                lastRowid = cursor.getLong(0);
+            }
+        }
+        return lastRowid;
+    }
+
+    // Copies the rows of a table matching a condition, inside the caller's target transaction
+    private static long copyRows(SQLiteDatabase source, SQLiteDatabase target, String table, String where, String[] args) {
+        long rows = 0;
+        try (Cursor cursor = QueryExecutor.rawQuery(source, "SELECT * FROM " + quote(table) +
+                (where != null ? " WHERE " + where : ""), args)) {
+            if (cursor.getColumnCount() == 0) {
+                return 0;
+            }
+            try (SQLiteStatement insert = target.compileStatement(buildInsertSql(table, cursor, 0))) {
+                while (cursor.moveToNext()) {
+                    bindRow(insert, cursor, 0);
+                    insert.executeInsert();
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Replaces the rows of every table of the live database with the rows of the backup, in one transaction
+    private static Map<String, Long> replaceData(SQLiteDatabase source, SQLiteDatabase live) throws IOException {
+        List<SchemaObject> sourceSchema = readSchema(source);
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        live.beginTransaction();
+        try {
+            long liveVersion = QueryResultCache.getDataVersion(live);
+            List<SchemaObject> liveSchema = readSchema(live);
+            List<SchemaObject> triggers = new ArrayList<>();
+            for (SchemaObject object : liveSchema) {
+                if ("trigger".equals(object.type)) {
+                    triggers.add(object);
+                    live.execSQL("DROP TRIGGER " + quote(object.name));
+                }
+            }
+
+            for (SchemaObject table : sourceSchema) {
+                if (!table.isTable()) {
+                    continue;
+                }
+                if (!hasTable(liveSchema, table.name)) {
+                    live.execSQL(table.sql);
+                } else {
+                    addMissingColumns(source, live, table.name);
+                }
+                live.delete(quote(table.name), null, null);
+                if (table.hasRowid()) {
+                    long lastRowid = 0;
+                    while (lastRowid >= 0) {
+                        lastRowid = copyChunk(source, live, table.name, lastRowid);
+                    }
+                } else {
+                    copyRows(source, live, table.name, null, null);
+                }
+
+                long expected = countRows(source, table.name);
+                long restored = countRows(live, table.name);
+                if (expected != restored) {
+                    throw new IOException("Restored " + restored + " of " + expected + " rows of " + table.name);
+                }
+                rowCounts.put(table.name, restored);
+            }
+            live.delete("sqlite_sequence", null, null);
+            copyRows(source, live, "sqlite_sequence", null, null);
+
+            // The copied version is the backup's, usually lower than the live one; move past both so caches invalidate
+            long restoredVersion = QueryResultCache.getDataVersion(live);
+            live.execSQL("INSERT OR REPLACE INTO " + QueryResultCache.TABLE_DATA_VERSION + " (id, version) VALUES (1, ?)",
+                    new Object[]{Math.max(liveVersion, restoredVersion) + 1});
+
+            for (SchemaObject trigger : triggers) {
+                live.execSQL(trigger.sql);
+            }
+            live.setTransactionSuccessful();
+            return rowCounts;
+        } finally {
+            live.endTransaction();
+        }
+    }
+
+    // Adds the columns of a backup table that the live table does not have, such as dynamic item columns
+    private static void addMissingColumns(SQLiteDatabase source, SQLiteDatabase live, String table) {
+        List<String> liveColumns = new ArrayList<>();
+        try (Cursor cursor = live.rawQuery("PRAGMA table_info(" + quote(table) + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                liveColumns.add(cursor.getString(nameIndex));
+            }
+        }
+        try (Cursor cursor = source.rawQuery("PRAGMA table_info(" + quote(table) + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            int typeIndex = cursor.getColumnIndex("type");
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameIndex);
+                if (!liveColumns.contains(name)) {
+                    live.execSQL("ALTER TABLE " + quote(table) + " ADD COLUMN " + quote(name) + " " + cursor.getString(typeIndex));
+                }
+            }
+        }
+    }
+
+    // Reads the tables, then the indexes, triggers and views, of a database, without SQLite's and Android's own objects
+    private static List<SchemaObject> readSchema(SQLiteDatabase db) {
+        List<SchemaObject> schema = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master WHERE sql IS NOT NULL AND " +
+                "name NOT LIKE 'sqlite_%' AND name <> 'android_metadata' " +
+                "ORDER BY CASE type WHEN 'table' THEN 0 ELSE 1 END", null)) {
+            while (cursor.moveToNext()) {
+                schema.add(new SchemaObject(cursor.getString(0), cursor.getString(1), cursor.getString(2)));
+            }
+        }
+        return schema;
+    }
+
+    private static boolean hasTable(List<SchemaObject> schema, String name) {
+        for (SchemaObject object : schema) {
+            if (object.isTable() && object.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long countRows(SQLiteDatabase db, String table) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT COUNT(*) FROM " + quote(table), null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Builds an INSERT for the cursor's columns from firstColumn on
+    private static String buildInsertSql(String table, Cursor cursor, int firstColumn) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table)).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        String[] names = cursor.getColumnNames();
+        for (int i = firstColumn; i < names.length; i++) {
+            sql.append(i > firstColumn ? ", " : "").append(quote(names[i]));
+            placeholders.append(i > firstColumn ? ", ?" : "?");
+        }
+        return sql.append(") VALUES (").append(placeholders).append(")").toString();
+    }
+
+    // Binds the cursor's current row from firstColumn on, keeping each value's storage type
+    private static void bindRow(SQLiteStatement statement, Cursor cursor, int firstColumn) {
+        statement.clearBindings();
+        for (int i = firstColumn; i < cursor.getColumnCount(); i++) {
+            int index = i - firstColumn + 1;
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    statement.bindNull(index);
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    statement.bindLong(index, cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    statement.bindDouble(index, cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    statement.bindBlob(index, cursor.getBlob(i));
+                    break;
+                default:
+                    statement.bindString(index, cursor.getString(i));
+                    break;
+            }
+        }
+    }
+
+    private static String quote(String name) {
+        return InventoryDBHelper.quoteIdentifier(name);
+    }
+
+    private static void compress(File from, File to) throws IOException {
+        try (InputStream in = new FileInputStream(from);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(to), BUFFER_SIZE)) {
+            copyStream(in, out);
+        }
+    }
+
+    private static void copyStream(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
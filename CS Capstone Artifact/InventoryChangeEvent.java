@@ -0,0 +1,98 @@
+package com.example.project2;
+
+/*
+ * InventoryChangeEvent.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryChangeEvent describes one change made through the data layer: an item inserted, updated or deleted, or a column
+ * added to the items table. Subscribers apply the change to what they already hold instead of reloading every item.
+ *
+ * Components:
+ * - Type: ITEM_INSERTED, ITEM_UPDATED, ITEM_DELETED or COLUMN_ADDED.
+ * - long itemId: The row id of the changed item, -1 for column events.
+ * - Item item: The item as stored after the change, null for deletes and column events.
+ * - String columnName, ColumnType columnType: The added column, null for item events.
+ * - Listener: The interface subscribers implement.
+ *
+ * Functions:
+ * - itemInserted(Item item), itemUpdated(Item item), itemDeleted(long itemId), columnAdded(String columnName, ColumnType type):
+ *   Create the events.
+ * - Getter methods for each component.
+ *
+ * Note:
+ * - Events are published by InventoryEventBus on the main thread, after the change has been committed.
+ */
+public class InventoryChangeEvent {
+
+    public enum Type {
+        ITEM_INSERTED, ITEM_UPDATED, ITEM_DELETED, COLUMN_ADDED
+    }
+
+    /**
+     * Implemented by everything that keeps a view of the inventory up to date.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread after a change was committed.
+         * @param event The change.
+         */
+        void onInventoryChanged(InventoryChangeEvent event);
+    }
+
+    private final Type type;
+    private final long itemId;
+    private final Item item;
+    private final String columnName;
+    private final ColumnType columnType;
+
+    private InventoryChangeEvent(Type type, long itemId, Item item, String columnName, ColumnType columnType) {
+        this.type = type;
+        this.itemId = itemId;
+        this.item = item;
+        this.columnName = columnName;
+        this.columnType = columnType;
+    }
+
+    public static InventoryChangeEvent itemInserted(Item item) {
+        return new InventoryChangeEvent(Type.ITEM_INSERTED, item.getId(), item, null, null);
+    }
+
+    public static InventoryChangeEvent itemUpdated(Item item) {
+        return new InventoryChangeEvent(Type.ITEM_UPDATED, item.getId(), item, null, null);
+    }
+
+    public static InventoryChangeEvent itemDeleted(long itemId) {
+        return new InventoryChangeEvent(Type.ITEM_DELETED, itemId, null, null, null);
+    }
+
+    public static InventoryChangeEvent columnAdded(String columnName, ColumnType columnType) {
+        return new InventoryChangeEvent(Type.COLUMN_ADDED, -1, null, columnName, columnType);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public ColumnType getColumnType() {
+        return columnType;
+    }
+
+    @Override
+    public String toString() {
+        return type + (columnName != null ? " " + columnName : " #" + itemId);
+    }
+}
@@ -4,19 +4,24 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
  * InventoryDBHelper.java
@@ -29,47 +34,322 @@ import java.util.Map;
  * and providing dialog boxes to handle these functions.
  *
  * Components:
- * - String DATABASE_NAME: The name of the SQLite database.
+ * - String databaseName: The database file, the active user's shard from InventoryShardManager unless given.
  * - int DATABASE_VERSION: The version of the SQLite database schema.
  * - String TABLE_NAME: The name of the table storing inventory items.
  * - String COL_ID: The name of the column storing the unique identifier for each item.
  * - String COL_NAME: The name of the column storing the item name.
  * - String COL_PART_NUMBER: The name of the column storing the part number of the item.
  * - String COL_QUANTITY: The name of the column storing the quantity of the item.
- * - ItemAdapter adapter: Adapter to update RecyclerView when data changes.
+ * - SchemaMigrator MIGRATOR: Ordered, data-preserving migration steps for every schema version.
+ * - QueryWorkload workload: Counts the filters and sorts run on each column, read by the IndexAdvisor.
+ * - QueryResultCache resultCache: Recent query results, served while the items table's data version is unchanged.
+ *   Both are shared by every helper on the same database file.
  * - static final String TABLE_CREATE: SQL query to create the table for storing inventory items.
  *
  * Functions:
- * - Constructor: Initializes the InventoryDBHelper with the database name, version, and other parameters.
- * - onCreate(SQLiteDatabase db): Called when the database is created for the first time. Creates the item table.
+ * - Constructor: Initializes the InventoryDBHelper with the database name, version, and other parameters,
+ *   and points the QueryExecutor slow-query log at the app's files directory. Without a database name the
+ *   active shard is opened. The database runs in write-ahead logging mode.
+ * - onConfigure(SQLiteDatabase db): Turns on incremental vacuum for new database files.
+ * - onCreate(SQLiteDatabase db): Called when the database is created for the first time. Creates the version 1
+ *   item table and applies every migration step on top of it.
  * - onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion): Called when the database needs to be upgraded.
- *   Drops the existing table and creates a new one.
- * - addNewColumn(String columnName): Adds a new column to the table.
- * - addNewColumnDialog(Context context): Displays a dialog for adding a new column.
+ *   Runs the migration steps between the two versions without dropping any data.
+ * - onOpen(SQLiteDatabase db): Sizes the connection's prepared-statement cache and resumes chunked background
+ *   migrations that have not finished yet.
+ * - upgradeDetached(SQLiteDatabase db): Runs the migration steps on a database opened without a helper.
+ * - getMigrationReport(): Returns the state and timing of every migration step.
+ * - getQueryWorkload(): Returns the workload counters recorded by the query methods on this database.
+ * - getResultCache(): Returns the query result cache of this database, for its metrics.
+ * - addNewColumn(String columnName): Adds a new TEXT column to the table.
+ * - addNewColumn(String columnName, ColumnType type): Adds a new column with a declared type and records it in the catalog.
+ * - addNewColumnDialog(Context context): Displays a dialog for adding a new column with its type.
+ * - getColumnTypes(): Retrieves the declared type of every column.
+ * - getInventoryTotals(): Retrieves the item count and total quantity from the trigger-maintained summary.
+ * - getGroupSummary(String columnName): Retrieves the item count and total quantity per value of a column.
  * - showAddItemDialog(Context context, DynamicFieldsAdapter dynamicFieldsAdapter): Displays a dialog for adding a new item.
  * - insertItem(String name, String partNumber, int quantity, Map<String, String> dynamicValues): Inserts a new item into the database.
+ * - updateQuantity(long itemId, int quantity): Sets the quantity of an item.
+ * - deleteItem(long itemId): Deletes an item.
+ * - getItem(long itemId): Retrieves one item by its row id.
  * - getAllColumnNames(): Retrieves all column names from the table.
+ * - getFormColumns(): Retrieves the dynamic columns of the add-item form, cached until the table's schema changes.
  * - getAllItems(): Retrieves all items from the database, including dynamically added columns.
+ * - getAllItems(String orderByColumn, boolean ascending): Same as above, sorted natively by SQLite on a typed column.
+ * - queryItems(Map<String, String> equalityFilters, List<RangePredicate> ranges): Retrieves the items matching equality
+ *   filters and numeric ranges; the conditions run in SQLite and use the secondary indexes.
+ * - compileFilter(Map<String, String> equalityFilters, List<FilterCompiler.Condition> conditions): Compiles a filter map
+ *   and equals, prefix, in and range conditions to a parameterized WHERE clause.
+ * - queryItems(FilterCompiler.CompiledFilter filter): Retrieves the items matching a compiled filter.
+ * - queryItemsPage(FilterCompiler.CompiledFilter filter, long afterId, int pageSize): Retrieves the next page of matching
+ *   items after a row id, in row id order.
+ * - ensureIndex(SQLiteDatabase db, String columnName): Creates a secondary index on a column if it does not exist.
  * - getAllDynamicColumnNames(): Retrieves all dynamic column names from the table.
  * - columnExists(String columnName): Checks if a column exists in the table.
+ * - quoteIdentifier(String name): Quotes a table or column name for use in SQL.
+ * - beginReadTransaction(SQLiteDatabase db): Begins a transaction that only reads, on one consistent snapshot.
+ * - isBuiltInColumn(String columnName): Checks if a column is part of the fixed table definition.
  *
  * Note:
  * - This class encapsulates database operations related to inventory management.
  * - It provides methods to interact with the database, manage schema changes, and handle user inputs.
  * - The class facilitates adding new items and columns to the database, retrieving items, and checking column existence.
+ * - Every committed insert, update, delete and new column is published as an InventoryChangeEvent through
+ *   InventoryEventBus, so subscribers apply the one change instead of reloading all items.
+ * - The query and insert methods leave the connection open, so SQLite's statement cache keeps each filter shape compiled
+ *   between queries. The owner of the helper closes it when it is done with it.
  */
 
 public class InventoryDBHelper extends SQLiteOpenHelper {
     // Database constants
-    private static final String DATABASE_NAME = "inventory.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 12;
     public static final String TABLE_NAME = "items";
     private static final String COL_ID = "_id";
     public static final String COL_NAME = "item_name";
     public static final String COL_PART_NUMBER = "part_number";
     public static final String COL_QUANTITY = "quantity";
 
-    private ItemAdapter adapter; // Adapter to update RecyclerView
+    private final Context context; // Context used to open the background migration connection
+    private final String databaseName; // Database file of this helper's shard
+    private final QueryWorkload workload;
+    private final QueryResultCache resultCache;
+
+    // Column use recorded by the query methods and query results, shared by every helper on the same database file
+    private static final ConcurrentHashMap<String, QueryWorkload> WORKLOADS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, QueryResultCache> RESULT_CACHES = new ConcurrentHashMap<>();
+    // Add-item form columns by database file, with the schema version they were read at
+    private static final ConcurrentHashMap<String, FormSchema> FORM_SCHEMAS = new ConcurrentHashMap<>();
+
+    // The dynamic columns of the add-item form, valid while SQLite's schema version is unchanged
+    private static class FormSchema {
+        final long schemaVersion;
+        final List<String> columnNames;
+
+        FormSchema(long schemaVersion, List<String> columnNames) {
+            this.schemaVersion = schemaVersion;
+            this.columnNames = columnNames;
+        }
+    }
+
+    // Prepared statements kept per connection, enough for the common filter shapes to stay compiled
+    private static final int SQL_CACHE_SIZE = 50;
+
+    // Migration steps, in the order they were introduced
+    private static final SchemaMigrator MIGRATOR = new SchemaMigrator("InventoryDBHelper")
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 2;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_change_journal";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ChangeJournal.createSchema(db);
+                }
+            })
+            .addChunkedMigration(new SchemaMigrator.ChunkedMigration() {
+                @Override
+                public int getVersion() {
+                    return 2;
+                }
+
+                @Override
+                public String getName() {
+                    return "seed_change_journal";
+                }
+
+                @Override
+                public long getUpperBound(SQLiteDatabase db) {
+                    try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT IFNULL(MAX(_id), 0) FROM " + TABLE_NAME, null)) {
+                        return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+                    }
+                }
+
+                @Override
+                public int processChunk(SQLiteDatabase db, long afterRowId, long upToRowId) {
+                    return ChangeJournal.seedExistingItems(db, afterRowId, upToRowId);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 3;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_column_catalog";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ColumnCatalog.createSchema(db);
+                    ColumnCatalog.backfillFromTable(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 4;
+                }
+
+                @Override
+                public String getName() {
+                    return "index_numeric_columns";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    // Range filters run on quantity and the numeric dynamic columns
+                    ensureIndex(db, COL_QUANTITY);
+                    for (Map.Entry<String, ColumnType> entry : ColumnCatalog.getColumnTypes(db).entrySet()) {
+                        if (!isBuiltInColumn(entry.getKey()) && entry.getValue().isNumeric()) {
+                            ensureIndex(db, entry.getKey());
+                        }
+                    }
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 5;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_inventory_summaries";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    InventoryReport.createSchema(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 6;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_data_version";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    QueryResultCache.createSchema(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 7;
+                }
+
+                @Override
+                public String getName() {
+                    return "prepare_sync";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    // Quantity deltas and origins for the journal, and the part number lookup sync matches items on
+                    ChangeJournal.addSyncColumns(db);
+                    SyncEngine.createSchema(db);
+                    ensureIndex(db, COL_PART_NUMBER);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 8;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_import_jobs";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ImportJobs.createSchema(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 9;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_stock_history";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    // Existing quantities become opening movements, so stock history starts from the real balance
+                    StockHistory.createSchema(db);
+                    StockHistory.seedOpeningBalances(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 10;
+                }
+
+                @Override
+                public String getName() {
+                    return "create_pending_scans";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ScanIngestor.createSchema(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 11;
+                }
+
+                @Override
+                public String getName() {
+                    return "add_import_file_identity";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ImportJobs.addFileIdentityColumns(db);
+                }
+            })
+            .addMigration(new SchemaMigrator.Migration() {
+                @Override
+                public int getVersion() {
+                    return 12;
+                }
+
+                @Override
+                public String getName() {
+                    return "register_delta_export";
+                }
+
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    // The delta export only saves a checkpoint after its first export; without one, a sync would prune
+                    // the changes that export still has to write
+                    ChangeJournal.registerConsumer(db, CsvExporter.DELTA_CHECKPOINT);
+                }
+            });
 
     // SQL query to create the table
     private static final String TABLE_CREATE =
@@ -80,49 +360,152 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
                     COL_QUANTITY + " INTEGER);";
 
     public InventoryDBHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, InventoryShardManager.getActiveDatabaseName());
+    }
+
+    public InventoryDBHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        this.context = context;
+        this.databaseName = databaseName;
+        QueryExecutor.setLogDirectory(context.getFilesDir());
+        // Readers, such as a running backup, see a snapshot and never block the writer
+        setWriteAheadLoggingEnabled(true);
+
+        QueryWorkload newWorkload = new QueryWorkload();
+        QueryWorkload existingWorkload = WORKLOADS.putIfAbsent(databaseName, newWorkload);
+        workload = existingWorkload != null ? existingWorkload : newWorkload;
+        QueryResultCache newCache = new QueryResultCache();
+        QueryResultCache existingCache = RESULT_CACHES.putIfAbsent(databaseName, newCache);
+        resultCache = existingCache != null ? existingCache : newCache;
+    }
+
+    // Method to quote a table or column name, so user-defined column names are safe to use in SQL
+    public static String quoteIdentifier(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    // Method to begin a transaction that only reads. From Android 15 it is deferred: it sees one snapshot and, under
+    // write-ahead logging, never blocks writers. Older releases have no deferred mode, so the transaction is immediate
+    // there and writers wait for it to end.
+    public static void beginReadTransaction(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM) {
+            db.beginTransactionReadOnly();
+        } else {
+            db.beginTransactionNonExclusive();
+        }
+    }
+
+    // Method to create a secondary index on a column of the items table if it does not exist yet
+    public static void ensureIndex(SQLiteDatabase db, String columnName) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + quoteIdentifier("idx_" + TABLE_NAME + "_" + columnName) +
+                " ON " + TABLE_NAME + " (" + quoteIdentifier(columnName) + ")");
+    }
+
+    // Method to check if a column is part of the fixed table definition rather than user-defined
+    public static boolean isBuiltInColumn(String columnName) {
+        return columnName.equals(COL_ID) || columnName.equals(COL_NAME)
+                || columnName.equals(COL_PART_NUMBER) || columnName.equals(COL_QUANTITY);
+    }
+
+    // Method called when a connection is configured, before the database is created or upgraded
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Only takes effect on a new file; DatabaseMaintenance converts existing ones
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
     }
 
     // Method called when the database is created for the first time
     @Override
     public void onCreate(SQLiteDatabase db) {
+        // Create the version 1 table, then bring it up to date with the same steps an upgrade runs
         db.execSQL(TABLE_CREATE);
+        MIGRATOR.upgrade(db, 1, DATABASE_VERSION);
         Log.d("InventoryDBHelper", "Database created successfully");
     }
 
     // Method called when the database needs to be upgraded
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop the existing table
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-
-        // Create the table again
-        db.execSQL(TABLE_CREATE);
+        // Schema steps run here, heavy data rewrites are queued for the background runner
+        MIGRATOR.upgrade(db, oldVersion, newVersion);
         Log.d("InventoryDBHelper", "Database upgraded successfully");
     }
 
-    // Method to add a new column to the table
+    // Method called every time the database is opened
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        db.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+        // Continue unfinished chunked migrations on a separate connection
+        MIGRATOR.runPendingInBackground(new InventoryDBHelper(context, databaseName));
+    }
+
+    // Method to bring a database opened outside a helper, such as a backup being restored, up to the current schema
+    static void upgradeDetached(SQLiteDatabase db) {
+        int version = db.getVersion();
+        if (version > DATABASE_VERSION) {
+            throw new SQLiteException("Database version " + version + " is newer than this app's " + DATABASE_VERSION);
+        }
+        if (version < DATABASE_VERSION) {
+            db.beginTransaction();
+            try {
+                MIGRATOR.upgrade(db, version, DATABASE_VERSION);
+                db.setVersion(DATABASE_VERSION);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    // Method to retrieve the state and timing of every migration step
+    public List<String> getMigrationReport() {
+        return MIGRATOR.getMigrationReport(getWritableDatabase());
+    }
+
+    // Method to retrieve the workload counters the IndexAdvisor bases its decisions on
+    public QueryWorkload getQueryWorkload() {
+        return workload;
+    }
+
+    // Method to retrieve the query result cache of this database
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    // Method to add a new text column to the table
     public void addNewColumn(String columnName) {
+        addNewColumn(columnName, ColumnType.TEXT);
+    }
+
+    // Method to add a new column with a declared type to the table and record the type in the catalog
+    public void addNewColumn(String columnName, ColumnType type) {
         SQLiteDatabase db = null;
         try {
             db = this.getWritableDatabase();
-            String query = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + columnName + " ";
+            String query = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + quoteIdentifier(columnName) + " " + type.getSqlType();
             Log.d("InventoryDBHelper", "Executing query: " + query);
-            db.execSQL(query);
-            Log.d("InventoryDBHelper", "Column " + columnName + " added successfully");
-
-            // Notify the adapter about the change in the dataset
-            if (adapter != null) {
-                adapter.updateData(getAllItems());
-                Log.d("InventoryDBHelper", "Adapter notified about dataset change");
+            db.beginTransaction();
+            try {
+                db.execSQL(query);
+                ColumnCatalog.register(db, columnName, type);
+                // Cached results do not have the new column yet
+                QueryResultCache.bumpDataVersion(db);
+                if (type.isNumeric()) {
+                    // Numeric columns are the ones range filters and sorts run on
+                    ensureIndex(db, columnName);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
+            Log.d("InventoryDBHelper", "Column " + columnName + " added successfully as " + type);
+
+            // Notify subscribers about the new column
+            InventoryEventBus.publish(InventoryChangeEvent.columnAdded(columnName, type));
         } catch (Exception e) {
             Log.e("InventoryDBHelper", "Error adding column " + columnName + ": " + e.getMessage());
-        } finally {
-            // Close the database if it's open
-            if (db != null && db.isOpen()) {
-                db.close();
-            }
         }
     }
 
@@ -139,7 +522,13 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
         builder.setPositiveButton("Add", (dialog, which) -> {
             // Retrieve column name and type from EditText fields and call addNewColumn method
             String columnName = columnNameEditText.getText().toString().trim();
-            addNewColumn(columnName);
+            String columnType = columnTypeEditText.getText().toString().trim();
+            try {
+                addNewColumn(columnName, ColumnType.fromString(columnType));
+            } catch (IllegalArgumentException e) {
+                Log.e("InventoryDBHelper", e.getMessage());
+                Toast.makeText(context, "Column type must be INTEGER, REAL, TEXT or DATE", Toast.LENGTH_SHORT).show();
+            }
         });
 
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
@@ -160,21 +549,14 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
             EditText editTextQuantity = dialogView.findViewById(R.id.editQuantity);
             RecyclerView dynamicFieldsRecyclerView = dialogView.findViewById(R.id.recyclerViewDynamicFields);
 
-            // Get column names dynamically every time the dialog is shown
-            List<String> columnNames = getAllColumnNames();
-
-            // Set the layout manager for the RecyclerView
-            dynamicFieldsRecyclerView.setLayoutManager(new LinearLayoutManager(context, RecyclerView.VERTICAL, false));
+            // Show one empty field per dynamic column, the columns only change when the schema does
+            dynamicFieldsAdapter.setColumns(getFormColumns());
 
-            // Clear existing dynamic fields adapter and add new ones
-            dynamicFieldsAdapter.clear();
-
-            for (String columnName : columnNames) {
-                View dynamicFieldView = LayoutInflater.from(context).inflate(R.layout.item_dynamic_field, null);
-                EditText editText = dynamicFieldView.findViewById(R.id.editTextDynamicField);
-                editText.setHint(columnName); // Set the hint with the column name
-                dynamicFieldsAdapter.addEditText(columnName, editText);
-            }
+            // Set the layout manager for the RecyclerView, returning the field views to the shared pool when the dialog closes
+            LinearLayoutManager layoutManager = new LinearLayoutManager(context, RecyclerView.VERTICAL, false);
+            layoutManager.setRecycleChildrenOnDetach(true);
+            dynamicFieldsRecyclerView.setLayoutManager(layoutManager);
+            dynamicFieldsRecyclerView.setRecycledViewPool(dynamicFieldsAdapter.getViewPool());
 
             // Set the adapter for dynamic fields RecyclerView
             dynamicFieldsRecyclerView.setAdapter(dynamicFieldsAdapter);
@@ -186,22 +568,14 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
                     String partNumber = editTextPartNumber.getText().toString().trim();
                     int quantity = Integer.parseInt(editTextQuantity.getText().toString().trim());
 
-                    // Create a map to store dynamically added columns and their values
-                    Map<String, String> dynamicValues = new HashMap<>();
-                    for (String columnName : columnNames) {
-                        EditText editText = dynamicFieldsAdapter.getEditText(columnName);
-                        String columnValue = editText.getText().toString().trim();
-                        dynamicValues.put(columnName, columnValue);
-                    }
+                    // Dynamically added columns and their values, kept by the adapter as they are typed
+                    Map<String, String> dynamicValues = dynamicFieldsAdapter.getValues();
 
                     // Call the insertItem method with item details and dynamic values
                     long newRowId = insertItem(name, partNumber, quantity, dynamicValues);
 
                     if (newRowId != -1) {
-                        if (adapter != null) {
-                            adapter.updateData(getAllItems());
-                            Log.d("InventoryDBHelper", "Adapter notified about dataset change");
-                        }
+                        // insertItem published the new row, subscribers add it without a reload
                         Log.d("InventoryDBHelper", "Item added successfully");
                     } else {
                         Log.e("InventoryDBHelper", "Failed to add item to database");
@@ -235,9 +609,9 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
             values.put(COL_PART_NUMBER, partNumber);
             values.put(COL_QUANTITY, quantity);
 
-            // Create a new Item object and set its dynamic values
+            // Create a new Item object and set its dynamic values, converted to each column's declared type
             Item item = new Item(name, partNumber, quantity, dynamicValues);
-            item.setDynamicValues(values); // Call the setDynamicValues method
+            item.setDynamicValues(values, ColumnCatalog.getColumnTypes(db));
 
             // Log the ContentValues object before insertion
             Log.d("InventoryDBHelper", "ContentValues for insertion: " + values);
@@ -247,20 +621,61 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
             Log.d("InventoryDBHelper", "Inserted row with ID: " + newRowId);
         } catch (Exception e) {
             Log.e("InventoryDBHelper", "Error during insertion: " + e.getMessage());
-        } finally {
-            // Close the database connection if it's open
-            if (db != null) {
-                db.close();
+        }
+
+        // Notify subscribers with the row as stored, including converted dynamic values
+        if (newRowId != -1) {
+            Item inserted = getItem(newRowId);
+            if (inserted != null) {
+                InventoryEventBus.publish(InventoryChangeEvent.itemInserted(inserted));
             }
         }
         return newRowId;
     }
 
+    // Method to set the quantity of an item
+    public boolean updateQuantity(long itemId, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(COL_QUANTITY, quantity);
+        int rows = 0;
+        try {
+            rows = getWritableDatabase().update(TABLE_NAME, values, COL_ID + " = ?", new String[]{String.valueOf(itemId)});
+        } catch (Exception e) {
+            Log.e("InventoryDBHelper", "Error updating item " + itemId + ": " + e.getMessage());
+        }
+        if (rows > 0) {
+            Item updated = getItem(itemId);
+            if (updated != null) {
+                InventoryEventBus.publish(InventoryChangeEvent.itemUpdated(updated));
+            }
+        }
+        return rows > 0;
+    }
+
+    // Method to delete an item
+    public boolean deleteItem(long itemId) {
+        int rows = 0;
+        try {
+            rows = getWritableDatabase().delete(TABLE_NAME, COL_ID + " = ?", new String[]{String.valueOf(itemId)});
+        } catch (Exception e) {
+            Log.e("InventoryDBHelper", "Error deleting item " + itemId + ": " + e.getMessage());
+        }
+        if (rows > 0) {
+            InventoryEventBus.publish(InventoryChangeEvent.itemDeleted(itemId));
+        }
+        return rows > 0;
+    }
+
+    // Method to retrieve one item by its row id, or null if it does not exist
+    public Item getItem(long itemId) {
+        List<Item> items = loadItems(COL_ID + " = ?", new String[]{String.valueOf(itemId)}, null, true, "1");
+        return items.isEmpty() ? null : items.get(0);
+    }
+
     // Method to retrieve all column names from the table
     public List<String> getAllColumnNames() {
         List<String> columnNames = new ArrayList<>();
-        try (SQLiteDatabase db = this.getReadableDatabase();
-             Cursor cursor = db.rawQuery("PRAGMA table_info(" + TABLE_NAME + ")", null)) {
+        try (Cursor cursor = this.getReadableDatabase().rawQuery("PRAGMA table_info(" + TABLE_NAME + ")", null)) {
             if (cursor != null) {
                 int nameIndex = cursor.getColumnIndex("name");
                 while (cursor.moveToNext()) {
@@ -281,18 +696,126 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
         return columnNames;
     }
 
+    // Method to retrieve the dynamic columns of the add-item form, re-read only after a column was added or restored
+    public List<String> getFormColumns() {
+        long schemaVersion = -1;
+        try (Cursor cursor = getReadableDatabase().rawQuery("PRAGMA schema_version", null)) {
+            if (cursor.moveToFirst()) {
+                schemaVersion = cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.e("InventoryDBHelper", "Error reading schema version: " + e.getMessage());
+        }
+        FormSchema schema = FORM_SCHEMAS.get(databaseName);
+        if (schema == null || schema.schemaVersion != schemaVersion || schemaVersion == -1) {
+            schema = new FormSchema(schemaVersion, Collections.unmodifiableList(getAllColumnNames()));
+            FORM_SCHEMAS.put(databaseName, schema);
+        }
+        return schema.columnNames;
+    }
+
+    // Method to retrieve the declared type of every column
+    public Map<String, ColumnType> getColumnTypes() {
+        return ColumnCatalog.getColumnTypes(getReadableDatabase());
+    }
+
+    // Method to retrieve the item count and total quantity without reading the items
+    public InventoryReport.Totals getInventoryTotals() {
+        return InventoryReport.getTotals(getReadableDatabase());
+    }
+
+    // Method to retrieve the item count and total quantity per value of a column, such as a supplier or category
+    public List<InventoryReport.GroupSummary> getGroupSummary(String columnName) {
+        return InventoryReport.getGroupSummary(getWritableDatabase(), columnName);
+    }
+
     // Method to retrieve all items from the database, including only user-defined columns
     public List<Item> getAllItems() {
+        return getAllItems(null, true);
+    }
+
+    // Method to retrieve all items sorted by SQLite on a column, using the column's native type for the comparison
+    public List<Item> getAllItems(String orderByColumn, boolean ascending) {
+        return cachedLoadItems("all|" + orderByColumn + "|" + ascending, null, null, orderByColumn, ascending, null);
+    }
+
+    // Method to retrieve the items matching equality filters and numeric ranges, evaluated by SQLite with its indexes
+    public List<Item> queryItems(Map<String, String> equalityFilters, List<RangePredicate> ranges) {
+        List<FilterCompiler.Condition> conditions = new ArrayList<>();
+        for (RangePredicate range : ranges) {
+            conditions.add(FilterCompiler.Condition.range(range));
+        }
+        return queryItems(compileFilter(equalityFilters, conditions));
+    }
+
+    // Method to compile a filter map plus equals, prefix, in and range conditions to a parameterized WHERE clause
+    public FilterCompiler.CompiledFilter compileFilter(Map<String, String> equalityFilters, List<FilterCompiler.Condition> conditions) {
+        FilterCompiler.CompiledFilter filter = FilterCompiler.compile(getColumnTypes(), equalityFilters, conditions);
+        for (FilterCompiler.Condition condition : filter.getConditions()) {
+            workload.record(condition.getColumnName(),
+                    condition.getOperator() == FilterCompiler.Operator.PREFIX ? QueryWorkload.SEARCH : QueryWorkload.FILTER);
+        }
+        return filter;
+    }
+
+    // Method to retrieve every item matching a compiled filter
+    public List<Item> queryItems(FilterCompiler.CompiledFilter filter) {
+        return cachedLoadItems(cacheKey(filter, null), filter.getSelection(), filter.getArguments(), null, true, null);
+    }
+
+    // Method to retrieve the next page of items matching a compiled filter, keyed on the row id so pages stay cheap to seek
+    public List<Item> queryItemsPage(FilterCompiler.CompiledFilter filter, long afterId, int pageSize) {
+        String keyset = COL_ID + " > ?";
+        String selection = filter.getSelection() == null ? keyset : "(" + filter.getSelection() + ") AND " + keyset;
+        String[] arguments = new String[filter.getArguments().length + 1];
+        System.arraycopy(filter.getArguments(), 0, arguments, 0, filter.getArguments().length);
+        arguments[arguments.length - 1] = String.valueOf(afterId);
+        return cachedLoadItems(cacheKey(filter, "|after=" + afterId + "|size=" + pageSize), selection, arguments,
+                COL_ID, true, String.valueOf(pageSize));
+    }
+
+    // Method to build the cache key of a filter: its shape, its values and the page if any
+    private static String cacheKey(FilterCompiler.CompiledFilter filter, String page) {
+        StringBuilder key = new StringBuilder("filter|").append(filter.getShape());
+        for (String argument : filter.getArguments()) {
+            // Length-prefixed so values containing the separator cannot collide
+            key.append('|').append(argument.length()).append(':').append(argument);
+        }
+        return page == null ? key.toString() : key.append(page).toString();
+    }
+
+    // Method to serve a query from the result cache, reading it from SQLite on a miss
+    private List<Item> cachedLoadItems(String key, String selection, String[] selectionArgs, String orderByColumn,
+                                       boolean ascending, String limit) {
+        long dataVersion;
+        try {
+            // Read the version before the items, so a write during the load makes the entry stale rather than wrong
+            dataVersion = QueryResultCache.getDataVersion(getReadableDatabase());
+        } catch (Exception e) {
+            Log.e("InventoryDBHelper", "Error reading data version: " + e.getMessage());
+            return loadItems(selection, selectionArgs, orderByColumn, ascending, limit);
+        }
+        List<Item> items = resultCache.get(key, dataVersion);
+        if (items == null) {
+            items = loadItems(selection, selectionArgs, orderByColumn, ascending, limit);
+            resultCache.put(key, dataVersion, items);
+        }
+        return items;
+    }
+
+    // Method to read the items matching a selection, with typed dynamic values
+    private List<Item> loadItems(String selection, String[] selectionArgs, String orderByColumn, boolean ascending, String limit) {
         List<Item> itemList = new ArrayList<>();
         SQLiteDatabase db = null;
         Cursor cursor = null;
 
         try {
-            db = this.getReadableDatabase();
-
-            // Retrieve dynamically added column names
+            // Retrieve dynamically added column names first
             List<String> dynamicColumnNames = getAllDynamicColumnNames();
 
+            db = this.getReadableDatabase();
+            Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+
             // Create a projection including only user-defined columns
             String[] projection = new String[dynamicColumnNames.size() + 4];
             projection[0] = COL_NAME;
@@ -300,15 +823,25 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
             projection[2] = COL_QUANTITY;
             projection[3] = COL_ID;
             for (int i = 0; i < dynamicColumnNames.size(); i++) {
-                projection[i + 4] = dynamicColumnNames.get(i);
+                projection[i + 4] = quoteIdentifier(dynamicColumnNames.get(i));
             }
 
-            cursor = db.query(TABLE_NAME, projection, null, null, null, null, null);
+            // Only sort on columns that actually exist
+            String orderBy = null;
+            if (orderByColumn != null && (isBuiltInColumn(orderByColumn) || dynamicColumnNames.contains(orderByColumn))) {
+                orderBy = quoteIdentifier(orderByColumn) + (ascending ? " ASC" : " DESC");
+                if (!orderByColumn.equals(COL_ID)) {
+                    workload.record(orderByColumn, QueryWorkload.SORT);
+                }
+            }
+
+            cursor = QueryExecutor.query(db, TABLE_NAME, projection, selection, selectionArgs, orderBy, limit);
 
             if (cursor != null) {
                 int nameIndex = cursor.getColumnIndex(COL_NAME);
                 int partNumberIndex = cursor.getColumnIndex(COL_PART_NUMBER);
                 int quantityIndex = cursor.getColumnIndex(COL_QUANTITY);
+                int idIndex = cursor.getColumnIndex(COL_ID);
 
                 while (cursor.moveToNext()) {
                     // Check if quantity column index is valid
@@ -317,15 +850,19 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
                         String partNumber = cursor.getString(partNumberIndex);
                         int quantity = cursor.getInt(quantityIndex);
 
-                        // Create a map to store dynamically added columns
+                        // Create maps to store dynamically added columns as display text and as typed values
                         Map<String, String> dynamicColumns = new HashMap<>();
+                        Map<String, Object> typedColumns = new HashMap<>();
 
                         // Retrieve dynamically added column values
                         for (String columnName : dynamicColumnNames) {
                             int columnIndex = cursor.getColumnIndex(columnName);
                             if (columnIndex >= 0) {
-                                String columnValue = cursor.getString(columnIndex);
+                                ColumnType type = columnTypes.containsKey(columnName) ? columnTypes.get(columnName) : ColumnType.TEXT;
+                                Object typedValue = readTypedValue(cursor, columnIndex);
+                                String columnValue = type.format(typedValue);
                                 dynamicColumns.put(columnName, columnValue);
+                                typedColumns.put(columnName, typedValue);
                                 Log.d("getAllItems", "Column: " + columnName + ", Value: " + columnValue);
                             } else {
                                 Log.e("getAllItems", "Column index for " + columnName + " is not found");
@@ -335,7 +872,8 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
                         // Add the item only if all required columns are found
                         if (name != null && partNumber != null && quantity >= 0) {
                             // Create Item object with static and dynamic values
-                            Item item = new Item(name, partNumber, quantity, dynamicColumns);
+                            Item item = new Item(name, partNumber, quantity, dynamicColumns, typedColumns);
+                            item.setId(cursor.getLong(idIndex));
                             itemList.add(item);
                         } else {
                             Log.e("getAllItems", "One or more required columns are missing or quantity is negative");
@@ -350,23 +888,33 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
         } catch (Exception e) {
             Log.e("getAllItems", "Error retrieving items: " + e.getMessage());
         } finally {
-            // Close the cursor and database connection
+            // Close the cursor, the connection stays open for the next query
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
 
         return itemList;
     }
 
+    // Method to read a cursor value with the storage type SQLite kept for it
+    static Object readTypedValue(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(columnIndex);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(columnIndex);
+            default:
+                return cursor.getString(columnIndex);
+        }
+    }
+
     // Method to retrieve all dynamic column names from the table
     public List<String> getAllDynamicColumnNames() {
         List<String> dynamicColumnNames = new ArrayList<>();
-        try (SQLiteDatabase db = this.getReadableDatabase();
-             Cursor cursor = db.rawQuery("PRAGMA table_info(" + TABLE_NAME + ")", null)) {
+        try (Cursor cursor = this.getReadableDatabase().rawQuery("PRAGMA table_info(" + TABLE_NAME + ")", null)) {
             if (cursor != null) {
                 int nameIndex = cursor.getColumnIndex("name");
                 while (cursor.moveToNext()) {
@@ -413,7 +961,6 @@ public class InventoryDBHelper extends SQLiteOpenHelper {
             if (cursor != null) {
                 cursor.close();
             }
-            db.close();
         }
         return result;
     }
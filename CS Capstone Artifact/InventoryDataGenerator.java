@@ -0,0 +1,376 @@
+package com.example.project2;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/*
+ * InventoryDataGenerator.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryDataGenerator produces synthetic inventories for load and scale testing: N items with an item name, part number
+ * and quantity, plus any number of dynamic columns. Each column has a type, a cardinality (the number of distinct values)
+ * and a distribution, uniform or Zipf with a configurable skew, so filters, sorts and group summaries see realistic
+ * value frequencies. The same seed always produces the same rows, whether they are written to a database or to a CSV file.
+ *
+ * Components:
+ * - Distribution: UNIFORM picks every value equally often; ZIPF picks the k-th value with weight 1 / k^skew.
+ * - ColumnSpec: The name, type, cardinality, distribution and skew of a generated column.
+ *
+ * Functions:
+ * - Constructor(long rows, long seed): Creates a generator with the built-in columns only.
+ * - standard(long rows, int dynamicColumns, long seed): Creates a generator with a typical mix of dynamic columns.
+ * - addColumn(String name, ColumnType type, int cardinality, Distribution distribution, double skew): Adds a dynamic column.
+ * - getColumns(): Returns the dynamic columns.
+ * - writeToDatabase(SQLiteDatabase db): Adds the items to a database, creating and cataloguing missing columns.
+ * - writeCsv(File file): Writes the items as a CSV file in the format CsvImporter reads, gzip-compressed for ".gz" names.
+ *
+ * Note:
+ * - Part numbers are unique per row (GEN-0000001 and so on), item names and quantities follow their own specs.
+ * - Zipf sampling uses a cumulative table of the column's cardinality, so very high cardinalities cost memory:
+ *   8 bytes per distinct value. Uniform columns need no table.
+ * - Database writes use one compiled INSERT and commit every BATCH_ROWS rows. The items table's triggers still run, so
+ *   the change journal, stock history and summary grow the way they do for real inserts.
+ * - CSV text of columns with up to CSV_CACHE_LIMIT values is formatted once and reused; a generator is not thread-safe.
+ */
+public class InventoryDataGenerator {
+
+    private static final String TAG = "InventoryDataGenerator";
+
+    public static final int BATCH_ROWS = 10000;
+    public static final int MAX_ZIPF_CARDINALITY = 1 << 22;
+    // Columns with at most this many values keep their CSV text instead of formatting it on every row
+    private static final int CSV_CACHE_LIMIT = 1 << 16;
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    // 2020-01-01 UTC, the first generated date
+    private static final long FIRST_DATE_MS = 1577836800000L;
+
+    private static final String[] NAME_ADJECTIVES = {
+            "Steel", "Brass", "Nylon", "Copper", "Plastic", "Rubber", "Aluminum", "Heavy", "Compact", "Insulated",
+            "Galvanized", "Stainless", "Threaded", "Flexible", "Reinforced", "Coated"
+    };
+    private static final String[] NAME_NOUNS = {
+            "Bolt", "Washer", "Bracket", "Hinge", "Cable", "Fuse", "Valve", "Gasket", "Bearing", "Spring",
+            "Connector", "Clamp", "Relay", "Filter", "Sensor", "Switch", "Pulley", "Coupling", "Fitting", "Panel"
+    };
+
+    private final long rows;
+    private final long seed;
+    private final List<ColumnSpec> columns = new ArrayList<>();
+    private ColumnSpec nameSpec;
+    private ColumnSpec quantitySpec;
+
+    /**
+     * How often each value of a column is picked.
+     */
+    public enum Distribution {
+        UNIFORM, ZIPF
+    }
+
+    /**
+     * A generated column and how its values are drawn.
+     */
+    public static class ColumnSpec {
+        public final String name;
+        public final ColumnType type;
+        public final int cardinality;
+        public final Distribution distribution;
+        public final double skew;
+        // Cumulative probabilities of the Zipf ranks, null for uniform columns
+        private final double[] cumulative;
+        // CSV text of each value index, filled in as values are drawn
+        private String[] csvCache;
+
+        ColumnSpec(String name, ColumnType type, int cardinality, Distribution distribution, double skew) {
+            if (cardinality < 1) {
+                throw new IllegalArgumentException("Column " + name + " needs at least one value");
+            }
+            if (distribution == Distribution.ZIPF && cardinality > MAX_ZIPF_CARDINALITY) {
+                throw new IllegalArgumentException("Zipf column " + name + " is limited to " + MAX_ZIPF_CARDINALITY + " values");
+            }
+            this.name = name;
+            this.type = type;
+            this.cardinality = cardinality;
+            this.distribution = distribution;
+            this.skew = skew;
+            this.cumulative = distribution == Distribution.ZIPF ? buildZipfTable(cardinality, skew) : null;
+        }
+
+        // Returns the index of the next value, 0 being the most frequent for Zipf columns
+        int next(Random random) {
+            if (cumulative == null) {
+                return random.nextInt(cardinality);
+            }
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cardinality - 1);
+        }
+
+        private static double[] buildZipfTable(int cardinality, double skew) {
+            double[] table = new double[cardinality];
+            double sum = 0;
+            for (int k = 0; k < cardinality; k++) {
+                sum += 1.0 / Math.pow(k + 1, skew);
+                table[k] = sum;
+            }
+            for (int k = 0; k < cardinality; k++) {
+                table[k] /= sum;
+            }
+            return table;
+        }
+    }
+
+    public InventoryDataGenerator(long rows, long seed) {
+        this.rows = rows;
+        this.seed = seed;
+        int names = (int) Math.max(1, Math.min(rows / 4, NAME_ADJECTIVES.length * NAME_NOUNS.length * 100L));
+        nameSpec = new ColumnSpec(InventoryDBHelper.COL_NAME, ColumnType.TEXT, names, Distribution.ZIPF, 0.8);
+        // Most items have a few units on hand, a few have many
+        quantitySpec = new ColumnSpec(InventoryDBHelper.COL_QUANTITY, ColumnType.INTEGER, 1000, Distribution.ZIPF, 1.1);
+    }
+
+    /**
+     * Creates a generator with a typical mix of dynamic columns: a low-cardinality skewed category, a supplier, a price,
+     * a received date and then alternating text and integer attributes.
+     * @param rows The number of items.
+     * @param dynamicColumns The number of dynamic columns.
+     * @param seed The random seed.
+     * @return The generator.
+     */
+    public static InventoryDataGenerator standard(long rows, int dynamicColumns, long seed) {
+        InventoryDataGenerator generator = new InventoryDataGenerator(rows, seed);
+        for (int i = 0; i < dynamicColumns; i++) {
+            switch (i) {
+                case 0:
+                    generator.addColumn("category", ColumnType.TEXT, 20, Distribution.ZIPF, 1.2);
+                    break;
+                case 1:
+                    generator.addColumn("supplier", ColumnType.TEXT, 500, Distribution.ZIPF, 1.0);
+                    break;
+                case 2:
+                    generator.addColumn("unit_price", ColumnType.REAL, 5000, Distribution.UNIFORM, 0);
+                    break;
+                case 3:
+                    generator.addColumn("received_on", ColumnType.DATE, 2000, Distribution.UNIFORM, 0);
+                    break;
+                default:
+                    generator.addColumn("attribute_" + (i - 3), i % 2 == 0 ? ColumnType.TEXT : ColumnType.INTEGER,
+                            100 * (i - 3), Distribution.ZIPF, 0.9);
+                    break;
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Adds a dynamic column.
+     * @param name The column name.
+     * @param type The declared type.
+     * @param cardinality The number of distinct values.
+     * @param distribution How often each value is picked.
+     * @param skew The Zipf exponent, ignored for uniform columns; 0 is uniform, around 1 is typical of real data.
+     * @return This generator.
+     */
+    public InventoryDataGenerator addColumn(String name, ColumnType type, int cardinality, Distribution distribution,
+                                            double skew) {
+        if (InventoryDBHelper.isBuiltInColumn(name)) {
+            throw new IllegalArgumentException(name + " is a built-in column");
+        }
+        columns.add(new ColumnSpec(name, type, cardinality, distribution, skew));
+        return this;
+    }
+
+    public List<ColumnSpec> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Adds the generated items to a database, creating and cataloguing the dynamic columns it does not have yet.
+     * @param db The database instance.
+     * @return The number of items inserted.
+     */
+    public long writeToDatabase(SQLiteDatabase db) {
+        long start = System.currentTimeMillis();
+        Set<String> existing = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + InventoryDBHelper.TABLE_NAME + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                existing.add(cursor.getString(nameIndex));
+            }
+        }
+        for (ColumnSpec column : columns) {
+            if (!existing.contains(column.name)) {
+                db.execSQL("ALTER TABLE " + InventoryDBHelper.TABLE_NAME + " ADD COLUMN " +
+                        InventoryDBHelper.quoteIdentifier(column.name) + " " + column.type.getSqlType());
+            }
+            ColumnCatalog.register(db, column.name, column.type);
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (" +
+                InventoryDBHelper.COL_NAME + ", " + InventoryDBHelper.COL_PART_NUMBER + ", " + InventoryDBHelper.COL_QUANTITY);
+        StringBuilder placeholders = new StringBuilder("?, ?, ?");
+        for (ColumnSpec column : columns) {
+            sql.append(", ").append(InventoryDBHelper.quoteIdentifier(column.name));
+            placeholders.append(", ?");
+        }
+        sql.append(") VALUES (").append(placeholders).append(")");
+
+        Random random = new Random(seed);
+        int[] row = new int[columns.size() + 2];
+        long written = 0;
+        try (SQLiteStatement insert = db.compileStatement(sql.toString())) {
+            while (written < rows) {
+                long batchEnd = Math.min(rows, written + BATCH_ROWS);
+                db.beginTransaction();
+                try {
+                    for (long i = written; i < batchEnd; i++) {
+                        fillRow(random, row);
+                        insert.clearBindings();
+                        insert.bindString(1, itemName(row[0]));
+                        insert.bindString(2, partNumber(new StringBuilder(11), i).toString());
+                        insert.bindLong(3, row[1]);
+                        for (int c = 0; c < columns.size(); c++) {
+                            bindValue(insert, c + 4, toValue(columns.get(c), row[c + 2]));
+                        }
+                        insert.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                written = batchEnd;
+            }
+        }
+        logRate("database", written, System.currentTimeMillis() - start);
+        return written;
+    }
+
+    /**
+     * Writes the generated items as a CSV file with a header, in the format CsvImporter reads.
+     * @param file The file to write; compressed with gzip when the name ends in ".gz".
+     * @return The number of items written.
+     * @throws IOException If the file cannot be written.
+     */
+    public long writeCsv(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+        int[] row = new int[columns.size() + 2];
+        StringBuilder line = new StringBuilder(256);
+        try (Writer writer = CsvStreams.openWriter(file, CsvStreams.DEFAULT_BUFFER_SIZE)) {
+            line.append(InventoryDBHelper.COL_NAME).append(',').append(InventoryDBHelper.COL_PART_NUMBER).append(',')
+                    .append(InventoryDBHelper.COL_QUANTITY);
+            for (ColumnSpec column : columns) {
+                line.append(',').append(CsvTokenizer.quote(column.name));
+            }
+            writer.append(line).append('\n');
+
+            for (long i = 0; i < rows; i++) {
+                fillRow(random, row);
+                line.setLength(0);
+                line.append(csvText(nameSpec, row[0])).append(',');
+                partNumber(line, i).append(',').append(row[1]);
+                for (int c = 0; c < columns.size(); c++) {
+                    line.append(',').append(csvText(columns.get(c), row[c + 2]));
+                }
+                writer.append(line).append('\n');
+            }
+        }
+        logRate(file.getName(), rows, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    // Draws the value indexes of one item: name, quantity, then the dynamic columns in order
+    private void fillRow(Random random, int[] row) {
+        row[0] = nameSpec.next(random);
+        row[1] = quantitySpec.next(random);
+        for (int c = 0; c < columns.size(); c++) {
+            row[c + 2] = columns.get(c).next(random);
+        }
+    }
+
+    private static String itemName(int index) {
+        return NAME_ADJECTIVES[index % NAME_ADJECTIVES.length] + " " +
+                NAME_NOUNS[(index / NAME_ADJECTIVES.length) % NAME_NOUNS.length] + " " + (index + 1);
+    }
+
+    // Appends the part number of a row, GEN- and the 1-based row number padded to seven digits
+    private static StringBuilder partNumber(StringBuilder out, long rowIndex) {
+        String number = Long.toString(rowIndex + 1);
+        out.append("GEN-");
+        for (int i = number.length(); i < 7; i++) {
+            out.append('0');
+        }
+        return out.append(number);
+    }
+
+    // Returns the CSV field of a value index, quoted when needed and with dates as yyyy-MM-dd
+    private String csvText(ColumnSpec column, int index) {
+        if (column.cardinality <= CSV_CACHE_LIMIT) {
+            if (column.csvCache == null) {
+                column.csvCache = new String[column.cardinality];
+            }
+            String text = column.csvCache[index];
+            if (text == null) {
+                text = formatCsv(column, index);
+                column.csvCache[index] = text;
+            }
+            return text;
+        }
+        return formatCsv(column, index);
+    }
+
+    private String formatCsv(ColumnSpec column, int index) {
+        if (column == nameSpec) {
+            return CsvTokenizer.quote(itemName(index));
+        }
+        Object value = toValue(column, index);
+        if (column.type == ColumnType.DATE) {
+            return ColumnType.DATE.format(value);
+        }
+        return value instanceof String ? CsvTokenizer.quote((String) value) : value.toString();
+    }
+
+    // Maps a value index to the stored value of a column's type
+    private static Object toValue(ColumnSpec column, int index) {
+        switch (column.type) {
+            case INTEGER:
+                return (long) index;
+            case REAL:
+                // Prices to the cent, spread over the cardinality
+                return (index + 1) * 0.25 + 0.99;
+            case DATE:
+                return FIRST_DATE_MS + index * DAY_MS;
+            default:
+                return column.name + "-" + index;
+        }
+    }
+
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Long) {
+            statement.bindLong(index, (Long) value);
+        } else if (value instanceof Double) {
+            statement.bindDouble(index, (Double) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+
+    private static void logRate(String target, long rows, long elapsedMs) {
+        long perMinute = elapsedMs > 0 ? rows * 60000 / elapsedMs : rows;
+        Log.d(TAG, "Generated " + rows + " items into " + target + " in " + elapsedMs + " ms (" + perMinute + " rows/min)");
+    }
+}
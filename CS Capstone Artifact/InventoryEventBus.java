@@ -0,0 +1,78 @@
+package com.example.project2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * InventoryEventBus.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryEventBus delivers InventoryChangeEvents from the data layer to its subscribers, such as the item list adapter.
+ * Writers publish from any thread; listeners are always called on the main thread, so they can update views directly.
+ *
+ * Functions:
+ * - subscribe(InventoryChangeEvent.Listener listener): Starts delivering events to a listener.
+ * - unsubscribe(InventoryChangeEvent.Listener listener): Stops delivering events to a listener.
+ * - publish(InventoryChangeEvent event): Delivers an event to every listener on the main thread.
+ * - hasListeners(): Checks whether anyone is subscribed, so writers can skip building events nobody receives.
+ *
+ * Note:
+ * - Activities must unsubscribe in onDestroy, the bus holds its listeners strongly.
+ * - A failing listener is logged and does not stop delivery to the others.
+ */
+public class InventoryEventBus {
+
+    private static final String TAG = "InventoryEventBus";
+
+    private static final CopyOnWriteArrayList<InventoryChangeEvent.Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private InventoryEventBus() {
+    }
+
+    public static void subscribe(InventoryChangeEvent.Listener listener) {
+        LISTENERS.addIfAbsent(listener);
+    }
+
+    public static void unsubscribe(InventoryChangeEvent.Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static boolean hasListeners() {
+        return !LISTENERS.isEmpty();
+    }
+
+    /**
+     * Delivers an event to every listener on the main thread, directly when already on it.
+     * @param event The change that was committed.
+     */
+    public static void publish(final InventoryChangeEvent event) {
+        if (LISTENERS.isEmpty()) {
+            return;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            deliver(event);
+        } else {
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(event);
+                }
+            });
+        }
+    }
+
+    private static void deliver(InventoryChangeEvent event) {
+        for (InventoryChangeEvent.Listener listener : LISTENERS) {
+            try {
+                listener.onInventoryChanged(event);
+            } catch (Exception e) {
+                Log.e(TAG, "Listener failed on " + event + ": " + e.getMessage());
+            }
+        }
+    }
+}
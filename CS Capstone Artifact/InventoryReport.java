@@ -0,0 +1,236 @@
+package com.example.project2;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * InventoryReport.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryReport serves inventory totals and per-group aggregates from summary tables that triggers on the items table
+ * keep up to date. Reading a report costs one row for the totals and one row per group, no matter how many items exist.
+ *
+ * Components:
+ * - String TABLE_TOTALS: Single-row table with the item count and the total quantity on hand.
+ * - String TABLE_GROUP_SUMMARY: Item count and total quantity per value of each grouped column.
+ * - Totals: The item count and total quantity.
+ * - GroupSummary: One group of a group-by report.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the summary tables and the totals triggers, and fills the totals.
+ * - getTotals(SQLiteDatabase db): Returns the item count and total quantity.
+ * - enableGroupBy(SQLiteDatabase db, String columnName): Adds the triggers maintaining a group-by on a column and backfills it.
+ * - disableGroupBy(SQLiteDatabase db, String columnName): Removes a group-by and its triggers.
+ * - getGroupSummary(SQLiteDatabase db, String columnName): Returns the groups of a column, enabling the group-by on first use.
+ *
+ * Note:
+ * - Group-bys are only maintained for columns a report has been requested for, every other column costs nothing on writes.
+ * - NULL values are grouped under the empty string, since SQLite does not treat NULLs as equal in a primary key.
+ */
+public class InventoryReport {
+
+    private static final String TAG = "InventoryReport";
+
+    public static final String TABLE_TOTALS = "inventory_totals";
+    public static final String TABLE_GROUP_SUMMARY = "inventory_group_summary";
+    public static final String COL_COLUMN_NAME = "column_name";
+    public static final String COL_GROUP_VALUE = "group_value";
+    public static final String COL_ITEM_COUNT = "item_count";
+    public static final String COL_TOTAL_QUANTITY = "total_quantity";
+
+    private static final String QUANTITY = InventoryDBHelper.COL_QUANTITY;
+
+    /**
+     * The item count and total quantity of the inventory.
+     */
+    public static class Totals {
+        public final long itemCount;
+        public final long totalQuantity;
+
+        public Totals(long itemCount, long totalQuantity) {
+            this.itemCount = itemCount;
+            this.totalQuantity = totalQuantity;
+        }
+    }
+
+    /**
+     * One group of a group-by report: the items sharing a value in the grouped column.
+     */
+    public static class GroupSummary {
+        public final Object value;
+        public final long itemCount;
+        public final long totalQuantity;
+
+        public GroupSummary(Object value, long itemCount, long totalQuantity) {
+            this.value = value;
+            this.itemCount = itemCount;
+            this.totalQuantity = totalQuantity;
+        }
+    }
+
+    /**
+     * Creates the summary tables and the triggers maintaining the totals, then fills the totals from the items table.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        String items = InventoryDBHelper.TABLE_NAME;
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_TOTALS + " (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                COL_ITEM_COUNT + " INTEGER NOT NULL, " +
+                COL_TOTAL_QUANTITY + " INTEGER NOT NULL);");
+        // The group value has no declared type so numbers stay numbers
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_GROUP_SUMMARY + " (" +
+                COL_COLUMN_NAME + " TEXT NOT NULL, " +
+                COL_GROUP_VALUE + " NOT NULL, " +
+                COL_ITEM_COUNT + " INTEGER NOT NULL, " +
+                COL_TOTAL_QUANTITY + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COL_COLUMN_NAME + ", " + COL_GROUP_VALUE + "));");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_totals_insert AFTER INSERT ON " + items +
+                " BEGIN UPDATE " + TABLE_TOTALS + " SET " + COL_ITEM_COUNT + " = " + COL_ITEM_COUNT + " + 1, " +
+                COL_TOTAL_QUANTITY + " = " + COL_TOTAL_QUANTITY + " + IFNULL(NEW." + QUANTITY + ", 0) WHERE id = 1; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_totals_delete AFTER DELETE ON " + items +
+                " BEGIN UPDATE " + TABLE_TOTALS + " SET " + COL_ITEM_COUNT + " = " + COL_ITEM_COUNT + " - 1, " +
+                COL_TOTAL_QUANTITY + " = " + COL_TOTAL_QUANTITY + " - IFNULL(OLD." + QUANTITY + ", 0) WHERE id = 1; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_totals_update AFTER UPDATE OF " + QUANTITY + " ON " + items +
+                " BEGIN UPDATE " + TABLE_TOTALS + " SET " + COL_TOTAL_QUANTITY + " = " + COL_TOTAL_QUANTITY +
+                " - IFNULL(OLD." + QUANTITY + ", 0) + IFNULL(NEW." + QUANTITY + ", 0) WHERE id = 1; END;");
+
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_TOTALS + " (id, " + COL_ITEM_COUNT + ", " + COL_TOTAL_QUANTITY + ")" +
+                " SELECT 1, COUNT(*), IFNULL(SUM(" + QUANTITY + "), 0) FROM " + items);
+        Log.d(TAG, "Summary schema created");
+    }
+
+    /**
+     * Returns the item count and total quantity on hand.
+     * @param db The database instance.
+     * @return The totals.
+     */
+    public static Totals getTotals(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_ITEM_COUNT + ", " + COL_TOTAL_QUANTITY +
+                " FROM " + TABLE_TOTALS + " WHERE id = 1", null)) {
+            if (cursor.moveToFirst()) {
+                return new Totals(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
+        return new Totals(0, 0);
+    }
+
+    /**
+     * Adds the triggers that maintain a group-by on a column and fills its groups from the items table.
+     * @param db The database instance.
+     * @param columnName The column to group by.
+     */
+    public static void enableGroupBy(SQLiteDatabase db, String columnName) {
+        if (!ColumnCatalog.getColumnTypes(db).containsKey(columnName)) {
+            throw new IllegalArgumentException("Unknown column: " + columnName);
+        }
+        String items = InventoryDBHelper.TABLE_NAME;
+        String column = InventoryDBHelper.quoteIdentifier(columnName);
+        String name = quoteLiteral(columnName);
+        String newGroup = "IFNULL(NEW." + column + ", '')";
+        String oldGroup = "IFNULL(OLD." + column + ", '')";
+
+        String addNew = "INSERT OR IGNORE INTO " + TABLE_GROUP_SUMMARY + " VALUES (" + name + ", " + newGroup + ", 0, 0); " +
+                "UPDATE " + TABLE_GROUP_SUMMARY + " SET " + COL_ITEM_COUNT + " = " + COL_ITEM_COUNT + " + 1, " +
+                COL_TOTAL_QUANTITY + " = " + COL_TOTAL_QUANTITY + " + IFNULL(NEW." + QUANTITY + ", 0)" +
+                " WHERE " + COL_COLUMN_NAME + " = " + name + " AND " + COL_GROUP_VALUE + " = " + newGroup + "; ";
+        String removeOld = "UPDATE " + TABLE_GROUP_SUMMARY + " SET " + COL_ITEM_COUNT + " = " + COL_ITEM_COUNT + " - 1, " +
+                COL_TOTAL_QUANTITY + " = " + COL_TOTAL_QUANTITY + " - IFNULL(OLD." + QUANTITY + ", 0)" +
+                " WHERE " + COL_COLUMN_NAME + " = " + name + " AND " + COL_GROUP_VALUE + " = " + oldGroup + "; " +
+                "DELETE FROM " + TABLE_GROUP_SUMMARY + " WHERE " + COL_COLUMN_NAME + " = " + name +
+                " AND " + COL_GROUP_VALUE + " = " + oldGroup + " AND " + COL_ITEM_COUNT + " <= 0; ";
+
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + triggerName(columnName, "insert") + " AFTER INSERT ON " + items +
+                    " BEGIN " + addNew + "END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + triggerName(columnName, "delete") + " AFTER DELETE ON " + items +
+                    " BEGIN " + removeOld + "END;");
+            // Only updates touching the grouped column or the quantity can move an item between groups or totals
+            String updateOf = columnName.equals(QUANTITY) ? column : column + ", " + QUANTITY;
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + triggerName(columnName, "update") + " AFTER UPDATE OF " + updateOf +
+                    " ON " + items + " BEGIN " + removeOld + addNew + "END;");
+
+            db.delete(TABLE_GROUP_SUMMARY, COL_COLUMN_NAME + " = ?", new String[]{columnName});
+            db.execSQL("INSERT INTO " + TABLE_GROUP_SUMMARY + " SELECT " + name + ", IFNULL(" + column + ", ''), COUNT(*), " +
+                    "IFNULL(SUM(" + QUANTITY + "), 0) FROM " + items + " GROUP BY IFNULL(" + column + ", '')");
+            db.setTransactionSuccessful();
+            Log.d(TAG, "Group-by enabled for " + columnName);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Removes the group-by on a column together with its triggers.
+     * @param db The database instance.
+     * @param columnName The grouped column.
+     */
+    public static void disableGroupBy(SQLiteDatabase db, String columnName) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TRIGGER IF EXISTS " + triggerName(columnName, "insert"));
+            db.execSQL("DROP TRIGGER IF EXISTS " + triggerName(columnName, "delete"));
+            db.execSQL("DROP TRIGGER IF EXISTS " + triggerName(columnName, "update"));
+            db.delete(TABLE_GROUP_SUMMARY, COL_COLUMN_NAME + " = ?", new String[]{columnName});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the item count and total quantity of every value of a column, largest quantity first.
+     * The group-by is enabled on first use.
+     * @param db The database instance.
+     * @param columnName The column to group by.
+     * @return The groups.
+     */
+    public static List<GroupSummary> getGroupSummary(SQLiteDatabase db, String columnName) {
+        if (!isGroupByEnabled(db, columnName)) {
+            enableGroupBy(db, columnName);
+        }
+        List<GroupSummary> groups = new ArrayList<>();
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_GROUP_SUMMARY,
+                new String[]{COL_GROUP_VALUE, COL_ITEM_COUNT, COL_TOTAL_QUANTITY},
+                COL_COLUMN_NAME + " = ?", new String[]{columnName}, COL_TOTAL_QUANTITY + " DESC")) {
+            while (cursor.moveToNext()) {
+                Object value;
+                switch (cursor.getType(0)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        value = cursor.getLong(0);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        value = cursor.getDouble(0);
+                        break;
+                    default:
+                        value = cursor.getString(0);
+                }
+                groups.add(new GroupSummary(value, cursor.getLong(1), cursor.getLong(2)));
+            }
+        }
+        return groups;
+    }
+
+    private static boolean isGroupByEnabled(SQLiteDatabase db, String columnName) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'trigger' AND name = ?",
+                new String[]{"trg_summary_" + columnName + "_insert"})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static String triggerName(String columnName, String operation) {
+        return InventoryDBHelper.quoteIdentifier("trg_summary_" + columnName + "_" + operation);
+    }
+
+    // Quotes a column name as an SQL string literal, trigger bodies cannot take bound parameters
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
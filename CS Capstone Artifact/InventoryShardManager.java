@@ -0,0 +1,338 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * InventoryShardManager.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventoryShardManager keeps one inventory database file per user or site, named inventory_<shard>.db.
+ * A shard is opened lazily the first time it is used after login, and at most MAX_OPEN_SHARDS helpers stay open;
+ * the least recently used one is closed when another shard is opened. Read-only queries can run over every shard.
+ *
+ * Components:
+ * - String EXTRA_SHARD_KEY: The Intent extra carrying the logged-in user from MainActivity to SecondActivity.
+ * - int MAX_OPEN_SHARDS: The number of shard helpers kept open.
+ * - ShardReader: Reads a value from one shard, used for cross-shard queries.
+ *
+ * Functions:
+ * - getInstance(Context context): Returns the process-wide manager.
+ * - setActiveShard(String shardKey): Makes a user's or site's inventory the one new InventoryDBHelpers open.
+ * - getActiveDatabaseName(): Returns the database file name of the active shard.
+ * - getActiveHelper(), getHelper(String shardKey): Return the open helper of a shard, opening it if needed.
+ * - listShards(): Returns the key of every shard on the device.
+ * - encodeShardKey(String shardKey), decodeShardKey(String encoded): Convert between a key and its file name part.
+ * - readAcrossShards(ShardReader<T> reader): Runs a read-only query on every shard.
+ * - getTotalsByShard(): Returns the item count and units on hand of every shard.
+ *
+ * Note:
+ * - Until a shard is chosen, the original inventory.db is used. The first user to log in after the upgrade, while no
+ *   shard files exist yet, takes over that file as their shard so existing inventories are kept.
+ * - Shard keys are encoded without loss for the file name: lower-case letters, digits and '-' are kept and every other
+ *   UTF-8 byte becomes '_' and two hex digits, so "Alice" and "alice", or "j.smith" and "j_smith", get separate files.
+ * - Earlier versions lower-cased keys and replaced other characters with '_', so several accounts could share a file.
+ *   Such a file is renamed for the new scheme when exactly one registered account maps to it; a file shared by several
+ *   accounts is left in place and logged rather than handed to whichever of them logs in.
+ * - Cross-shard queries open each file read-only on a separate connection and close it again, they never evict open shards.
+ */
+public class InventoryShardManager {
+
+    private static final String TAG = "InventoryShardManager";
+
+    public static final String EXTRA_SHARD_KEY = "com.example.project2.SHARD_KEY";
+    public static final String LEGACY_DATABASE_NAME = "inventory.db";
+    public static final int MAX_OPEN_SHARDS = 3;
+
+    private static final String SHARD_PREFIX = "inventory_";
+    private static final String SHARD_SUFFIX = ".db";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static volatile String activeDatabaseName = LEGACY_DATABASE_NAME;
+    private static InventoryShardManager instance;
+
+    /**
+     * Reads a value from one shard.
+     * @param <T> The type of the value.
+     */
+    public interface ShardReader<T> {
+        T read(SQLiteDatabase db);
+    }
+
+    private final Context context;
+    private String activeShardKey;
+
+    // Open helpers by database name, in access order so the least recently used is closed first
+    private final LinkedHashMap<String, InventoryDBHelper> openHelpers =
+            new LinkedHashMap<String, InventoryDBHelper>(4, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, InventoryDBHelper> eldest) {
+                    if (size() > MAX_OPEN_SHARDS) {
+                        Log.d(TAG, "Closing idle shard " + eldest.getKey());
+                        eldest.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private InventoryShardManager(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized InventoryShardManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new InventoryShardManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the database file name new InventoryDBHelpers open, the active shard or inventory.db before login.
+     * @return The database file name.
+     */
+    public static String getActiveDatabaseName() {
+        return activeDatabaseName;
+    }
+
+    /**
+     * Returns the database file name of a shard.
+     * @param shardKey The exact user name or site.
+     * @return The file name, for example inventory_jsmith.db, or inventory__4A_53mith.db for JSmith.
+     */
+    public static String databaseNameFor(String shardKey) {
+        return SHARD_PREFIX + encodeShardKey(shardKey) + SHARD_SUFFIX;
+    }
+
+    /**
+     * Encodes a shard key for a file name. Different keys never share a file, even on a case-insensitive file system,
+     * because '_' only ever starts an escape and escapes use upper-case hex while kept letters are lower-case.
+     * @param shardKey The exact user name or site.
+     * @return The encoded key.
+     */
+    public static String encodeShardKey(String shardKey) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : shardKey.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if (isKeptCharacter(c)) {
+                encoded.append((char) c);
+            } else {
+                encoded.append('_').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Decodes the shard key of a file name.
+     * @param encoded The part of the file name between the prefix and ".db".
+     * @return The shard key, or null if the name was not produced by encodeShardKey, such as an old-style name.
+     */
+    public static String decodeShardKey(String encoded) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '_') {
+                if (i + 2 >= encoded.length()) {
+                    return null;
+                }
+                int high = Character.digit(encoded.charAt(i + 1), 16);
+                int low = Character.digit(encoded.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes.write(high << 4 | low);
+                i += 2;
+            } else if (isKeptCharacter(c)) {
+                bytes.write(c);
+            } else {
+                return null;
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isKeptCharacter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
+    }
+
+    // The file name part earlier versions used, which several keys could share
+    private static String oldStyleKey(String shardKey) {
+        return shardKey.trim().toLowerCase(Locale.US).replaceAll("[^a-z0-9_-]", "_");
+    }
+
+    /**
+     * Makes a shard the active one. The file itself is only opened when the shard is first used.
+     * @param shardKey The user name or site.
+     */
+    public synchronized void setActiveShard(String shardKey) {
+        String databaseName = databaseNameFor(shardKey);
+        adoptLegacyDatabase(databaseName);
+        renameOldStyleShard(shardKey, databaseName);
+        activeShardKey = shardKey;
+        activeDatabaseName = databaseName;
+        Log.d(TAG, "Active shard: " + databaseName);
+    }
+
+    public synchronized String getActiveShardKey() {
+        return activeShardKey;
+    }
+
+    /**
+     * Returns the open helper of the active shard, opening it if needed.
+     * @return The helper.
+     */
+    public synchronized InventoryDBHelper getActiveHelper() {
+        return getHelperForDatabase(activeDatabaseName);
+    }
+
+    /**
+     * Returns the open helper of a shard, opening it if needed and closing the least recently used one if too many are open.
+     * @param shardKey The user name or site.
+     * @return The helper.
+     */
+    public synchronized InventoryDBHelper getHelper(String shardKey) {
+        return getHelperForDatabase(databaseNameFor(shardKey));
+    }
+
+    private InventoryDBHelper getHelperForDatabase(String databaseName) {
+        InventoryDBHelper helper = openHelpers.get(databaseName);
+        if (helper == null) {
+            helper = new InventoryDBHelper(context, databaseName);
+            openHelpers.put(databaseName, helper);
+        }
+        return helper;
+    }
+
+    /**
+     * Returns the key of every shard file on the device. Old-style files whose name cannot be decoded are listed by
+     * their file name.
+     * @return The shard keys, sorted.
+     */
+    public List<String> listShards() {
+        List<String> shards = new ArrayList<>(listShardFiles().keySet());
+        Collections.sort(shards);
+        return shards;
+    }
+
+    // Returns the database file name of every shard by shard key
+    private Map<String, String> listShardFiles() {
+        Map<String, String> files = new LinkedHashMap<>();
+        File directory = context.getDatabasePath(LEGACY_DATABASE_NAME).getParentFile();
+        String[] names = directory != null ? directory.list() : null;
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_SUFFIX)) {
+                    String encoded = name.substring(SHARD_PREFIX.length(), name.length() - SHARD_SUFFIX.length());
+                    String key = decodeShardKey(encoded);
+                    files.put(key != null ? key : name, name);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Runs a read-only query on every shard, each on its own read-only connection.
+     * @param reader The query.
+     * @param <T> The type of the value read.
+     * @return The value read from each shard, by shard key. Shards that fail to open are left out.
+     */
+    public <T> Map<String, T> readAcrossShards(ShardReader<T> reader) {
+        Map<String, T> results = new LinkedHashMap<>();
+        Map<String, String> files = listShardFiles();
+        for (String shard : listShards()) {
+            File file = context.getDatabasePath(files.get(shard));
+            SQLiteDatabase db = null;
+            try {
+                db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+                results.put(shard, reader.read(db));
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading shard " + shard + ": " + e.getMessage());
+            } finally {
+                if (db != null) {
+                    db.close();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the item count and units on hand of every shard, read from the summary tables.
+     * @return The totals by shard key.
+     */
+    public Map<String, InventoryReport.Totals> getTotalsByShard() {
+        return readAcrossShards(new ShardReader<InventoryReport.Totals>() {
+            @Override
+            public InventoryReport.Totals read(SQLiteDatabase db) {
+                return InventoryReport.getTotals(db);
+            }
+        });
+    }
+
+    // Renames inventory.db to the first shard when no shard exists yet, so the existing inventory is not lost
+    private void adoptLegacyDatabase(String databaseName) {
+        File legacy = context.getDatabasePath(LEGACY_DATABASE_NAME);
+        File shard = context.getDatabasePath(databaseName);
+        if (!legacy.exists() || shard.exists() || !listShards().isEmpty()) {
+            return;
+        }
+        if (moveDatabase(LEGACY_DATABASE_NAME, databaseName)) {
+            Log.d(TAG, "Existing inventory moved to shard " + databaseName);
+        }
+    }
+
+    // Renames a shard file named by the old lossy scheme to its new name, if it can only belong to this account
+    private void renameOldStyleShard(String shardKey, String databaseName) {
+        String oldKey = oldStyleKey(shardKey);
+        String oldName = SHARD_PREFIX + oldKey + SHARD_SUFFIX;
+        if (oldName.equals(databaseName) || !context.getDatabasePath(oldName).exists()
+                || context.getDatabasePath(databaseName).exists()) {
+            return;
+        }
+        int owners = 0;
+        for (String username : new DBHelper(context).getAllUsernames()) {
+            if (oldStyleKey(username).equals(oldKey)) {
+                owners++;
+            }
+        }
+        if (owners != 1) {
+            Log.e(TAG, oldName + " may belong to any of " + owners + " accounts, leaving it in place");
+            return;
+        }
+        if (moveDatabase(oldName, databaseName)) {
+            Log.d(TAG, "Shard " + oldName + " renamed to " + databaseName);
+        }
+    }
+
+    // Moves a database file with its journal and WAL files, closing its helper first if it is open
+    private boolean moveDatabase(String fromName, String toName) {
+        InventoryDBHelper open = openHelpers.remove(fromName);
+        if (open != null) {
+            open.close();
+        }
+        File from = context.getDatabasePath(fromName);
+        File to = context.getDatabasePath(toName);
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            File file = new File(from.getPath() + suffix);
+            if (file.exists() && !file.renameTo(new File(to.getPath() + suffix))) {
+                Log.e(TAG, "Could not move " + file + " to " + toName);
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,679 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * InventorySnapshot.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventorySnapshot is a compact binary backup format for the items table. Unlike the CSV export it keeps
+ * every column, including dynamically added ones, together with its declared type and the storage type of each value.
+ *
+ * File layout:
+ * - Header: the magic bytes "INVS", a format version byte, the column count and each column's name and declared type.
+ * - Rows: a row marker followed by one tagged value per column. Integers are zigzag varints, reals are 8 bytes,
+ *   short strings are dictionary encoded (first use writes the text, later uses write its index), blobs are length-prefixed.
+ * - Trailer: an end marker followed by the CRC32 of every byte before it.
+ *
+ * Components:
+ * - Column: Name and declared type of a column in the snapshot header.
+ * - SnapshotWriter: Streams rows from a cursor into the binary format; finish() completes the file with the trailer.
+ * - SnapshotReader: Streams rows back out of the binary format and verifies the checksum at the end.
+ *
+ * Functions:
+ * - backup(SQLiteDatabase db, OutputStream outputStream): Writes every row of the items table to a stream.
+ * - restore(SQLiteDatabase db, InputStream inputStream): Replaces the items table with the rows of a snapshot.
+ * - backupToFile(Context context, File file): Backs up the inventory database to a file.
+ * - restoreFromFile(Context context, File file): Restores the inventory database from a file.
+ * - benchmarkAgainstCsv(Context context): Times a snapshot round trip against a CSV file of the same columns, parsed
+ *   and validated the way the importer does.
+ *
+ * Note:
+ * - Restores run in one transaction that is only committed once the checksum has been verified,
+ *   so a truncated or corrupted file leaves the inventory untouched.
+ * - Columns missing from the live table are added with their catalog type before the rows are inserted.
+ * - Stock history logging is suspended while the rows are replaced, so a restore logs one net adjustment per part that
+ *   changed rather than every quantity going out and back in.
+ * - Backups and restores do blocking I/O and must be called from a background thread.
+ * - A backup that fails part way has no trailer, so it can never be restored as if it were complete; backupToFile
+ *   also deletes the file.
+ */
+public class InventorySnapshot {
+
+    private static final String TAG = "InventorySnapshot";
+
+    private static final byte[] MAGIC = {'I', 'N', 'V', 'S'};
+    private static final int FORMAT_VERSION = 1;
+
+    // Record markers
+    private static final int MARKER_END = 0;
+    private static final int MARKER_ROW = 1;
+
+    // Value tags
+    private static final int TAG_NULL = 0;
+    private static final int TAG_INTEGER = 1;
+    private static final int TAG_REAL = 2;
+    private static final int TAG_STRING_NEW = 3;
+    private static final int TAG_STRING_REF = 4;
+    private static final int TAG_STRING_LITERAL = 5;
+    private static final int TAG_BLOB = 6;
+
+    // Strings longer than this, or beyond the dictionary capacity, are written inline
+    private static final int MAX_DICTIONARY_STRING_BYTES = 64;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Name and declared type of a column in the snapshot header.
+     */
+    public static class Column {
+        public final String name;
+        public final String declaredType;
+
+        public Column(String name, String declaredType) {
+            this.name = name;
+            this.declaredType = declaredType != null ? declaredType : "";
+        }
+    }
+
+    /**
+     * Streams rows into the binary snapshot format.
+     */
+    public static class SnapshotWriter implements Closeable {
+
+        private final OutputStream rawStream;
+        private final CheckedOutputStream checkedStream;
+        private final DataOutputStream out;
+        private final int columnCount;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private long rowCount;
+        private boolean finished;
+
+        /**
+         * Writes the snapshot header.
+         * @param outputStream The stream to write to.
+         * @param columns The columns every row will contain, in cursor order.
+         * @throws IOException If the stream fails.
+         */
+        public SnapshotWriter(OutputStream outputStream, List<Column> columns) throws IOException {
+            rawStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+            checkedStream = new CheckedOutputStream(rawStream, new CRC32());
+            out = new DataOutputStream(checkedStream);
+            columnCount = columns.size();
+
+            out.write(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            writeVarint(out, columnCount);
+            for (Column column : columns) {
+                writeString(out, column.name);
+                writeString(out, column.declaredType);
+            }
+        }
+
+        /**
+         * Writes the current row of a cursor whose columns match the header.
+         * @param cursor The cursor positioned on the row.
+         * @throws IOException If the stream fails.
+         */
+        public void writeRow(Cursor cursor) throws IOException {
+            out.writeByte(MARKER_ROW);
+            for (int i = 0; i < columnCount; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        out.writeByte(TAG_NULL);
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        out.writeByte(TAG_INTEGER);
+                        writeVarint(out, zigzag(cursor.getLong(i)));
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        out.writeByte(TAG_REAL);
+                        out.writeDouble(cursor.getDouble(i));
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        byte[] blob = cursor.getBlob(i);
+                        out.writeByte(TAG_BLOB);
+                        writeVarint(out, blob.length);
+                        out.write(blob);
+                        break;
+                    default:
+                        writeDictionaryString(cursor.getString(i));
+                        break;
+                }
+            }
+            rowCount++;
+        }
+
+        private void writeDictionaryString(String value) throws IOException {
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                out.writeByte(TAG_STRING_REF);
+                writeVarint(out, index);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= MAX_DICTIONARY_STRING_BYTES && dictionary.size() < MAX_DICTIONARY_SIZE) {
+                // The reader assigns the same index when it sees the new string
+                dictionary.put(value, dictionary.size());
+                out.writeByte(TAG_STRING_NEW);
+            } else {
+                out.writeByte(TAG_STRING_LITERAL);
+            }
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Returns the number of rows written so far.
+         * @return The row count.
+         */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Writes the end marker and the checksum. Call it only once the last row has been written successfully.
+         * @throws IOException If the stream fails.
+         */
+        public void finish() throws IOException {
+            out.writeByte(MARKER_END);
+            out.flush();
+
+            // The checksum covers everything before it, so it is written past the checked stream
+            long checksum = checkedStream.getChecksum().getValue();
+            DataOutputStream trailer = new DataOutputStream(rawStream);
+            trailer.writeInt((int) checksum);
+            trailer.flush();
+            finished = true;
+        }
+
+        /**
+         * Returns whether finish() completed the snapshot.
+         * @return True if the trailer was written.
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Closes the stream. Without finish() the snapshot has no trailer and readers reject it as truncated.
+         * @throws IOException If the stream fails.
+         */
+        @Override
+        public void close() throws IOException {
+            rawStream.close();
+        }
+    }
+
+    /**
+     * Streams rows out of the binary snapshot format.
+     */
+    public static class SnapshotReader implements Closeable {
+
+        private final InputStream rawStream;
+        private final CheckedInputStream checkedStream;
+        private final DataInputStream in;
+        private final List<Column> columns;
+        private final List<String> dictionary = new ArrayList<>();
+        private boolean finished;
+
+        /**
+         * Reads and validates the snapshot header.
+         * @param inputStream The stream to read from.
+         * @throws IOException If the stream fails or is not a snapshot.
+         */
+        public SnapshotReader(InputStream inputStream) throws IOException {
+            rawStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+            checkedStream = new CheckedInputStream(rawStream, new CRC32());
+            in = new DataInputStream(checkedStream);
+
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not an inventory snapshot");
+                }
+            }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            int columnCount = (int) readVarint(in);
+            List<Column> columnList = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                columnList.add(new Column(readString(in), readString(in)));
+            }
+            columns = Collections.unmodifiableList(columnList);
+        }
+
+        /**
+         * Returns the columns declared in the header.
+         * @return The columns in row order.
+         */
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Reads the next row into an array sized to the column count.
+         * Values are returned as null, Long, Double, String or byte[].
+         * @param values The array to fill.
+         * @return True if a row was read, false at the end of the snapshot once the checksum has been verified.
+         * @throws IOException If the stream fails, is truncated or the checksum does not match.
+         */
+        public boolean readRow(Object[] values) throws IOException {
+            if (finished) {
+                return false;
+            }
+            int marker = in.readUnsignedByte();
+            if (marker == MARKER_END) {
+                verifyChecksum();
+                finished = true;
+                return false;
+            }
+            if (marker != MARKER_ROW) {
+                throw new IOException("Corrupt snapshot, unexpected marker " + marker);
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                values[i] = readValue();
+            }
+            return true;
+        }
+
+        private Object readValue() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_INTEGER:
+                    return unzigzag(readVarint(in));
+                case TAG_REAL:
+                    return in.readDouble();
+                case TAG_STRING_NEW:
+                    String newString = readString(in);
+                    dictionary.add(newString);
+                    return newString;
+                case TAG_STRING_REF:
+                    int index = (int) readVarint(in);
+                    if (index >= dictionary.size()) {
+                        throw new IOException("Corrupt snapshot, unknown string " + index);
+                    }
+                    return dictionary.get(index);
+                case TAG_STRING_LITERAL:
+                    return readString(in);
+                case TAG_BLOB:
+                    byte[] blob = new byte[(int) readVarint(in)];
+                    in.readFully(blob);
+                    return blob;
+                default:
+                    throw new IOException("Corrupt snapshot, unknown value tag " + tag);
+            }
+        }
+
+        private void verifyChecksum() throws IOException {
+            long expected = checkedStream.getChecksum().getValue();
+            int stored = new DataInputStream(rawStream).readInt();
+            if ((int) expected != stored) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            rawStream.close();
+        }
+    }
+
+    /**
+     * Writes every row of the items table to a stream.
+     * @param db The database to read from.
+     * @param outputStream The stream to write to, closed when the backup ends, whether it succeeded or not.
+     * @return The number of rows written.
+     * @throws IOException If the stream fails; the stream then holds an incomplete snapshot without a trailer.
+     */
+    public static long backup(SQLiteDatabase db, OutputStream outputStream) throws IOException {
+        List<Column> columns = readColumns(db);
+        String[] projection = getProjection(columns);
+
+        SnapshotWriter snapshotWriter;
+        try {
+            snapshotWriter = new SnapshotWriter(outputStream, columns);
+        } catch (IOException | RuntimeException e) {
+            outputStream.close();
+            throw e;
+        }
+
+        // Hold a read transaction so the snapshot is consistent with itself
+        InventoryDBHelper.beginReadTransaction(db);
+        try (SnapshotWriter writer = snapshotWriter;
+             Cursor cursor = QueryExecutor.query(db, InventoryDBHelper.TABLE_NAME, projection, null, null, "_id")) {
+            while (cursor.moveToNext()) {
+                writer.writeRow(cursor);
+            }
+            // The trailer is only written once every row is in, so a failed backup is never a valid snapshot
+            writer.finish();
+            db.setTransactionSuccessful();
+            Log.d(TAG, "Snapshot written with " + writer.getRowCount() + " rows");
+            return writer.getRowCount();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Lists the columns of the items table as they appear in a snapshot header
+    private static List<Column> readColumns(SQLiteDatabase db) {
+        // Dynamic columns carry their catalog type so DATE survives the round trip, built-in ones their SQL type
+        Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+        List<Column> columns = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + InventoryDBHelper.TABLE_NAME + ")", null)) {
+            int nameIndex = cursor.getColumnIndex("name");
+            int typeIndex = cursor.getColumnIndex("type");
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameIndex);
+                boolean catalogued = !InventoryDBHelper.isBuiltInColumn(name) && columnTypes.containsKey(name);
+                columns.add(new Column(name, catalogued ? columnTypes.get(name).name() : cursor.getString(typeIndex)));
+            }
+        }
+        return columns;
+    }
+
+    private static String[] getProjection(List<Column> columns) {
+        String[] projection = new String[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            projection[i] = InventoryDBHelper.quoteIdentifier(columns.get(i).name);
+        }
+        return projection;
+    }
+
+    // Maps a header's declared type to a ColumnType, unknown SQL types are read as TEXT
+    private static ColumnType getColumnType(Column column) {
+        try {
+            return ColumnType.fromString(column.declaredType);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Reading column " + column.name + " as TEXT: " + e.getMessage());
+            return ColumnType.TEXT;
+        }
+    }
+
+    /**
+     * Replaces the items table with the rows of a snapshot.
+     * @param db The database to restore into.
+     * @param inputStream The snapshot stream, closed when the restore ends.
+     * @return The number of rows restored.
+     * @throws IOException If the stream fails or the snapshot is corrupt, in which case nothing is changed.
+     */
+    public static long restore(SQLiteDatabase db, InputStream inputStream) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(inputStream)) {
+            List<Column> columns = reader.getColumns();
+
+            db.beginTransaction();
+            try {
+                // Recreate dynamic columns the live table does not have yet
+                List<String> existing = new ArrayList<>();
+                try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + InventoryDBHelper.TABLE_NAME + ")", null)) {
+                    int nameIndex = cursor.getColumnIndex("name");
+                    while (cursor.moveToNext()) {
+                        existing.add(cursor.getString(nameIndex));
+                    }
+                }
+                StringBuilder insertSql = new StringBuilder("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (");
+                StringBuilder placeholders = new StringBuilder();
+                for (int i = 0; i < columns.size(); i++) {
+                    Column column = columns.get(i);
+                    if (!InventoryDBHelper.isBuiltInColumn(column.name)) {
+                        ColumnType type = getColumnType(column);
+                        if (!existing.contains(column.name)) {
+                            db.execSQL("ALTER TABLE " + InventoryDBHelper.TABLE_NAME + " ADD COLUMN " +
+                                    InventoryDBHelper.quoteIdentifier(column.name) + " " + type.getSqlType());
+                        }
+                        ColumnCatalog.register(db, column.name, type);
+                    }
+                    insertSql.append(i > 0 ? ", " : "").append(InventoryDBHelper.quoteIdentifier(column.name));
+                    placeholders.append(i > 0 ? ", ?" : "?");
+                }
+                insertSql.append(") VALUES (").append(placeholders).append(")");
+
+                StockHistory.suspendLogging(db);
+                db.delete(InventoryDBHelper.TABLE_NAME, null, null);
+
+                long rows = 0;
+                Object[] values = new Object[columns.size()];
+                try (SQLiteStatement statement = db.compileStatement(insertSql.toString())) {
+                    while (reader.readRow(values)) {
+                        statement.clearBindings();
+                        for (int i = 0; i < values.length; i++) {
+                            bindValue(statement, i + 1, values[i]);
+                        }
+                        statement.executeInsert();
+                        rows++;
+                    }
+                }
+                StockHistory.resumeLogging(db);
+
+                // readRow only returns false once the checksum matched
+                db.setTransactionSuccessful();
+                Log.d(TAG, "Snapshot restored with " + rows + " rows");
+                return rows;
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Backs up the inventory database to a file.
+     * @param context The context of the application.
+     * @param file The snapshot file to create.
+     * @return The number of rows written.
+     * @throws IOException If the file cannot be written, in which case the partial file is deleted.
+     */
+    public static long backupToFile(Context context, File file) throws IOException {
+        InventoryDBHelper inventoryDBHelper = new InventoryDBHelper(context);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                return backup(inventoryDBHelper.getWritableDatabase(), outputStream);
+            } catch (IOException | RuntimeException e) {
+                // backup has closed the stream already; closing again is harmless and covers an early failure
+                outputStream.close();
+                if (!file.delete()) {
+                    Log.e(TAG, "Could not delete incomplete snapshot " + file.getName());
+                }
+                throw e;
+            }
+        } finally {
+            inventoryDBHelper.close();
+        }
+    }
+
+    /**
+     * Restores the inventory database from a file.
+     * @param context The context of the application.
+     * @param file The snapshot file to read.
+     * @return The number of rows restored.
+     * @throws IOException If the file cannot be read or is corrupt.
+     */
+    public static long restoreFromFile(Context context, File file) throws IOException {
+        InventoryDBHelper inventoryDBHelper = new InventoryDBHelper(context);
+        try {
+            return restore(inventoryDBHelper.getWritableDatabase(), new FileInputStream(file));
+        } finally {
+            inventoryDBHelper.close();
+        }
+    }
+
+    /**
+     * Times a snapshot write and read of the live table against a CSV file of the same columns.
+     * The CSV side quotes and formats every value like the delta export, then reads it back with the importer's
+     * record reader and validator. Nothing is written to the database, both encodings are kept in memory.
+     * @param context The context of the application.
+     * @return A one line summary of sizes and timings, also written to the log.
+     * @throws IOException If encoding fails.
+     */
+    public static String benchmarkAgainstCsv(Context context) throws IOException {
+        InventoryDBHelper inventoryDBHelper = new InventoryDBHelper(context);
+        try {
+            return benchmarkAgainstCsv(inventoryDBHelper.getWritableDatabase());
+        } finally {
+            inventoryDBHelper.close();
+        }
+    }
+
+    private static String benchmarkAgainstCsv(SQLiteDatabase db) throws IOException {
+        List<Column> columns = readColumns(db);
+        String[] projection = getProjection(columns);
+        String[] names = new String[columns.size()];
+        ColumnType[] types = new ColumnType[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            names[i] = columns.get(i).name;
+            types[i] = getColumnType(columns.get(i));
+        }
+
+        // CSV path: every snapshot column, quoted, with dates written as text
+        ByteArrayOutputStream csvBytes = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        try (Writer writer = new OutputStreamWriter(csvBytes, StandardCharsets.UTF_8);
+             Cursor cursor = QueryExecutor.query(db, InventoryDBHelper.TABLE_NAME, projection, null, null, "_id")) {
+            for (int i = 0; i < names.length; i++) {
+                writer.append(i > 0 ? "," : "").append(CsvTokenizer.quote(names[i]));
+            }
+            writer.append("\n");
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < types.length; i++) {
+                    String value = types[i].format(InventoryDBHelper.readTypedValue(cursor, i));
+                    writer.append(i > 0 ? "," : "").append(CsvTokenizer.quote(value));
+                }
+                writer.append("\n");
+            }
+        }
+        long csvWriteNanos = System.nanoTime() - start;
+
+        // Read it back in batches, tokenized, type checked and converted the way an import is
+        start = System.nanoTime();
+        long csvRows = 0;
+        long csvRejects = 0;
+        CsvRowValidator validator = new CsvRowValidator(names, types);
+        try (CsvRecordReader reader = new CsvRecordReader(new ByteArrayInputStream(csvBytes.toByteArray()), BUFFER_SIZE)) {
+            reader.readRecord();
+            CsvRowValidator.RecordBatch records;
+            while ((records = reader.readBatch(CsvImporter.BATCH_ROWS)) != null) {
+                CsvRowValidator.ValidatedBatch batch = validator.validate(records);
+                csvRows += batch.getRows().size();
+                csvRejects += batch.getRejects().size();
+            }
+        }
+        long csvReadNanos = System.nanoTime() - start;
+
+        // Snapshot path: write all columns, then decode and verify
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        backup(db, snapshotBytes);
+        long snapshotWriteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long snapshotRows = 0;
+        try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(snapshotBytes.toByteArray()))) {
+            Object[] values = new Object[reader.getColumns().size()];
+            while (reader.readRow(values)) {
+                snapshotRows++;
+            }
+        }
+        long snapshotReadNanos = System.nanoTime() - start;
+
+        if (csvRejects > 0) {
+            Log.e(TAG, "CSV read back rejected " + csvRejects + " rows");
+        }
+        String summary = "CSV: " + csvRows + " rows, " + csvBytes.size() + " bytes, write " + csvWriteNanos / 1000000 +
+                " ms, read " + csvReadNanos / 1000000 + " ms | Snapshot: " + snapshotRows + " rows, " + snapshotBytes.size() +
+                " bytes, write " + snapshotWriteNanos / 1000000 + " ms, read " + snapshotReadNanos / 1000000 + " ms";
+        Log.d(TAG, summary);
+        return summary;
+    }
+
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Long) {
+            statement.bindLong(index, (Long) value);
+        } else if (value instanceof Double) {
+            statement.bindDouble(index, (Double) value);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, (String) value);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new EOFException("Malformed varint");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
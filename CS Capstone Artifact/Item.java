@@ -1,6 +1,7 @@
 package com.example.project2;
 
 import android.content.ContentValues;
+import java.util.HashMap;
 import java.util.Map;
 
 /*
@@ -13,19 +14,28 @@ import java.util.Map;
  * and dynamic values associated with the item.
  *
  * Components:
+ * - long id: The row id of the item in the database, -1 for items that were not read from it.
  * - String name: The name of the item.
  * - String partNumber: The part number of the item.
  * - int quantity: The quantity of the item.
- * - Map<String, String> dynamicValues: A map containing dynamic values associated with the item.
+ * - Map<String, String> dynamicValues: A map containing dynamic values associated with the item, as display text.
+ * - Map<String, Object> typedValues: The same values as stored by SQLite (Long, Double or String), used for native comparisons.
  *
  * Functionality:
  * - Constructor: Initializes item properties including name, part number, quantity, and dynamic values.
+ *   An overload also takes the typed values read from the database.
+ * - getId(), setId(long id): Getter and setter for the row id, used as the key for paging.
  * - getName(): Getter method to retrieve the name of the item.
  * - getPartNumber(): Getter method to retrieve the part number of the item.
  * - getQuantity(): Getter method to retrieve the quantity of the item.
  * - setDynamicValues(ContentValues values): Sets dynamic values for the item using ContentValues.
  *   It iterates through dynamicValues and adds them to the provided ContentValues object.
+ * - setDynamicValues(ContentValues values, Map<String, ColumnType> columnTypes): Same as above, converting each value
+ *   to its column's declared type so numbers and dates are stored natively.
  * - getDynamicValues(): Getter method to retrieve dynamic values associated with the item.
+ * - getTypedValue(String columnName): Getter method to retrieve a dynamic value as stored (Long, Double or String).
+ * - getNumericValue(String columnName): Getter method to retrieve a dynamic value as a double, or null if it is not numeric.
+ * - compareColumn(Item other, String columnName): Compares two items on a column, numerically when both values are numbers.
  *
  * Note:
  * - This class provides a structured representation of inventory items and their properties.
@@ -33,10 +43,12 @@ import java.util.Map;
  * - The class encapsulates item-related functionalities and supports integration with database operations.
  */
 public class Item {
+    private long id = -1; // Row id of the item, -1 if not read from the database
     private final String name; // Name of the item
     private final String partNumber; // Part number of the item
     private final int quantity; // Quantity of the item
     private Map<String, String> dynamicValues; // Dynamic values associated with the item
+    private final Map<String, Object> typedValues; // Dynamic values as stored, for native comparisons
 
     /**
      * Constructor to initialize item properties.
@@ -46,10 +58,40 @@ public class Item {
      * @param dynamicValues Dynamic values associated with the item
      */
     public Item(String name, String partNumber, int quantity, Map<String, String> dynamicValues) {
+        this(name, partNumber, quantity, dynamicValues,
+                dynamicValues != null ? new HashMap<String, Object>(dynamicValues) : new HashMap<String, Object>());
+    }
+
+    /**
+     * Constructor to initialize item properties with the typed values read from the database.
+     * @param name Name of the item
+     * @param partNumber Part number of the item
+     * @param quantity Quantity of the item
+     * @param dynamicValues Dynamic values associated with the item, as display text
+     * @param typedValues Dynamic values as stored by SQLite
+     */
+    public Item(String name, String partNumber, int quantity, Map<String, String> dynamicValues, Map<String, Object> typedValues) {
         this.name = name;
         this.partNumber = partNumber;
         this.quantity = quantity;
         this.dynamicValues = dynamicValues;
+        this.typedValues = typedValues;
+    }
+
+    /**
+     * Getter method for retrieving the row id.
+     * @return Row id of the item, -1 if it was not read from the database
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Setter method for the row id.
+     * @param id Row id of the item
+     */
+    public void setId(long id) {
+        this.id = id;
     }
 
     /**
@@ -94,6 +136,26 @@ public class Item {
         }
     }
 
+    /**
+     * Method to set dynamic values for the item, converted to each column's declared type.
+     * @param values ContentValues object containing dynamic values
+     * @param columnTypes Declared type of each column, columns missing from the map are stored as text
+     */
+    public void setDynamicValues(ContentValues values, Map<String, ColumnType> columnTypes) {
+        if (dynamicValues != null && !dynamicValues.isEmpty()) {
+            for (Map.Entry<String, String> entry : dynamicValues.entrySet()) {
+                String columnName = entry.getKey();
+                String columnValue = entry.getValue();
+
+                // Check if the column name and value are not null or empty
+                if (columnName != null && !columnName.isEmpty() && columnValue != null) {
+                    ColumnType type = columnTypes.get(columnName);
+                    (type != null ? type : ColumnType.TEXT).putValue(values, columnName, columnValue);
+                }
+            }
+        }
+    }
+
     /**
      * Getter method for retrieving dynamic values associated with the item.
      * @return Dynamic values associated with the item
@@ -101,4 +163,42 @@ public class Item {
     public Map<String, String> getDynamicValues() {
         return dynamicValues;
     }
+
+    /**
+     * Getter method for retrieving a dynamic value as stored by SQLite.
+     * @param columnName The column name
+     * @return A Long, Double or String, or null if the item has no value for the column
+     */
+    public Object getTypedValue(String columnName) {
+        return typedValues.get(columnName);
+    }
+
+    /**
+     * Getter method for retrieving a dynamic value as a number.
+     * @param columnName The column name
+     * @return The numeric value, or null if the value is missing or not a number
+     */
+    public Double getNumericValue(String columnName) {
+        Object value = typedValues.get(columnName);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    /**
+     * Method to compare two items on a column, numerically when both values are numbers and as text otherwise.
+     * Missing values sort first.
+     * @param other The item to compare with
+     * @param columnName The column name
+     * @return A negative number, zero or a positive number as this item sorts before, with or after the other
+     */
+    public int compareColumn(Item other, String columnName) {
+        Object value = getTypedValue(columnName);
+        Object otherValue = other.getTypedValue(columnName);
+        if (value == null || otherValue == null) {
+            return value == null ? (otherValue == null ? 0 : -1) : 1;
+        }
+        if (value instanceof Number && otherValue instanceof Number) {
+            return Double.compare(((Number) value).doubleValue(), ((Number) otherValue).doubleValue());
+        }
+        return String.valueOf(value).compareToIgnoreCase(String.valueOf(otherValue));
+    }
 }
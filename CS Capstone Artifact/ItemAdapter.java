@@ -1,16 +1,22 @@
 package com.example.project2;
 
 import android.content.Context;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /*
  * ItemAdapter.java
@@ -20,42 +26,112 @@ import java.util.Map;
  * Description:
  * ItemAdapter is an adapter class responsible for populating a RecyclerView with items.
  * It facilitates the binding of item data to corresponding views and supports filtering functionality.
+ * It subscribes to InventoryChangeEvents and applies each inserted, updated or deleted item to the list in place.
  *
  * Components:
  * - List<Item> itemList: The list of all items.
  * - List<Item> filteredList: The list of filtered items.
  * - Context context: Reference to the application context for inflating layouts.
+ * - Map<String, String> activeFilter: The filter last applied by filterList, also applied to items arriving by event.
+ * - Map<String, ColumnType> columnTypes: The declared type of each column, used to convert numeric and date filter values.
+ * - Map<Item, RowText> rowTexts: The display text prepared for each item in the adapter, by item identity.
  *
  * Functionality:
  * - Constructor: Initializes the adapter with a list of items and the application context.
  * - onCreateViewHolder(): Inflates the item layout and returns a new ViewHolder instance.
  * - getItemCount(): Retrieves the count of items in the filtered list.
- * - updateData(List<Item> items): Updates the adapter data with the provided list of items.
- * - ViewHolder: Inner static class for holding the views of each item.
- * - onBindViewHolder(): Binds item data to the views of each item in the RecyclerView.
- *   It also logs dynamic values associated with each item.
+ * - updateData(List<Item> items): Replaces the adapter data with the provided list of items, for example the result
+ *   of a query run in SQLite. Short lists dispatch only the differences computed by ItemDiffCallback; longer ones are
+ *   swapped in whole, since the diff runs on the main thread and its cost grows with list length times changes.
+ * - ViewHolder: Inner static class for holding the views of each item, plus recycled TextViews for the dynamic values
+ *   in the layout's dynamicContainer.
+ * - RowText: The part number, quantity and dynamic value lines of an item, formatted for display.
+ * - onBindViewHolder(): Binds item data to the views of each item in the RecyclerView using the display text prepared
+ *   when the item entered the adapter, so a bind neither formats strings nor allocates.
+ * - prepareRowText(Item item): Formats the display text of an item once and keeps it until the item leaves the adapter.
+ * - getItem(int position): Returns the item shown at a position.
  * - filterList(Map<String, String> filterMap): Updates the filteredList based on provided filter criteria.
  *   It iterates through all items and adds those matching the filter criteria to the filteredList.
  *   If no filters are provided, it adds all items from the original list.
  *   It notifies the adapter about the data set change after filtering.
+ *   Numeric values are matched numerically, so a filter of "10" matches a stored 10.0, and a date filter such as
+ *   "2024-01-01" is converted through ColumnType.DATE to the epoch milliseconds the column stores.
+ * - setColumnTypes(Map<String, ColumnType> columnTypes): Sets the column types used to convert filter values.
+ * - sortBy(String columnName, boolean ascending): Sorts the filtered list on a dynamic column using native comparisons.
+ * - onInventoryChanged(InventoryChangeEvent event): Inserts, replaces or removes the one changed item and notifies
+ *   only its position.
  *
  * Note:
  * - This adapter supports dynamic filtering based on user-defined criteria.
  * - It efficiently handles the binding of item data to views and updates RecyclerView contents.
+ * - Dynamic value views are only created when a holder needs more of them than it has, and hidden when unused.
+ *   item_layout declares the LinearLayout they go in, with the id dynamicContainer.
+ * - Display text is view state, so it lives here rather than on Item; items leaving the lists drop their text.
  * - The adapter is designed to be versatile and adaptable to various item layouts and filtering requirements.
  */
 
-public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
+public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> implements InventoryChangeEvent.Listener {
 
     private final List<Item> itemList; // List of all items
     private final List<Item> filteredList; // List of filtered items
     private final Context context; // Context reference for inflating layout
+    private Map<String, String> activeFilter = new HashMap<>(); // Filter last applied by filterList
+    private Map<String, Double> activeNumbers = new HashMap<>(); // Numeric form of each filter value that has one
+    private Map<String, ColumnType> columnTypes = new HashMap<>(); // Declared type of each column
+    // Display text of every item in itemList, by identity since an updated item is a new object
+    private final Map<Item, RowText> rowTexts = new IdentityHashMap<>();
+
+    // Longest old plus new list that updateData diffs on the main thread; longer results are swapped in whole
+    private static final int MAX_DIFF_ITEMS = 2000;
 
     // Constructor to initialize the adapter with a list of items and the context
     public ItemAdapter(List<Item> itemList, Context context) {
         this.context = context;
         this.itemList = itemList;
         this.filteredList = new ArrayList<>(itemList); // Initialize filtered list with all items
+        for (Item item : itemList) {
+            prepareRowText(item);
+        }
+    }
+
+    // The display text of one row, formatted when its item enters the adapter
+    static class RowText {
+        final String partNumberText;
+        final String quantityText;
+        final String[] dynamicLines; // One "column: value" line per dynamic value, in column name order
+
+        RowText(String partNumberText, String quantityText, String[] dynamicLines) {
+            this.partNumberText = partNumberText;
+            this.quantityText = quantityText;
+            this.dynamicLines = dynamicLines;
+        }
+    }
+
+    // Method to format an item's display text once, when it enters the adapter rather than on every bind
+    private RowText prepareRowText(Item item) {
+        RowText rowText = rowTexts.get(item);
+        if (rowText != null) {
+            return rowText;
+        }
+        String partNumberText = context.getString(R.string.part_number_placeholder, item.getPartNumber());
+        String quantityText = context.getString(R.string.quantity_placeholder, item.getQuantity());
+
+        // Dynamic values in column name order, so rows line up
+        Map<String, String> sorted = new TreeMap<>(item.getDynamicValues());
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                lines.add(entry.getKey() + ": " + entry.getValue());
+            }
+        }
+        rowText = new RowText(partNumberText, quantityText, lines.toArray(new String[0]));
+        rowTexts.put(item, rowText);
+        return rowText;
+    }
+
+    // Method to return the item shown at a position
+    Item getItem(int position) {
+        return filteredList.get(position);
     }
 
     // Method to create ViewHolder instances
@@ -74,6 +150,30 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
     }
 
     public void updateData(List<Item> items) {
+        // Keep the text of items that stay, format the new ones and drop the rest
+        Map<Item, RowText> previous = new IdentityHashMap<>(rowTexts);
+        rowTexts.clear();
+        for (Item item : items) {
+            RowText rowText = previous.get(item);
+            if (rowText != null) {
+                rowTexts.put(item, rowText);
+            } else {
+                prepareRowText(item);
+            }
+        }
+        DiffUtil.DiffResult diffResult = null;
+        if (filteredList.size() + items.size() <= MAX_DIFF_ITEMS) {
+            diffResult = DiffUtil.calculateDiff(new ItemDiffCallback(new ArrayList<>(filteredList), items), false);
+        }
+        itemList.clear();
+        itemList.addAll(items);
+        filteredList.clear();
+        filteredList.addAll(items);
+        if (diffResult != null) {
+            diffResult.dispatchUpdatesTo(this); // Notify adapter about the changed rows only
+        } else {
+            notifyDataSetChanged(); // A large result replaces the list wholesale
+        }
     }
 
     // ViewHolder class for holding the views of each item
@@ -81,6 +181,8 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
         TextView nameTextView;
         TextView partNumberTextView;
         TextView quantityTextView;
+        LinearLayout dynamicContainer; // Holds one recycled TextView per dynamic value
+        final List<TextView> dynamicTextViews = new ArrayList<>();
 
         // Constructor to initialize views
         public ViewHolder(@NonNull View itemView) {
@@ -88,6 +190,25 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
             nameTextView = itemView.findViewById(R.id.textViewName);
             partNumberTextView = itemView.findViewById(R.id.textViewPartNumber);
             quantityTextView = itemView.findViewById(R.id.textViewQuantity);
+            dynamicContainer = itemView.findViewById(R.id.dynamicContainer);
+        }
+
+        // Shows one line per dynamic value, creating views only when this holder has never shown as many
+        void bindDynamicLines(String[] lines) {
+            while (dynamicTextViews.size() < lines.length) {
+                TextView textView = new TextView(dynamicContainer.getContext());
+                dynamicContainer.addView(textView);
+                dynamicTextViews.add(textView);
+            }
+            for (int i = 0; i < dynamicTextViews.size(); i++) {
+                TextView textView = dynamicTextViews.get(i);
+                if (i < lines.length) {
+                    textView.setText(lines[i]);
+                    textView.setVisibility(View.VISIBLE);
+                } else {
+                    textView.setVisibility(View.GONE);
+                }
+            }
         }
     }
 
@@ -95,29 +216,24 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         Item item = filteredList.get(position); // Get item from filtered list
+        // Prepared when the item entered the adapter; a lookup, nothing is formatted or allocated here
+        RowText rowText = prepareRowText(item);
 
-        // Bind item data to views
         holder.nameTextView.setText(item.getName());
+        holder.partNumberTextView.setText(rowText.partNumberText);
+        holder.quantityTextView.setText(rowText.quantityText);
+        holder.bindDynamicLines(rowText.dynamicLines);
+    }
 
-        // Construct the part number text with a placeholder
-        String partNumberText = context.getString(R.string.part_number_placeholder, item.getPartNumber());
-        holder.partNumberTextView.setText(partNumberText);
-
-        // Construct the quantity text with a placeholder
-        String quantityText = context.getString(R.string.quantity_placeholder, item.getQuantity());
-        holder.quantityTextView.setText(quantityText);
-
-        // Log dynamic values
-        Map<String, String> dynamicValues = item.getDynamicValues();
-        for (Map.Entry<String, String> entry : dynamicValues.entrySet()) {
-            String columnName = entry.getKey();
-            String columnValue = entry.getValue();
-            Log.d("ItemAdapter", "Dynamic Column: " + columnName + ", Value: " + columnValue);
-        }
+    // Method to set the declared column types, from InventoryDBHelper.getColumnTypes
+    public void setColumnTypes(Map<String, ColumnType> columnTypes) {
+        this.columnTypes = new HashMap<>(columnTypes);
     }
 
     // Method to update the filtered list based on provided filters
     public void filterList(Map<String, String> filterMap) {
+        activeFilter = new HashMap<>(filterMap);
+        activeNumbers = toNumbers(filterMap);
         filteredList.clear(); // Clear the filtered list
 
         // If no filters provided, add all items from the original list
@@ -126,20 +242,121 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
         } else {
             // Iterate through all items and add those matching the filter criteria
             for (Item item : itemList) {
-                boolean isMatch = true;
-                for (Map.Entry<String, String> entry : filterMap.entrySet()) {
-                    String columnName = entry.getKey();
-                    String columnValue = entry.getValue();
-                    if (!item.getDynamicValues().containsKey(columnName) || !item.getDynamicValues().get(columnName).equalsIgnoreCase(columnValue)) {
-                        isMatch = false;
-                        break;
-                    }
-                }
-                if (isMatch) {
+                if (matchesFilter(item)) {
                     filteredList.add(item);
                 }
             }
         }
         notifyDataSetChanged(); // Notify adapter about data set change
     }
+
+    // Method to check an item against every value of the active filter
+    private boolean matchesFilter(Item item) {
+        for (Map.Entry<String, String> entry : activeFilter.entrySet()) {
+            if (!matchesValue(item, entry.getKey(), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Method to check one filter value, comparing numbers as numbers and text without case
+    private boolean matchesValue(Item item, String columnName, String columnValue) {
+        Double numericValue = item.getNumericValue(columnName);
+        if (numericValue != null) {
+            Double filterValue = activeNumbers.get(columnName);
+            return filterValue != null && numericValue.doubleValue() == filterValue.doubleValue();
+        }
+        String value = item.getDynamicValues().get(columnName);
+        return value != null && value.equalsIgnoreCase(columnValue);
+    }
+
+    // Method to convert each filter value to the number its column stores, once per filter rather than once per item
+    private Map<String, Double> toNumbers(Map<String, String> filterMap) {
+        Map<String, Double> numbers = new HashMap<>();
+        for (Map.Entry<String, String> entry : filterMap.entrySet()) {
+            // Dates are parsed as yyyy-MM-dd, every other column as a decimal so "10" matches a stored 10.0
+            ColumnType type = columnTypes.get(entry.getKey()) == ColumnType.DATE ? ColumnType.DATE : ColumnType.REAL;
+            Object value = type.coerce(entry.getValue());
+            if (value instanceof Number) {
+                numbers.put(entry.getKey(), ((Number) value).doubleValue());
+            }
+        }
+        return numbers;
+    }
+
+    // Method to sort the filtered list on a dynamic column using the values' native types
+    public void sortBy(final String columnName, final boolean ascending) {
+        Collections.sort(filteredList, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                int result = a.compareColumn(b, columnName);
+                return ascending ? result : -result;
+            }
+        });
+        notifyDataSetChanged(); // Notify adapter about data set change
+    }
+
+    // Method to apply one committed change to the lists, notifying only the affected position
+    @Override
+    public void onInventoryChanged(InventoryChangeEvent event) {
+        switch (event.getType()) {
+            case ITEM_INSERTED:
+                prepareRowText(event.getItem());
+                itemList.add(event.getItem());
+                if (matchesFilter(event.getItem())) {
+                    filteredList.add(event.getItem());
+                    notifyItemInserted(filteredList.size() - 1);
+                }
+                break;
+            case ITEM_UPDATED: {
+                prepareRowText(event.getItem());
+                int allIndex = indexOfId(itemList, event.getItemId());
+                if (allIndex >= 0) {
+                    rowTexts.remove(itemList.get(allIndex));
+                    itemList.set(allIndex, event.getItem());
+                } else {
+                    itemList.add(event.getItem());
+                }
+                int index = indexOfId(filteredList, event.getItemId());
+                boolean matches = matchesFilter(event.getItem());
+                if (index >= 0 && matches) {
+                    filteredList.set(index, event.getItem());
+                    notifyItemChanged(index);
+                } else if (index >= 0) {
+                    filteredList.remove(index);
+                    notifyItemRemoved(index);
+                } else if (matches) {
+                    filteredList.add(event.getItem());
+                    notifyItemInserted(filteredList.size() - 1);
+                }
+                break;
+            }
+            case ITEM_DELETED: {
+                int allIndex = indexOfId(itemList, event.getItemId());
+                if (allIndex >= 0) {
+                    rowTexts.remove(itemList.remove(allIndex));
+                }
+                int index = indexOfId(filteredList, event.getItemId());
+                if (index >= 0) {
+                    filteredList.remove(index);
+                    notifyItemRemoved(index);
+                }
+                break;
+            }
+            case COLUMN_ADDED:
+                // Existing items have no value in a new column, nothing shown changes
+                break;
+        }
+    }
+
+    // Method to find an item by row id in a list, -1 if it is not there
+    private static int indexOfId(List<Item> items, long itemId) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getId() == itemId) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
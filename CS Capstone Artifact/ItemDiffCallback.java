@@ -2,6 +2,7 @@ package com.example.project2;
 
 import androidx.recyclerview.widget.DiffUtil;
 import java.util.List;
+import java.util.Objects;
 
 /*
  * ItemDiffCallback.java
@@ -22,9 +23,9 @@ import java.util.List;
  * - getOldListSize(): Retrieves the size of the old list.
  * - getNewListSize(): Retrieves the size of the new list.
  * - areItemsTheSame(int oldItemPosition, int newItemPosition): Compares whether the items at the specified positions
- *   in the old and new lists are the same based on their equality.
- * - areContentsTheSame(int oldItemPosition, int newItemPosition): Compares whether the contents of the items at the specified positions
- *   in the old and new lists are the same based on their equality. This method typically involves a deeper comparison of item properties.
+ *   are the same row, by row id, or by part number for items that were not read from the database.
+ * - areContentsTheSame(int oldItemPosition, int newItemPosition): Compares the name, part number, quantity and dynamic
+ *   values of the items at the specified positions, so a freshly loaded but unchanged row is not rebound.
  *
  * Note:
  * - This class is essential for implementing efficient updates in RecyclerView adapters, particularly when dealing with large datasets.
@@ -71,7 +72,12 @@ public class ItemDiffCallback extends DiffUtil.Callback {
      */
     @Override
     public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-        return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
+        Item oldItem = oldList.get(oldItemPosition);
+        Item newItem = newList.get(newItemPosition);
+        if (oldItem.getId() != -1 || newItem.getId() != -1) {
+            return oldItem.getId() == newItem.getId();
+        }
+        return Objects.equals(oldItem.getPartNumber(), newItem.getPartNumber());
     }
 
     /**
@@ -82,7 +88,11 @@ public class ItemDiffCallback extends DiffUtil.Callback {
      */
     @Override
     public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-        // Implement logic to check if item contents are the same
-        return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
+        Item oldItem = oldList.get(oldItemPosition);
+        Item newItem = newList.get(newItemPosition);
+        return oldItem.getQuantity() == newItem.getQuantity()
+                && Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getPartNumber(), newItem.getPartNumber())
+                && oldItem.getDynamicValues().equals(newItem.getDynamicValues());
     }
 }
\ No newline at end of file
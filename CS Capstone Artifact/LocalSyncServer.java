@@ -0,0 +1,89 @@
+package com.example.project2;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * LocalSyncServer.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * LocalSyncServer is an in-memory stand-in for the remote sync endpoint. It implements SyncTransport directly, so two
+ * SyncEngines on different shards, or on the same device, can be synced against it to try the protocol without a network.
+ *
+ * Components:
+ * - List<StoredChange> log: Every accepted change in server sequence order.
+ * - Map<String, Long> acceptedSequences: The highest pushed batch sequence accepted from each device.
+ *
+ * Functions:
+ * - push(String deviceId, byte[] batch): Appends a batch's changes to the log, ignoring batches already accepted.
+ * - pull(String deviceId, long afterServerSeq, int maxChanges): Returns the changes of other devices after a sequence.
+ * - getChangeCount(): Returns the number of changes stored.
+ *
+ * Note:
+ * - The server sequence of a change is its position in the log plus one, so a pull seeks straight to its start.
+ * - A pull that only finds the caller's own changes still advances the sequence, so they are not scanned again.
+ */
+public class LocalSyncServer implements SyncTransport {
+
+    private static final String TAG = "LocalSyncServer";
+
+    private final List<StoredChange> log = new ArrayList<>();
+    private final Map<String, Long> acceptedSequences = new HashMap<>();
+
+    // A change with the device that made it
+    private static class StoredChange {
+        final String deviceId;
+        final SyncBatch.Change change;
+
+        StoredChange(String deviceId, SyncBatch.Change change) {
+            this.deviceId = deviceId;
+            this.change = change;
+        }
+    }
+
+    @Override
+    public synchronized long push(String deviceId, byte[] batch) throws IOException {
+        SyncBatch decoded = SyncBatch.decode(batch);
+        Long accepted = acceptedSequences.get(deviceId);
+        // Snapshot batches have sequence 0 and apply idempotently, journal batches are only taken once
+        if (decoded.getSequence() > 0 && accepted != null && decoded.getSequence() <= accepted) {
+            Log.d(TAG, "Ignoring repeated batch " + decoded.getSequence() + " from " + deviceId);
+            return log.size();
+        }
+        for (SyncBatch.Change change : decoded.getChanges()) {
+            log.add(new StoredChange(deviceId, change));
+        }
+        if (decoded.getSequence() > 0) {
+            acceptedSequences.put(deviceId, decoded.getSequence());
+        }
+        return log.size();
+    }
+
+    @Override
+    public synchronized byte[] pull(String deviceId, long afterServerSeq, int maxChanges) throws IOException {
+        int position = (int) Math.max(0, Math.min(afterServerSeq, log.size()));
+        List<SyncBatch.Change> changes = new ArrayList<>();
+        while (position < log.size() && changes.size() < maxChanges) {
+            StoredChange stored = log.get(position++);
+            if (!stored.deviceId.equals(deviceId)) {
+                changes.add(stored.change);
+            }
+        }
+        SyncBatch batch = new SyncBatch(deviceId, position);
+        for (SyncBatch.Change change : changes) {
+            batch.add(change);
+        }
+        return batch.encode();
+    }
+
+    public synchronized int getChangeCount() {
+        return log.size();
+    }
+}
@@ -27,7 +27,7 @@ import androidx.appcompat.app.AppCompatActivity;
  * Functionality:
  * - onCreate(): Initializes UI elements and sets click listeners for login and account creation buttons.
  *   Upon login button click, it validates user credentials using DBHelper.
- *   If credentials are valid, it launches the SecondActivity.
+ *   If credentials are valid, it launches the SecondActivity with the username, which selects the user's inventory shard.
  *   Upon create account button click, it prompts the user with a confirmation dialog for account creation.
  *   If the user confirms, it inserts the new account data into the database after hashing the password.
  *   Error handling is implemented for database operations and incorrect login attempts.
@@ -77,6 +77,8 @@ public class MainActivity extends AppCompatActivity {
                 if (dbHelper.checkUser(username, password)) {
                     // If valid, start the second activity
                     Intent intent = new Intent(MainActivity.this, SecondActivity.class);
+                    // Each user works on their own inventory shard, keyed by the exact username checkUser matched
+                    intent.putExtra(InventoryShardManager.EXTRA_SHARD_KEY, username);
                     startActivity(intent);
                 } else {
                     // If not valid, clear the fields and show an error message
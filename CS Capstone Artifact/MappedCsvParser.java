@@ -0,0 +1,322 @@
+package com.example.project2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+ * MappedCsvParser.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * MappedCsvParser is the fast path of the CSV import for uncompressed local files. The file is memory-mapped instead of
+ * copied through streams, split into chunks that end on record boundaries, and the chunks are parsed and validated on
+ * several threads at once. The importer writes the chunk results in file order.
+ *
+ * Components:
+ * - int DEFAULT_CHUNK_BYTES: The target size of a chunk.
+ * - ChunkResult: The validated batches of one chunk and the number of records it held.
+ * - ChunkConsumer: Receives the chunk results of parseInOrder in file order.
+ *
+ * Functions:
+ * - canMap(FileChannel channel): Checks if a file can take the fast path, that is, it is not empty and not gzip.
+ * - readHeader(): Returns the header record.
+ * - getHeaderEnd(): Returns the offset of the first data record.
+ * - split(long start, int chunkBytes, ExecutorService pool): Splits the file from an offset into chunks on record boundaries.
+ * - parse(long start, long end, CsvRowValidator validator, int batchRows): Parses and validates one chunk.
+ * - parseInOrder(...): Parses chunks on a pool with at most maxInFlight of them pending, handing the results over in
+ *   file order.
+ *
+ * Note:
+ * - A line break inside quotes does not end a record. To find the boundaries without a sequential pass, the quotes of
+ *   every raw chunk are counted in parallel first; the parity of the quotes before a split point tells whether it falls
+ *   inside a quoted field, and the split moves forward to the end of the record it falls in.
+ * - Each chunk is mapped on its own, so files larger than 2 GB work as long as a single record is smaller than that.
+ * - Row numbers and batch ends in a ChunkResult count from the start of the chunk; the importer adds the rows before it.
+ * - A parsed chunk holds every record of the chunk as a string until it is consumed, so parseInOrder keeps only a few
+ *   chunks pending and the chunks are kept small; memory grows with maxInFlight * DEFAULT_CHUNK_BYTES, not the file.
+ */
+public class MappedCsvParser {
+
+    public static final int DEFAULT_CHUNK_BYTES = 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int SCAN_WINDOW_BYTES = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long headerEnd = -1;
+
+    /**
+     * The validated batches of one chunk.
+     */
+    public static class ChunkResult {
+        final List<CsvRowValidator.ValidatedBatch> batches;
+        final long recordCount;
+
+        ChunkResult(List<CsvRowValidator.ValidatedBatch> batches, long recordCount) {
+            this.batches = batches;
+            this.recordCount = recordCount;
+        }
+
+        public List<CsvRowValidator.ValidatedBatch> getBatches() {
+            return batches;
+        }
+
+        public long getRecordCount() {
+            return recordCount;
+        }
+    }
+
+    /**
+     * Receives the results of parseInOrder, one chunk at a time and in file order.
+     */
+    public interface ChunkConsumer {
+        void accept(ChunkResult result) throws Exception;
+    }
+
+    public MappedCsvParser(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Checks if a file can be parsed by mapping it: it must have content and must not be gzip-compressed.
+     * @param channel The file.
+     * @return True if the fast path applies.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean canMap(FileChannel channel) throws IOException {
+        if (channel.size() < 2) {
+            return false;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(2);
+        channel.read(magic, 0);
+        return !(magic.get(0) == (byte) 0x1f && magic.get(1) == (byte) 0x8b);
+    }
+
+    /**
+     * Returns the header record, without its line terminator.
+     * @return The header.
+     * @throws IOException If the file cannot be read.
+     */
+    public String readHeader() throws IOException {
+        long end = findRecordEnd(0, false);
+        headerEnd = end;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        byte[] bytes = new byte[(int) end];
+        buffer.get(bytes);
+        int length = bytes.length;
+        while (length > 0 && (bytes[length - 1] == LINE_FEED || bytes[length - 1] == CARRIAGE_RETURN)) {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the first data record.
+     * @return The offset just after the header.
+     * @throws IOException If the file cannot be read.
+     */
+    public long getHeaderEnd() throws IOException {
+        if (headerEnd < 0) {
+            headerEnd = findRecordEnd(0, false);
+        }
+        return headerEnd;
+    }
+
+    /**
+     * Splits the file from an offset into chunks of about chunkBytes that start and end on record boundaries.
+     * @param start The offset of the first record to include.
+     * @param chunkBytes The target chunk size.
+     * @param pool The threads used to count quotes.
+     * @return The [start, end) offsets of every chunk, in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    public List<long[]> split(long start, int chunkBytes, ExecutorService pool) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        if (start >= size) {
+            return chunks;
+        }
+        int regions = (int) ((size - start + chunkBytes - 1) / chunkBytes);
+
+        // Pass 1: whether each raw region holds an odd number of quotes, in parallel
+        List<Future<Boolean>> oddQuotes = new ArrayList<>(regions);
+        for (int r = 0; r < regions - 1; r++) {
+            final long regionStart = start + (long) r * chunkBytes;
+            final long regionEnd = regionStart + chunkBytes;
+            oddQuotes.add(pool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException {
+                    return hasOddQuotes(regionStart, regionEnd);
+                }
+            }));
+        }
+
+        // Pass 2: move every split point forward to the end of the record it falls in
+        long chunkStart = start;
+        boolean inQuotes = false;
+        try {
+            for (int r = 0; r < regions - 1; r++) {
+                inQuotes ^= oddQuotes.get(r).get();
+                long boundary = findRecordEnd(start + (long) (r + 1) * chunkBytes, inQuotes);
+                // A record longer than a chunk swallows the next split point
+                if (boundary > chunkStart && boundary < size) {
+                    chunks.add(new long[]{chunkStart, boundary});
+                    chunkStart = boundary;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not count quotes: " + e.getCause(), e);
+        }
+        chunks.add(new long[]{chunkStart, size});
+        return chunks;
+    }
+
+    /**
+     * Parses the records of a chunk and validates them in batches.
+     * @param start The chunk's first byte, on a record boundary.
+     * @param end The byte after the chunk, on a record boundary or the end of the file.
+     * @param validator The validator for the file's columns.
+     * @param batchRows The number of records per batch, the unit the importer commits and checkpoints.
+     * @return The batches, with row numbers from 1 at the chunk's start and absolute end offsets.
+     * @throws IOException If the file cannot be read.
+     */
+    public ChunkResult parse(long start, long end, CsvRowValidator validator, int batchRows) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        List<CsvRowValidator.ValidatedBatch> batches = new ArrayList<>();
+        List<String> records = new ArrayList<>(batchRows);
+        byte[] record = new byte[256];
+        int recordLength = 0;
+        boolean inQuotes = false;
+        long recordCount = 0;
+        long firstRow = 1;
+        int limit = buffer.limit();
+
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == LINE_FEED && !inQuotes) {
+                records.add(decode(record, recordLength));
+                recordLength = 0;
+                recordCount++;
+                if (records.size() == batchRows) {
+                    batches.add(validator.validate(new CsvRowValidator.RecordBatch(firstRow, records, start + i + 1, recordCount)));
+                    firstRow = recordCount + 1;
+                    records = new ArrayList<>(batchRows);
+                }
+                continue;
+            }
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            }
+            if (recordLength == record.length) {
+                record = Arrays.copyOf(record, record.length * 2);
+            }
+            record[recordLength++] = b;
+        }
+        // The last record of the file may have no line break
+        if (recordLength > 0) {
+            records.add(decode(record, recordLength));
+            recordCount++;
+        }
+        if (!records.isEmpty()) {
+            batches.add(validator.validate(new CsvRowValidator.RecordBatch(firstRow, records, end, recordCount)));
+        }
+        return new ChunkResult(batches, recordCount);
+    }
+
+    /**
+     * Parses chunks on a pool and hands each result to a consumer in file order, on the calling thread.
+     * No more than maxInFlight chunks are submitted and not yet consumed at any time.
+     * @param chunks The chunks to parse, in file order, as returned by split.
+     * @param pool The threads that parse the chunks.
+     * @param validator The validator for the file's columns.
+     * @param batchRows The number of records per batch.
+     * @param maxInFlight The number of chunks parsed ahead of the consumer.
+     * @param consumer Receives every chunk's result.
+     * @throws Exception If a chunk cannot be parsed or the consumer fails.
+     */
+    public void parseInOrder(List<long[]> chunks, ExecutorService pool, final CsvRowValidator validator,
+                             final int batchRows, int maxInFlight, ChunkConsumer consumer) throws Exception {
+        ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+        int nextChunk = 0;
+        try {
+            while (true) {
+                while (nextChunk < chunks.size() && inFlight.size() < maxInFlight) {
+                    final long[] chunk = chunks.get(nextChunk++);
+                    inFlight.add(pool.submit(new Callable<ChunkResult>() {
+                        @Override
+                        public ChunkResult call() throws IOException {
+                            return parse(chunk[0], chunk[1], validator, batchRows);
+                        }
+                    }));
+                }
+                Future<ChunkResult> next = inFlight.poll();
+                if (next == null) {
+                    break;
+                }
+                consumer.accept(next.get());
+            }
+        } finally {
+            // Chunks still pending after a failure are not needed
+            for (Future<ChunkResult> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    private static String decode(byte[] record, int length) {
+        if (length > 0 && record[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        return new String(record, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean hasOddQuotes(long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(to, size) - from);
+        int quotes = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == QUOTE) {
+                quotes++;
+            }
+        }
+        return (quotes & 1) == 1;
+    }
+
+    // Returns the offset after the first line break outside quotes at or after an offset, or the file size
+    private long findRecordEnd(long from, boolean inQuotes) throws IOException {
+        long position = from;
+        while (position < size) {
+            long windowEnd = Math.min(size, position + SCAN_WINDOW_BYTES);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else if (b == LINE_FEED && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position = windowEnd;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,546 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * PerformanceSuite.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * PerformanceSuite guards the inventory's hot paths against regressions. For each data size it generates an inventory
+ * with InventoryDataGenerator, then times CSV import, getAllItems, ItemAdapter.filterList, CSV export and insertItem on
+ * a scratch database and checks each against a time and allocation budget. The results are written as a JSON report so
+ * runs can be compared over time, and the returned Report tells a test runner whether every budget held.
+ *
+ * Components:
+ * - Budget: The nanoseconds and allocated bytes an operation may spend per unit of work (a row, or a call for insertItem).
+ * - Result: One operation measured at one data size, with its budget.
+ * - Report: All results of a run and whether they stayed within budget.
+ *
+ * Functions:
+ * - run(Context context, int[] sizes, File reportDirectory): Runs the suite at each size and writes the report.
+ *
+ * Note:
+ * - Runs on a device or on a plain JVM under Robolectric; call it off the main thread. PerformanceSuiteTest runs it
+ *   under Robolectric and fails on any result over budget.
+ * - Allocations are counted across every thread, so the import's validator threads are included: from the JVM's total
+ *   (JDK 21 and later), from ART's art.gc.bytes-allocated runtime stat on a device, or else by summing the JVM's counters
+ *   of every live thread, which is only exact when no thread started or ended during the operation. The process-wide
+ *   counters also include whatever other threads allocated meanwhile, so run the suite on an otherwise idle process.
+ *   The import's workers come from a CountingThreadFactory that adds up what each allocated when it ends, so they are
+ *   counted on older JVMs too.
+ * - An allocation that could not be counted is reported as -1 and fails its budget, so a run that measured nothing
+ *   never reads as passed.
+ * - getAllItems holds every item in memory: the 1M-row size needs a large heap and is meant for the JVM, not a phone.
+ * - Each size uses a fresh database, perf_suite.db, which is deleted afterwards with the generated files.
+ */
+public class PerformanceSuite {
+
+    private static final String TAG = "PerformanceSuite";
+
+    public static final int[] DEFAULT_SIZES = {10000, 100000, 1000000};
+    public static final String CSV_IMPORT = "csvImport";
+    public static final String GET_ALL_ITEMS = "getAllItems";
+    public static final String FILTER_LIST = "filterList";
+    public static final String CSV_EXPORT = "csvExport";
+    public static final String INSERT_ITEM = "insertItem";
+
+    private static final String DATABASE_NAME = "perf_suite.db";
+    private static final int DYNAMIC_COLUMNS = 6;
+    private static final long SEED = 42;
+    private static final int INSERT_CALLS = 200;
+    private static final int FILTER_RUNS = 5;
+    // How long a stopped import worker may take to exit before its allocations count as unmeasurable
+    private static final long WORKER_EXIT_TIMEOUT_MS = 5000;
+
+    private static final Budget[] BUDGETS = {
+            new Budget(CSV_IMPORT, 50000, 4096),
+            new Budget(GET_ALL_ITEMS, 30000, 4096),
+            new Budget(FILTER_LIST, 2000, 64),
+            new Budget(CSV_EXPORT, 10000, 1024),
+            new Budget(INSERT_ITEM, 2000000, 65536)
+    };
+
+    // ART's count of every byte the process has allocated
+    private static final String ART_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    // The JVM's allocation counters, null on Android; TOTAL_ALLOCATED is also null before JDK 21
+    private static final Object THREAD_BEAN;
+    private static final Method TOTAL_ALLOCATED;
+    private static final Method ALLOCATED_BYTES;
+    private static final Method ALL_THREAD_IDS;
+    private static final Method STARTED_THREADS;
+
+    static {
+        Object bean = null;
+        Method total = null;
+        Method perThread = null;
+        Method ids = null;
+        Method started = null;
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+            Class<?> threadBean = Class.forName("java.lang.management.ThreadMXBean");
+            perThread = sunBean.getMethod("getThreadAllocatedBytes", long[].class);
+            ids = threadBean.getMethod("getAllThreadIds");
+            started = threadBean.getMethod("getTotalStartedThreadCount");
+            try {
+                total = sunBean.getMethod("getTotalThreadAllocatedMemory");
+            } catch (NoSuchMethodException e) {
+                total = null;
+            }
+        } catch (Exception | LinkageError e) {
+            bean = null;
+        }
+        THREAD_BEAN = bean;
+        TOTAL_ALLOCATED = bean == null ? null : total;
+        ALLOCATED_BYTES = bean == null ? null : perThread;
+        ALL_THREAD_IDS = bean == null ? null : ids;
+        STARTED_THREADS = bean == null ? null : started;
+    }
+
+    private PerformanceSuite() {
+    }
+
+    /**
+     * What an operation may spend per unit of work.
+     */
+    public static class Budget {
+        public final String operation;
+        public final long nanosPerUnit;
+        public final long bytesPerUnit;
+
+        Budget(String operation, long nanosPerUnit, long bytesPerUnit) {
+            this.operation = operation;
+            this.nanosPerUnit = nanosPerUnit;
+            this.bytesPerUnit = bytesPerUnit;
+        }
+    }
+
+    /**
+     * One operation measured at one data size.
+     */
+    public static class Result {
+        public final String operation;
+        public final long size;
+        public final long units;
+        public final long elapsedNanos;
+        public final long allocatedBytes;
+        public final Budget budget;
+
+        Result(String operation, long size, long units, long elapsedNanos, long allocatedBytes, Budget budget) {
+            this.operation = operation;
+            this.size = size;
+            this.units = units;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.budget = budget;
+        }
+
+        public long getNanosPerUnit() {
+            return elapsedNanos / Math.max(1, units);
+        }
+
+        // -1 when allocations could not be counted
+        public long getBytesPerUnit() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / Math.max(1, units);
+        }
+
+        public boolean isAllocationMeasured() {
+            return allocatedBytes >= 0;
+        }
+
+        // An allocation that could not be counted is over budget, not under it
+        public boolean isWithinBudget() {
+            return getNanosPerUnit() <= budget.nanosPerUnit && isAllocationMeasured()
+                    && getBytesPerUnit() <= budget.bytesPerUnit;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject object = new JSONObject();
+            object.put("operation", operation);
+            object.put("size", size);
+            object.put("units", units);
+            object.put("elapsed_ns", elapsedNanos);
+            object.put("ns_per_unit", getNanosPerUnit());
+            object.put("budget_ns_per_unit", budget.nanosPerUnit);
+            object.put("allocated_bytes", allocatedBytes);
+            object.put("bytes_per_unit", getBytesPerUnit());
+            object.put("allocation_measured", isAllocationMeasured());
+            object.put("budget_bytes_per_unit", budget.bytesPerUnit);
+            object.put("within_budget", isWithinBudget());
+            return object;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " @" + size + ": " + getNanosPerUnit() + " ns/unit (budget " + budget.nanosPerUnit + "), " +
+                    (isAllocationMeasured() ? getBytesPerUnit() + " B/unit" : "allocations not measurable") +
+                    " (budget " + budget.bytesPerUnit + ")" + (isWithinBudget() ? "" : " OVER BUDGET");
+        }
+    }
+
+    /**
+     * All results of a run.
+     */
+    public static class Report {
+        public final long startedAt;
+        public final List<Result> results = new ArrayList<>();
+        private File file;
+
+        Report(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public boolean isPassed() {
+            return getFailures().isEmpty();
+        }
+
+        public List<Result> getFailures() {
+            List<Result> failures = new ArrayList<>();
+            for (Result result : results) {
+                if (!result.isWithinBudget()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        // The JSON file the report was written to
+        public File getFile() {
+            return file;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject root = new JSONObject();
+            root.put("started_at", startedAt);
+            root.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            root.put("sdk", Build.VERSION.SDK_INT);
+            root.put("vm", System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+            root.put("passed", isPassed());
+            JSONArray array = new JSONArray();
+            for (Result result : results) {
+                array.put(result.toJson());
+            }
+            root.put("results", array);
+            return root;
+        }
+    }
+
+    // The work being measured
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs every operation at each data size and writes perf_report_<time>.json.
+     * @param context The context, used for the scratch database.
+     * @param sizes The numbers of generated items, such as DEFAULT_SIZES.
+     * @param reportDirectory The directory for the report and the generated CSV files.
+     * @return The report.
+     * @throws Exception If an operation fails or the report cannot be written.
+     */
+    public static Report run(Context context, int[] sizes, File reportDirectory) throws Exception {
+        Report report = new Report(System.currentTimeMillis());
+        for (int size : sizes) {
+            runSize(context, size, reportDirectory, report.results);
+        }
+
+        report.file = new File(reportDirectory, "perf_report_" + report.startedAt + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(report.file), StandardCharsets.UTF_8)) {
+            writer.write(report.toJson().toString(2));
+        }
+        Log.d(TAG, (report.isPassed() ? "All budgets held" : report.getFailures().size() + " over budget") +
+                ", report " + report.file.getName());
+        return report;
+    }
+
+    private static void runSize(final Context context, final int size, File directory, List<Result> results)
+            throws Exception {
+        context.deleteDatabase(DATABASE_NAME);
+        final InventoryDBHelper helper = new InventoryDBHelper(context, DATABASE_NAME);
+        final File csv = new File(directory, "perf_" + size + ".csv");
+        final File export = new File(directory, "perf_" + size + "_export.csv");
+        try {
+            InventoryDataGenerator.standard(size, DYNAMIC_COLUMNS, SEED).writeCsv(csv);
+
+            final CsvImporter importer = new CsvImporter(context, helper, CsvStreams.DEFAULT_BUFFER_SIZE);
+            CountingThreadFactory workers = new CountingThreadFactory();
+            importer.setThreadFactory(workers);
+            add(results, measure(CSV_IMPORT, size, size, workers, new Operation() {
+                @Override
+                public void run() {
+                    if (!importer.importNow(Uri.fromFile(csv))) {
+                        throw new IllegalStateException("Import of " + csv.getName() + " failed");
+                    }
+                }
+            }));
+
+            // Measure a load from the database, not from the result cache
+            helper.getResultCache().clear();
+            final List<List<Item>> loaded = new ArrayList<>();
+            add(results, measure(GET_ALL_ITEMS, size, size, new Operation() {
+                @Override
+                public void run() {
+                    loaded.add(helper.getAllItems());
+                }
+            }));
+
+            final List<Item> items = loaded.get(0);
+            final ItemAdapter adapter = new ItemAdapter(items, context);
+            adapter.setColumnTypes(helper.getColumnTypes());
+            final Map<String, String> filter = new HashMap<>();
+            filter.put("category", "category-3");
+            filter.put("supplier", "supplier-1");
+            adapter.filterList(filter);
+            add(results, measure(FILTER_LIST, size, (long) items.size() * FILTER_RUNS, new Operation() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < FILTER_RUNS; i++) {
+                        adapter.filterList(filter);
+                    }
+                }
+            }));
+
+            add(results, measure(CSV_EXPORT, size, size, new Operation() {
+                @Override
+                public void run() throws IOException {
+                    try (Writer writer = CsvStreams.openWriter(export, CsvStreams.DEFAULT_BUFFER_SIZE)) {
+                        CsvExporter.writeItems(helper.getWritableDatabase(), writer);
+                    }
+                }
+            }));
+
+            final Map<String, String> dynamicValues = new HashMap<>();
+            dynamicValues.put("category", "category-0");
+            dynamicValues.put("supplier", "supplier-7");
+            add(results, measure(INSERT_ITEM, size, INSERT_CALLS, new Operation() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < INSERT_CALLS; i++) {
+                        if (helper.insertItem("Perf Item " + i, "PERF-" + i, i, dynamicValues) == -1) {
+                            throw new IllegalStateException("insertItem failed");
+                        }
+                    }
+                }
+            }));
+        } finally {
+            helper.close();
+            context.deleteDatabase(DATABASE_NAME);
+            csv.delete();
+            export.delete();
+        }
+    }
+
+    private static void add(List<Result> results, Result result) {
+        results.add(result);
+        Log.d(TAG, result.toString());
+    }
+
+    // Times an operation and counts what every thread allocates while it runs; threads the operation starts and stops
+    // itself, such as the import's validators, must come from the given factory to be counted without a JVM total
+    private static Result measure(String operation, long size, long units, CountingThreadFactory threads, Operation body)
+            throws Exception {
+        // Collect first so garbage from the previous operation is not paid for by this one
+        System.gc();
+        long totalBefore = totalAllocatedBytes();
+        long startedBefore = startedThreads();
+        Map<Long, Long> liveBefore = totalBefore < 0 ? liveThreadAllocatedBytes() : null;
+
+        long start = System.nanoTime();
+        body.run();
+        long elapsed = System.nanoTime() - start;
+
+        long workerBytes = threads == null ? 0 : threads.awaitAllocatedBytes();
+        long allocated = -1;
+        if (totalBefore >= 0) {
+            long totalAfter = totalAllocatedBytes();
+            allocated = totalAfter >= totalBefore ? totalAfter - totalBefore : -1;
+        } else if (liveBefore != null && workerBytes >= 0) {
+            long live = allocatedByLiveThreads(liveBefore, startedBefore, threads == null ? 0 : threads.getCount());
+            allocated = live < 0 ? -1 : live + workerBytes;
+        }
+        return new Result(operation, size, units, elapsed, allocated, getBudget(operation));
+    }
+
+    private static Result measure(String operation, long size, long units, Operation body) throws Exception {
+        return measure(operation, size, units, null, body);
+    }
+
+    // Bytes allocated by every thread of the process so far, -1 where the runtime keeps no such total
+    static long totalAllocatedBytes() {
+        if (TOTAL_ALLOCATED != null) {
+            try {
+                return (Long) TOTAL_ALLOCATED.invoke(THREAD_BEAN);
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+        if (THREAD_BEAN == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String bytes = Debug.getRuntimeStat(ART_BYTES_ALLOCATED);
+            try {
+                return bytes == null ? -1 : Long.parseLong(bytes);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // Bytes allocated so far by each live thread, keyed by thread id, or null without the JVM's counters
+    private static Map<Long, Long> liveThreadAllocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return null;
+        }
+        try {
+            return threadAllocatedBytes((long[]) ALL_THREAD_IDS.invoke(THREAD_BEAN));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Bytes allocated so far by the calling thread, -1 without the JVM's counters
+    static long currentThreadAllocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        long id = Thread.currentThread().getId();
+        try {
+            Long bytes = threadAllocatedBytes(new long[]{id}).get(id);
+            return bytes == null ? -1 : bytes;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static Map<Long, Long> threadAllocatedBytes(long[] ids) throws Exception {
+        long[] bytes = (long[]) ALLOCATED_BYTES.invoke(THREAD_BEAN, (Object) ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    private static long startedThreads() {
+        try {
+            return STARTED_THREADS == null ? -1 : (Long) STARTED_THREADS.invoke(THREAD_BEAN);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // Sums what the live threads allocated since the before counts. Threads started meanwhile count from zero; -1 if a
+    // thread ended in between without being counted, since its allocations ended with it
+    private static long allocatedByLiveThreads(Map<Long, Long> before, long startedBefore, int countedEnded) {
+        Map<Long, Long> after = liveThreadAllocatedBytes();
+        long startedAfter = startedThreads();
+        if (after == null || startedBefore < 0 || startedAfter < 0) {
+            return -1;
+        }
+        Set<Long> ended = new HashSet<>(before.keySet());
+        ended.removeAll(after.keySet());
+        Set<Long> started = new HashSet<>(after.keySet());
+        started.removeAll(before.keySet());
+        if (!ended.isEmpty() || startedAfter - startedBefore != started.size() + countedEnded) {
+            return -1;
+        }
+        long allocated = 0;
+        for (Map.Entry<Long, Long> entry : after.entrySet()) {
+            Long previous = before.get(entry.getKey());
+            allocated += entry.getValue() - (previous == null ? 0 : previous);
+        }
+        return allocated;
+    }
+
+    /**
+     * Makes worker threads that add what they allocated to a total when they end, so an operation's short-lived workers
+     * are counted on a JVM without a process-wide allocation total.
+     */
+    private static class CountingThreadFactory implements ThreadFactory {
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+        private final List<Thread> threads = new ArrayList<>();
+        private final AtomicLong endedBytes = new AtomicLong();
+        private final AtomicBoolean uncounted = new AtomicBoolean();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = delegate.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } finally {
+                        long bytes = currentThreadAllocatedBytes();
+                        if (bytes < 0) {
+                            uncounted.set(true);
+                        } else {
+                            endedBytes.addAndGet(bytes);
+                        }
+                    }
+                }
+            });
+            synchronized (threads) {
+                threads.add(thread);
+            }
+            return thread;
+        }
+
+        int getCount() {
+            synchronized (threads) {
+                return threads.size();
+            }
+        }
+
+        // Waits for every thread made so far to end, then returns what they allocated, -1 if one was not counted
+        long awaitAllocatedBytes() throws InterruptedException {
+            List<Thread> made;
+            synchronized (threads) {
+                made = new ArrayList<>(threads);
+            }
+            for (Thread thread : made) {
+                thread.join(WORKER_EXIT_TIMEOUT_MS);
+                if (thread.isAlive()) {
+                    return -1;
+                }
+            }
+            return uncounted.get() ? -1 : endedBytes.get();
+        }
+    }
+
+    private static Budget getBudget(String operation) {
+        for (Budget budget : BUDGETS) {
+            if (budget.operation.equals(operation)) {
+                return budget;
+            }
+        }
+        throw new IllegalArgumentException("No budget for " + operation);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.project2;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.util.Log;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * QueryExecutor.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * QueryExecutor is the thin wrapper every inventory query runs through. It times each query and writes the ones
+ * slower than a configurable threshold to a rotating slow-query log in the app's files directory, together with
+ * the shape of the bound parameters and the EXPLAIN QUERY PLAN output, so full table scans show up in the field.
+ *
+ * Components:
+ * - String LOG_FILE_NAME: The name of the current slow-query log, the previous one carries a ".1" suffix.
+ * - long DEFAULT_THRESHOLD_MS: The threshold used until setThresholdMs is called.
+ * - long MAX_LOG_BYTES: The size at which the log is rotated.
+ *
+ * Functions:
+ * - setLogDirectory(File directory): Sets the directory the log is written to, called by the database helpers.
+ * - setThresholdMs(long thresholdMs): Sets the duration above which a query counts as slow.
+ * - rawQuery(SQLiteDatabase db, String sql, String[] selectionArgs): Runs and times a raw SQL query.
+ * - query(SQLiteDatabase db, String table, String[] columns, String selection, String[] selectionArgs, String orderBy):
+ *   Builds, runs and times a SELECT on a table. An overload also takes a LIMIT clause.
+ * - getLogFile(): Returns the current slow-query log file.
+ *
+ * Note:
+ * - Every SELECT of the app goes through here: item queries, journal, stock history, pending scans, sync state, import
+ *   checkpoints, snapshot and backup reads, probes and the app's own bookkeeping tables. Only PRAGMA statements and
+ *   sqlite_master lookups, which read the schema rather than data, call SQLiteDatabase directly.
+ * - SQLite runs a query lazily on the first cursor access, so the cursor's row count is read to time the real work.
+ * - Parameter values are never logged, only their type and length, since they can hold user data.
+ * - The log file is written on a background thread; the query plan is read on the calling thread while the
+ *   connection is still open.
+ */
+public class QueryExecutor {
+
+    private static final String TAG = "QueryExecutor";
+
+    public static final String LOG_FILE_NAME = "slow_queries.log";
+    public static final long DEFAULT_THRESHOLD_MS = 50;
+    public static final long MAX_LOG_BYTES = 256 * 1024;
+
+    private static final ExecutorService LOG_WRITER = Executors.newSingleThreadExecutor();
+
+    private static volatile File logDirectory;
+    private static volatile long thresholdMs = DEFAULT_THRESHOLD_MS;
+
+    private QueryExecutor() {
+    }
+
+    /**
+     * Sets the directory the slow-query log is written to. Slow queries are only sent to logcat until it is set.
+     * @param directory The log directory, usually Context.getFilesDir().
+     */
+    public static void setLogDirectory(File directory) {
+        logDirectory = directory;
+    }
+
+    /**
+     * Sets the duration above which a query is written to the slow-query log.
+     * @param threshold The threshold in milliseconds, 0 logs every query.
+     */
+    public static void setThresholdMs(long threshold) {
+        thresholdMs = threshold;
+    }
+
+    /**
+     * Returns the current slow-query log file.
+     * @return The log file, or null if no directory was set.
+     */
+    public static File getLogFile() {
+        File directory = logDirectory;
+        return directory != null ? new File(directory, LOG_FILE_NAME) : null;
+    }
+
+    /**
+     * Runs and times a SELECT on a table.
+     * @param db The database instance.
+     * @param table The table name.
+     * @param columns The columns to return, null for all.
+     * @param selection The WHERE clause with ? placeholders, null for all rows.
+     * @param selectionArgs The values bound to the placeholders.
+     * @param orderBy The ORDER BY clause, null for none.
+     * @return The cursor, already executed.
+     */
+    public static Cursor query(SQLiteDatabase db, String table, String[] columns, String selection,
+                               String[] selectionArgs, String orderBy) {
+        return query(db, table, columns, selection, selectionArgs, orderBy, null);
+    }
+
+    /**
+     * Runs and times a SELECT on a table with a LIMIT clause.
+     * @param db The database instance.
+     * @param table The table name.
+     * @param columns The columns to return, null for all.
+     * @param selection The WHERE clause with ? placeholders, null for all rows.
+     * @param selectionArgs The values bound to the placeholders.
+     * @param orderBy The ORDER BY clause, null for none.
+     * @param limit The LIMIT clause, null for no limit.
+     * @return The cursor, already executed.
+     */
+    public static Cursor query(SQLiteDatabase db, String table, String[] columns, String selection,
+                               String[] selectionArgs, String orderBy, String limit) {
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table, columns, selection, null, null, orderBy, limit);
+        return rawQuery(db, sql, selectionArgs);
+    }
+
+    /**
+     * Runs and times a raw SQL query.
+     * @param db The database instance.
+     * @param sql The SQL with ? placeholders.
+     * @param selectionArgs The values bound to the placeholders.
+     * @return The cursor, already executed.
+     */
+    public static Cursor rawQuery(SQLiteDatabase db, String sql, String[] selectionArgs) {
+        long start = System.nanoTime();
+        Cursor cursor = db.rawQuery(sql, selectionArgs);
+        // Reading the count makes SQLite fill the first window, which is where the query actually runs
+        int rows = cursor.getCount();
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        if (elapsedMs >= thresholdMs) {
+            logSlowQuery(db, sql, selectionArgs, elapsedMs, rows);
+        }
+        return cursor;
+    }
+
+    // Collects the plan and parameter shapes of a slow query and hands the entry to the log writer
+    private static void logSlowQuery(SQLiteDatabase db, String sql, String[] selectionArgs, long elapsedMs, int rows) {
+        StringBuilder entry = new StringBuilder();
+        entry.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date()))
+                .append(" ").append(elapsedMs).append(" ms, ").append(rows).append(" rows\n")
+                .append("  sql: ").append(sql).append("\n")
+                .append("  params: ").append(describeParameters(selectionArgs)).append("\n");
+
+        try (Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs)) {
+            int detailIndex = plan.getColumnIndex("detail");
+            while (plan.moveToNext()) {
+                entry.append("  plan: ").append(detailIndex >= 0 ? plan.getString(detailIndex) : "?").append("\n");
+            }
+        } catch (Exception e) {
+            entry.append("  plan: unavailable (").append(e.getMessage()).append(")\n");
+        }
+
+        final String text = entry.toString();
+        Log.w(TAG, "Slow query\n" + text);
+
+        final File logFile = getLogFile();
+        if (logFile == null) {
+            return;
+        }
+        LOG_WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                appendToLog(logFile, text);
+            }
+        });
+    }
+
+    // Describes each bound parameter by type and length only, for example [text(7), number, null]
+    private static String describeParameters(String[] selectionArgs) {
+        if (selectionArgs == null || selectionArgs.length == 0) {
+            return "[]";
+        }
+        StringBuilder shapes = new StringBuilder("[");
+        for (int i = 0; i < selectionArgs.length; i++) {
+            String arg = selectionArgs[i];
+            if (i > 0) {
+                shapes.append(", ");
+            }
+            if (arg == null) {
+                shapes.append("null");
+            } else if (isNumber(arg)) {
+                shapes.append("number");
+            } else {
+                shapes.append("text(").append(arg.length()).append(")");
+            }
+        }
+        return shapes.append("]").toString();
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Appends an entry to the log, moving a full log to the ".1" file first
+    private static void appendToLog(File logFile, String text) {
+        if (logFile.length() + text.length() > MAX_LOG_BYTES) {
+            File previous = new File(logFile.getParentFile(), LOG_FILE_NAME + ".1");
+            if (previous.exists() && !previous.delete()) {
+                Log.e(TAG, "Could not delete " + previous);
+            }
+            if (!logFile.renameTo(previous)) {
+                Log.e(TAG, "Could not rotate " + logFile);
+            }
+        }
+        try (Writer writer = new FileWriter(logFile, true)) {
+            writer.write(text);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing slow-query log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.project2;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * QueryResultCache.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * QueryResultCache keeps the item lists of recent queries in memory, keyed by the normalized query (filter shape and
+ * values, sort and page). Every entry remembers the data version of the items table it was read at; triggers bump that
+ * version on every insert, update and delete, so a cached list is only served while the table is unchanged.
+ *
+ * Components:
+ * - String TABLE_DATA_VERSION: Single-row table holding the data version of the items table.
+ * - long DEFAULT_BUDGET_BYTES: The memory budget used when none is given.
+ * - Entry: A cached item list with its estimated size.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the data version table and the triggers that bump it.
+ * - getDataVersion(SQLiteDatabase db): Returns the current data version.
+ * - bumpDataVersion(SQLiteDatabase db): Bumps the version for changes the triggers do not see, such as new columns.
+ * - get(String key, long dataVersion): Returns a copy of the cached list, or null on a miss or a stale entry.
+ * - put(String key, long dataVersion, List<Item> items): Caches a list read at the current version, evicting the least
+ *   recently used lists over budget.
+ * - clear(): Drops every entry.
+ * - getStats(): Returns the hit, miss, eviction and invalidation counts and the memory in use.
+ *
+ * Note:
+ * - When the version moves, every entry is dropped at once, since any write can change any query's result. Any change
+ *   counts, not only an increase: restoring a backup or replacing the database can move the version backwards.
+ * - Sizes are estimates from string lengths and object overheads, not measured heap use.
+ * - Callers get a copy of the cached list, so sorting or filtering it does not change the cached entry.
+ */
+public class QueryResultCache {
+
+    private static final String TAG = "QueryResultCache";
+
+    public static final String TABLE_DATA_VERSION = "items_data_version";
+    public static final long DEFAULT_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    // Rough object overheads used by the size estimate
+    private static final int ITEM_OVERHEAD_BYTES = 96;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int MAP_ENTRY_OVERHEAD_BYTES = 48;
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long cachedVersion = -1;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * A cached item list with its estimated size, all entries belong to the same data version.
+     */
+    private static class Entry {
+        final List<Item> items;
+        final long sizeBytes;
+
+        Entry(List<Item> items, long sizeBytes) {
+            this.items = items;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    public QueryResultCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public QueryResultCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Creates the data version table and the triggers that bump it on every change to the items table.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DATA_VERSION + " (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                "version INTEGER NOT NULL);");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_DATA_VERSION + " (id, version) VALUES (1, 0)");
+        String bump = " BEGIN UPDATE " + TABLE_DATA_VERSION + " SET version = version + 1 WHERE id = 1; END;";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_version_insert AFTER INSERT ON " + InventoryDBHelper.TABLE_NAME + bump);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_version_update AFTER UPDATE ON " + InventoryDBHelper.TABLE_NAME + bump);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_version_delete AFTER DELETE ON " + InventoryDBHelper.TABLE_NAME + bump);
+    }
+
+    /**
+     * Returns the current data version of the items table.
+     * @param db The database instance.
+     * @return The data version.
+     */
+    public static long getDataVersion(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT version FROM " + TABLE_DATA_VERSION + " WHERE id = 1", null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Bumps the data version for changes the triggers do not see, such as a new column.
+     * @param db The database instance.
+     */
+    public static void bumpDataVersion(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_DATA_VERSION + " SET version = version + 1 WHERE id = 1");
+    }
+
+    /**
+     * Returns a copy of the cached item list for a query.
+     * @param key The normalized query.
+     * @param dataVersion The current data version.
+     * @return The items, or null if the query is not cached at this version.
+     */
+    public synchronized List<Item> get(String key, long dataVersion) {
+        invalidateIfChanged(dataVersion);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(entry.items);
+    }
+
+    /**
+     * Caches the item list of a query, evicting the least recently used lists while over budget.
+     * Lists larger than the whole budget are not cached.
+     * @param key The normalized query.
+     * @param dataVersion The data version the list was read at.
+     * @param items The items.
+     */
+    public synchronized void put(String key, long dataVersion, List<Item> items) {
+        if (dataVersion != cachedVersion) {
+            // The version moved while the list was read; the next get at the current version drops or replaces it
+            return;
+        }
+        long sizeBytes = estimateSize(key, items);
+        if (sizeBytes > budgetBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(Collections.unmodifiableList(new ArrayList<>(items)), sizeBytes));
+        if (previous != null) {
+            usedBytes -= previous.sizeBytes;
+        }
+        usedBytes += sizeBytes;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().getValue().sizeBytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every cached list.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Returns the cache metrics as text.
+     * @return The hit, miss, eviction and invalidation counts, the entry count and the memory in use.
+     */
+    public synchronized String getStats() {
+        long lookups = hits + misses;
+        return "hits=" + hits + " misses=" + misses +
+                " hitRate=" + (lookups == 0 ? 0 : hits * 100 / lookups) + "%" +
+                " evictions=" + evictions + " invalidations=" + invalidations +
+                " entries=" + entries.size() + " bytes=" + usedBytes + "/" + budgetBytes;
+    }
+
+    // Drops every entry when the version differs from the one they were read at, in either direction
+    private void invalidateIfChanged(long dataVersion) {
+        if (dataVersion != cachedVersion) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+                Log.d(TAG, "Data version " + cachedVersion + " -> " + dataVersion + ", dropping " + entries.size() + " results");
+            }
+            clear();
+            cachedVersion = dataVersion;
+        }
+    }
+
+    private static long estimateSize(String key, List<Item> items) {
+        long size = STRING_OVERHEAD_BYTES + 2L * key.length();
+        for (Item item : items) {
+            size += ITEM_OVERHEAD_BYTES + stringSize(item.getName()) + stringSize(item.getPartNumber());
+            for (Map.Entry<String, String> value : item.getDynamicValues().entrySet()) {
+                // Display text and typed value, the column name string is shared between items
+                size += 2 * MAP_ENTRY_OVERHEAD_BYTES + 2 * stringSize(value.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long stringSize(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+}
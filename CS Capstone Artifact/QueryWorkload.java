@@ -0,0 +1,154 @@
+package com.example.project2;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * QueryWorkload.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * QueryWorkload counts how often each column of the items table is filtered, sorted and searched on.
+ * The query methods of InventoryDBHelper record every use in memory, and the counts are merged into
+ * the query_workload table when the IndexAdvisor runs, so the workload survives restarts.
+ *
+ * Components:
+ * - int FILTER, SORT, SEARCH: The kinds of column use that are counted.
+ * - String TABLE_WORKLOAD: The table holding the accumulated counts and the last time each column was used.
+ *
+ * Functions:
+ * - record(String columnName, int kind): Counts one use of a column.
+ * - createSchema(SQLiteDatabase db): Creates the workload table.
+ * - flush(SQLiteDatabase db): Adds the in-memory counts to the workload table and resets them.
+ * - getUsage(SQLiteDatabase db): Returns the accumulated counts and last use time of every column.
+ *
+ * Note:
+ * - Recording only touches an atomic counter, so it is cheap enough to run on every query.
+ */
+public class QueryWorkload {
+
+    public static final int FILTER = 0;
+    public static final int SORT = 1;
+    public static final int SEARCH = 2;
+
+    public static final String TABLE_WORKLOAD = "query_workload";
+    public static final String COL_COLUMN_NAME = "column_name";
+    public static final String COL_FILTERS = "filter_count";
+    public static final String COL_SORTS = "sort_count";
+    public static final String COL_SEARCHES = "search_count";
+    public static final String COL_LAST_USED = "last_used";
+
+    /**
+     * Accumulated use of one column.
+     */
+    public static class ColumnUsage {
+        public final long filters;
+        public final long sorts;
+        public final long searches;
+        public final long lastUsed;
+
+        public ColumnUsage(long filters, long sorts, long searches, long lastUsed) {
+            this.filters = filters;
+            this.sorts = sorts;
+            this.searches = searches;
+            this.lastUsed = lastUsed;
+        }
+
+        public long getTotal() {
+            return filters + sorts + searches;
+        }
+    }
+
+    // Counters not yet written to the table, one slot per kind of use
+    private final ConcurrentHashMap<String, AtomicLongArray> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Counts one use of a column.
+     * @param columnName The column name.
+     * @param kind FILTER, SORT or SEARCH.
+     */
+    public void record(String columnName, int kind) {
+        AtomicLongArray counters = pending.get(columnName);
+        if (counters == null) {
+            AtomicLongArray created = new AtomicLongArray(3);
+            counters = pending.putIfAbsent(columnName, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        counters.incrementAndGet(kind);
+    }
+
+    /**
+     * Creates the workload table.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_WORKLOAD + " (" +
+                COL_COLUMN_NAME + " TEXT PRIMARY KEY, " +
+                COL_FILTERS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_SORTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_SEARCHES + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_LAST_USED + " INTEGER NOT NULL DEFAULT 0);");
+    }
+
+    /**
+     * Adds the in-memory counts to the workload table and resets them.
+     * @param db The database instance.
+     */
+    public void flush(SQLiteDatabase db) {
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_WORKLOAD +
+                " (" + COL_COLUMN_NAME + ") VALUES (?)");
+             SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_WORKLOAD + " SET " +
+                     COL_FILTERS + " = " + COL_FILTERS + " + ?, " +
+                     COL_SORTS + " = " + COL_SORTS + " + ?, " +
+                     COL_SEARCHES + " = " + COL_SEARCHES + " + ?, " +
+                     COL_LAST_USED + " = ? WHERE " + COL_COLUMN_NAME + " = ?")) {
+            for (Map.Entry<String, AtomicLongArray> entry : pending.entrySet()) {
+                AtomicLongArray counters = entry.getValue();
+                long filters = counters.getAndSet(FILTER, 0);
+                long sorts = counters.getAndSet(SORT, 0);
+                long searches = counters.getAndSet(SEARCH, 0);
+                if (filters + sorts + searches == 0) {
+                    continue;
+                }
+                insert.bindString(1, entry.getKey());
+                insert.executeInsert();
+                update.bindLong(1, filters);
+                update.bindLong(2, sorts);
+                update.bindLong(3, searches);
+                update.bindLong(4, now);
+                update.bindString(5, entry.getKey());
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the accumulated counts and last use time of every recorded column.
+     * @param db The database instance.
+     * @return A map from column name to its usage.
+     */
+    public static Map<String, ColumnUsage> getUsage(SQLiteDatabase db) {
+        Map<String, ColumnUsage> usage = new HashMap<>();
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_WORKLOAD, new String[]{COL_COLUMN_NAME, COL_FILTERS, COL_SORTS,
+                COL_SEARCHES, COL_LAST_USED}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                usage.put(cursor.getString(0), new ColumnUsage(cursor.getLong(1), cursor.getLong(2),
+                        cursor.getLong(3), cursor.getLong(4)));
+            }
+        }
+        return usage;
+    }
+}
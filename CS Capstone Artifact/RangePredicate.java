@@ -0,0 +1,114 @@
+package com.example.project2;
+
+/*
+ * RangePredicate.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * RangePredicate describes a numeric range condition on one column, such as "price between 10 and 50"
+ * or "weight greater than 2". InventoryDBHelper turns it into a SQL condition so the range is evaluated by SQLite,
+ * where the column's secondary index can be used instead of scanning every item in memory.
+ *
+ * Components:
+ * - String columnName: The column the range applies to, quantity or a numeric dynamic column.
+ * - Double min, Double max: The bounds of the range, null for an open end.
+ * - boolean minInclusive, maxInclusive: Whether each bound itself matches.
+ *
+ * Functions:
+ * - between(String columnName, double min, double max): Creates an inclusive range.
+ * - atLeast(String columnName, double min), greaterThan(String columnName, double min): Create ranges with only a lower bound.
+ * - atMost(String columnName, double max), lessThan(String columnName, double max): Create ranges with only an upper bound.
+ * - toSql(): Builds the parameterized SQL condition.
+ * - getArguments(): Returns the values bound to the condition's placeholders.
+ * - matches(Double value): Evaluates the range in memory, used for items that are already loaded.
+ *
+ * Note:
+ * - Bounds are bound as text; SQLite converts them to numbers because the column has INTEGER or REAL affinity.
+ * - Dates compare as numbers too, bounds for DATE columns are epoch milliseconds.
+ */
+public class RangePredicate {
+
+    private final String columnName;
+    private final Double min;
+    private final Double max;
+    private final boolean minInclusive;
+    private final boolean maxInclusive;
+
+    public RangePredicate(String columnName, Double min, boolean minInclusive, Double max, boolean maxInclusive) {
+        if (min == null && max == null) {
+            throw new IllegalArgumentException("A range needs at least one bound");
+        }
+        this.columnName = columnName;
+        this.min = min;
+        this.max = max;
+        this.minInclusive = minInclusive;
+        this.maxInclusive = maxInclusive;
+    }
+
+    public static RangePredicate between(String columnName, double min, double max) {
+        return new RangePredicate(columnName, min, true, max, true);
+    }
+
+    public static RangePredicate atLeast(String columnName, double min) {
+        return new RangePredicate(columnName, min, true, null, false);
+    }
+
+    public static RangePredicate greaterThan(String columnName, double min) {
+        return new RangePredicate(columnName, min, false, null, false);
+    }
+
+    public static RangePredicate atMost(String columnName, double max) {
+        return new RangePredicate(columnName, null, false, max, true);
+    }
+
+    public static RangePredicate lessThan(String columnName, double max) {
+        return new RangePredicate(columnName, null, false, max, false);
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Builds the parameterized SQL condition, for example "price" >= ? AND "price" <= ?.
+     * @return The SQL condition.
+     */
+    public String toSql() {
+        String column = InventoryDBHelper.quoteIdentifier(columnName);
+        StringBuilder sql = new StringBuilder();
+        if (min != null) {
+            sql.append(column).append(minInclusive ? " >= ?" : " > ?");
+        }
+        if (max != null) {
+            sql.append(min != null ? " AND " : "").append(column).append(maxInclusive ? " <= ?" : " < ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Returns the values bound to the placeholders of toSql(), in order.
+     * @return The bound values.
+     */
+    public String[] getArguments() {
+        if (min != null && max != null) {
+            return new String[]{String.valueOf(min), String.valueOf(max)};
+        }
+        return new String[]{String.valueOf(min != null ? min : max)};
+    }
+
+    /**
+     * Evaluates the range in memory.
+     * @param value The value to check, null never matches.
+     * @return True if the value lies inside the range.
+     */
+    public boolean matches(Double value) {
+        if (value == null) {
+            return false;
+        }
+        if (min != null && (minInclusive ? value < min : value <= min)) {
+            return false;
+        }
+        return max == null || (maxInclusive ? value <= max : value < max);
+    }
+}
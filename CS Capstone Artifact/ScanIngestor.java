@@ -0,0 +1,335 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * ScanIngestor.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * ScanIngestor takes barcode scans at receiving and picking stations, possibly hundreds per second, without a database
+ * write per scan. recordScan only adds the delta to an in-memory counter for the part number; a background flush
+ * periodically takes every pending delta and applies them all to items.quantity in one transaction.
+ *
+ * Components:
+ * - int STRIPES: The number of counter stripes; part numbers are spread over the stripes by hash.
+ * - long DEFAULT_FLUSH_INTERVAL_MS: How often pending deltas are written when no interval is given.
+ * - String TABLE_PENDING_SCANS: Deltas of scanned part numbers that are not in the inventory yet.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the table of pending scans.
+ * - Constructor(Context context): Creates an ingestor for the active shard, with its own connection.
+ * - start(): Starts the periodic flush.
+ * - recordScan(String partNumber, int delta): Adds a scanned quantity to a part's pending delta. Lock-free.
+ * - flush(): Writes every pending delta and every parked delta whose part now exists in one transaction, and returns
+ *   the number of parts updated.
+ * - close(): Stops the periodic flush, writes what is pending and closes the connection.
+ * - getStats(): Returns the scan rate, flush latency, the counts of flushed and unmatched scans and the parked parts.
+ *
+ * Note:
+ * - A scan is durable once the flush that includes it has committed; deltas still in memory are lost if the process dies,
+ *   so close() must be called when the scanning screen goes away.
+ * - A failed flush puts its deltas back into the counters, so they are retried by the next flush.
+ * - Scans of part numbers that are not in the inventory are counted as unmatched and parked in TABLE_PENDING_SCANS;
+ *   a later flush applies them once the part has been added.
+ * - A flush takes each counter by retiring it and removes it from its stripe, so the stripes only hold parts scanned
+ *   since the last flush. A scan that finds a retired counter replaces it, so scans recorded during a flush go into
+ *   the next one.
+ */
+public class ScanIngestor {
+
+    private static final String TAG = "ScanIngestor";
+
+    public static final int STRIPES = 16;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 250;
+    public static final String TABLE_PENDING_SCANS = "pending_scans";
+    private static final String COL_PART_NUMBER = "part_number";
+    private static final String COL_DELTA = "delta";
+
+    // Value of a counter that a flush has taken; it is never a real delta
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    // Pending delta per part number, spread over stripes so concurrent scanners rarely touch the same map
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes = new ConcurrentHashMap[STRIPES];
+    // Scans recorded per stripe, summed for the scan rate
+    private final AtomicLongArray scanCounts = new AtomicLongArray(STRIPES);
+
+    private final InventoryDBHelper helper;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // Metrics, only written by the flushing thread
+    private long flushes;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+    private long partUpdates;
+    private long unmatchedParts;
+    private long parkedParts = -1; // Rows in TABLE_PENDING_SCANS, -1 until the first flush has counted them
+    private long lastScanCount;
+    private long lastRateTime = System.nanoTime();
+    private double scansPerSecond;
+
+    public ScanIngestor(Context context) {
+        this(context, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public ScanIngestor(Context context, long flushIntervalMs) {
+        // Own helper, closed by close() without touching the UI helper's connection
+        this.helper = new InventoryDBHelper(context.getApplicationContext());
+        this.flushIntervalMs = flushIntervalMs;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Creates the table of scans whose part number is not in the inventory yet.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PENDING_SCANS + " (" +
+                COL_PART_NUMBER + " TEXT PRIMARY KEY, " +
+                COL_DELTA + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Starts flushing pending deltas every flush interval.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    Log.e(TAG, "Scheduled flush failed: " + e.getMessage());
+                }
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a scanned quantity to the pending delta of a part. Safe to call from any thread.
+     * @param partNumber The scanned part number.
+     * @param delta The quantity received (positive) or picked (negative).
+     */
+    public void recordScan(String partNumber, int delta) {
+        addPending(partNumber, delta);
+        scanCounts.incrementAndGet(stripeOf(partNumber));
+    }
+
+    /**
+     * Writes every pending delta to items.quantity in one transaction and publishes the updated items. Deltas of parts
+     * that are not in the inventory are parked, and parked deltas of parts that have since been added are applied.
+     * @return The number of parts updated.
+     */
+    public synchronized int flush() {
+        Map<String, Long> pending = takePending();
+        updateRate();
+        if (pending.isEmpty() && parkedParts == 0) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        Set<Long> updatedIds = new LinkedHashSet<>();
+        int unmatched = 0;
+        long parked;
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            db.beginTransaction();
+            try (SQLiteStatement update = db.compileStatement("UPDATE " + InventoryDBHelper.TABLE_NAME + " SET " +
+                    InventoryDBHelper.COL_QUANTITY + " = " + InventoryDBHelper.COL_QUANTITY + " + ? WHERE _id = ?");
+                 SQLiteStatement park = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_PENDING_SCANS + " (" +
+                         COL_PART_NUMBER + ", " + COL_DELTA + ") VALUES (?, 0)");
+                 SQLiteStatement addParked = db.compileStatement("UPDATE " + TABLE_PENDING_SCANS + " SET " +
+                         COL_DELTA + " = " + COL_DELTA + " + ? WHERE " + COL_PART_NUMBER + " = ?")) {
+                for (Map.Entry<String, Long> entry : pending.entrySet()) {
+                    long itemId = findItemId(db, entry.getKey());
+                    if (itemId == -1) {
+                        // Kept until the part is added, so receiving ahead of the item record loses nothing
+                        unmatched++;
+                        Log.e(TAG, "Scanned part not in inventory, parked: " + entry.getKey());
+                        park.bindString(1, entry.getKey());
+                        park.executeInsert();
+                        addParked.bindLong(1, entry.getValue());
+                        addParked.bindString(2, entry.getKey());
+                        addParked.executeUpdateDelete();
+                        continue;
+                    }
+                    update.bindLong(1, entry.getValue());
+                    update.bindLong(2, itemId);
+                    update.executeUpdateDelete();
+                    updatedIds.add(itemId);
+                }
+                if (parkedParts != 0 || unmatched > 0) {
+                    applyParked(db, update, updatedIds);
+                }
+                parked = DatabaseUtils.queryNumEntries(db, TABLE_PENDING_SCANS);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            // Nothing was committed, keep the deltas for the next flush
+            Log.e(TAG, "Flush of " + pending.size() + " parts failed: " + e.getMessage());
+            for (Map.Entry<String, Long> entry : pending.entrySet()) {
+                addPending(entry.getKey(), entry.getValue());
+            }
+            return 0;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushes++;
+        totalFlushNanos += elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        partUpdates += updatedIds.size();
+        unmatchedParts += unmatched;
+        parkedParts = parked;
+
+        if (InventoryEventBus.hasListeners()) {
+            for (long itemId : updatedIds) {
+                Item item = helper.getItem(itemId);
+                if (item != null) {
+                    InventoryEventBus.publish(InventoryChangeEvent.itemUpdated(item));
+                }
+            }
+        }
+        return updatedIds.size();
+    }
+
+    /**
+     * Stops the periodic flush, writes everything pending and closes the connection.
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushIntervalMs * 4, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        helper.close();
+    }
+
+    /**
+     * Returns the ingestion metrics as text.
+     * @return The scans per second at the last flush, the flush count, average and worst flush latency, and the counts of
+     * part updates flushed and unmatched part numbers.
+     */
+    public synchronized String getStats() {
+        return "scansPerSec=" + Math.round(scansPerSecond) +
+                " totalScans=" + totalScans() +
+                " flushes=" + flushes +
+                " avgFlushMs=" + (flushes == 0 ? 0 : totalFlushNanos / flushes / 1000000.0) +
+                " maxFlushMs=" + maxFlushNanos / 1000000.0 +
+                " partUpdates=" + partUpdates +
+                " unmatched=" + unmatchedParts +
+                " parked=" + Math.max(parkedParts, 0);
+    }
+
+    // Adds a delta to the part's counter, replacing a counter that a flush has retired
+    private void addPending(String partNumber, long delta) {
+        ConcurrentHashMap<String, AtomicLong> counters = stripes[stripeOf(partNumber)];
+        while (true) {
+            AtomicLong counter = counters.get(partNumber);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong(delta);
+                if (counters.putIfAbsent(partNumber, created) == null) {
+                    return;
+                }
+                continue;
+            }
+            long current = counter.get();
+            if (current == RETIRED) {
+                counters.remove(partNumber, counter);
+            } else if (counter.compareAndSet(current, current + delta)) {
+                return;
+            }
+        }
+    }
+
+    // Takes the delta of every counter, retiring the counters and removing them from their stripes
+    private Map<String, Long> takePending() {
+        Map<String, Long> pending = new LinkedHashMap<>();
+        for (ConcurrentHashMap<String, AtomicLong> counters : stripes) {
+            for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+                long delta = entry.getValue().getAndSet(RETIRED);
+                counters.remove(entry.getKey(), entry.getValue());
+                if (delta != 0 && delta != RETIRED) {
+                    pending.put(entry.getKey(), delta);
+                }
+            }
+        }
+        return pending;
+    }
+
+    // Applies the parked deltas of parts that are now in the inventory and removes them from the pending scans
+    private static void applyParked(SQLiteDatabase db, SQLiteStatement update, Set<Long> updatedIds) {
+        Map<String, long[]> matched = new LinkedHashMap<>();
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT p." + COL_PART_NUMBER + ", p." + COL_DELTA + ", i._id FROM " +
+                TABLE_PENDING_SCANS + " p JOIN " + InventoryDBHelper.TABLE_NAME + " i ON i." +
+                InventoryDBHelper.COL_PART_NUMBER + " = p." + COL_PART_NUMBER, null)) {
+            while (cursor.moveToNext()) {
+                if (!matched.containsKey(cursor.getString(0))) {
+                    matched.put(cursor.getString(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+                }
+            }
+        }
+        for (Map.Entry<String, long[]> entry : matched.entrySet()) {
+            update.bindLong(1, entry.getValue()[0]);
+            update.bindLong(2, entry.getValue()[1]);
+            update.executeUpdateDelete();
+            updatedIds.add(entry.getValue()[1]);
+            db.delete(TABLE_PENDING_SCANS, COL_PART_NUMBER + " = ?", new String[]{entry.getKey()});
+            Log.d(TAG, "Applied parked scans of " + entry.getKey());
+        }
+    }
+
+    private void updateRate() {
+        long now = System.nanoTime();
+        long scans = totalScans();
+        if (now > lastRateTime) {
+            scansPerSecond = (scans - lastScanCount) * 1e9 / (now - lastRateTime);
+        }
+        lastScanCount = scans;
+        lastRateTime = now;
+    }
+
+    private long totalScans() {
+        long total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            total += scanCounts.get(i);
+        }
+        return total;
+    }
+
+    private static int stripeOf(String partNumber) {
+        return (partNumber.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    // Finds the row of a part number through its index, -1 if the inventory does not have it
+    private static long findItemId(SQLiteDatabase db, String partNumber) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT _id FROM " + InventoryDBHelper.TABLE_NAME + " WHERE " +
+                InventoryDBHelper.COL_PART_NUMBER + " = ? LIMIT 1", new String[]{partNumber})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * SchemaMigrator.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * SchemaMigrator upgrades a database from one version to the next without dropping any data.
+ * Each database helper registers an ordered list of migration steps. Quick schema changes run inside onUpgrade,
+ * while heavy data rewrites are split into chunks that run on a background thread after the database has opened.
+ *
+ * Components:
+ * - Migration: A schema step (ALTER TABLE, CREATE INDEX, triggers) that runs inside onUpgrade.
+ * - ChunkedMigration: A data rewrite that processes one rowid range per call.
+ * - String TABLE_MIGRATIONS: The table recording each step, its state, resume position and timing.
+ * - int DEFAULT_CHUNK_SIZE: Width of the rowid range processed per chunk transaction.
+ *
+ * Functions:
+ * - Constructor(String tag): Creates an empty migrator; steps are added with addMigration and addChunkedMigration.
+ * - addMigration(Migration migration): Registers a schema step.
+ * - addChunkedMigration(ChunkedMigration migration): Registers a background data rewrite.
+ * - upgrade(SQLiteDatabase db, int oldVersion, int newVersion): Runs the schema steps in version order
+ *   and queues the chunked steps of the same versions.
+ * - runPendingInBackground(SQLiteOpenHelper helper): Resumes queued chunked steps on a background thread.
+ * - hasPendingMigrations(SQLiteDatabase db): Checks if any chunked step has not finished yet.
+ * - getMigrationReport(SQLiteDatabase db): Returns one line per step with its state and timing.
+ *
+ * Note:
+ * - Every chunk commits together with its resume position, so a killed process continues where it stopped.
+ * - The background runner uses its own helper instance and never blocks getWritableDatabase() for long.
+ * - The upper bound of a chunked step is fixed when it is queued, rows written later are left to the new code paths.
+ * - Runner state is kept per database file, so every inventory shard finishes its own chunked steps.
+ */
+public class SchemaMigrator {
+
+    public static final String TABLE_MIGRATIONS = "schema_migrations";
+    public static final String COL_NAME = "name";
+    public static final String COL_VERSION = "version";
+    public static final String COL_STATE = "state";
+    public static final String COL_RESUME_AFTER = "resume_after";
+    public static final String COL_UPPER_BOUND = "upper_bound";
+    public static final String COL_ROWS = "rows_processed";
+    public static final String COL_STARTED = "started_at";
+    public static final String COL_FINISHED = "finished_at";
+    public static final String COL_DURATION = "duration_ms";
+
+    public static final String STATE_PENDING = "pending";
+    public static final String STATE_DONE = "done";
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    // Pause between chunks so foreground reads and writes get the database lock
+    private static final long CHUNK_PAUSE_MS = 20;
+
+    /**
+     * A schema step that runs inside onUpgrade and must finish quickly.
+     */
+    public interface Migration {
+        int getVersion();
+
+        String getName();
+
+        void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * A data rewrite that runs in rowid-range chunks on a background thread.
+     */
+    public interface ChunkedMigration {
+        int getVersion();
+
+        String getName();
+
+        /**
+         * Returns the highest rowid the step has to process, read once when the step is queued.
+         * @param db The database, inside the onUpgrade transaction.
+         * @return The inclusive upper bound.
+         */
+        long getUpperBound(SQLiteDatabase db);
+
+        /**
+         * Processes the rows with afterRowId < rowid <= upToRowId.
+         * @param db The database, already inside a transaction.
+         * @param afterRowId The exclusive lower bound.
+         * @param upToRowId The inclusive upper bound.
+         * @return The number of rows processed.
+         */
+        int processChunk(SQLiteDatabase db, long afterRowId, long upToRowId);
+    }
+
+    private final String tag;
+    private final List<Migration> migrations = new ArrayList<>();
+    private final List<ChunkedMigration> chunkedMigrations = new ArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Database files with a runner active, and those whose chunked steps all finished in this process
+    private final Set<String> running = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public SchemaMigrator(String tag) {
+        this.tag = tag;
+    }
+
+    public SchemaMigrator addMigration(Migration migration) {
+        migrations.add(migration);
+        return this;
+    }
+
+    public SchemaMigrator addChunkedMigration(ChunkedMigration migration) {
+        chunkedMigrations.add(migration);
+        return this;
+    }
+
+    /**
+     * Runs the schema steps for versions (oldVersion, newVersion] in order and queues their chunked steps.
+     * @param db The database, inside the onUpgrade transaction.
+     * @param oldVersion The version the database is at.
+     * @param newVersion The version the helper expects.
+     */
+    public void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        createSchema(db);
+        completed.remove(new File(db.getPath()).getName());
+
+        List<Migration> ordered = new ArrayList<>(migrations);
+        Collections.sort(ordered, new Comparator<Migration>() {
+            @Override
+            public int compare(Migration a, Migration b) {
+                return Integer.compare(a.getVersion(), b.getVersion());
+            }
+        });
+
+        for (Migration migration : ordered) {
+            if (migration.getVersion() > oldVersion && migration.getVersion() <= newVersion) {
+                long start = System.currentTimeMillis();
+                migration.migrate(db);
+                long duration = System.currentTimeMillis() - start;
+                recordStep(db, migration.getName(), migration.getVersion(), STATE_DONE, start, duration, 0);
+                Log.d(tag, "Migration " + migration.getName() + " took " + duration + " ms");
+            }
+        }
+
+        for (ChunkedMigration migration : chunkedMigrations) {
+            if (migration.getVersion() > oldVersion && migration.getVersion() <= newVersion) {
+                recordStep(db, migration.getName(), migration.getVersion(), STATE_PENDING, 0, 0, migration.getUpperBound(db));
+                Log.d(tag, "Migration " + migration.getName() + " queued for background processing");
+            }
+        }
+    }
+
+    /**
+     * Resumes queued chunked steps on a background thread.
+     * Calling it again for the same database file while it runs, or after every step has finished in this process, has no effect.
+     * @param helper A helper dedicated to the background runner, so foreground code closing its connection does not interrupt it.
+     */
+    public void runPendingInBackground(SQLiteOpenHelper helper) {
+        final String databaseName = helper.getDatabaseName();
+        if (chunkedMigrations.isEmpty() || completed.contains(databaseName) || !running.add(databaseName)) {
+            helper.close();
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SQLiteDatabase db = helper.getWritableDatabase();
+                    createSchema(db);
+                    for (ChunkedMigration migration : chunkedMigrations) {
+                        runChunks(db, migration);
+                    }
+                    completed.add(databaseName);
+                } catch (Exception e) {
+                    Log.e(tag, "Background migration stopped, it resumes on next open: " + e.getMessage());
+                } finally {
+                    helper.close();
+                    running.remove(databaseName);
+                }
+            }
+        });
+    }
+
+    private void runChunks(SQLiteDatabase db, ChunkedMigration migration) throws InterruptedException {
+        long resumeAfter;
+        long upperBound;
+        long rows;
+        long durationSoFar;
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_MIGRATIONS,
+                new String[]{COL_RESUME_AFTER, COL_UPPER_BOUND, COL_ROWS, COL_DURATION},
+                COL_NAME + "=? AND " + COL_STATE + "=?", new String[]{migration.getName(), STATE_PENDING}, null)) {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            resumeAfter = cursor.getLong(0);
+            upperBound = cursor.getLong(1);
+            rows = cursor.getLong(2);
+            durationSoFar = cursor.getLong(3);
+        }
+
+        Log.d(tag, "Running migration " + migration.getName() + " from rowid " + resumeAfter + " to " + upperBound);
+        do {
+            long next = Math.min(resumeAfter + DEFAULT_CHUNK_SIZE, upperBound);
+            long start = System.currentTimeMillis();
+            db.beginTransaction();
+            try {
+                rows += migration.processChunk(db, resumeAfter, next);
+                durationSoFar += System.currentTimeMillis() - start;
+
+                // Store the resume position in the same transaction as the chunk itself
+                ContentValues values = new ContentValues();
+                values.put(COL_RESUME_AFTER, next);
+                values.put(COL_ROWS, rows);
+                values.put(COL_DURATION, durationSoFar);
+                if (next >= upperBound) {
+                    values.put(COL_STATE, STATE_DONE);
+                    values.put(COL_FINISHED, System.currentTimeMillis());
+                }
+                db.update(TABLE_MIGRATIONS, values, COL_NAME + "=?", new String[]{migration.getName()});
+                db.setTransactionSuccessful();
+                resumeAfter = next;
+            } finally {
+                db.endTransaction();
+            }
+            Thread.sleep(CHUNK_PAUSE_MS);
+        } while (resumeAfter < upperBound);
+        Log.d(tag, "Migration " + migration.getName() + " finished in " + durationSoFar + " ms");
+    }
+
+    /**
+     * Checks if any chunked step has not finished yet.
+     * @param db The database instance.
+     * @return True if a background step is still pending.
+     */
+    public boolean hasPendingMigrations(SQLiteDatabase db) {
+        createSchema(db);
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT COUNT(*) FROM " + TABLE_MIGRATIONS + " WHERE " + COL_STATE + "=?",
+                new String[]{STATE_PENDING})) {
+            return cursor.moveToFirst() && cursor.getLong(0) > 0;
+        }
+    }
+
+    /**
+     * Returns one line per recorded step with its version, state, rows processed and time spent.
+     * @param db The database instance.
+     * @return The report lines in version order.
+     */
+    public List<String> getMigrationReport(SQLiteDatabase db) {
+        createSchema(db);
+        List<String> report = new ArrayList<>();
+        try (Cursor cursor = QueryExecutor.query(db, TABLE_MIGRATIONS,
+                new String[]{COL_VERSION, COL_NAME, COL_STATE, COL_ROWS, COL_DURATION},
+                null, null, COL_VERSION + ", " + COL_STARTED)) {
+            while (cursor.moveToNext()) {
+                report.add("v" + cursor.getInt(0) + " " + cursor.getString(1) + ": " + cursor.getString(2) +
+                        ", " + cursor.getLong(3) + " rows, " + cursor.getLong(4) + " ms");
+            }
+        }
+        return report;
+    }
+
+    private static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MIGRATIONS + " (" +
+                COL_NAME + " TEXT PRIMARY KEY, " +
+                COL_VERSION + " INTEGER NOT NULL, " +
+                COL_STATE + " TEXT NOT NULL, " +
+                COL_RESUME_AFTER + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_UPPER_BOUND + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_ROWS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_STARTED + " INTEGER, " +
+                COL_FINISHED + " INTEGER, " +
+                COL_DURATION + " INTEGER NOT NULL DEFAULT 0);");
+    }
+
+    private static void recordStep(SQLiteDatabase db, String name, int version, String state, long startedAt,
+                                   long duration, long upperBound) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COL_NAME, name);
+        values.put(COL_VERSION, version);
+        values.put(COL_STATE, state);
+        values.put(COL_STARTED, startedAt > 0 ? startedAt : now);
+        values.put(COL_DURATION, duration);
+        values.put(COL_UPPER_BOUND, upperBound);
+        if (STATE_DONE.equals(state)) {
+            values.put(COL_FINISHED, now);
+        }
+        db.insertWithOnConflict(TABLE_MIGRATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -8,7 +8,6 @@ import android.telephony.SmsManager;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.ActionBarDrawerToggle;
@@ -19,8 +18,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.navigation.NavigationView;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,13 +45,19 @@ import android.widget.ImageButton;
  * - CsvImporter: Manages the import of CSV files into the application.
  *
  * Functionality:
- * - onCreate(): Initializes views, components, and listeners. Retrieves items from the database, logs their details, and sets up the RecyclerView.
- *   Additionally, it dynamically adds EditText fields based on column names retrieved from the database.
+ * - onCreate(): Initializes views, components, and listeners. Selects the logged-in user's inventory shard, retrieves items
+ *   from the database, logs their details, and sets up the RecyclerView.
+ *   Additionally, the add-item dialog shows one field per dynamic column, from the cached form schema.
+ *   The filter button runs equality and range filters in SQLite through InventoryDBHelper.queryItems.
+ *   It also installs IdleMaintenance, which tunes indexes, compacts stock history and maintains the database once the
+ *   app has been idle for a while.
  * - onCreateOptionsMenu(): Inflates the menu layout for the navigation drawer.
  * - onPostCreate(): Syncs the toggle state after the activity's state restoration.
  * - sendSms(): Sends an SMS notification to a predefined phone number indicating low stock of inventory items.
  * - handleNavigationItemClick(): Handles clicks on navigation items by executing corresponding actions such as adding items, sending SMS, etc.
  * - onActivityResult(): Handles the result of file selection for CSV import.
+ * - onDestroy(): Unsubscribes the adapter and the header from inventory change events and closes the database helper.
+ * - onResume(): Shows the item count and units on hand in the ActionBar subtitle, read from the inventory summary.
  *
  * Note:
  * - The class relies on various resource files such as layout XML (main_screen), menu XML (drawer_menu), and string resources.
@@ -69,6 +73,10 @@ public class SecondActivity extends AppCompatActivity {
     private DrawerLayout drawerLayout;
     private ActionBarDrawerToggle actionBarDrawerToggle;
     private CsvImporter csvImporter;
+    private ItemAdapter itemAdapter;
+
+    // Keeps the dashboard header current as items change
+    private final InventoryChangeEvent.Listener headerListener = event -> updateDashboardHeader();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -82,12 +90,22 @@ public class SecondActivity extends AppCompatActivity {
         ImageButton btnOpenDrawer = findViewById(R.id.btnOpenDrawer);
         ImageButton btnFilter = findViewById(R.id.btnFilter);
 
+        // Open the logged-in user's inventory shard, passed by MainActivity
+        InventoryShardManager shardManager = InventoryShardManager.getInstance(this);
+        String shardKey = getIntent().getStringExtra(InventoryShardManager.EXTRA_SHARD_KEY);
+        if (shardKey != null && !shardKey.trim().isEmpty()) {
+            shardManager.setActiveShard(shardKey);
+        }
+
         // Initialize the InventoryDBHelper
-        inventoryDBHelper = new InventoryDBHelper(this);
+        inventoryDBHelper = shardManager.getActiveHelper();
 
         // Initialize the CsvImporter
         csvImporter = new CsvImporter(this);
 
+        // Index decisions, stock history rollups and database maintenance run once the app is idle
+        IdleMaintenance.install(getApplication());
+
         // Retrieve all items from the database
         List<Item> allItems = inventoryDBHelper.getAllItems();
 
@@ -107,21 +125,17 @@ public class SecondActivity extends AppCompatActivity {
         }
 
         // Create and set up the adapter
-        ItemAdapter itemAdapter = new ItemAdapter(allItems, this);
+        itemAdapter = new ItemAdapter(allItems, this);
+        itemAdapter.setColumnTypes(inventoryDBHelper.getColumnTypes());
         recyclerViewItems.setLayoutManager(new LinearLayoutManager(this));
         recyclerViewItems.setAdapter(itemAdapter);
 
-        // Set up other components and listeners
-        dynamicFieldsAdapter = new DynamicFieldsAdapter();
-
-        // Retrieve column names from the database
-        List<String> columnNames = inventoryDBHelper.getAllColumnNames();
+        // Apply inserted, updated and deleted items to the list and header as they are committed
+        InventoryEventBus.subscribe(itemAdapter);
+        InventoryEventBus.subscribe(headerListener);
 
-        // Add EditText fields dynamically with the retrieved column names
-        for (String columnName : columnNames) {
-            EditText editText = new EditText(this);
-            dynamicFieldsAdapter.addEditText(columnName, editText);
-        }
+        // Set up other components and listeners; the add-item dialog fills the fields from the cached form schema
+        dynamicFieldsAdapter = new DynamicFieldsAdapter();
 
         // Set up the ActionBarDrawerToggle
         actionBarDrawerToggle = new ActionBarDrawerToggle(this, drawerLayout, R.string.navigation_drawer_open, R.string.navigation_drawer_close);
@@ -149,10 +163,16 @@ public class SecondActivity extends AppCompatActivity {
         btnFilter.setOnClickListener(v -> {
             // Get user-defined filter criteria
             Map<String, String> filterMap = new HashMap<>();
-            // Populate filterMap with user-defined criteria (e.g., from EditText fields)
+            List<RangePredicate> ranges = new ArrayList<>();
+            // Populate filterMap and ranges with user-defined criteria (e.g., from EditText fields)
 
-            // Call filter method on adapter
-            itemAdapter.filterList(filterMap);
+            // Run the filter in SQLite, where the secondary indexes apply, and show the result
+            try {
+                itemAdapter.updateData(inventoryDBHelper.queryItems(filterMap, ranges));
+            } catch (IllegalArgumentException e) {
+                Log.e("SecondActivity", "Invalid filter: " + e.getMessage());
+                Toast.makeText(this, "Invalid filter", Toast.LENGTH_SHORT).show();
+            }
         });
     }
 
@@ -205,18 +225,46 @@ public class SecondActivity extends AppCompatActivity {
         drawerLayout.closeDrawer(GravityCompat.START);
     }
 
+    @Override
+    protected void onDestroy() {
+        InventoryEventBus.unsubscribe(itemAdapter);
+        InventoryEventBus.unsubscribe(headerListener);
+        // The helper keeps its connection open between queries
+        inventoryDBHelper.close();
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        updateDashboardHeader();
+    }
+
+    // Method to show the inventory totals in the ActionBar, served by the summary table instead of counting items
+    private void updateDashboardHeader() {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar == null) {
+            return;
+        }
+        try {
+            InventoryReport.Totals totals = inventoryDBHelper.getInventoryTotals();
+            actionBar.setSubtitle(totals.itemCount + " items, " + totals.totalQuantity + " units on hand");
+        } catch (Exception e) {
+            Log.e("SecondActivity", "Error reading inventory totals: " + e.getMessage());
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == CsvImporter.REQUEST_CODE_SELECT_FILE && resultCode == Activity.RESULT_OK) {
             // Handle file selection result
             Uri selectedFileUri = data.getData();
-            try {
-                InputStream inputStream = getContentResolver().openInputStream(selectedFileUri);
-                csvImporter.importCsvFile(inputStream); // Start CSV import process
-            } catch (IOException e) {
-                e.printStackTrace();
-                Log.e("SecondActivity", "Error importing CSV file", e);
+            if (selectedFileUri != null) {
+                // Imported by URI, so an interrupted import of the same file resumes at its checkpoint
+                csvImporter.importCsvFile(selectedFileUri);
+            } else {
+                Log.e("SecondActivity", "No CSV file selected");
             }
         }
     }
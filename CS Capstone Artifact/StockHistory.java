@@ -0,0 +1,443 @@
+package com.example.project2;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * StockHistory.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * StockHistory keeps an append-only log of every change to an item's quantity, so the stock of a part at any past time
+ * and its usage per hour, day or week can be answered although quantities are overwritten in place. The log is written by
+ * SQLite triggers on the items table, like the ChangeJournal, and compacted in the background into hourly, daily and
+ * weekly rollup tables. Raw movements are only kept for a retention period; the rollups hold the full history.
+ *
+ * Components:
+ * - String TABLE_MOVEMENTS: The movement log, one row per quantity change with its time.
+ * - String TABLE_STATE: Single-row table holding the last compacted movement and when compaction last ran.
+ * - Granularity: The rollup tables, HOUR, DAY and WEEK, and how each aligns its buckets.
+ * - UsageBucket: The stock received and used in one bucket.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the movement log, the rollup tables and the triggers.
+ * - seedOpeningBalances(SQLiteDatabase db): Records the quantity of every existing item as an opening movement.
+ * - suspendLogging(SQLiteDatabase db), resumeLogging(SQLiteDatabase db): Stop the triggers while the items table is
+ *   replaced wholesale, such as by a snapshot restore, then log one net adjustment per part that changed.
+ * - compactInBackground(Context context): Compacts and applies retention on a background thread, at most once per interval.
+ * - compact(SQLiteDatabase db): Adds the movements logged since the last compaction to the rollups.
+ * - applyRetention(SQLiteDatabase db, long now): Deletes compacted raw movements and hourly rollups past their retention.
+ * - getStockAt(SQLiteDatabase db, String partNumber, long time): Returns the stock of a part at a time.
+ * - getUsage(SQLiteDatabase db, String partNumber, long from, long to, Granularity granularity): Returns the stock received
+ *   and used per bucket in a time range.
+ *
+ * Note:
+ * - Times are epoch milliseconds and buckets are UTC: hours and days as such, weeks starting on Monday. Every week is
+ *   exactly seven days and every day 24 hours, so a time range splits into whole weeks, days and hours.
+ * - getStockAt sums whole weeks, then the days and hours up to the time, then the raw movements of the last partial hour
+ *   and those not compacted yet, so it reads O(weeks + 7 + 24) rollup rows however long the history is. The result is
+ *   exact within RAW_RETENTION_MS; see below for older times.
+ * - The queries read the compaction watermark inside the same statement, so a compaction committing meanwhile cannot
+ *   count a movement twice.
+ * - Older times are clamped to the finest bucket retention keeps: past RAW_RETENTION_MS getStockAt returns the stock at
+ *   the start of the hour, past HOURLY_RETENTION_MS at the start of the day. The clamp follows the current time rather
+ *   than when retention last ran, so an answer does not change when the background compaction deletes rows.
+ * - Movements are recorded per part number; items without one are not tracked. Changing an item's part number moves its
+ *   quantity from the old part to the new one.
+ */
+public class StockHistory {
+
+    private static final String TAG = "StockHistory";
+
+    public static final String TABLE_MOVEMENTS = "stock_movements";
+    public static final String TABLE_STATE = "stock_history_state";
+    public static final String COL_SEQ = "seq";
+    public static final String COL_ITEM_ID = "item_id";
+    public static final String COL_PART_NUMBER = "part_number";
+    public static final String COL_DELTA = "delta";
+    public static final String COL_AT = "at";
+    public static final String COL_BUCKET_START = "bucket_start";
+    public static final String COL_QUANTITY_IN = "quantity_in";
+    public static final String COL_QUANTITY_OUT = "quantity_out";
+    public static final String COL_MOVEMENTS = "movements";
+    public static final String COL_COMPACTED_SEQ = "compacted_seq";
+    public static final String COL_LAST_COMPACTED = "last_compacted_at";
+
+    private static final long HOUR_MS = 60L * 60 * 1000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long WEEK_MS = 7 * DAY_MS;
+    // 1970-01-05, the first Monday after the epoch
+    private static final long MONDAY_OFFSET_MS = 4 * DAY_MS;
+
+    public static final long RAW_RETENTION_MS = 30 * DAY_MS;
+    public static final long HOURLY_RETENTION_MS = 365 * DAY_MS;
+    private static final long MIN_COMPACT_INTERVAL_MS = 15 * 60 * 1000;
+    // Movements folded into the rollups per transaction
+    private static final int COMPACT_CHUNK = 10000;
+
+    private static final String NOW_MS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+    // Balance per part before a wholesale replace of the items table, for the adjustments logged after it
+    private static final String TABLE_BALANCE_BEFORE = "temp.stock_balance_before";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    /**
+     * A rollup table and the size and alignment of its buckets.
+     */
+    public enum Granularity {
+        HOUR("stock_rollup_hour", HOUR_MS, 0),
+        DAY("stock_rollup_day", DAY_MS, 0),
+        WEEK("stock_rollup_week", WEEK_MS, MONDAY_OFFSET_MS);
+
+        final String table;
+        final long bucketMs;
+        final long offsetMs;
+
+        Granularity(String table, long bucketMs, long offsetMs) {
+            this.table = table;
+            this.bucketMs = bucketMs;
+            this.offsetMs = offsetMs;
+        }
+
+        /**
+         * Returns the start of the bucket a time falls in.
+         * @param time The time in epoch milliseconds.
+         * @return The bucket start in epoch milliseconds.
+         */
+        public long bucketStart(long time) {
+            return Math.floorDiv(time - offsetMs, bucketMs) * bucketMs + offsetMs;
+        }
+
+        // The same calculation in SQL, for a column holding epoch milliseconds
+        String bucketSql(String column) {
+            return "((" + column + " - " + offsetMs + ") / " + bucketMs + ") * " + bucketMs + " + " + offsetMs;
+        }
+    }
+
+    /**
+     * The stock received and used in one bucket.
+     */
+    public static class UsageBucket {
+        public final long bucketStart;
+        public final long quantityIn;
+        public final long quantityOut;
+        public final long movements;
+
+        UsageBucket(long bucketStart, long quantityIn, long quantityOut, long movements) {
+            this.bucketStart = bucketStart;
+            this.quantityIn = quantityIn;
+            this.quantityOut = quantityOut;
+            this.movements = movements;
+        }
+
+        @Override
+        public String toString() {
+            return bucketStart + ": +" + quantityIn + " -" + quantityOut + " (" + movements + " movements)";
+        }
+    }
+
+    private StockHistory() {
+    }
+
+    /**
+     * Creates the movement log, the rollup tables and the triggers that feed the log.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MOVEMENTS + " (" +
+                COL_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_ITEM_ID + " INTEGER NOT NULL, " +
+                COL_PART_NUMBER + " TEXT NOT NULL, " +
+                COL_DELTA + " INTEGER NOT NULL, " +
+                COL_AT + " INTEGER NOT NULL);");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_MOVEMENTS + "_part_at ON " + TABLE_MOVEMENTS +
+                " (" + COL_PART_NUMBER + ", " + COL_AT + ")");
+        for (Granularity granularity : Granularity.values()) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + granularity.table + " (" +
+                    COL_PART_NUMBER + " TEXT NOT NULL, " +
+                    COL_BUCKET_START + " INTEGER NOT NULL, " +
+                    COL_QUANTITY_IN + " INTEGER NOT NULL, " +
+                    COL_QUANTITY_OUT + " INTEGER NOT NULL, " +
+                    COL_MOVEMENTS + " INTEGER NOT NULL, " +
+                    "PRIMARY KEY (" + COL_PART_NUMBER + ", " + COL_BUCKET_START + ")) WITHOUT ROWID;");
+        }
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_STATE + " (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                COL_COMPACTED_SEQ + " INTEGER NOT NULL, " +
+                COL_LAST_COMPACTED + " INTEGER NOT NULL);");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_STATE + " (id, " + COL_COMPACTED_SEQ + ", " + COL_LAST_COMPACTED +
+                ") VALUES (1, 0, 0)");
+        createTriggers(db);
+        Log.d(TAG, "Stock history schema created");
+    }
+
+    // Creates the triggers that log every quantity change of the items table
+    private static void createTriggers(SQLiteDatabase db) {
+        String items = InventoryDBHelper.TABLE_NAME;
+        String part = InventoryDBHelper.COL_PART_NUMBER;
+        String quantity = InventoryDBHelper.COL_QUANTITY;
+        String insert = "INSERT INTO " + TABLE_MOVEMENTS + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " +
+                COL_DELTA + ", " + COL_AT + ") ";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_movement_insert AFTER INSERT ON " + items +
+                " WHEN NEW." + part + " IS NOT NULL AND IFNULL(NEW." + quantity + ", 0) <> 0" +
+                " BEGIN " + insert + "VALUES (NEW._id, NEW." + part + ", NEW." + quantity + ", " + NOW_MS + "); END;");
+        // A new part number moves the whole quantity: out of the old part, into the new one
+        String newDelta = "IFNULL(NEW." + quantity + ", 0) - CASE WHEN OLD." + part + " IS NEW." + part +
+                " THEN IFNULL(OLD." + quantity + ", 0) ELSE 0 END";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_movement_update AFTER UPDATE OF " + quantity + ", " + part +
+                " ON " + items + " BEGIN " +
+                insert + "SELECT OLD._id, OLD." + part + ", -IFNULL(OLD." + quantity + ", 0), " + NOW_MS +
+                " WHERE OLD." + part + " IS NOT NULL AND OLD." + part + " IS NOT NEW." + part +
+                " AND IFNULL(OLD." + quantity + ", 0) <> 0; " +
+                insert + "SELECT NEW._id, NEW." + part + ", " + newDelta + ", " + NOW_MS +
+                " WHERE NEW." + part + " IS NOT NULL AND (" + newDelta + ") <> 0; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_items_movement_delete AFTER DELETE ON " + items +
+                " WHEN OLD." + part + " IS NOT NULL AND IFNULL(OLD." + quantity + ", 0) <> 0" +
+                " BEGIN " + insert + "VALUES (OLD._id, OLD." + part + ", -OLD." + quantity + ", " + NOW_MS + "); END;");
+    }
+
+    /**
+     * Stops logging movements and remembers the balance of every part, before the items table is replaced wholesale.
+     * Deleting and re-inserting every row would otherwise log each quantity out and back in, inflating usage in the
+     * rollups. Call inside the transaction that replaces the rows and call resumeLogging before it commits.
+     * @param db The database instance.
+     */
+    public static void suspendLogging(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BALANCE_BEFORE);
+        db.execSQL("CREATE TABLE " + TABLE_BALANCE_BEFORE + " AS SELECT " + InventoryDBHelper.COL_PART_NUMBER + " AS part, " +
+                "SUM(IFNULL(" + InventoryDBHelper.COL_QUANTITY + ", 0)) AS quantity FROM " + InventoryDBHelper.TABLE_NAME +
+                " WHERE " + InventoryDBHelper.COL_PART_NUMBER + " IS NOT NULL GROUP BY " + InventoryDBHelper.COL_PART_NUMBER);
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_movement_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_movement_update");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_items_movement_delete");
+    }
+
+    /**
+     * Logs one movement per part whose balance differs from the one suspendLogging remembered, then logs movements again.
+     * @param db The database instance.
+     */
+    public static void resumeLogging(SQLiteDatabase db) {
+        String part = InventoryDBHelper.COL_PART_NUMBER;
+        db.execSQL("INSERT INTO " + TABLE_MOVEMENTS + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_DELTA + ", " +
+                COL_AT + ") SELECT IFNULL(MIN(item_id), 0), part, SUM(quantity), " + NOW_MS + " FROM (" +
+                "SELECT NULL AS item_id, part, -quantity AS quantity FROM " + TABLE_BALANCE_BEFORE +
+                " UNION ALL SELECT _id, " + part + ", IFNULL(" + InventoryDBHelper.COL_QUANTITY + ", 0) FROM " +
+                InventoryDBHelper.TABLE_NAME + " WHERE " + part + " IS NOT NULL) GROUP BY part HAVING SUM(quantity) <> 0");
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BALANCE_BEFORE);
+        createTriggers(db);
+    }
+
+    /**
+     * Records the current quantity of every item as an opening movement, used when the log is added to an existing database.
+     * @param db The database instance.
+     */
+    public static void seedOpeningBalances(SQLiteDatabase db) {
+        String part = InventoryDBHelper.COL_PART_NUMBER;
+        String quantity = InventoryDBHelper.COL_QUANTITY;
+        db.execSQL("INSERT INTO " + TABLE_MOVEMENTS + " (" + COL_ITEM_ID + ", " + COL_PART_NUMBER + ", " + COL_DELTA + ", " +
+                COL_AT + ") SELECT _id, " + part + ", " + quantity + ", " + NOW_MS + " FROM " + InventoryDBHelper.TABLE_NAME +
+                " WHERE " + part + " IS NOT NULL AND IFNULL(" + quantity + ", 0) <> 0 ORDER BY _id");
+    }
+
+    /**
+     * Compacts the movement log and applies retention on a background thread. Calls while it runs, or within the minimum
+     * interval of the last run, have no effect.
+     * The task opens its own helper and closes it when done, so the UI helper's connection stays open.
+     * @param context The context used to open the database.
+     */
+    public static void compactInBackground(Context context) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SQLiteDatabase db = helper.getWritableDatabase();
+                    long now = System.currentTimeMillis();
+                    if (now - getLastCompacted(db) < MIN_COMPACT_INTERVAL_MS) {
+                        return;
+                    }
+                    int compacted = compact(db);
+                    int deleted = applyRetention(db, now);
+                    Log.d(TAG, "Stock history compacted " + compacted + " movements, deleted " + deleted + " rows");
+                } catch (Exception e) {
+                    Log.e(TAG, "Stock history compaction failed: " + e.getMessage());
+                } finally {
+                    helper.close();
+                    RUNNING.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the movements logged since the last compaction to every rollup table, a chunk of movements per transaction.
+     * @param db The database instance.
+     * @return The number of movements compacted.
+     */
+    public static int compact(SQLiteDatabase db) {
+        long compactedSeq = getCompactedSeq(db);
+        long maxSeq;
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT IFNULL(MAX(" + COL_SEQ + "), 0) FROM " + TABLE_MOVEMENTS, null)) {
+            maxSeq = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+        int compacted = 0;
+        while (compactedSeq < maxSeq) {
+            long upTo = Math.min(maxSeq, compactedSeq + COMPACT_CHUNK);
+            db.beginTransaction();
+            try {
+                for (Granularity granularity : Granularity.values()) {
+                    rollUp(db, granularity, compactedSeq, upTo);
+                }
+                db.execSQL("UPDATE " + TABLE_STATE + " SET " + COL_COMPACTED_SEQ + " = ?, " + COL_LAST_COMPACTED +
+                        " = ? WHERE id = 1", new Object[]{upTo, System.currentTimeMillis()});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            compacted += (int) (upTo - compactedSeq);
+            compactedSeq = upTo;
+        }
+        if (compacted == 0) {
+            db.execSQL("UPDATE " + TABLE_STATE + " SET " + COL_LAST_COMPACTED + " = ? WHERE id = 1",
+                    new Object[]{System.currentTimeMillis()});
+        }
+        return compacted;
+    }
+
+    // Adds the movements in the sequence range (fromSeq, toSeq] to the buckets of one rollup table
+    private static void rollUp(SQLiteDatabase db, Granularity granularity, long fromSeq, long toSeq) {
+        String table = granularity.table;
+        db.execSQL("INSERT OR REPLACE INTO " + table + " (" + COL_PART_NUMBER + ", " + COL_BUCKET_START + ", " +
+                COL_QUANTITY_IN + ", " + COL_QUANTITY_OUT + ", " + COL_MOVEMENTS + ") " +
+                "SELECT s.part, s.bucket, IFNULL(r." + COL_QUANTITY_IN + ", 0) + s.qin, " +
+                "IFNULL(r." + COL_QUANTITY_OUT + ", 0) + s.qout, IFNULL(r." + COL_MOVEMENTS + ", 0) + s.n " +
+                "FROM (SELECT " + COL_PART_NUMBER + " AS part, " + granularity.bucketSql(COL_AT) + " AS bucket, " +
+                "SUM(CASE WHEN " + COL_DELTA + " > 0 THEN " + COL_DELTA + " ELSE 0 END) AS qin, " +
+                "SUM(CASE WHEN " + COL_DELTA + " < 0 THEN -" + COL_DELTA + " ELSE 0 END) AS qout, COUNT(*) AS n " +
+                "FROM " + TABLE_MOVEMENTS + " WHERE " + COL_SEQ + " > ? AND " + COL_SEQ + " <= ? " +
+                "GROUP BY part, bucket) s " +
+                "LEFT JOIN " + table + " r ON r." + COL_PART_NUMBER + " = s.part AND r." + COL_BUCKET_START + " = s.bucket",
+                new Object[]{fromSeq, toSeq});
+    }
+
+    /**
+     * Deletes raw movements that are compacted and older than RAW_RETENTION_MS, and hourly rollups older than
+     * HOURLY_RETENTION_MS. Daily and weekly rollups are kept.
+     * @param db The database instance.
+     * @param now The current time in epoch milliseconds.
+     * @return The number of rows deleted.
+     */
+    public static int applyRetention(SQLiteDatabase db, long now) {
+        int deleted = db.delete(TABLE_MOVEMENTS, COL_SEQ + " <= ? AND " + COL_AT + " < ?",
+                new String[]{String.valueOf(getCompactedSeq(db)), String.valueOf(rawCutoff(now))});
+        deleted += db.delete(Granularity.HOUR.table, COL_BUCKET_START + " < ?", new String[]{String.valueOf(hourlyCutoff(now))});
+        return deleted;
+    }
+
+    // Whole hours and days only, so a partly deleted bucket never leaves getStockAt half a period
+    private static long rawCutoff(long now) {
+        return Granularity.HOUR.bucketStart(now - RAW_RETENTION_MS);
+    }
+
+    private static long hourlyCutoff(long now) {
+        return Granularity.DAY.bucketStart(now - HOURLY_RETENTION_MS);
+    }
+
+    /**
+     * Returns the stock of a part at a time, from the rollups and the raw movements after them.
+     * @param db The database instance.
+     * @param partNumber The part number.
+     * @param time The time in epoch milliseconds. Times past RAW_RETENTION_MS are clamped to the start of their hour,
+     * times past HOURLY_RETENTION_MS to the start of their day.
+     * @return The quantity on hand at that time, summed over every item with the part number.
+     */
+    public static long getStockAt(SQLiteDatabase db, String partNumber, long time) {
+        // Clamp to the finest bucket retention keeps, whether or not retention has deleted the finer rows yet
+        long now = System.currentTimeMillis();
+        if (time < hourlyCutoff(now)) {
+            time = Granularity.DAY.bucketStart(time);
+        } else if (time < rawCutoff(now)) {
+            time = Granularity.HOUR.bucketStart(time);
+        }
+        long hourStart = Granularity.HOUR.bucketStart(time);
+        long dayStart = Granularity.DAY.bucketStart(time);
+        long weekStart = Granularity.WEEK.bucketStart(time);
+        String compactedSeq = "(SELECT " + COL_COMPACTED_SEQ + " FROM " + TABLE_STATE + " WHERE id = 1)";
+        String net = "IFNULL(SUM(" + COL_QUANTITY_IN + " - " + COL_QUANTITY_OUT + "), 0)";
+        String sql = "SELECT " +
+                "(SELECT " + net + " FROM " + Granularity.WEEK.table +
+                " WHERE " + COL_PART_NUMBER + " = ?1 AND " + COL_BUCKET_START + " < ?2) + " +
+                "(SELECT " + net + " FROM " + Granularity.DAY.table +
+                " WHERE " + COL_PART_NUMBER + " = ?1 AND " + COL_BUCKET_START + " >= ?2 AND " + COL_BUCKET_START + " < ?3) + " +
+                "(SELECT " + net + " FROM " + Granularity.HOUR.table +
+                " WHERE " + COL_PART_NUMBER + " = ?1 AND " + COL_BUCKET_START + " >= ?3 AND " + COL_BUCKET_START + " < ?4) + " +
+                // The partial hour up to the time, from compacted movements
+                "(SELECT IFNULL(SUM(" + COL_DELTA + "), 0) FROM " + TABLE_MOVEMENTS +
+                " WHERE " + COL_PART_NUMBER + " = ?1 AND " + COL_AT + " >= ?4 AND " + COL_AT + " < ?5 AND " + COL_SEQ + " <= " +
+                compactedSeq + ") + " +
+                // Movements not compacted yet are in no rollup
+                "(SELECT IFNULL(SUM(" + COL_DELTA + "), 0) FROM " + TABLE_MOVEMENTS +
+                " WHERE " + COL_SEQ + " > " + compactedSeq + " AND " + COL_PART_NUMBER + " = ?1 AND " + COL_AT + " < ?5)";
+        String[] args = {partNumber, String.valueOf(weekStart), String.valueOf(dayStart), String.valueOf(hourStart),
+                String.valueOf(time)};
+        try (Cursor cursor = QueryExecutor.rawQuery(db, sql, args)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Returns the stock of a part received and used per bucket in a time range, including movements not compacted yet.
+     * @param db The database instance.
+     * @param partNumber The part number.
+     * @param from The inclusive start of the range in epoch milliseconds, rounded down to its bucket.
+     * @param to The exclusive end of the range in epoch milliseconds.
+     * @param granularity The bucket size.
+     * @return The buckets with movements, in time order.
+     */
+    public static List<UsageBucket> getUsage(SQLiteDatabase db, String partNumber, long from, long to, Granularity granularity) {
+        String compactedSeq = "(SELECT " + COL_COMPACTED_SEQ + " FROM " + TABLE_STATE + " WHERE id = 1)";
+        String sql = "SELECT bucket, SUM(qin), SUM(qout), SUM(n) FROM (" +
+                "SELECT " + COL_BUCKET_START + " AS bucket, " + COL_QUANTITY_IN + " AS qin, " + COL_QUANTITY_OUT + " AS qout, " +
+                COL_MOVEMENTS + " AS n FROM " + granularity.table +
+                " WHERE " + COL_PART_NUMBER + " = ?1 AND " + COL_BUCKET_START + " >= ?2 AND " + COL_BUCKET_START + " < ?3 " +
+                "UNION ALL SELECT " + granularity.bucketSql(COL_AT) + ", " +
+                "CASE WHEN " + COL_DELTA + " > 0 THEN " + COL_DELTA + " ELSE 0 END, " +
+                "CASE WHEN " + COL_DELTA + " < 0 THEN -" + COL_DELTA + " ELSE 0 END, 1 FROM " + TABLE_MOVEMENTS +
+                " WHERE " + COL_SEQ + " > " + compactedSeq + " AND " + COL_PART_NUMBER + " = ?1 AND " + COL_AT + " >= ?2 AND " + COL_AT + " < ?3" +
+                ") GROUP BY bucket ORDER BY bucket";
+        String[] args = {partNumber, String.valueOf(granularity.bucketStart(from)), String.valueOf(to)};
+        List<UsageBucket> buckets = new ArrayList<>();
+        try (Cursor cursor = QueryExecutor.rawQuery(db, sql, args)) {
+            while (cursor.moveToNext()) {
+                buckets.add(new UsageBucket(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3)));
+            }
+        }
+        return buckets;
+    }
+
+    private static long getCompactedSeq(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_COMPACTED_SEQ + " FROM " + TABLE_STATE + " WHERE id = 1",
+                null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static long getLastCompacted(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_LAST_COMPACTED + " FROM " + TABLE_STATE + " WHERE id = 1",
+                null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
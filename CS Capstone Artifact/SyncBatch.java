@@ -0,0 +1,225 @@
+package com.example.project2;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * SyncBatch.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * SyncBatch is the unit the SyncEngine exchanges with a sync server: the net change of a number of items, identified by
+ * part number, encoded as gzip-compressed JSON. Each change carries the item as it is now and the quantity delta since
+ * the previous batch, so quantities changed on two devices at once can be added up instead of overwritten.
+ *
+ * Components:
+ * - String deviceId: The device the changes were made on.
+ * - long sequence: For pushed batches the local journal sequence covered, for pulled batches the server sequence reached.
+ * - Change: One item's operation, name, quantity, quantity delta and dynamic column values.
+ *
+ * Functions:
+ * - add(Change change): Appends a change.
+ * - encode(): Returns the batch as gzip-compressed JSON.
+ * - decode(byte[] data): Reads a batch written by encode().
+ * - Getter methods for each component.
+ *
+ * Note:
+ * - Dynamic values keep their stored type (Long, Double or String), so numeric columns stay numeric on the other side.
+ * - Snapshot batches sent on a device's first sync have sequence 0 and a delta of 0 on every change.
+ */
+public class SyncBatch {
+
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_SEQUENCE = "seq";
+    private static final String KEY_CHANGES = "changes";
+    private static final String KEY_OPERATION = "op";
+    private static final String KEY_PART_NUMBER = "part";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_QUANTITY = "qty";
+    private static final String KEY_DELTA = "delta";
+    private static final String KEY_VALUES = "values";
+
+    private final String deviceId;
+    private final long sequence;
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * The net change of one item, as a ChangeJournal operation code.
+     */
+    public static class Change {
+        private final String operation;
+        private final String partNumber;
+        private final String name;
+        private final long quantity;
+        private final long quantityDelta;
+        private final Map<String, Object> values;
+
+        public Change(String operation, String partNumber, String name, long quantity, long quantityDelta,
+                      Map<String, Object> values) {
+            this.operation = operation;
+            this.partNumber = partNumber;
+            this.name = name;
+            this.quantity = quantity;
+            this.quantityDelta = quantityDelta;
+            this.values = values != null ? values : Collections.<String, Object>emptyMap();
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getPartNumber() {
+            return partNumber;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public long getQuantityDelta() {
+            return quantityDelta;
+        }
+
+        public Map<String, Object> getValues() {
+            return values;
+        }
+    }
+
+    public SyncBatch(String deviceId, long sequence) {
+        this.deviceId = deviceId;
+        this.sequence = sequence;
+    }
+
+    public void add(Change change) {
+        changes.add(change);
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Encodes the batch as gzip-compressed JSON.
+     * @return The encoded batch.
+     * @throws IOException If the batch could not be encoded.
+     */
+    public byte[] encode() throws IOException {
+        try {
+            JSONArray array = new JSONArray();
+            for (Change change : changes) {
+                JSONObject object = new JSONObject();
+                object.put(KEY_OPERATION, change.operation);
+                object.put(KEY_PART_NUMBER, change.partNumber);
+                if (!ChangeJournal.OP_DELETE.equals(change.operation)) {
+                    object.put(KEY_NAME, change.name);
+                    object.put(KEY_QUANTITY, change.quantity);
+                    object.put(KEY_DELTA, change.quantityDelta);
+                    JSONObject values = new JSONObject();
+                    for (Map.Entry<String, Object> value : change.values.entrySet()) {
+                        values.put(value.getKey(), value.getValue() != null ? value.getValue() : JSONObject.NULL);
+                    }
+                    object.put(KEY_VALUES, values);
+                }
+                array.put(object);
+            }
+            JSONObject root = new JSONObject();
+            root.put(KEY_DEVICE, deviceId);
+            root.put(KEY_SEQUENCE, sequence);
+            root.put(KEY_CHANGES, array);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return bytes.toByteArray();
+        } catch (JSONException e) {
+            throw new IOException("Could not encode sync batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a batch written by encode().
+     * @param data The gzip-compressed JSON.
+     * @return The batch.
+     * @throws IOException If the data is not a valid batch.
+     */
+    public static SyncBatch decode(byte[] data) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                json.write(buffer, 0, read);
+            }
+        }
+        try {
+            JSONObject root = new JSONObject(new String(json.toByteArray(), StandardCharsets.UTF_8));
+            SyncBatch batch = new SyncBatch(root.getString(KEY_DEVICE), root.getLong(KEY_SEQUENCE));
+            JSONArray array = root.getJSONArray(KEY_CHANGES);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Map<String, Object> values = new LinkedHashMap<>();
+                JSONObject jsonValues = object.optJSONObject(KEY_VALUES);
+                if (jsonValues != null) {
+                    Iterator<String> keys = jsonValues.keys();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        values.put(key, toStoredValue(jsonValues.get(key)));
+                    }
+                }
+                batch.add(new Change(object.getString(KEY_OPERATION), object.getString(KEY_PART_NUMBER),
+                        object.optString(KEY_NAME, null), object.optLong(KEY_QUANTITY), object.optLong(KEY_DELTA), values));
+            }
+            return batch;
+        } catch (JSONException e) {
+            throw new IOException("Invalid sync batch: " + e.getMessage(), e);
+        }
+    }
+
+    // Converts a JSON value back to the Long, Double or String SQLite stored
+    private static Object toStoredValue(Object value) {
+        if (value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.project2;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * SyncEngine.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * SyncEngine keeps the inventory in step with a sync server. Local changes are read from the ChangeJournal, reduced to the
+ * net change of each part number and pushed in compressed batches; changes made on other devices are pulled in batches and
+ * applied in one transaction each. Both directions keep a checkpoint, so every sync only handles what changed since the last.
+ *
+ * Components:
+ * - String TABLE_SYNC_STATE: Single-row table holding the server sequence number pulled up to.
+ * - String PUSH_CHECKPOINT: The ChangeJournal checkpoint of the changes already pushed.
+ * - int DEFAULT_BATCH_SIZE: The number of journal rows pushed, and changes pulled, per batch.
+ * - SyncResult: The number of changes and bytes sent and received by one sync.
+ *
+ * Functions:
+ * - createSchema(SQLiteDatabase db): Creates the sync state table.
+ * - getDeviceId(Context context): Returns the id this installation syncs as, created on first use.
+ * - runInBackground(Context context): Syncs the active shard on a background thread with its own connection.
+ * - sync(InventoryDBHelper helper): Pushes local changes, then pulls and applies remote ones.
+ *
+ * Note:
+ * - Items are matched across devices by part number, row ids are local to each database.
+ * - Quantities merge by delta: each side sends how much it added or removed, so two devices counting stock at the same
+ *   time both keep their changes. Names and dynamic columns take the last value pulled.
+ * - A device's first sync pushes every item once as a snapshot with a delta of 0, then only journal changes.
+ * - Pulled changes are journaled as remote, so they are not pushed back to the server.
+ * - A push is only checkpointed after the server accepted it; a repeated batch is ignored by its sequence number.
+ */
+public class SyncEngine {
+
+    private static final String TAG = "SyncEngine";
+
+    public static final String TABLE_SYNC_STATE = "sync_state";
+    public static final String COL_LAST_PULLED = "last_pulled";
+    public static final String PUSH_CHECKPOINT = "sync_push";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final String PREFS_NAME = "sync";
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    private final SyncTransport transport;
+    private final String deviceId;
+    private final int batchSize;
+
+    /**
+     * The number of changes and compressed bytes sent and received by one sync.
+     */
+    public static class SyncResult {
+        int pushedChanges;
+        int pulledChanges;
+        long bytesSent;
+        long bytesReceived;
+
+        public int getPushedChanges() {
+            return pushedChanges;
+        }
+
+        public int getPulledChanges() {
+            return pulledChanges;
+        }
+
+        @Override
+        public String toString() {
+            return "pushed=" + pushedChanges + " (" + bytesSent + " bytes) pulled=" + pulledChanges +
+                    " (" + bytesReceived + " bytes)";
+        }
+    }
+
+    public SyncEngine(SyncTransport transport, String deviceId) {
+        this(transport, deviceId, DEFAULT_BATCH_SIZE);
+    }
+
+    public SyncEngine(SyncTransport transport, String deviceId, int batchSize) {
+        this.transport = transport;
+        this.deviceId = deviceId;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates the table holding the server sequence number pulled up to.
+     * @param db The database instance.
+     */
+    public static void createSchema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_STATE + " (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                COL_LAST_PULLED + " INTEGER NOT NULL);");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_SYNC_STATE + " (id, " + COL_LAST_PULLED + ") VALUES (1, 0)");
+    }
+
+    /**
+     * Returns the id this installation syncs as, created and stored on first use.
+     * @param context The context used to read the preferences.
+     * @return The device id.
+     */
+    public static synchronized String getDeviceId(Context context) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String id = preferences.getString(KEY_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            preferences.edit().putString(KEY_DEVICE_ID, id).apply();
+        }
+        return id;
+    }
+
+    /**
+     * Syncs the active shard on a background thread. Does nothing while a sync is already running.
+     * The engine opens its own helper and closes it when done, so the UI helper's connection stays open.
+     * @param context The context used to open the database.
+     */
+    public void runInBackground(Context context) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        final InventoryDBHelper helper = new InventoryDBHelper(context.getApplicationContext());
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Log.d(TAG, "Sync finished: " + sync(helper));
+                } catch (Exception e) {
+                    Log.e(TAG, "Sync failed: " + e.getMessage());
+                } finally {
+                    helper.close();
+                    RUNNING.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Pushes the local changes since the last sync, then pulls and applies the changes of other devices.
+     * @param helper The helper of the database to sync.
+     * @return The changes and bytes sent and received.
+     * @throws IOException If the transport failed; everything applied before the failure stays checkpointed.
+     */
+    public SyncResult sync(InventoryDBHelper helper) throws IOException {
+        SyncResult result = new SyncResult();
+        push(helper.getWritableDatabase(), result);
+        pull(helper, result);
+        return result;
+    }
+
+    // Pushes the journal in batches of sequence numbers, checkpointing each one the server accepted
+    private void push(SQLiteDatabase db, SyncResult result) throws IOException {
+        if (!ChangeJournal.hasCheckpoint(db, PUSH_CHECKPOINT)) {
+            pushSnapshot(db, result);
+        }
+        long from = ChangeJournal.getCheckpoint(db, PUSH_CHECKPOINT);
+        long current = ChangeJournal.getCurrentSequence(db);
+        while (from < current) {
+            long to = Math.min(current, from + batchSize);
+            SyncBatch batch = new SyncBatch(deviceId, to);
+            try (Cursor cursor = ChangeJournal.queryLocalChangesSince(db, from, to)) {
+                while (cursor.moveToNext()) {
+                    batch.add(readChange(cursor, cursor.getString(cursor.getColumnIndexOrThrow(ChangeJournal.COL_OPERATION)),
+                            cursor.getLong(cursor.getColumnIndexOrThrow(ChangeJournal.COL_QUANTITY_DELTA))));
+                }
+            }
+            if (!batch.isEmpty()) {
+                byte[] data = batch.encode();
+                transport.push(deviceId, data);
+                result.pushedChanges += batch.getChanges().size();
+                result.bytesSent += data.length;
+            }
+            ChangeJournal.saveCheckpoint(db, PUSH_CHECKPOINT, to);
+            from = to;
+        }
+        ChangeJournal.pruneConsumed(db);
+    }
+
+    // Sends every item once on the first sync; the items and the journal position are read in one transaction
+    private void pushSnapshot(SQLiteDatabase db, SyncResult result) throws IOException {
+        List<byte[]> batches = new ArrayList<>();
+        long journalPosition;
+        db.beginTransaction();
+        try {
+            journalPosition = ChangeJournal.getCurrentSequence(db);
+            long afterId = 0;
+            while (true) {
+                SyncBatch batch = new SyncBatch(deviceId, 0);
+                try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT * FROM " + InventoryDBHelper.TABLE_NAME +
+                                " WHERE _id > ? ORDER BY _id LIMIT " + batchSize,
+                        new String[]{String.valueOf(afterId)})) {
+                    while (cursor.moveToNext()) {
+                        afterId = cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
+                        batch.add(readChange(cursor, ChangeJournal.OP_INSERT, 0));
+                    }
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                batches.add(batch.encode());
+                result.pushedChanges += batch.getChanges().size();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Send outside the transaction so writers are not blocked on the network
+        for (byte[] data : batches) {
+            transport.push(deviceId, data);
+            result.bytesSent += data.length;
+        }
+        ChangeJournal.saveCheckpoint(db, PUSH_CHECKPOINT, journalPosition);
+        Log.d(TAG, "Snapshot of " + result.pushedChanges + " items pushed");
+    }
+
+    // Reads the current state of an item from a cursor over the items table
+    private static SyncBatch.Change readChange(Cursor cursor, String operation, long quantityDelta) {
+        if (ChangeJournal.OP_DELETE.equals(operation)) {
+            return new SyncBatch.Change(operation, cursor.getString(cursor.getColumnIndexOrThrow(ChangeJournal.COL_PART_NUMBER)),
+                    null, 0, quantityDelta, null);
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            String column = cursor.getColumnName(i);
+            if (!InventoryDBHelper.isBuiltInColumn(column) && !isJournalColumn(column)) {
+                values.put(column, InventoryDBHelper.readTypedValue(cursor, i));
+            }
+        }
+        return new SyncBatch.Change(operation,
+                cursor.getString(cursor.getColumnIndexOrThrow(InventoryDBHelper.COL_PART_NUMBER)),
+                cursor.getString(cursor.getColumnIndexOrThrow(InventoryDBHelper.COL_NAME)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(InventoryDBHelper.COL_QUANTITY)),
+                quantityDelta, values);
+    }
+
+    private static boolean isJournalColumn(String column) {
+        return column.equals(ChangeJournal.COL_PART_NUMBER) || column.equals(ChangeJournal.COL_SEQ)
+                || column.equals(ChangeJournal.COL_QUANTITY_DELTA) || column.equals(ChangeJournal.COL_OPERATION);
+    }
+
+    // Pulls batches until the server has nothing newer, applying each in its own transaction
+    private void pull(InventoryDBHelper helper, SyncResult result) throws IOException {
+        while (true) {
+            // Each batch is applied in its own transaction on the helper's connection
+            SQLiteDatabase db = helper.getWritableDatabase();
+            long after = getLastPulled(db);
+            byte[] data = transport.pull(deviceId, after, batchSize);
+            SyncBatch batch = SyncBatch.decode(data);
+            if (batch.getSequence() <= after) {
+                return;
+            }
+            Map<Long, InventoryChangeEvent.Type> touched = apply(db, batch);
+            result.pulledChanges += batch.getChanges().size();
+            result.bytesReceived += data.length;
+            publish(helper, touched);
+        }
+    }
+
+    private static long getLastPulled(SQLiteDatabase db) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT " + COL_LAST_PULLED + " FROM " + TABLE_SYNC_STATE + " WHERE id = 1",
+                null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Applies a pulled batch and its sequence number in one transaction, returning the rows it changed
+    private Map<Long, InventoryChangeEvent.Type> apply(SQLiteDatabase db, SyncBatch batch) {
+        Map<Long, InventoryChangeEvent.Type> touched = new LinkedHashMap<>();
+        Map<String, ColumnType> columnTypes = ColumnCatalog.getColumnTypes(db);
+        db.beginTransaction();
+        try {
+            ChangeJournal.setOrigin(db, ChangeJournal.ORIGIN_REMOTE);
+            for (SyncBatch.Change change : batch.getChanges()) {
+                applyChange(db, change, columnTypes, touched);
+            }
+            ChangeJournal.setOrigin(db, ChangeJournal.ORIGIN_LOCAL);
+
+            ContentValues state = new ContentValues();
+            state.put(COL_LAST_PULLED, batch.getSequence());
+            db.update(TABLE_SYNC_STATE, state, "id = 1", null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return touched;
+    }
+
+    private static void applyChange(SQLiteDatabase db, SyncBatch.Change change, Map<String, ColumnType> columnTypes,
+                                    Map<Long, InventoryChangeEvent.Type> touched) {
+        String[] partArgs = new String[]{change.getPartNumber()};
+        long itemId = findItemId(db, change.getPartNumber());
+
+        if (ChangeJournal.OP_DELETE.equals(change.getOperation())) {
+            if (itemId != -1) {
+                db.delete(InventoryDBHelper.TABLE_NAME, InventoryDBHelper.COL_PART_NUMBER + " = ?", partArgs);
+                touched.put(itemId, InventoryChangeEvent.Type.ITEM_DELETED);
+            }
+            return;
+        }
+
+        // Only columns this database has are applied, the others wait until the column is added here
+        ContentValues values = new ContentValues();
+        if (change.getName() != null) {
+            values.put(InventoryDBHelper.COL_NAME, change.getName());
+        }
+        for (Map.Entry<String, Object> entry : change.getValues().entrySet()) {
+            if (columnTypes.containsKey(entry.getKey()) && !InventoryDBHelper.isBuiltInColumn(entry.getKey())) {
+                putStoredValue(values, entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (itemId == -1) {
+            values.put(InventoryDBHelper.COL_PART_NUMBER, change.getPartNumber());
+            values.put(InventoryDBHelper.COL_QUANTITY, change.getQuantity());
+            itemId = db.insert(InventoryDBHelper.TABLE_NAME, null, values);
+            if (itemId != -1) {
+                touched.put(itemId, InventoryChangeEvent.Type.ITEM_INSERTED);
+            }
+            return;
+        }
+        if (values.size() > 0) {
+            db.update(InventoryDBHelper.TABLE_NAME, values, "_id = ?", new String[]{String.valueOf(itemId)});
+        }
+        if (change.getQuantityDelta() != 0) {
+            db.execSQL("UPDATE " + InventoryDBHelper.TABLE_NAME + " SET " + InventoryDBHelper.COL_QUANTITY + " = " +
+                    InventoryDBHelper.COL_QUANTITY + " + ? WHERE _id = ?", new Object[]{change.getQuantityDelta(), itemId});
+        }
+        if (!touched.containsKey(itemId)) {
+            touched.put(itemId, InventoryChangeEvent.Type.ITEM_UPDATED);
+        }
+    }
+
+    // Finds the row of a part number through its index, -1 if this database does not have it
+    private static long findItemId(SQLiteDatabase db, String partNumber) {
+        try (Cursor cursor = QueryExecutor.rawQuery(db, "SELECT _id FROM " + InventoryDBHelper.TABLE_NAME + " WHERE " +
+                InventoryDBHelper.COL_PART_NUMBER + " = ? LIMIT 1", new String[]{partNumber})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private static void putStoredValue(ContentValues values, String column, Object value) {
+        if (value == null) {
+            values.putNull(column);
+        } else if (value instanceof Long) {
+            values.put(column, (Long) value);
+        } else if (value instanceof Double) {
+            values.put(column, (Double) value);
+        } else {
+            values.put(column, value.toString());
+        }
+    }
+
+    // Tells subscribers about the rows a pulled batch changed, after it was committed
+    private static void publish(InventoryDBHelper helper, Map<Long, InventoryChangeEvent.Type> touched) {
+        for (Map.Entry<Long, InventoryChangeEvent.Type> entry : touched.entrySet()) {
+            if (entry.getValue() == InventoryChangeEvent.Type.ITEM_DELETED) {
+                InventoryEventBus.publish(InventoryChangeEvent.itemDeleted(entry.getKey()));
+                continue;
+            }
+            Item item = helper.getItem(entry.getKey());
+            if (item == null) {
+                continue;
+            }
+            InventoryEventBus.publish(entry.getValue() == InventoryChangeEvent.Type.ITEM_INSERTED
+                    ? InventoryChangeEvent.itemInserted(item) : InventoryChangeEvent.itemUpdated(item));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.project2;
+
+import java.io.IOException;
+
+/*
+ * SyncTransport.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * SyncTransport moves encoded SyncBatches between the SyncEngine and a sync server. The engine does not know how the
+ * bytes travel, so an HTTP client, a message queue or the in-process LocalSyncServer can be plugged in.
+ *
+ * Functions:
+ * - push(String deviceId, byte[] batch): Sends a batch of local changes to the server.
+ * - pull(String deviceId, long afterServerSeq, int maxChanges): Fetches the changes other devices made since a server sequence.
+ *
+ * Note:
+ * - Both calls block and are only made from the SyncEngine's background thread.
+ * - A push may be retried after a failure, servers must ignore a batch whose sequence they already accepted from the device.
+ */
+public interface SyncTransport {
+
+    /**
+     * Sends a batch of local changes.
+     * @param deviceId The device sending the batch.
+     * @param batch The encoded SyncBatch.
+     * @return The server sequence number of the last change stored.
+     * @throws IOException If the batch could not be delivered.
+     */
+    long push(String deviceId, byte[] batch) throws IOException;
+
+    /**
+     * Fetches the changes made by other devices after a server sequence number.
+     * @param deviceId The device asking, its own changes are left out.
+     * @param afterServerSeq The last server sequence number already applied.
+     * @param maxChanges The most changes to return.
+     * @return The encoded SyncBatch, whose sequence is the last server sequence number it covers.
+     * @throws IOException If the changes could not be fetched.
+     */
+    byte[] pull(String deviceId, long afterServerSeq, int maxChanges) throws IOException;
+}
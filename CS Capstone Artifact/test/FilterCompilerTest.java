@@ -0,0 +1,117 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/*
+ * FilterCompilerTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * FilterCompilerTest checks that user input never changes the meaning of a compiled filter: LIKE wildcards and the escape
+ * character in a prefix are matched literally, quotes in values only ever reach SQLite as bound arguments, and a column
+ * name containing a double quote is quoted as an identifier.
+ *
+ * Note:
+ * - Runs on the JVM under Robolectric; the filters are run against a fresh database to check the rows they match.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FilterCompilerTest {
+
+    private static final String DATABASE = "filter_compiler_test.db";
+    private static final String QUOTED_COLUMN = "Bin \"A\"";
+
+    private Context context;
+    private InventoryDBHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE);
+        helper = new InventoryDBHelper(context, DATABASE);
+        helper.addNewColumn(QUOTED_COLUMN);
+        insert("50%_off", "P1", "top");
+        insert("50% off", "P2", "top");
+        insert("50x_off", "P3", "middle");
+        insert("50%xoff", "P4", "middle");
+        insert("C:\\parts\\bolt", "P5", "bottom");
+        insert("C:\\partsxbolt", "P6", "bottom");
+        insert("O'Brien \"special\"", "P7", "bottom");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void prefixWildcardsAreEscaped() {
+        FilterCompiler.CompiledFilter filter = compile(FilterCompiler.Condition.startsWith(InventoryDBHelper.COL_NAME, "50%_"));
+
+        assertArrayEquals(new String[]{"50\\%\\_%"}, filter.getArguments());
+        assertEquals(Collections.singletonList("P1"), partNumbers(helper.queryItems(filter)));
+    }
+
+    @Test
+    public void prefixBackslashIsMatchedLiterally() {
+        FilterCompiler.CompiledFilter filter = compile(FilterCompiler.Condition.startsWith(InventoryDBHelper.COL_NAME, "C:\\parts\\"));
+
+        assertArrayEquals(new String[]{"C:\\\\parts\\\\%"}, filter.getArguments());
+        assertEquals(Collections.singletonList("P5"), partNumbers(helper.queryItems(filter)));
+    }
+
+    @Test
+    public void quotesInValuesAreBoundNotInlined() {
+        String name = "O'Brien \"special\"";
+        FilterCompiler.CompiledFilter equals = compile(FilterCompiler.Condition.equalTo(InventoryDBHelper.COL_NAME, name));
+        FilterCompiler.CompiledFilter in = compile(FilterCompiler.Condition.in(InventoryDBHelper.COL_NAME,
+                Arrays.asList(name, "50% off")));
+
+        assertEquals(-1, equals.getSelection().indexOf("Brien"));
+        assertEquals(Collections.singletonList("P7"), partNumbers(helper.queryItems(equals)));
+        assertEquals(Arrays.asList("P2", "P7"), partNumbers(helper.queryItems(in)));
+    }
+
+    @Test
+    public void columnNameWithQuoteIsQuotedAsIdentifier() {
+        FilterCompiler.CompiledFilter filter = compile(FilterCompiler.Condition.equalTo(QUOTED_COLUMN, "MIDDLE"));
+
+        assertEquals("\"Bin \"\"A\"\"\" = ? COLLATE NOCASE", filter.getSelection());
+        assertEquals(Arrays.asList("P3", "P4"), partNumbers(helper.queryItems(filter)));
+    }
+
+    private FilterCompiler.CompiledFilter compile(FilterCompiler.Condition condition) {
+        return helper.compileFilter(new HashMap<String, String>(), Collections.singletonList(condition));
+    }
+
+    private void insert(String name, String partNumber, String bin) {
+        helper.getWritableDatabase().execSQL("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (" +
+                InventoryDBHelper.COL_NAME + ", " + InventoryDBHelper.COL_PART_NUMBER + ", " + InventoryDBHelper.COL_QUANTITY +
+                ", " + InventoryDBHelper.quoteIdentifier(QUOTED_COLUMN) + ") VALUES (?, ?, 1, ?)",
+                new Object[]{name, partNumber, bin});
+    }
+
+    private static List<String> partNumbers(List<Item> items) {
+        List<String> partNumbers = new ArrayList<>();
+        for (Item item : items) {
+            partNumbers.add(item.getPartNumber());
+        }
+        Collections.sort(partNumbers);
+        return partNumbers;
+    }
+}
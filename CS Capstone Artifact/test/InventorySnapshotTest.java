@@ -0,0 +1,210 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/*
+ * InventorySnapshotTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * InventorySnapshotTest round-trips values through the snapshot codec: integers at the edges of the zigzag varint,
+ * reals, nulls, blobs, repeated short strings that become dictionary references and long strings written inline. It
+ * also backs up a database with typed dynamic columns, restores it into an empty one, and checks that a corrupted or
+ * truncated snapshot is rejected without changing the database.
+ *
+ * Note:
+ * - Runs on the JVM under Robolectric with fresh databases per test.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class InventorySnapshotTest {
+
+    private static final String DATABASE_SOURCE = "snapshot_test_source.db";
+    private static final String DATABASE_TARGET = "snapshot_test_target.db";
+
+    private Context context;
+    private InventoryDBHelper source;
+    private InventoryDBHelper target;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_SOURCE);
+        context.deleteDatabase(DATABASE_TARGET);
+        source = new InventoryDBHelper(context, DATABASE_SOURCE);
+        target = new InventoryDBHelper(context, DATABASE_TARGET);
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        target.close();
+        context.deleteDatabase(DATABASE_SOURCE);
+        context.deleteDatabase(DATABASE_TARGET);
+    }
+
+    @Test
+    public void codecRoundTripsEveryValueType() throws IOException {
+        String longText = repeat("Flange ", 20);
+        Object[][] rows = {
+                {0L, 0.0, "same", null},
+                {-1L, -0.5, "same", new byte[]{1, 2, 3}},
+                {Long.MAX_VALUE, Double.MAX_VALUE, longText, new byte[0]},
+                {Long.MIN_VALUE, Double.MIN_VALUE, "Größe ✓", null},
+                {63L, Double.NaN, longText, null},
+                {-64L, Double.NEGATIVE_INFINITY, "same", null},
+                {null, null, null, null},
+        };
+        MatrixCursor cursor = new MatrixCursor(new String[]{"a", "b", "c", "d"});
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        List<InventorySnapshot.Column> columns = Arrays.asList(new InventorySnapshot.Column("a", "INTEGER"),
+                new InventorySnapshot.Column("b", "REAL"), new InventorySnapshot.Column("c", "TEXT"),
+                new InventorySnapshot.Column("d", null));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InventorySnapshot.SnapshotWriter writer = new InventorySnapshot.SnapshotWriter(bytes, columns)) {
+            while (cursor.moveToNext()) {
+                writer.writeRow(cursor);
+            }
+            writer.finish();
+        }
+
+        try (InventorySnapshot.SnapshotReader reader = new InventorySnapshot.SnapshotReader(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(4, reader.getColumns().size());
+            assertEquals("", reader.getColumns().get(3).declaredType);
+            Object[] values = new Object[4];
+            for (Object[] row : rows) {
+                assertTrue(reader.readRow(values));
+                assertEquals(row[0], values[0]);
+                assertEquals(row[1], values[1]);
+                assertEquals(row[2], values[2]);
+                if (row[3] == null) {
+                    assertEquals(null, values[3]);
+                } else {
+                    assertArrayEquals((byte[]) row[3], (byte[]) values[3]);
+                }
+            }
+            assertFalse(reader.readRow(values));
+        }
+    }
+
+    @Test
+    public void backupRestoresIntoAnEmptyDatabaseWithColumnTypes() throws IOException {
+        fillSource();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(3, InventorySnapshot.backup(source.getWritableDatabase(), bytes));
+        assertEquals(3, InventorySnapshot.restore(target.getWritableDatabase(), new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(dump(source.getWritableDatabase()), dump(target.getWritableDatabase()));
+        assertEquals(ColumnType.DATE, ColumnCatalog.getColumnTypes(target.getWritableDatabase()).get("Received"));
+        assertEquals(ColumnType.REAL, ColumnCatalog.getColumnTypes(target.getWritableDatabase()).get("Price"));
+    }
+
+    @Test
+    public void corruptedSnapshotLeavesTheDatabaseUntouched() throws IOException {
+        fillSource();
+        insert(target.getWritableDatabase(), "Existing", "X1", 9);
+        List<List<Object>> before = dump(target.getWritableDatabase());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InventorySnapshot.backup(source.getWritableDatabase(), bytes);
+        byte[] snapshot = bytes.toByteArray();
+
+        // Change one character of a stored string, the structure stays readable and only the checksum tells
+        byte[] corrupted = snapshot.clone();
+        corrupted[indexOf(corrupted, "Flange".getBytes(StandardCharsets.UTF_8))] = 'f';
+        assertRestoreFails(corrupted);
+        assertEquals(before, dump(target.getWritableDatabase()));
+
+        // Without its trailer a snapshot is incomplete
+        assertRestoreFails(Arrays.copyOf(snapshot, snapshot.length - 4));
+        assertEquals(before, dump(target.getWritableDatabase()));
+    }
+
+    private void fillSource() {
+        source.addNewColumn("Price", ColumnType.REAL);
+        source.addNewColumn("Received", ColumnType.DATE);
+        source.addNewColumn("Notes", ColumnType.TEXT);
+        SQLiteDatabase db = source.getWritableDatabase();
+        insert(db, "Flange", "P1", 4);
+        insert(db, "Washer", "P2", 0);
+        insert(db, "Bolt", "P3", 120);
+        db.execSQL("UPDATE " + InventoryDBHelper.TABLE_NAME + " SET \"Price\" = 2.75, \"Received\" = 1705276800000, " +
+                "\"Notes\" = ? WHERE " + InventoryDBHelper.COL_PART_NUMBER + " = 'P1'", new Object[]{repeat("long note ", 10)});
+        db.execSQL("UPDATE " + InventoryDBHelper.TABLE_NAME + " SET \"Price\" = -1, \"Notes\" = 'Flange' WHERE " +
+                InventoryDBHelper.COL_PART_NUMBER + " = 'P2'");
+    }
+
+    private void assertRestoreFails(byte[] snapshot) {
+        try {
+            InventorySnapshot.restore(target.getWritableDatabase(), new ByteArrayInputStream(snapshot));
+            fail("A damaged snapshot was restored");
+        } catch (IOException expected) {
+            // The restore rolled back
+        }
+    }
+
+    private static void insert(SQLiteDatabase db, String name, String partNumber, int quantity) {
+        db.execSQL("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (" + InventoryDBHelper.COL_NAME + ", " +
+                InventoryDBHelper.COL_PART_NUMBER + ", " + InventoryDBHelper.COL_QUANTITY + ") VALUES (?, ?, ?)",
+                new Object[]{name, partNumber, quantity});
+    }
+
+    // Every row of the items table with its stored values, in row id order
+    private static List<List<Object>> dump(SQLiteDatabase db) {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM " + InventoryDBHelper.TABLE_NAME + " ORDER BY _id", null)) {
+            while (cursor.moveToNext()) {
+                List<Object> row = new ArrayList<>();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    row.add(cursor.getColumnName(i) + "=" + InventoryDBHelper.readTypedValue(cursor, i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Pattern not found");
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
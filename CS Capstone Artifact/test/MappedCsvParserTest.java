@@ -0,0 +1,186 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * MappedCsvParserTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * MappedCsvParserTest splits and parses small CSV files with chunks only a few bytes long, so chunk edges fall inside
+ * quoted fields, inside records longer than a chunk and between the two bytes of a CRLF, and checks that every record
+ * comes out whole and in file order, also when the parse resumes from a checkpoint offset.
+ *
+ * Note:
+ * - Plain JUnit on the JVM; the parser only needs a FileChannel, so no Robolectric runner is used.
+ */
+public class MappedCsvParserTest {
+
+    private static final String HEADER = "item_name,part_number,quantity";
+    private static final String[] COLUMNS = {
+            InventoryDBHelper.COL_NAME, InventoryDBHelper.COL_PART_NUMBER, InventoryDBHelper.COL_QUANTITY
+    };
+    private static final ColumnType[] TYPES = {ColumnType.TEXT, ColumnType.TEXT, ColumnType.INTEGER};
+
+    private File file;
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("parser", ".csv");
+        pool = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void quotedNewlinesStraddlingChunkEdgesStayInTheirRecord() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            records.add("\"Bolt\nline " + i + "\",\"P" + i + "\"," + i);
+        }
+        write(HEADER + "\n" + join(records, "\n") + "\n");
+
+        // Every chunk size from 3 to 29 bytes moves the edges through the quoted line breaks
+        for (int chunkBytes = 3; chunkBytes < 30; chunkBytes++) {
+            List<Object[]> rows = parseAll(headerEnd(), chunkBytes, 4);
+            assertEquals("chunk size " + chunkBytes, 40, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals("Bolt\nline " + i, rows.get(i)[0]);
+                assertEquals("P" + i, rows.get(i)[1]);
+                assertEquals(Long.valueOf(i), rows.get(i)[2]);
+            }
+        }
+    }
+
+    @Test
+    public void recordLongerThanAChunkIsParsedOnce() throws Exception {
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            longName.append(i % 7 == 3 ? "\n" : "x");
+        }
+        write(HEADER + "\nWasher,P1,1\n\"" + longName + "\",P2,2\nNut,P3,3\n");
+
+        List<Object[]> rows = parseAll(headerEnd(), 16, 10);
+
+        assertEquals(3, rows.size());
+        assertEquals("Washer", rows.get(0)[0]);
+        assertEquals(longName.toString(), rows.get(1)[0]);
+        assertEquals("Nut", rows.get(2)[0]);
+        try (FileChannel channel = open()) {
+            List<long[]> chunks = new MappedCsvParser(channel).split(headerEnd(), 16, pool);
+            for (int i = 1; i < chunks.size(); i++) {
+                assertEquals(chunks.get(i - 1)[1], chunks.get(i)[0]);
+            }
+        }
+    }
+
+    @Test
+    public void crlfEndingsAreNotPartOfTheLastField() throws Exception {
+        write(HEADER + "\r\nBolt,P1,5\r\n\"Wide\r\nwasher\",P2,7\r\nNut,P3,9");
+
+        try (FileChannel channel = open()) {
+            assertEquals(HEADER, new MappedCsvParser(channel).readHeader());
+        }
+        for (int chunkBytes = 2; chunkBytes < 20; chunkBytes++) {
+            List<Object[]> rows = parseAll(headerEnd(), chunkBytes, 2);
+            assertEquals("chunk size " + chunkBytes, 3, rows.size());
+            assertEquals(Long.valueOf(5), rows.get(0)[2]);
+            assertEquals("Wide\r\nwasher", rows.get(1)[0]);
+            assertEquals(Long.valueOf(7), rows.get(1)[2]);
+            assertEquals(Long.valueOf(9), rows.get(2)[2]);
+        }
+    }
+
+    @Test
+    public void resumingFromACheckpointOffsetSkipsTheRowsBeforeIt() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            records.add("\"Item, " + i + "\",P" + i + "," + i);
+        }
+        write(HEADER + "\n" + join(records, "\n") + "\n");
+
+        // One record per batch, so every batch end is a checkpoint the importer could have saved
+        long checkpoint;
+        try (FileChannel channel = open()) {
+            MappedCsvParser parser = new MappedCsvParser(channel);
+            MappedCsvParser.ChunkResult whole = parser.parse(parser.getHeaderEnd(), file.length(), validator(), 1);
+            checkpoint = whole.getBatches().get(4).getEndOffset();
+        }
+
+        List<Object[]> rows = parseAll(checkpoint, 11, 3);
+
+        assertEquals(7, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals("P" + (i + 5), rows.get(i)[1]);
+        }
+    }
+
+    // Splits and parses the file from an offset and returns the valid rows in file order
+    private List<Object[]> parseAll(long start, int chunkBytes, int batchRows) throws Exception {
+        final List<Object[]> rows = new ArrayList<>();
+        try (FileChannel channel = open()) {
+            MappedCsvParser parser = new MappedCsvParser(channel);
+            List<long[]> chunks = parser.split(start, chunkBytes, pool);
+            parser.parseInOrder(chunks, pool, validator(), batchRows, 2, new MappedCsvParser.ChunkConsumer() {
+                @Override
+                public void accept(MappedCsvParser.ChunkResult result) {
+                    for (CsvRowValidator.ValidatedBatch batch : result.getBatches()) {
+                        assertTrue(batch.getRejects().isEmpty());
+                        rows.addAll(batch.getRows());
+                    }
+                }
+            });
+        }
+        return rows;
+    }
+
+    private static CsvRowValidator validator() {
+        return new CsvRowValidator(COLUMNS, TYPES);
+    }
+
+    private long headerEnd() throws IOException {
+        try (FileChannel channel = open()) {
+            return new MappedCsvParser(channel).getHeaderEnd();
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    private void write(String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String join(List<String> parts, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String part : parts) {
+            joined.append(joined.length() > 0 ? separator : "").append(part);
+        }
+        return joined.toString();
+    }
+}
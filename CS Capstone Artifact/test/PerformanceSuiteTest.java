@@ -0,0 +1,40 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/*
+ * PerformanceSuiteTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * PerformanceSuiteTest runs the PerformanceSuite and fails when any hot path goes over its time or allocation budget,
+ * or when its allocations could not be measured.
+ *
+ * Note:
+ * - Runs on the JVM under Robolectric. The 1M-row size is left out, it needs a larger heap than a test JVM gets by default.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PerformanceSuiteTest {
+
+    private static final int[] SIZES = {10000, 100000};
+
+    @Rule
+    public TemporaryFolder reportDirectory = new TemporaryFolder();
+
+    @Test
+    public void hotPathsStayWithinBudget() throws Exception {
+        PerformanceSuite.Report report = PerformanceSuite.run(ApplicationProvider.getApplicationContext(), SIZES,
+                reportDirectory.getRoot());
+
+        assertTrue("Over budget: " + report.getFailures(), report.isPassed());
+        assertTrue(report.getFile().isFile());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/*
+ * StockHistoryTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * StockHistoryTest checks the bucket math of StockHistory: weeks start on Monday also before the epoch, and getStockAt,
+ * which adds up weekly, daily and hourly rollups and the raw movements after them, returns the same stock as summing
+ * every movement before the time, at bucket edges and in between, before, after and partly through a compaction.
+ *
+ * Note:
+ * - Runs on the JVM under Robolectric with a fresh database per test.
+ * - Movements are written straight to the log with chosen times, inside RAW_RETENTION_MS so no answer is clamped.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StockHistoryTest {
+
+    private static final String DATABASE = "stock_history_test.db";
+    private static final String PART = "P1";
+    private static final long HOUR_MS = 60L * 60 * 1000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    private Context context;
+    private InventoryDBHelper helper;
+    private SQLiteDatabase db;
+    private final List<long[]> movements = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE);
+        helper = new InventoryDBHelper(context, DATABASE);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void bucketsAlignToUtcHoursDaysAndMondays() {
+        // 1970-01-08 was a Thursday, its week started on Monday 1970-01-05
+        assertEquals(4 * DAY_MS, StockHistory.Granularity.WEEK.bucketStart(7 * DAY_MS + 5 * HOUR_MS));
+        assertEquals(4 * DAY_MS, StockHistory.Granularity.WEEK.bucketStart(4 * DAY_MS));
+        assertEquals(-3 * DAY_MS, StockHistory.Granularity.WEEK.bucketStart(4 * DAY_MS - 1));
+        // Before the epoch the bucket still starts at or before the time
+        assertEquals(-DAY_MS, StockHistory.Granularity.DAY.bucketStart(-1));
+        assertEquals(-HOUR_MS, StockHistory.Granularity.HOUR.bucketStart(-1));
+        assertEquals(3 * HOUR_MS, StockHistory.Granularity.HOUR.bucketStart(3 * HOUR_MS + 59 * 60 * 1000));
+    }
+
+    @Test
+    public void stockAtMatchesTheSumOfMovementsBeforeAndAfterCompaction() {
+        long start = StockHistory.Granularity.WEEK.bucketStart(System.currentTimeMillis() - 20 * DAY_MS) + 2 * DAY_MS;
+        logRandomMovements(start, start + 16 * DAY_MS, 400, 1);
+        assertStockMatches(start, start + 16 * DAY_MS);
+
+        StockHistory.compact(db);
+        assertStockMatches(start, start + 16 * DAY_MS);
+    }
+
+    @Test
+    public void stockAtCountsMovementsNotCompactedYet() {
+        long start = StockHistory.Granularity.WEEK.bucketStart(System.currentTimeMillis() - 20 * DAY_MS) + 2 * DAY_MS;
+        logRandomMovements(start, start + 16 * DAY_MS, 200, 2);
+        StockHistory.compact(db);
+
+        // Logged after the compaction but dated inside buckets the rollups already cover
+        logRandomMovements(start, start + 16 * DAY_MS, 100, 3);
+        assertStockMatches(start, start + 16 * DAY_MS);
+    }
+
+    @Test
+    public void movementsOfOtherPartsAreNotCounted() {
+        long at = System.currentTimeMillis() - 3 * DAY_MS;
+        log(PART, 10, at);
+        log("P2", 25, at);
+        StockHistory.compact(db);
+        log("P2", -5, at + HOUR_MS);
+
+        assertEquals(10, StockHistory.getStockAt(db, PART, at + 2 * HOUR_MS));
+        assertEquals(20, StockHistory.getStockAt(db, "P2", at + 2 * HOUR_MS));
+    }
+
+    // Logs movements at random times in a range; the first one is an opening balance so the stock stays positive
+    private void logRandomMovements(long from, long to, int count, long seed) {
+        Random random = new Random(seed);
+        log(PART, 1000, from);
+        for (int i = 0; i < count; i++) {
+            long at = from + (long) (random.nextDouble() * (to - from));
+            log(PART, random.nextInt(21) - 10, at);
+        }
+    }
+
+    private void log(String partNumber, long delta, long at) {
+        db.execSQL("INSERT INTO " + StockHistory.TABLE_MOVEMENTS + " (" + StockHistory.COL_ITEM_ID + ", " +
+                StockHistory.COL_PART_NUMBER + ", " + StockHistory.COL_DELTA + ", " + StockHistory.COL_AT +
+                ") VALUES (1, ?, ?, ?)", new Object[]{partNumber, delta, at});
+        if (PART.equals(partNumber)) {
+            movements.add(new long[]{at, delta});
+        }
+    }
+
+    // Checks every hour edge in a range, a millisecond either side of it, and a time inside every hour
+    private void assertStockMatches(long from, long to) {
+        for (long hour = StockHistory.Granularity.HOUR.bucketStart(from); hour <= to; hour += HOUR_MS) {
+            for (long time : new long[]{hour - 1, hour, hour + 1, hour + 37 * 60 * 1000}) {
+                assertEquals("stock at " + time, expectedStockAt(time), StockHistory.getStockAt(db, PART, time));
+            }
+        }
+    }
+
+    private long expectedStockAt(long time) {
+        long stock = 0;
+        for (long[] movement : movements) {
+            if (movement[0] < time) {
+                stock += movement[1];
+            }
+        }
+        return stock;
+    }
+}
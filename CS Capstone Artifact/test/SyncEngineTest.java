@@ -0,0 +1,155 @@
+package com.example.project2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/*
+ * SyncEngineTest.java
+ * Developer: Christopher Karchella
+ * Version: 1.1
+ *
+ * Description:
+ * SyncEngineTest syncs two devices, each with its own inventory database, through a LocalSyncServer and checks that
+ * inserts, deletes and quantity changes made on one device arrive on the other, and that a sync does not prune journal
+ * rows the delta CSV export has not read yet.
+ *
+ * Note:
+ * - Runs on the JVM under Robolectric; each test starts with fresh databases and a fresh server.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncEngineTest {
+
+    private static final String DATABASE_A = "sync_test_a.db";
+    private static final String DATABASE_B = "sync_test_b.db";
+
+    private Context context;
+    private LocalSyncServer server;
+    private InventoryDBHelper helperA;
+    private InventoryDBHelper helperB;
+    private SyncEngine engineA;
+    private SyncEngine engineB;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_A);
+        context.deleteDatabase(DATABASE_B);
+        server = new LocalSyncServer();
+        helperA = new InventoryDBHelper(context, DATABASE_A);
+        helperB = new InventoryDBHelper(context, DATABASE_B);
+        engineA = new SyncEngine(server, "device-a");
+        engineB = new SyncEngine(server, "device-b");
+    }
+
+    @After
+    public void tearDown() {
+        helperA.close();
+        helperB.close();
+        context.deleteDatabase(DATABASE_A);
+        context.deleteDatabase(DATABASE_B);
+    }
+
+    @Test
+    public void insertReachesOtherDevice() throws Exception {
+        insert(helperA, "Bolt", "P1", 5);
+        engineA.sync(helperA);
+        engineB.sync(helperB);
+
+        assertEquals(Long.valueOf(5), quantity(helperB, "P1"));
+    }
+
+    @Test
+    public void deleteAfterReinsertReachesOtherDevice() throws Exception {
+        insert(helperA, "Bolt", "P1", 5);
+        engineA.sync(helperA);
+        engineB.sync(helperB);
+
+        // Deleted, re-inserted and deleted again between two pushes: the server must still learn of the delete
+        delete(helperA, "P1");
+        insert(helperA, "Bolt", "P1", 7);
+        delete(helperA, "P1");
+        engineA.sync(helperA);
+        engineB.sync(helperB);
+
+        assertNull(quantity(helperB, "P1"));
+    }
+
+    @Test
+    public void itemInsertedAndDeletedBetweenSyncsIsNotPushed() throws Exception {
+        insert(helperA, "Bolt", "P1", 5);
+        engineA.sync(helperA);
+        int changes = server.getChangeCount();
+
+        insert(helperA, "Washer", "P2", 3);
+        delete(helperA, "P2");
+        engineA.sync(helperA);
+
+        assertEquals(changes, server.getChangeCount());
+    }
+
+    @Test
+    public void quantityChangesOnBothDevicesAddUp() throws Exception {
+        insert(helperA, "Bolt", "P1", 10);
+        engineA.sync(helperA);
+        engineB.sync(helperB);
+
+        setQuantity(helperA, "P1", 12);
+        setQuantity(helperB, "P1", 7);
+        engineA.sync(helperA);
+        engineB.sync(helperB);
+        engineA.sync(helperA);
+
+        // +2 on A and -3 on B
+        assertEquals(Long.valueOf(9), quantity(helperA, "P1"));
+        assertEquals(Long.valueOf(9), quantity(helperB, "P1"));
+    }
+
+    @Test
+    public void syncKeepsChangesTheDeltaExportHasNotRead() throws Exception {
+        insert(helperA, "Bolt", "P1", 5);
+        engineA.sync(helperA);
+
+        // The delta export has never run, so the insert must still be in the journal for its first export
+        SQLiteDatabase db = helperA.getWritableDatabase();
+        long fromSeq = ChangeJournal.getCheckpoint(db, CsvExporter.DELTA_CHECKPOINT);
+        try (Cursor cursor = ChangeJournal.queryChangesSince(db, fromSeq, ChangeJournal.getCurrentSequence(db))) {
+            assertEquals(1, cursor.getCount());
+        }
+    }
+
+    private static void insert(InventoryDBHelper helper, String name, String partNumber, int quantity) {
+        helper.getWritableDatabase().execSQL("INSERT INTO " + InventoryDBHelper.TABLE_NAME + " (" +
+                InventoryDBHelper.COL_NAME + ", " + InventoryDBHelper.COL_PART_NUMBER + ", " + InventoryDBHelper.COL_QUANTITY +
+                ") VALUES (?, ?, ?)", new Object[]{name, partNumber, quantity});
+    }
+
+    private static void delete(InventoryDBHelper helper, String partNumber) {
+        helper.getWritableDatabase().delete(InventoryDBHelper.TABLE_NAME, InventoryDBHelper.COL_PART_NUMBER + " = ?",
+                new String[]{partNumber});
+    }
+
+    private static void setQuantity(InventoryDBHelper helper, String partNumber, int quantity) {
+        helper.getWritableDatabase().execSQL("UPDATE " + InventoryDBHelper.TABLE_NAME + " SET " +
+                InventoryDBHelper.COL_QUANTITY + " = ? WHERE " + InventoryDBHelper.COL_PART_NUMBER + " = ?",
+                new Object[]{quantity, partNumber});
+    }
+
+    // Returns the quantity of a part, or null if the part does not exist
+    private static Long quantity(InventoryDBHelper helper, String partNumber) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT " + InventoryDBHelper.COL_QUANTITY + " FROM " + InventoryDBHelper.TABLE_NAME +
+                " WHERE " + InventoryDBHelper.COL_PART_NUMBER + " = ?", new String[]{partNumber})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        }
+    }
+}